@@ -66,6 +66,7 @@ public class MidiParserReceiver implements Receiver {
   @Override
   public void send(MidiMessage message, long timestamp) {
     parser.parseEvent(new MidiEvent(message, timestamp));
+    parser.flushEventBatch();
     sequencerReceiver.send(message, timestamp);
   }
 
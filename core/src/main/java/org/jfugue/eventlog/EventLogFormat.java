@@ -0,0 +1,127 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.eventlog;
+
+import org.jfugue.theory.PackedNote;
+
+/**
+ * Constants shared by EventLogWriter and EventLogParser. Package scope.
+ *
+ * <p>A log starts with the four bytes <code>JFEL</code>, a version byte and a flags byte. Then
+ * comes one record per ParserListener callback: an opcode byte followed by the arguments of the
+ * callback. Integers are written as unsigned LEB128 varints, and signed ones are zigzag encoded
+ * first. Note values are written as the difference from the previous note. Strings and note
+ * durations are interned: a reference is 0 for null, 1 for a literal that follows (and gets the
+ * next id), or the id plus 2. The log ends with an END record.</p>
+ *
+ * <p>An indexed log treats every CHECKPOINT_INTERVAL-th record as a key frame: the writer forgets
+ * its interned strings and durations and the previous note value before writing it, so decoding
+ * can start there. After the END record comes a footer holding the number of records and, for each
+ * key frame, its record number, its byte offset, and the track and layer in effect there. The log
+ * closes with the byte offset of the footer as an 8-byte big-endian long.</p>
+ *
+ * @author fmatar
+ */
+final class EventLogFormat {
+
+  static final byte[] MAGIC = {'J', 'F', 'E', 'L'};
+  static final byte VERSION = 1;
+  static final byte FLAG_INDEXED = 1;
+  static final int HEADER_LENGTH = 6;
+  static final int CHECKPOINT_INTERVAL = 1024;
+
+  static final int END = 0;
+  static final int TRACK_CHANGED = 1;
+  static final int LAYER_CHANGED = 2;
+  static final int INSTRUMENT = 3;
+  static final int TEMPO = 4;
+  static final int KEY_SIGNATURE = 5;
+  static final int TIME_SIGNATURE = 6;
+  static final int BAR_LINE = 7;
+  static final int BEAT_TIME_BOOKMARKED = 8;
+  static final int BEAT_TIME_BOOKMARK_REQUESTED = 9;
+  static final int BEAT_TIME_REQUESTED = 10;
+  static final int PITCH_WHEEL = 11;
+  static final int CHANNEL_PRESSURE = 12;
+  static final int POLYPHONIC_PRESSURE = 13;
+  static final int SYSTEM_EXCLUSIVE = 14;
+  static final int CONTROLLER = 15;
+  static final int LYRIC = 16;
+  static final int MARKER = 17;
+  static final int FUNCTION = 18;
+  static final int NOTE_PRESSED = 19;
+  static final int NOTE_RELEASED = 20;
+  static final int NOTE_PARSED = 21;
+  static final int CHORD = 22;
+
+  static final int REF_NULL = 0;
+  static final int REF_LITERAL = 1;
+  static final int REF_BASE = 2;
+
+  static final int MESSAGE_NULL = 0;
+  static final int MESSAGE_STRING = 1;
+  static final int MESSAGE_OTHER = 2;
+
+  static final int REST = 1;
+  static final int START_OF_TIE = 1 << 1;
+  static final int END_OF_TIE = 1 << 2;
+  static final int FIRST_NOTE = 1 << 3;
+  static final int MELODIC_NOTE = 1 << 4;
+  static final int HARMONIC_NOTE = 1 << 5;
+  static final int PERCUSSION_NOTE = 1 << 6;
+  static final int OCTAVE_EXPLICITLY_SET = 1 << 7;
+  static final int DURATION_EXPLICITLY_SET = 1 << 8;
+
+  private static final int[] NOTE_FLAGS = {REST, START_OF_TIE, END_OF_TIE, FIRST_NOTE,
+    MELODIC_NOTE, HARMONIC_NOTE, PERCUSSION_NOTE, OCTAVE_EXPLICITLY_SET, DURATION_EXPLICITLY_SET};
+  private static final long[] PACKED_NOTE_FLAGS = {PackedNote.REST, PackedNote.START_OF_TIE,
+    PackedNote.END_OF_TIE, PackedNote.FIRST_NOTE, PackedNote.MELODIC_NOTE,
+    PackedNote.HARMONIC_NOTE, PackedNote.PERCUSSION_NOTE, PackedNote.OCTAVE_EXPLICITLY_SET,
+    PackedNote.DURATION_EXPLICITLY_SET};
+
+  private EventLogFormat() {
+  }
+
+  /**
+   * Returns the note flags of a packed note as they are written to a log.
+   */
+  static int noteFlags(long packedNote) {
+    int flags = 0;
+    for (int i = 0; i < NOTE_FLAGS.length; i++) {
+      if (PackedNote.is(packedNote, PACKED_NOTE_FLAGS[i])) {
+        flags |= NOTE_FLAGS[i];
+      }
+    }
+    return flags;
+  }
+
+  /**
+   * Returns the PackedNote flags of note flags read from a log.
+   */
+  static long packedNoteFlags(int flags) {
+    long packedFlags = 0L;
+    for (int i = 0; i < NOTE_FLAGS.length; i++) {
+      if ((flags & NOTE_FLAGS[i]) != 0) {
+        packedFlags |= PACKED_NOTE_FLAGS[i];
+      }
+    }
+    return packedFlags;
+  }
+}
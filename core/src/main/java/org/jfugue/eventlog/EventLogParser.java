@@ -0,0 +1,480 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.eventlog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.jfugue.parser.Parser;
+import org.jfugue.parser.ParserException;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Intervals;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+import org.staccato.DefaultNoteSettingsManager;
+
+/**
+ * Replays an event log written by EventLogWriter, firing the recorded callbacks to the listeners
+ * of this parser in the order they were recorded. Decoding works straight from a byte array, so
+ * one parse of the music can be fanned out to many listeners, or kept as a cache, at a fraction
+ * of the cost of parsing it again.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class EventLogParser extends Parser {
+
+  private static final String MALFORMED = "Malformed event log";
+
+  private byte[] log;
+  private int position;
+  private final List<String> strings;
+  private final List<Double> durations;
+  private int previousNoteValue;
+  private boolean indexed;
+  private long recordNumber;
+  private byte currentTrack;
+  private byte currentLayer;
+
+  /**
+   * <p>Constructor for EventLogParser.</p>
+   */
+  public EventLogParser() {
+    super();
+    this.strings = new ArrayList<>();
+    this.durations = new ArrayList<>();
+  }
+
+  /**
+   * Reads the whole log from the stream and replays it.
+   *
+   * @param in a {@link java.io.InputStream} object.
+   * @throws java.io.IOException if the stream can't be read.
+   */
+  public void parse(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = in.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    parse(bytes.toByteArray());
+  }
+
+  /**
+   * Replays the whole log.
+   *
+   * @param log a byte array holding an event log.
+   */
+  public void parse(byte[] log) {
+    readHeader(log);
+    fireBeforeParsingStarts();
+    while (decodeRecord(true)) {
+      // Each record has been fired
+    }
+    fireAfterParsingFinished();
+  }
+
+  /**
+   * Replays an indexed log from the given record on, where record 0 is the first callback after
+   * beforeParsingStarts. Decoding starts at the nearest key frame before the record, so the cost
+   * does not grow with the length of the log. The records before it are not fired, except that the
+   * track and layer in effect are fired first.
+   *
+   * @param log a byte array holding an indexed event log.
+   * @param fromRecord a long, from 0 to the number of records in the log.
+   * @throws IllegalArgumentException if the log has no index, or fromRecord is negative or
+   * greater than the number of records.
+   */
+  public void parse(byte[] log, long fromRecord) {
+    if (!readHeader(log)) {
+      throw new IllegalArgumentException("The event log was written without an index");
+    }
+    int footer = readFooterOffset();
+    position = footer;
+    long recordCount = readVarint();
+    if (fromRecord < 0 || fromRecord > recordCount) {
+      throw new IllegalArgumentException(
+        "Record " + fromRecord + " is outside a log of " + recordCount + " records");
+    }
+    int checkpoints = (int) readVarint();
+    long startRecord = 0;
+    int startOffset = EventLogFormat.HEADER_LENGTH;
+    byte track = 0;
+    byte layer = 0;
+    for (int i = 0; i < checkpoints; i++) {
+      long record = readVarint();
+      int offset = (int) readVarint();
+      byte checkpointTrack = readByte();
+      byte checkpointLayer = readByte();
+      if (record > fromRecord) {
+        break;
+      }
+      startRecord = record;
+      startOffset = offset;
+      track = checkpointTrack;
+      layer = checkpointLayer;
+    }
+
+    position = startOffset;
+    recordNumber = startRecord;
+    currentTrack = track;
+    currentLayer = layer;
+    fireBeforeParsingStarts();
+    boolean more = true;
+    for (long record = startRecord; more && record < fromRecord; record++) {
+      more = decodeRecord(false);
+    }
+    fireTrackChanged(currentTrack);
+    fireLayerChanged(currentLayer);
+    while (more && decodeRecord(true)) {
+      // Each record has been fired
+    }
+    fireAfterParsingFinished();
+  }
+
+  /**
+   * Returns the number of records in an indexed log without decoding them.
+   *
+   * @param log a byte array holding an indexed event log.
+   * @return a long.
+   */
+  public static long getRecordCount(byte[] log) {
+    EventLogParser parser = new EventLogParser();
+    if (!parser.readHeader(log)) {
+      throw new IllegalArgumentException("The event log was written without an index");
+    }
+    parser.position = parser.readFooterOffset();
+    return parser.readVarint();
+  }
+
+  private boolean readHeader(byte[] log) {
+    this.log = log;
+    this.position = 0;
+    this.strings.clear();
+    this.durations.clear();
+    this.previousNoteValue = 0;
+    this.recordNumber = 0;
+    if (log.length < EventLogFormat.HEADER_LENGTH) {
+      throw new ParserException(MALFORMED, "too short for a header");
+    }
+    for (int i = 0; i < EventLogFormat.MAGIC.length; i++) {
+      if (log[i] != EventLogFormat.MAGIC[i]) {
+        throw new ParserException(MALFORMED, "not an event log");
+      }
+    }
+    if (log[4] != EventLogFormat.VERSION) {
+      throw new ParserException(MALFORMED, "unknown version " + log[4]);
+    }
+    position = EventLogFormat.HEADER_LENGTH;
+    indexed = (log[5] & EventLogFormat.FLAG_INDEXED) != 0;
+    return indexed;
+  }
+
+  private int readFooterOffset() {
+    if (log.length < EventLogFormat.HEADER_LENGTH + 8) {
+      throw new ParserException(MALFORMED, "missing footer");
+    }
+    long offset = 0;
+    for (int i = log.length - 8; i < log.length; i++) {
+      offset = offset << 8 | (log[i] & 0xFF);
+    }
+    return (int) offset;
+  }
+
+  /**
+   * Decodes the record at the current position and, if asked to, fires it. Returns false at the
+   * END record.
+   */
+  private boolean decodeRecord(boolean fire) {
+    int start = position;
+    int opcode = readByte();
+    if (opcode == EventLogFormat.END) {
+      return false;
+    }
+    if (indexed && recordNumber % EventLogFormat.CHECKPOINT_INTERVAL == 0) {
+      // The writer made this record a key frame
+      strings.clear();
+      durations.clear();
+      previousNoteValue = 0;
+    }
+    recordNumber++;
+    switch (opcode) {
+      case EventLogFormat.TRACK_CHANGED: {
+        byte track = readByte();
+        currentTrack = track;
+        if (fire) {
+          fireTrackChanged(track);
+        }
+        break;
+      }
+      case EventLogFormat.LAYER_CHANGED: {
+        byte layer = readByte();
+        currentLayer = layer;
+        if (fire) {
+          fireLayerChanged(layer);
+        }
+        break;
+      }
+      case EventLogFormat.INSTRUMENT: {
+        byte instrument = readByte();
+        if (fire) {
+          fireInstrumentParsed(instrument);
+        }
+        break;
+      }
+      case EventLogFormat.TEMPO: {
+        int tempo = (int) unzigzag(readVarint());
+        if (fire) {
+          fireTempoChanged(tempo);
+        }
+        break;
+      }
+      case EventLogFormat.KEY_SIGNATURE: {
+        byte key = readByte();
+        byte scale = readByte();
+        if (fire) {
+          fireKeySignatureParsed(key, scale);
+        }
+        break;
+      }
+      case EventLogFormat.TIME_SIGNATURE: {
+        byte numerator = readByte();
+        byte powerOfTwo = readByte();
+        if (fire) {
+          fireTimeSignatureParsed(numerator, powerOfTwo);
+        }
+        break;
+      }
+      case EventLogFormat.BAR_LINE: {
+        long id = unzigzag(readVarint());
+        if (fire) {
+          fireBarLineParsed(id);
+        }
+        break;
+      }
+      case EventLogFormat.BEAT_TIME_BOOKMARKED: {
+        String id = readString();
+        if (fire) {
+          fireTrackBeatTimeBookmarked(id);
+        }
+        break;
+      }
+      case EventLogFormat.BEAT_TIME_BOOKMARK_REQUESTED: {
+        String id = readString();
+        if (fire) {
+          fireTrackBeatTimeBookmarkRequested(id);
+        }
+        break;
+      }
+      case EventLogFormat.BEAT_TIME_REQUESTED: {
+        double time = readDuration();
+        if (fire) {
+          fireTrackBeatTimeRequested(time);
+        }
+        break;
+      }
+      case EventLogFormat.PITCH_WHEEL: {
+        byte lsb = readByte();
+        byte msb = readByte();
+        if (fire) {
+          firePitchWheelParsed(lsb, msb);
+        }
+        break;
+      }
+      case EventLogFormat.CHANNEL_PRESSURE: {
+        byte pressure = readByte();
+        if (fire) {
+          fireChannelPressureParsed(pressure);
+        }
+        break;
+      }
+      case EventLogFormat.POLYPHONIC_PRESSURE: {
+        byte key = readByte();
+        byte pressure = readByte();
+        if (fire) {
+          firePolyphonicPressureParsed(key, pressure);
+        }
+        break;
+      }
+      case EventLogFormat.SYSTEM_EXCLUSIVE: {
+        int length = (int) readVarint();
+        checkAvailable(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(log, position, bytes, 0, length);
+        position += length;
+        if (fire) {
+          fireSystemExclusiveParsed(bytes);
+        }
+        break;
+      }
+      case EventLogFormat.CONTROLLER: {
+        byte controller = readByte();
+        byte value = readByte();
+        if (fire) {
+          fireControllerEventParsed(controller, value);
+        }
+        break;
+      }
+      case EventLogFormat.LYRIC: {
+        String lyric = readString();
+        if (fire) {
+          fireLyricParsed(lyric);
+        }
+        break;
+      }
+      case EventLogFormat.MARKER: {
+        String marker = readString();
+        if (fire) {
+          fireMarkerParsed(marker);
+        }
+        break;
+      }
+      case EventLogFormat.FUNCTION: {
+        String id = readString();
+        int kind = readByte();
+        Object message = (kind == EventLogFormat.MESSAGE_NULL) ? null : readString();
+        if (fire) {
+          fireFunctionParsed(id, message);
+        }
+        break;
+      }
+      case EventLogFormat.NOTE_PRESSED: {
+        Note note = readNote();
+        if (fire) {
+          fireNotePressed(note);
+        }
+        break;
+      }
+      case EventLogFormat.NOTE_RELEASED: {
+        Note note = readNote();
+        if (fire) {
+          fireNoteReleased(note);
+        }
+        break;
+      }
+      case EventLogFormat.NOTE_PARSED: {
+        Note note = readNote();
+        if (fire) {
+          fireNoteParsed(note);
+        }
+        break;
+      }
+      case EventLogFormat.CHORD: {
+        Note root = readNote();
+        Intervals intervals = new Intervals(readString());
+        int inversion = (int) readVarint();
+        if (fire) {
+          fireChordParsed(new Chord(root, intervals).setInversion(inversion));
+        }
+        break;
+      }
+      default:
+        ParserException e = new ParserException(MALFORMED, "unknown record type " + opcode);
+        e.setPosition(start);
+        throw e;
+    }
+    return true;
+  }
+
+  private Note readNote() {
+    int value = previousNoteValue + (int) unzigzag(readVarint());
+    previousNoteValue = value;
+    int flags = (int) readVarint();
+    double duration = readDuration();
+    byte onVelocity = readByte();
+    byte offVelocity = readByte();
+    long packedNote = PackedNote.of((byte) value, onVelocity, offVelocity,
+      EventLogFormat.packedNoteFlags(flags));
+    Note note = PackedNote.toNote(packedNote, duration);
+    if (!note.isDurationExplicitlySet()
+      && duration != DefaultNoteSettingsManager.getInstance().getDefaultDuration()) {
+      note.setDuration(duration);
+    }
+    String originalString = readString();
+    if (originalString != null) {
+      note.setOriginalString(originalString);
+    }
+    return note;
+  }
+
+  private String readString() {
+    long ref = readVarint();
+    if (ref == EventLogFormat.REF_NULL) {
+      return null;
+    }
+    if (ref == EventLogFormat.REF_LITERAL) {
+      int length = (int) readVarint();
+      checkAvailable(length);
+      String string = new String(log, position, length, StandardCharsets.UTF_8);
+      position += length;
+      strings.add(string);
+      return string;
+    }
+    return strings.get((int) (ref - EventLogFormat.REF_BASE));
+  }
+
+  private double readDuration() {
+    long ref = readVarint();
+    if (ref == EventLogFormat.REF_LITERAL) {
+      checkAvailable(8);
+      long bits = 0;
+      for (int i = 0; i < 8; i++) {
+        bits = bits << 8 | (log[position++] & 0xFF);
+      }
+      double duration = Double.longBitsToDouble(bits);
+      durations.add(duration);
+      return duration;
+    }
+    return durations.get((int) (ref - EventLogFormat.REF_BASE));
+  }
+
+  private byte readByte() {
+    checkAvailable(1);
+    return log[position++];
+  }
+
+  private long readVarint() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = readByte();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private void checkAvailable(int count) {
+    if (position + count > log.length) {
+      ParserException e = new ParserException(MALFORMED, "unexpected end of log");
+      e.setPosition(position);
+      throw e;
+    }
+  }
+}
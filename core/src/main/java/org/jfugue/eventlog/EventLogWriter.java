@@ -0,0 +1,421 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.eventlog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.jfugue.parser.ParserListener;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+
+/**
+ * Records every ParserListener callback of one parse into a compact binary event log, which
+ * EventLogParser can replay to any number of listeners without parsing the music again. Add the
+ * writer to a parser like any other listener; the log is complete once afterParsingFinished has
+ * been called. See EventLogFormat for the layout.
+ *
+ * <pre>
+ * ByteArrayOutputStream log = new ByteArrayOutputStream();
+ * StaccatoParser parser = new StaccatoParser();
+ * parser.addParserListener(new EventLogWriter(log));
+ * parser.parse(pattern);
+ *
+ * EventLogParser replay = new EventLogParser();
+ * replay.addParserListener(new MidiParserListener());
+ * replay.addParserListener(new LilyPondParserListener());
+ * replay.parse(log.toByteArray());
+ * </pre>
+ *
+ * <p>Function messages that are not strings are written as their toString(). A note whose
+ * implicit duration differs from the default duration comes back with that duration set
+ * explicitly.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class EventLogWriter implements ParserListener {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final OutputStream out;
+  private final boolean indexed;
+  private final Map<String, Integer> strings;
+  private final Map<Double, Integer> durations;
+  private byte[] buffer;
+  private int length;
+  private long flushed;
+  private long recordCount;
+  private long[] checkpointRecords;
+  private long[] checkpointOffsets;
+  private byte[] checkpointTracks;
+  private int checkpointCount;
+  private int previousNoteValue;
+  private byte currentTrack;
+  private byte currentLayer;
+
+  /**
+   * Creates a writer that writes an indexed log to the given stream.
+   *
+   * @param out a {@link java.io.OutputStream} object.
+   */
+  public EventLogWriter(OutputStream out) {
+    this(out, true);
+  }
+
+  /**
+   * <p>Constructor for EventLogWriter.</p>
+   *
+   * @param out a {@link java.io.OutputStream} object.
+   * @param indexed whether to write key frames and the footer that lets a reader start partway in.
+   */
+  public EventLogWriter(OutputStream out, boolean indexed) {
+    this.out = out;
+    this.indexed = indexed;
+    this.strings = new HashMap<>();
+    this.durations = new HashMap<>();
+    this.buffer = new byte[BUFFER_SIZE];
+  }
+
+  /* ParserListener Events */
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    strings.clear();
+    durations.clear();
+    length = 0;
+    flushed = 0;
+    recordCount = 0;
+    checkpointRecords = new long[16];
+    checkpointOffsets = new long[16];
+    checkpointTracks = new byte[32];
+    checkpointCount = 0;
+    previousNoteValue = 0;
+    currentTrack = 0;
+    currentLayer = 0;
+    writeBytes(EventLogFormat.MAGIC, 0, EventLogFormat.MAGIC.length);
+    writeByte(EventLogFormat.VERSION);
+    writeByte(indexed ? EventLogFormat.FLAG_INDEXED : 0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterParsingFinished() {
+    writeByte(EventLogFormat.END);
+    if (indexed) {
+      long footer = flushed + length;
+      writeVarint(recordCount);
+      writeVarint(checkpointCount);
+      for (int i = 0; i < checkpointCount; i++) {
+        writeVarint(checkpointRecords[i]);
+        writeVarint(checkpointOffsets[i]);
+        writeByte(checkpointTracks[i * 2]);
+        writeByte(checkpointTracks[i * 2 + 1]);
+      }
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        writeByte((int) (footer >>> shift));
+      }
+    }
+    flush(true);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackChanged(byte track) {
+    record(EventLogFormat.TRACK_CHANGED);
+    writeByte(track);
+    currentTrack = track;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLayerChanged(byte layer) {
+    record(EventLogFormat.LAYER_CHANGED);
+    writeByte(layer);
+    currentLayer = layer;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onInstrumentParsed(byte instrument) {
+    record(EventLogFormat.INSTRUMENT);
+    writeByte(instrument);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTempoChanged(int tempoBPM) {
+    record(EventLogFormat.TEMPO);
+    writeVarint(zigzag(tempoBPM));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onKeySignatureParsed(byte key, byte scale) {
+    record(EventLogFormat.KEY_SIGNATURE);
+    writeByte(key);
+    writeByte(scale);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
+    record(EventLogFormat.TIME_SIGNATURE);
+    writeByte(numerator);
+    writeByte(powerOfTwo);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onBarLineParsed(long time) {
+    record(EventLogFormat.BAR_LINE);
+    writeVarint(zigzag(time));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarked(String timeBookmarkID) {
+    record(EventLogFormat.BEAT_TIME_BOOKMARKED);
+    writeString(timeBookmarkID);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarkRequested(String timeBookmarkID) {
+    record(EventLogFormat.BEAT_TIME_BOOKMARK_REQUESTED);
+    writeString(timeBookmarkID);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeRequested(double time) {
+    record(EventLogFormat.BEAT_TIME_REQUESTED);
+    writeDuration(time);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPitchWheelParsed(byte lsb, byte msb) {
+    record(EventLogFormat.PITCH_WHEEL);
+    writeByte(lsb);
+    writeByte(msb);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChannelPressureParsed(byte pressure) {
+    record(EventLogFormat.CHANNEL_PRESSURE);
+    writeByte(pressure);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPolyphonicPressureParsed(byte key, byte pressure) {
+    record(EventLogFormat.POLYPHONIC_PRESSURE);
+    writeByte(key);
+    writeByte(pressure);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onSystemExclusiveParsed(byte... bytes) {
+    record(EventLogFormat.SYSTEM_EXCLUSIVE);
+    writeVarint(bytes.length);
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onControllerEventParsed(byte controller, byte value) {
+    record(EventLogFormat.CONTROLLER);
+    writeByte(controller);
+    writeByte(value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLyricParsed(String lyric) {
+    record(EventLogFormat.LYRIC);
+    writeString(lyric);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onMarkerParsed(String marker) {
+    record(EventLogFormat.MARKER);
+    writeString(marker);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onFunctionParsed(String id, Object message) {
+    record(EventLogFormat.FUNCTION);
+    writeString(id);
+    if (message == null) {
+      writeByte(EventLogFormat.MESSAGE_NULL);
+    } else if (message instanceof String) {
+      writeByte(EventLogFormat.MESSAGE_STRING);
+      writeString((String) message);
+    } else {
+      writeByte(EventLogFormat.MESSAGE_OTHER);
+      writeString(message.toString());
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNotePressed(Note note) {
+    record(EventLogFormat.NOTE_PRESSED);
+    writeNote(note);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteReleased(Note note) {
+    record(EventLogFormat.NOTE_RELEASED);
+    writeNote(note);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteParsed(Note note) {
+    record(EventLogFormat.NOTE_PARSED);
+    writeNote(note);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChordParsed(Chord chord) {
+    record(EventLogFormat.CHORD);
+    writeNote(chord.getRoot());
+    writeString(chord.getIntervals().toString());
+    writeVarint(chord.getInversion());
+  }
+
+  /**
+   * Starts a record, first making it a key frame if it falls on the checkpoint interval.
+   */
+  private void record(int opcode) {
+    if (indexed && recordCount % EventLogFormat.CHECKPOINT_INTERVAL == 0) {
+      if (checkpointCount == checkpointRecords.length) {
+        checkpointRecords = Arrays.copyOf(checkpointRecords, checkpointCount * 2);
+        checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpointCount * 2);
+        checkpointTracks = Arrays.copyOf(checkpointTracks, checkpointCount * 4);
+      }
+      checkpointRecords[checkpointCount] = recordCount;
+      checkpointOffsets[checkpointCount] = flushed + length;
+      checkpointTracks[checkpointCount * 2] = currentTrack;
+      checkpointTracks[checkpointCount * 2 + 1] = currentLayer;
+      checkpointCount++;
+      strings.clear();
+      durations.clear();
+      previousNoteValue = 0;
+    }
+    recordCount++;
+    writeByte(opcode);
+  }
+
+  private void writeNote(Note note) {
+    long packedNote = PackedNote.pack(note);
+    byte value = PackedNote.getValue(packedNote);
+    writeVarint(zigzag(value - previousNoteValue));
+    previousNoteValue = value;
+    writeVarint(EventLogFormat.noteFlags(packedNote));
+    writeDuration(note.getDuration());
+    writeByte(PackedNote.getOnVelocity(packedNote));
+    writeByte(PackedNote.getOffVelocity(packedNote));
+    writeString(note.getOriginalString());
+  }
+
+  private void writeString(String string) {
+    if (string == null) {
+      writeByte(EventLogFormat.REF_NULL);
+      return;
+    }
+    Integer id = strings.get(string);
+    if (id != null) {
+      writeVarint(id + EventLogFormat.REF_BASE);
+      return;
+    }
+    strings.put(string, strings.size());
+    writeByte(EventLogFormat.REF_LITERAL);
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    writeVarint(bytes.length);
+    writeBytes(bytes, 0, bytes.length);
+  }
+
+  private void writeDuration(double duration) {
+    Integer id = durations.get(duration);
+    if (id != null) {
+      writeVarint(id + EventLogFormat.REF_BASE);
+      return;
+    }
+    durations.put(duration, durations.size());
+    writeByte(EventLogFormat.REF_LITERAL);
+    long bits = Double.doubleToLongBits(duration);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      writeByte((int) (bits >>> shift));
+    }
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private void writeVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    writeByte((int) value);
+  }
+
+  private void writeByte(int b) {
+    if (length == buffer.length) {
+      flush(false);
+    }
+    buffer[length++] = (byte) b;
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int count) {
+    for (int i = 0; i < count; i++) {
+      writeByte(bytes[offset + i]);
+    }
+  }
+
+  private void flush(boolean force) {
+    try {
+      out.write(buffer, 0, length);
+      if (force) {
+        out.flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    flushed += length;
+    length = 0;
+  }
+}
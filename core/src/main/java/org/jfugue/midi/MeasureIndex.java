@@ -0,0 +1,539 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.midi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * A compact, immutable index from musical position to MIDI tick for a Sequence created by
+ * MidiParserListener. It holds the tick at which each measure starts, the time signature and tempo
+ * maps, the time bookmarks, and the history of program, controller, pitch wheel and channel
+ * pressure values on each channel. Every lookup is a binary search over primitive arrays, so a
+ * player can jump to bar 120 without reparsing the music.
+ *
+ * <p>Measures are numbered from 1. Each bar line in a track starts the next measure of that track,
+ * and a numbered bar line (such as <code>|12</code>) starts the measure with that number. Where
+ * the music has no bar lines, or runs past the last one, measures are laid out on the grid given by
+ * the time signature in effect (4/4 if none was given).</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see MidiParserListener#getMeasureIndex()
+ */
+public final class MeasureIndex {
+
+  private static final Logger LOGGER = Logger.getLogger("org.jfugue");
+
+  private final int resolution;
+  private final long tickLength;
+  private final int[] measureNumbers;
+  private final long[] measureTicks;
+  private final long[] signatureTicks;
+  private final int[] signatureBeats;
+  private final int[] signatureDenominators;
+  private final long[] tempoTicks;
+  private final int[] temposBPM;
+  private final long[] tempoMicros;
+  private final Map<String, Long> bookmarks;
+  private final ControlSeries[] controlSeries;
+
+  private MeasureIndex(Builder builder, long tickLength) {
+    this.resolution = builder.resolution;
+    this.tickLength = tickLength;
+
+    List<Integer> numbers = new ArrayList<>();
+    List<Long> ticks = new ArrayList<>();
+    long previous = 0;
+    for (Map.Entry<Integer, Long> entry : builder.measureStarts.entrySet()) {
+      // A measure can't start before the one ahead of it; such bar lines come from voices that
+      // disagree about where the bars fall, and the earlier voice wins.
+      if (entry.getValue() >= previous) {
+        numbers.add(entry.getKey());
+        ticks.add(entry.getValue());
+        previous = entry.getValue();
+      }
+    }
+    this.measureNumbers = toIntArray(numbers);
+    this.measureTicks = toLongArray(ticks);
+
+    TreeMap<Long, int[]> signatures = new TreeMap<>(builder.signatures);
+    signatures.putIfAbsent(0L, new int[]{4, 4});
+    this.signatureTicks = new long[signatures.size()];
+    this.signatureBeats = new int[signatures.size()];
+    this.signatureDenominators = new int[signatures.size()];
+    int i = 0;
+    for (Map.Entry<Long, int[]> entry : signatures.entrySet()) {
+      signatureTicks[i] = entry.getKey();
+      signatureBeats[i] = entry.getValue()[0];
+      signatureDenominators[i] = entry.getValue()[1];
+      i++;
+    }
+
+    TreeMap<Long, Integer> tempos = new TreeMap<>(builder.tempos);
+    tempos.putIfAbsent(0L, MidiDefaults.DEFAULT_TEMPO_BEATS_PER_MINUTE);
+    this.tempoTicks = new long[tempos.size()];
+    this.temposBPM = new int[tempos.size()];
+    this.tempoMicros = new long[tempos.size()];
+    i = 0;
+    for (Map.Entry<Long, Integer> entry : tempos.entrySet()) {
+      tempoTicks[i] = entry.getKey();
+      temposBPM[i] = entry.getValue();
+      if (i > 0) {
+        tempoMicros[i] = tempoMicros[i - 1]
+          + ticksToMicros(tempoTicks[i] - tempoTicks[i - 1], temposBPM[i - 1]);
+      }
+      i++;
+    }
+
+    this.bookmarks = Collections.unmodifiableMap(new LinkedHashMap<>(builder.bookmarks));
+
+    List<ControlSeries> series = new ArrayList<>(builder.controlSeries.values());
+    series.sort((a, b) -> a.key - b.key);
+    for (ControlSeries s : series) {
+      s.sortByTick();
+    }
+    this.controlSeries = series.toArray(new ControlSeries[0]);
+  }
+
+  /**
+   * <p>getResolution.</p>
+   *
+   * @return the number of ticks per quarter note.
+   */
+  public int getResolution() {
+    return this.resolution;
+  }
+
+  /**
+   * <p>getTickLength.</p>
+   *
+   * @return the length, in ticks, of the sequence this index was built for.
+   */
+  public long getTickLength() {
+    return this.tickLength;
+  }
+
+  /**
+   * Returns the number of the last measure that starts within the sequence.
+   *
+   * @return a int.
+   */
+  public int getMeasureCount() {
+    return getMeasureAt(Math.max(0, tickLength - 1));
+  }
+
+  /**
+   * Returns the tick at which the given measure starts.
+   *
+   * @param measure the measure number, starting at 1.
+   * @return a long.
+   * @throws IllegalArgumentException if the measure is less than 1 or starts after the end of the
+   * sequence.
+   */
+  public long getTickForMeasure(int measure) {
+    if (measure < 1) {
+      throw new IllegalArgumentException("Measures are numbered from 1, not " + measure);
+    }
+    int floor = floorIndex(measureNumbers, measure);
+    long tick = (floor < 0) ? advanceMeasures(0, measure - 1)
+      : advanceMeasures(measureTicks[floor], measure - measureNumbers[floor]);
+    if (tick > tickLength) {
+      throw new IllegalArgumentException(
+        "Measure " + measure + " starts after the end of the sequence");
+    }
+    return tick;
+  }
+
+  /**
+   * Returns the tick of a beat within a measure. Beats are counted from 1 in the unit given by the
+   * denominator of the time signature in effect at the start of the measure, so beat 2.5 of a 6/8
+   * measure lies halfway between its second and third eighth notes.
+   *
+   * @param measure the measure number, starting at 1.
+   * @param beat the beat within the measure, starting at 1.0.
+   * @return a long.
+   */
+  public long getTickForBeat(int measure, double beat) {
+    if (beat < 1.0) {
+      throw new IllegalArgumentException("Beats are numbered from 1, not " + beat);
+    }
+    long measureTick = getTickForMeasure(measure);
+    int signature = floorIndex(signatureTicks, measureTick);
+    return measureTick + Math.round((beat - 1.0) * beatLength(signature));
+  }
+
+  /**
+   * Returns the number of the measure that contains the given tick.
+   *
+   * @param tick a long.
+   * @return a int.
+   */
+  public int getMeasureAt(long tick) {
+    tick = Math.max(0, tick);
+    int floor = floorIndex(measureTicks, tick);
+    long start = (floor < 0) ? 0 : measureTicks[floor];
+    int number = (floor < 0) ? 1 : measureNumbers[floor];
+    int measure = (int) Math.min(Integer.MAX_VALUE, number + countMeasures(start, tick));
+    if (floor + 1 < measureNumbers.length) {
+      measure = Math.min(measure, measureNumbers[floor + 1] - 1);
+    }
+    return measure;
+  }
+
+  /**
+   * <p>getTickForBookmark.</p>
+   *
+   * @param timeBookmarkID the name given to the bookmark in the music.
+   * @return the tick at which the bookmark was placed.
+   * @throws IllegalArgumentException if there is no such bookmark.
+   */
+  public long getTickForBookmark(String timeBookmarkID) {
+    Long tick = bookmarks.get(timeBookmarkID);
+    if (tick == null) {
+      throw new IllegalArgumentException("No time bookmark named " + timeBookmarkID);
+    }
+    return tick;
+  }
+
+  /**
+   * <p>getBookmarks.</p>
+   *
+   * @return the names of all time bookmarks, in the order they were placed.
+   */
+  public Set<String> getBookmarks() {
+    return bookmarks.keySet();
+  }
+
+  /**
+   * <p>getTempoAt.</p>
+   *
+   * @param tick a long.
+   * @return the tempo, in beats per minute, in effect at the given tick.
+   */
+  public int getTempoAt(long tick) {
+    return temposBPM[Math.max(0, floorIndex(tempoTicks, tick))];
+  }
+
+  /**
+   * Converts a tick to the time, in microseconds from the start of the sequence, at which it will
+   * play, following every tempo change before it.
+   *
+   * @param tick a long.
+   * @return a long.
+   */
+  public long getMicrosecondPosition(long tick) {
+    int tempo = Math.max(0, floorIndex(tempoTicks, tick));
+    return tempoMicros[tempo] + ticksToMicros(tick - tempoTicks[tempo], temposBPM[tempo]);
+  }
+
+  /**
+   * Returns the messages that put every channel into the state it would be in at the given tick
+   * had the sequence played from the start: the program, then each controller that has been set,
+   * then the pitch wheel and channel pressure. Events that fall exactly on the tick are left out,
+   * since the sequencer plays those itself once it is positioned there.
+   *
+   * @param tick a long.
+   * @return a list of {@link javax.sound.midi.ShortMessage} objects, grouped by channel.
+   */
+  public List<ShortMessage> getControlStateAt(long tick) {
+    List<ShortMessage> messages = new ArrayList<>();
+    for (ControlSeries series : controlSeries) {
+      int position = lowerBound(series.ticks, series.size, tick) - 1;
+      if (position < 0) {
+        continue;
+      }
+      try {
+        messages.add(series.createMessage(series.values[position]));
+      } catch (InvalidMidiDataException e) {
+        // Values were range-checked when they were recorded. This exception won't happen.
+        LOGGER.warning(e.getMessage());
+      }
+    }
+    return messages;
+  }
+
+  private long beatLength(int signature) {
+    return 4L * resolution / signatureDenominators[signature];
+  }
+
+  private long measureLength(int signature) {
+    return signatureBeats[signature] * beatLength(signature);
+  }
+
+  /**
+   * Returns the tick reached by laying out the given number of measures from the given tick on the
+   * time signature grid.
+   */
+  private long advanceMeasures(long tick, long count) {
+    while (count > 0) {
+      int signature = floorIndex(signatureTicks, tick);
+      long length = measureLength(signature);
+      if (signature + 1 >= signatureTicks.length) {
+        return tick + count * length;
+      }
+      long fit = Math.max(1, (signatureTicks[signature + 1] - tick + length - 1) / length);
+      long steps = Math.min(count, fit);
+      tick += steps * length;
+      count -= steps;
+    }
+    return tick;
+  }
+
+  /**
+   * Returns the number of whole measures laid out on the time signature grid between the two
+   * ticks.
+   */
+  private long countMeasures(long from, long to) {
+    long count = 0;
+    while (from <= to) {
+      int signature = floorIndex(signatureTicks, from);
+      long length = measureLength(signature);
+      long end = (signature + 1 < signatureTicks.length)
+        ? Math.min(to, signatureTicks[signature + 1] - 1) : to;
+      long steps = (end - from) / length + 1;
+      count += steps;
+      from += steps * length;
+    }
+    return count - 1;
+  }
+
+  private long ticksToMicros(long ticks, int tempoBPM) {
+    return ticks * 60000000L / ((long) tempoBPM * resolution);
+  }
+
+  private static int floorIndex(int[] sorted, int key) {
+    int position = Arrays.binarySearch(sorted, key);
+    return (position >= 0) ? position : -position - 2;
+  }
+
+  /**
+   * Returns the index of the last element that is less than or equal to the key, or -1. Runs of
+   * equal ticks resolve to their last element.
+   */
+  private static int floorIndex(long[] sorted, long key) {
+    return lowerBound(sorted, sorted.length, key + 1) - 1;
+  }
+
+  /**
+   * Returns the index of the first element that is not less than the key.
+   */
+  private static int lowerBound(long[] sorted, int size, long key) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int[] toIntArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static long[] toLongArray(List<Long> list) {
+    long[] array = new long[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  /**
+   * The history of one value (a program, one controller, the pitch wheel or the channel pressure)
+   * on one channel, as parallel tick and value arrays.
+   */
+  private static final class ControlSeries {
+
+    private static final int PITCH_WHEEL_RANK = 200;
+    private static final int PRESSURE_RANK = 201;
+
+    private final int key;
+    private final int command;
+    private final int channel;
+    private final int controller;
+    private long[] ticks = new long[8];
+    private int[] values = new int[8];
+    private int size;
+
+    private ControlSeries(int command, int channel, int controller) {
+      this.command = command;
+      this.channel = channel;
+      this.controller = controller;
+      this.key = channel << 8 | rank(command, controller);
+    }
+
+    private static int rank(int command, int controller) {
+      switch (command) {
+        case ShortMessage.PROGRAM_CHANGE:
+          return 0;
+        case ShortMessage.CONTROL_CHANGE:
+          return 1 + controller;
+        case ShortMessage.PITCH_BEND:
+          return PITCH_WHEEL_RANK;
+        default:
+          return PRESSURE_RANK;
+      }
+    }
+
+    private void add(long tick, int value) {
+      if (size == ticks.length) {
+        ticks = Arrays.copyOf(ticks, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      ticks[size] = tick;
+      values[size] = value;
+      size++;
+    }
+
+    /**
+     * Tracks and layers may be parsed out of time order. This sort is stable, so of two values set
+     * at the same tick, the one parsed later still wins.
+     */
+    private void sortByTick() {
+      for (int i = 1; i < size; i++) {
+        long tick = ticks[i];
+        if (tick >= ticks[i - 1]) {
+          continue;
+        }
+        Integer[] order = new Integer[size];
+        for (int j = 0; j < size; j++) {
+          order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(ticks[a], ticks[b]));
+        long[] sortedTicks = new long[size];
+        int[] sortedValues = new int[size];
+        for (int j = 0; j < size; j++) {
+          sortedTicks[j] = ticks[order[j]];
+          sortedValues[j] = values[order[j]];
+        }
+        ticks = sortedTicks;
+        values = sortedValues;
+        return;
+      }
+    }
+
+    private ShortMessage createMessage(int value) throws InvalidMidiDataException {
+      switch (command) {
+        case ShortMessage.CONTROL_CHANGE:
+          return new ShortMessage(command, channel, controller, value);
+        case ShortMessage.PITCH_BEND:
+          return new ShortMessage(command, channel, value & 0x7F, value >> 7);
+        default:
+          return new ShortMessage(command, channel, value, 0);
+      }
+    }
+  }
+
+  /**
+   * Collects positions while the music is parsed. Package scope; MidiParserListener owns one per
+   * parse and turns it into a MeasureIndex once the sequence is finished.
+   */
+  static final class Builder {
+
+    private final int resolution;
+    private final TreeMap<Integer, Long> measureStarts = new TreeMap<>();
+    private final int[] currentMeasure = new int[MidiDefaults.TRACKS];
+    private final long[] currentMeasureTick = new long[MidiDefaults.TRACKS];
+    private final Map<Long, int[]> signatures = new HashMap<>();
+    private final Map<Long, Integer> tempos = new HashMap<>();
+    private final Map<String, Long> bookmarks = new LinkedHashMap<>();
+    private final Map<Integer, ControlSeries> controlSeries = new HashMap<>();
+
+    Builder(int resolution) {
+      this.resolution = resolution;
+      Arrays.fill(currentMeasure, 1);
+      measureStarts.put(1, 0L);
+    }
+
+    void addBarLine(byte track, long id, long tick) {
+      int measure;
+      if (id > 0 && id <= Integer.MAX_VALUE) {
+        measure = (int) id;
+      } else if (tick > currentMeasureTick[track]) {
+        measure = currentMeasure[track] + 1;
+      } else {
+        // A bar line with no music since the last one (or at the very start) begins nothing new
+        return;
+      }
+      currentMeasure[track] = measure;
+      currentMeasureTick[track] = tick;
+      measureStarts.merge(measure, tick, Math::min);
+    }
+
+    void addTimeSignature(long tick, byte beatsPerMeasure, byte durationForBeat) {
+      if (beatsPerMeasure > 0 && durationForBeat > 0) {
+        signatures.put(tick, new int[]{beatsPerMeasure, durationForBeat});
+      }
+    }
+
+    void addTempo(long tick, int tempoBPM) {
+      if (tempoBPM > 0) {
+        tempos.put(tick, tempoBPM);
+      }
+    }
+
+    void addBookmark(String timeBookmarkID, long tick) {
+      bookmarks.put(timeBookmarkID, tick);
+    }
+
+    void addControlEvent(long tick, int command, byte channel, int data1, int data2) {
+      int controller = (command == ShortMessage.CONTROL_CHANGE) ? data1 & 0x7F : 0;
+      int value;
+      switch (command) {
+        case ShortMessage.CONTROL_CHANGE:
+          value = data2 & 0x7F;
+          break;
+        case ShortMessage.PITCH_BEND:
+          value = (data1 & 0x7F) | (data2 & 0x7F) << 7;
+          break;
+        default:
+          value = data1 & 0x7F;
+          break;
+      }
+      int key = channel << 8 | ControlSeries.rank(command, controller);
+      controlSeries.computeIfAbsent(key, k -> new ControlSeries(command, channel, controller))
+        .add(tick, value);
+    }
+
+    MeasureIndex build(long tickLength) {
+      return new MeasureIndex(this, tickLength);
+    }
+  }
+}
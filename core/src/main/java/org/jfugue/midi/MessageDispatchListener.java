@@ -0,0 +1,38 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.midi;
+
+/**
+ * Told about each message {@link MidiTools#sendSequenceToReceiver(javax.sound.midi.Sequence,
+ * javax.sound.midi.Receiver, MessageDispatchListener)} sends, and how late it was sent.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface MessageDispatchListener {
+
+  /**
+   * <p>onMessageSent.</p>
+   *
+   * @param scheduledTimeInMillis the time the message was due, from the start of the sequence
+   * @param latenessInMicros how long after that time the message was sent
+   */
+  void onMessageSent(long scheduledTimeInMillis, long latenessInMicros);
+}
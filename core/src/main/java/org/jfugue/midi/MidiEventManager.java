@@ -28,6 +28,8 @@ import javax.sound.midi.ShortMessage;
 import javax.sound.midi.SysexMessage;
 import javax.sound.midi.Track;
 import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+import org.staccato.DefaultNoteSettingsManager;
 
 /**
  * Places musical data into the MIDI sequence. Package scope, final class.
@@ -316,40 +318,69 @@ final class MidiEventManager extends TrackTimeManager {
     if (note.getDuration() == 0.0) {
       note.useDefaultDuration();
     }
+    addNote(PackedNote.pack(note), note.getDuration());
+  }
+
+  /**
+   * Adds a note packed by {@link org.jfugue.theory.PackedNote}, without creating a Note for it.
+   *
+   * @param packedNote a long.
+   * @param duration a double; zero stands for the default duration.
+   */
+  public void addNote(long packedNote, double duration) {
+    if (duration == 0.0) {
+      duration = DefaultNoteSettingsManager.getInstance().getDefaultDuration();
+    }
 
     // If this is the first note in a sequence of harmonic or melodic notes, remember what time it is.
-    if (note.isFirstNote()) {
+    if (PackedNote.is(packedNote, PackedNote.FIRST_NOTE)) {
       setInitialNoteBeatTimeForHarmonicNotes(getTrackBeatTime());
     }
 
     // If we're going to the next sequence in a parallel note situation, roll back the time to the beginning of the first note.
     // A note will never be a parallel note if a first note has not happened first.
-    if (note.isHarmonicNote()) {
+    if (PackedNote.is(packedNote, PackedNote.HARMONIC_NOTE)) {
       setTrackBeatTime(getInitialNoteBeatTimeForHarmonicNotes());
     }
 
     // If the note is a rest, simply advance the track time and get outta here
-    if (note.isRest()) {
-      advanceTrackBeatTime(note.getDuration());
+    if (PackedNote.is(packedNote, PackedNote.REST)) {
+      advanceTrackBeatTime(duration);
       return;
     }
 
     // Add a NOTE_ON event.
     // If the note is continuing a tie, it is already sounding, and there is not need to turn the note on
-    if (!note.isEndOfTie()) {
-      addEvent(ShortMessage.NOTE_ON, note.getValue(), note.getOnVelocity());
+    if (!PackedNote.is(packedNote, PackedNote.END_OF_TIE)) {
+      addEvent(ShortMessage.NOTE_ON, PackedNote.getValue(packedNote),
+        PackedNote.getOnVelocity(packedNote));
     }
 
     // Advance the track timer
-    advanceTrackBeatTime(note.getDuration());
+    advanceTrackBeatTime(duration);
 
     // Add a NOTE_OFF event.
     // If this note is the start of a tie, the note will continue to sound, so we don't want to turn it off.
-    if (!note.isStartOfTie()) {
-      addEvent(ShortMessage.NOTE_OFF, note.getValue(), note.getOffVelocity());
+    if (!PackedNote.is(packedNote, PackedNote.START_OF_TIE)) {
+      addEvent(ShortMessage.NOTE_OFF, PackedNote.getValue(packedNote),
+        PackedNote.getOffVelocity(packedNote));
     }
   }
 
+  /**
+   * Returns the current time of the current track and layer, in ticks.
+   */
+  long getTrackTickTime() {
+    return convertBeatsToTicks(getTrackBeatTime());
+  }
+
+  /**
+   * Returns the number of the track events are currently added to, which is also their channel.
+   */
+  byte getCurrentChannel() {
+    return getCurrentTrackNumber();
+  }
+
   private long convertBeatsToTicks(double beats) {
     return (long) (resolutionTicksPerBeat * beats * MidiDefaults.DEFAULT_TEMPO_BEATS_PER_WHOLE);
   }
@@ -42,7 +42,15 @@ import org.staccato.StaccatoParserListener;
  */
 public class MidiFileManager {
 
-  private static void save(Sequence sequence, OutputStream out) throws IOException {
+  /**
+   * Writes the given sequence to the given stream as a Standard MIDI File, in the first file type
+   * the system can write it as. Does nothing if there is none.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   * @param out a {@link java.io.OutputStream} object.
+   * @throws java.io.IOException if any.
+   */
+  public static void save(Sequence sequence, OutputStream out) throws IOException {
     int[] writers = MidiSystem.getMidiFileTypes(sequence);
     if (writers.length == 0) {
       return;
@@ -20,9 +20,8 @@
 package org.jfugue.midi;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import javax.sound.midi.MetaMessage;
 import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiMessage;
@@ -33,7 +32,9 @@ import javax.sound.midi.Track;
 import org.jfugue.parser.Parser;
 import org.jfugue.provider.KeyProviderFactory;
 import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
 import org.jfugue.theory.Scale;
+import org.staccato.DefaultNoteSettingsManager;
 
 /**
  * <p>MidiParser class.</p>
@@ -43,8 +44,12 @@ import org.jfugue.theory.Scale;
  */
 public class MidiParser extends Parser {
 
+  private static final int NOTES_PER_CHANNEL = 128;
+  private static final long NOT_SOUNDING = -1L;
+
   private final List<AuxilliaryMidiParser> auxilliaryParsers;
-  private List<Map<Byte, TempNote>> noteCache;
+  private long[][] noteStartTicks;
+  private byte[][] noteOnVelocities;
   private float divisionType = MidiDefaults.DEFAULT_DIVISION_TYPE;
   private int resolutionTicksPerBeat = MidiDefaults.DEFAULT_RESOLUTION_TICKS_PER_BEAT;
   private int tempoBPM = MidiDefaults.DEFAULT_TEMPO_BEATS_PER_MINUTE;
@@ -66,10 +71,7 @@ public class MidiParser extends Parser {
    * @param sequence a {@link javax.sound.midi.Sequence} object.
    */
   public void parse(Sequence sequence) {
-    this.startParser();
-
-    this.divisionType = sequence.getDivisionType();
-    this.resolutionTicksPerBeat = sequence.getResolution();
+    this.startParser(sequence);
 
     // Read events from each track
     for (Track track : sequence.getTracks()) {
@@ -94,6 +96,18 @@ public class MidiParser extends Parser {
     this.resolutionTicksPerBeat = MidiDefaults.DEFAULT_RESOLUTION_TICKS_PER_BEAT;
   }
 
+  /**
+   * Starts the parser for the events of the given sequence, which may then be passed to {@link
+   * #parseEvent(MidiEvent)} one at a time, taking the timing of the events from the sequence.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   */
+  public void startParser(Sequence sequence) {
+    startParser();
+    this.divisionType = sequence.getDivisionType();
+    this.resolutionTicksPerBeat = sequence.getResolution();
+  }
+
   /**
    * <p>stopParser.</p>
    */
@@ -101,18 +115,28 @@ public class MidiParser extends Parser {
     fireAfterParsingFinished();
   }
 
+  /**
+   * Clears the notes that are sounding. A note is sounding while its start tick is not negative;
+   * keeping the start ticks and velocities in arrays means a note on and its note off allocate
+   * nothing.
+   */
   private void initNoteCache() {
-    noteCache = new ArrayList<>();
+    this.noteStartTicks = new long[MidiDefaults.TRACKS][NOTES_PER_CHANNEL];
+    this.noteOnVelocities = new byte[MidiDefaults.TRACKS][NOTES_PER_CHANNEL];
     this.currentTimeInBeats = new double[MidiDefaults.TRACKS];
     this.expectedTimeInBeats = new double[MidiDefaults.TRACKS];
 
     for (int i = 0; i < MidiDefaults.TRACKS; i++) {
-      noteCache.add(new HashMap<>());
+      Arrays.fill(noteStartTicks[i], NOT_SOUNDING);
       this.currentTimeInBeats[i] = 0.0d;
       this.expectedTimeInBeats[i] = 0.0d;
     }
   }
 
+  private boolean isSounding(int channel, int note) {
+    return noteStartTicks[channel][note] != NOT_SOUNDING;
+  }
+
   /**
    * Parses the following messages: - Note On events - Note Off events - Polyphonic Aftertouch -
    * Controller Events - Program Change (instrument changes) - Channel Aftertouch - Pitch Wheel -
@@ -142,37 +166,37 @@ public class MidiParser extends Parser {
   private void parseShortMessage(ShortMessage message, MidiEvent event) {
     // For any message that isn't a NoteOn event, update the current time and channel.
     // (We don't do this for NoteOn events because NoteOn aren't written until the NoteOff event)
-    if (!isNoteOnEvent(message.getCommand(), message.getChannel(), event)) {
+    if (!isNoteOnEvent(message)) {
       checkChannel(message.getChannel());
     }
 
     switch (message.getCommand()) {
       case ShortMessage.NOTE_OFF:
-        noteOff(message.getChannel(), event);
+        noteOff(message, event);
         fireHandledMidiEvent(event);
         break;
       case ShortMessage.NOTE_ON:
-        noteOn(message.getChannel(), event);
+        noteOn(message, event);
         fireHandledMidiEvent(event);
         break;
       case ShortMessage.POLY_PRESSURE:
-        polyphonicAftertouch(message.getChannel(), event);
+        polyphonicAftertouch(message);
         fireHandledMidiEvent(event);
         break;
       case ShortMessage.CONTROL_CHANGE:
-        controlChange(message.getChannel(), event);
+        controlChange(message);
         fireHandledMidiEvent(event);
         break;
       case ShortMessage.PROGRAM_CHANGE:
-        programChange(message.getChannel(), event);
+        programChange(message);
         fireHandledMidiEvent(event);
         break;
       case ShortMessage.CHANNEL_PRESSURE:
-        channelAftertouch(message.getChannel(), event);
+        channelAftertouch(message);
         fireHandledMidiEvent(event);
         break;
       case ShortMessage.PITCH_BEND:
-        pitchWheel(message.getChannel(), event);
+        pitchWheel(message);
         fireHandledMidiEvent(event);
         break;
       default:
@@ -225,83 +249,80 @@ public class MidiParser extends Parser {
   }
 
 
-  private boolean isNoteOnEvent(int command, int channel, MidiEvent event) {
-    return ((command == ShortMessage.NOTE_ON) && !
-      ((noteCache.get(channel).get(event.getMessage().getMessage()[1]) != null) &&
-        (event.getMessage().getMessage()[2] == 0)));
+  private boolean isNoteOnEvent(ShortMessage message) {
+    return message.getCommand() == ShortMessage.NOTE_ON && !isNoteOffEvent(message);
   }
 
-  private boolean isNoteOffEvent(int channel, MidiEvent event) {
-    // An event is a NoteOff event if it is actually a NoteOff event,
-    // or if it is a NoteOn event where the note has already been played and the attack velocity is 0.
-    return ((ShortMessage.NOTE_ON == ShortMessage.NOTE_OFF) ||
-      ((ShortMessage.NOTE_ON == ShortMessage.NOTE_ON) &&
-        (noteCache.get(channel).get(event.getMessage().getMessage()[1]) != null) &&
-        (event.getMessage().getMessage()[2] == 0)));
+  private boolean isNoteOffEvent(ShortMessage message) {
+    // A NoteOn event is actually a NoteOff event if the note has already been played and the
+    // attack velocity is 0.
+    return isSounding(message.getChannel(), message.getData1()) && message.getData2() == 0;
   }
 
-  private void noteOff(int channel, MidiEvent event) {
-    byte note = event.getMessage().getMessage()[1];
-    TempNote tempNote = noteCache.get(channel).get(note);
-    if (tempNote == null) {
+  private void noteOff(ShortMessage message, MidiEvent event) {
+    int channel = message.getChannel();
+    byte note = (byte) message.getData1();
+    if (!isSounding(channel, note)) {
       // A note was turned off when that note was never indicated as having been turned on
       return;
     }
-    noteCache.get(channel).remove(note);
-    checkTime(tempNote.startTick);
+    long startTick = noteStartTicks[channel][note];
+    noteStartTicks[channel][note] = NOT_SOUNDING;
+    checkTime(startTick);
 
-    long durationInTicks = event.getTick() - tempNote.startTick;
+    long durationInTicks = event.getTick() - startTick;
     double durationInBeats = getDurationInBeats(durationInTicks);
-    byte noteOffVelocity = event.getMessage().getMessage()[2];
+    byte noteOffVelocity = (byte) message.getData2();
     this.expectedTimeInBeats[this.currentChannel] =
       this.currentTimeInBeats[this.currentChannel] + durationInBeats;
 
-    Note noteObject = new Note(note);
-    noteObject.setDuration(getDurationInBeats(durationInTicks));
-    noteObject.setOnVelocity(tempNote.noteOnVelocity);
-    noteObject.setOffVelocity(noteOffVelocity);
-    fireNoteReleased(new Note(note).setOffVelocity(noteOffVelocity));
-    fireNoteParsed(noteObject);
+    DefaultNoteSettingsManager defaults = DefaultNoteSettingsManager.getInstance();
+    firePackedNoteReleased(PackedNote.of(note, defaults.getDefaultOnVelocity(), noteOffVelocity,
+      PackedNote.FIRST_NOTE), defaults.getDefaultDuration());
+    firePackedNoteParsed(PackedNote.of(note, noteOnVelocities[channel][note], noteOffVelocity,
+      PackedNote.FIRST_NOTE | PackedNote.DURATION_EXPLICITLY_SET), durationInBeats);
   }
 
-  private void noteOn(int channel, MidiEvent event) {
-    if (isNoteOffEvent(channel, event)) {
+  private void noteOn(ShortMessage message, MidiEvent event) {
+    if (isNoteOffEvent(message)) {
       // Some MIDI files use the Note On event with 0 velocity to indicate Note Off
-      noteOff(channel, event);
+      noteOff(message, event);
       return;
     }
 
-    byte note = event.getMessage().getMessage()[1];
-    byte noteOnVelocity = event.getMessage().getMessage()[2];
-    if (noteCache.get(channel).get(note) != null) {
+    int channel = message.getChannel();
+    byte note = (byte) message.getData1();
+    byte noteOnVelocity = (byte) message.getData2();
+    if (isSounding(channel, note)) {
       // The note already existed in the cache! Nothing to do about it now. This shouldn't happen.
     } else {
-      noteCache.get(channel).put(note, new TempNote(event.getTick(), noteOnVelocity));
+      noteStartTicks[channel][note] = event.getTick();
+      noteOnVelocities[channel][note] = noteOnVelocity;
     }
 
-    fireNotePressed(new Note(note).setOnVelocity(noteOnVelocity));
+    DefaultNoteSettingsManager defaults = DefaultNoteSettingsManager.getInstance();
+    firePackedNotePressed(PackedNote.of(note, noteOnVelocity, defaults.getDefaultOffVelocity(),
+      PackedNote.FIRST_NOTE), defaults.getDefaultDuration());
   }
 
-  private void polyphonicAftertouch(int channel, MidiEvent event) {
-    firePolyphonicPressureParsed(event.getMessage().getMessage()[1],
-      event.getMessage().getMessage()[2]);
+  private void polyphonicAftertouch(ShortMessage message) {
+    firePolyphonicPressureParsed((byte) message.getData1(), (byte) message.getData2());
   }
 
-  private void controlChange(int channel, MidiEvent event) {
-    fireControllerEventParsed(event.getMessage().getMessage()[1],
-      event.getMessage().getMessage()[2]);
+  private void controlChange(ShortMessage message) {
+    fireControllerEventParsed((byte) message.getData1(), (byte) message.getData2());
   }
 
-  private void programChange(int channel, MidiEvent event) {
-    fireInstrumentParsed(event.getMessage().getMessage()[1]);
+  private void programChange(ShortMessage message) {
+    fireInstrumentParsed((byte) message.getData1());
   }
 
-  private void channelAftertouch(int channel, MidiEvent event) {
-    fireChannelPressureParsed(event.getMessage().getMessage()[1]);
+  private void channelAftertouch(ShortMessage message) {
+    fireChannelPressureParsed((byte) message.getData1());
   }
 
-  private void pitchWheel(int channel, MidiEvent event) {
-    firePitchWheelParsed(event.getMessage().getMessage()[1], event.getMessage().getMessage()[2]);
+  private void pitchWheel(ShortMessage message) {
+    firePitchWheelParsed((byte) message.getData1(), (byte) message.getData2());
   }
 
   private void tempoChanged(MetaMessage meta) {
@@ -403,19 +424,4 @@ public class MidiParser extends Parser {
       auxilliaryParser.parseUnhandledMidiEvent(event, this);
     }
   }
-
-  //
-  // TempNote data structure
-  //
-
-  class TempNote {
-
-    final long startTick;
-    final byte noteOnVelocity;
-
-    TempNote(long startTick, byte noteOnVelocity) {
-      this.startTick = startTick;
-      this.noteOnVelocity = noteOnVelocity;
-    }
-  }
 }
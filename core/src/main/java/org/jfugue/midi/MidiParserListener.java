@@ -23,6 +23,8 @@ import java.util.logging.Logger;
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.Sequence;
 import javax.sound.midi.ShortMessage;
+import org.jfugue.parser.BatchParserListener;
+import org.jfugue.parser.EventBatch;
 import org.jfugue.parser.ParserListener;
 import org.jfugue.theory.Chord;
 import org.jfugue.theory.Note;
@@ -33,16 +35,19 @@ import org.jfugue.theory.Note;
  * @author fmatar
  * @version $Id: $Id
  */
-public class MidiParserListener implements ParserListener {
+public class MidiParserListener implements ParserListener, BatchParserListener {
 
   private final MidiEventManager eventManager;
   private final Logger logger = Logger.getLogger("org.jfugue");
+  private MeasureIndex.Builder measureIndexBuilder;
+  private MeasureIndex measureIndex;
 
   /**
    * <p>Constructor for MidiParserListener.</p>
    */
   public MidiParserListener() {
     this.eventManager = new MidiEventManager();
+    this.measureIndexBuilder = new MeasureIndex.Builder(this.eventManager.getSequenceResolution());
   }
 
   /**
@@ -54,6 +59,22 @@ public class MidiParserListener implements ParserListener {
     return eventManager.getSequence();
   }
 
+  /**
+   * Returns the measure, beat and time bookmark index of the most recently finished Sequence. Pass
+   * it to {@link org.jfugue.player.ManagedPlayer#start(Sequence, MeasureIndex)} to let the player
+   * seek by measure.
+   *
+   * @return a {@link org.jfugue.midi.MeasureIndex} object, or null if no parse has finished.
+   */
+  public MeasureIndex getMeasureIndex() {
+    return this.measureIndex;
+  }
+
+  private void addControlEvent(int command, int data1, int data2) {
+    this.measureIndexBuilder.addControlEvent(this.eventManager.getTrackTickTime(), command,
+      this.eventManager.getCurrentChannel(), data1, data2);
+  }
+
   /* ParserListener Events */
 
   /** {@inheritDoc} */
@@ -64,12 +85,88 @@ public class MidiParserListener implements ParserListener {
     } catch (InvalidMidiDataException e) {
       logger.warning(e.getMessage());
     }
+    this.measureIndexBuilder = new MeasureIndex.Builder(this.eventManager.getSequenceResolution());
+    this.measureIndex = null;
   }
 
   /** {@inheritDoc} */
   @Override
   public void afterParsingFinished() {
     this.eventManager.finishSequence();
+    this.measureIndex = this.measureIndexBuilder.build(getSequence().getTickLength());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Handles the whole batch in one loop, so the per-event methods are called from a single
+   * place the JIT can inline them into.</p>
+   */
+  @Override
+  public void onEventBatch(EventBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      switch (batch.getType(i)) {
+        case TRACK_CHANGED:
+          onTrackChanged(batch.getFirstByte(i));
+          break;
+        case LAYER_CHANGED:
+          onLayerChanged(batch.getFirstByte(i));
+          break;
+        case INSTRUMENT:
+          onInstrumentParsed(batch.getFirstByte(i));
+          break;
+        case TEMPO:
+          onTempoChanged((int) batch.getLongValue(i));
+          break;
+        case KEY_SIGNATURE:
+          onKeySignatureParsed(batch.getFirstByte(i), batch.getSecondByte(i));
+          break;
+        case TIME_SIGNATURE:
+          onTimeSignatureParsed(batch.getFirstByte(i), batch.getSecondByte(i));
+          break;
+        case BAR_LINE:
+          onBarLineParsed(batch.getLongValue(i));
+          break;
+        case TRACK_BEAT_TIME_BOOKMARK:
+          onTrackBeatTimeBookmarked(batch.getString(i));
+          break;
+        case TRACK_BEAT_TIME_BOOKMARK_REQUESTED:
+          onTrackBeatTimeBookmarkRequested(batch.getString(i));
+          break;
+        case TRACK_BEAT_TIME_REQUESTED:
+          onTrackBeatTimeRequested(batch.getDoubleValue(i));
+          break;
+        case PITCH_WHEEL:
+          onPitchWheelParsed(batch.getFirstByte(i), batch.getSecondByte(i));
+          break;
+        case CHANNEL_PRESSURE:
+          onChannelPressureParsed(batch.getFirstByte(i));
+          break;
+        case POLYPHONIC_PRESSURE:
+          onPolyphonicPressureParsed(batch.getFirstByte(i), batch.getSecondByte(i));
+          break;
+        case SYSTEM_EXCLUSIVE:
+          onSystemExclusiveParsed(batch.getBytes(i));
+          break;
+        case CONTROLLER:
+          onControllerEventParsed(batch.getFirstByte(i), batch.getSecondByte(i));
+          break;
+        case LYRIC:
+          onLyricParsed(batch.getString(i));
+          break;
+        case MARKER:
+          onMarkerParsed(batch.getString(i));
+          break;
+        case NOTE:
+          this.eventManager.addNote(batch.getPackedNote(i), batch.getDoubleValue(i));
+          break;
+        case CHORD:
+          onChordParsed(batch.getChord(i));
+          break;
+        default:
+          break;
+      }
+    }
   }
 
   /** {@inheritDoc} */
@@ -88,12 +185,14 @@ public class MidiParserListener implements ParserListener {
   @Override
   public void onInstrumentParsed(byte instrument) {
     this.eventManager.addEvent(ShortMessage.PROGRAM_CHANGE, instrument, 0);
+    addControlEvent(ShortMessage.PROGRAM_CHANGE, instrument, 0);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onTempoChanged(int tempoBPM) {
     this.eventManager.setTempo(tempoBPM);
+    this.measureIndexBuilder.addTempo(this.eventManager.getTrackTickTime(), tempoBPM);
   }
 
   /** {@inheritDoc} */
@@ -106,17 +205,22 @@ public class MidiParserListener implements ParserListener {
   @Override
   public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
     this.eventManager.setTimeSignature(numerator, powerOfTwo);
+    this.measureIndexBuilder
+      .addTimeSignature(this.eventManager.getTrackTickTime(), numerator, powerOfTwo);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onBarLineParsed(long time) {
+    this.measureIndexBuilder.addBarLine(this.eventManager.getCurrentChannel(), time,
+      this.eventManager.getTrackTickTime());
   }
 
   /** {@inheritDoc} */
   @Override
   public void onTrackBeatTimeBookmarked(String timeBookmarkID) {
     this.eventManager.addTrackTickTimeBookmark(timeBookmarkID);
+    this.measureIndexBuilder.addBookmark(timeBookmarkID, this.eventManager.getTrackTickTime());
   }
 
   /** {@inheritDoc} */
@@ -136,12 +240,14 @@ public class MidiParserListener implements ParserListener {
   @Override
   public void onPitchWheelParsed(byte lsb, byte msb) {
     this.eventManager.addEvent(ShortMessage.PITCH_BEND, lsb, msb);
+    addControlEvent(ShortMessage.PITCH_BEND, lsb, msb);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onChannelPressureParsed(byte pressure) {
     this.eventManager.addEvent(ShortMessage.CHANNEL_PRESSURE, pressure);
+    addControlEvent(ShortMessage.CHANNEL_PRESSURE, pressure, 0);
   }
 
   /** {@inheritDoc} */
@@ -160,6 +266,7 @@ public class MidiParserListener implements ParserListener {
   @Override
   public void onControllerEventParsed(byte controller, byte value) {
     this.eventManager.addEvent(ShortMessage.CONTROL_CHANGE, controller, value);
+    addControlEvent(ShortMessage.CONTROL_CHANGE, controller, value);
   }
 
   /** {@inheritDoc} */
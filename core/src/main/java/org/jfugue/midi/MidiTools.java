@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.sound.midi.MetaMessage;
 import javax.sound.midi.MidiEvent;
 import javax.sound.midi.MidiMessage;
@@ -97,12 +98,14 @@ public class MidiTools {
 
   private static void sendSortedMidiMessagesToReceiver(
     Map<Long, List<MidiMessage>> sortedMidiMessages, float sequenceDivisionType,
-    int sequenceResolution, Receiver receiver) {
+    int sequenceResolution, Receiver receiver, MessageDispatchListener listener) {
     int bpm = MidiDefaults.DEFAULT_TEMPO_BEATS_PER_MINUTE;
     int ticksPerSecond;
     long prevTick = 0L;
     long msTime;
+    long scheduledTimeInMillis = 0L;
     long largestTick = getLargestKey(sortedMidiMessages);
+    long startNanos = System.nanoTime();
 
     if (sequenceDivisionType == Sequence.PPQ) {
       ticksPerSecond = (int) (sequenceResolution * bpm / 60.0D);
@@ -117,28 +120,47 @@ public class MidiTools {
 
     for (long tick = 0; tick <= largestTick; tick++) {
       if (sortedMidiMessages.containsKey(tick)) {
+        // Wait until this tick is due. Sleeping towards an absolute time, rather than for each
+        // delta, keeps oversleeping on one tick from pushing every later tick back.
         msTime = calculateTime(tick - prevTick, ticksPerSecond);
+        scheduledTimeInMillis += msTime;
+        sleepUntil(startNanos + TimeUnit.MILLISECONDS.toNanos(scheduledTimeInMillis));
+
+        long latenessInMicros = 0;
+        if (listener != null) {
+          latenessInMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos)
+            - TimeUnit.MILLISECONDS.toMicros(scheduledTimeInMillis);
+        }
         List<MidiMessage> messages = sortedMidiMessages.get(tick);
         for (MidiMessage message : messages) {
           if ((message instanceof MetaMessage) && (sequenceDivisionType == Sequence.PPQ) && (
             ((MetaMessage) message).getType() == MidiDefaults.SET_TEMPO_MESSAGE_TYPE)) {
+            // The new tempo governs the time between this tick and the next one
             ticksPerSecond = calculateTicksPerSecondFromMidiSetTempoMessageData(
               ((MetaMessage) message).getData(), sequenceResolution);
-            msTime = calculateTime(tick - prevTick, ticksPerSecond);
           } else {
             receiver.send(message, msTime);
+            if (listener != null) {
+              listener.onMessageSent(scheduledTimeInMillis, latenessInMicros);
+            }
           }
         }
-        try {
-          Thread.sleep(msTime);
-        } catch (Exception ex) {
-          throw new RuntimeException(ex);
-        }
         prevTick = tick;
       }
     }
   }
 
+  private static void sleepUntil(long deadlineNanos) {
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(remaining);
+      } catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+
   /**
    * Convenience method for a commonly-used idiom
    *
@@ -146,8 +168,22 @@ public class MidiTools {
    * @param receiver a {@link javax.sound.midi.Receiver} object.
    */
   public static void sendSequenceToReceiver(Sequence sequence, Receiver receiver) {
+    sendSequenceToReceiver(sequence, receiver, null);
+  }
+
+  /**
+   * Sends the sequence to the receiver in real time, telling the listener how late each message is
+   * sent compared with its position in the sequence.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   * @param receiver a {@link javax.sound.midi.Receiver} object.
+   * @param listener a {@link org.jfugue.midi.MessageDispatchListener} object, or null to skip
+   * measurement.
+   */
+  public static void sendSequenceToReceiver(Sequence sequence, Receiver receiver,
+    MessageDispatchListener listener) {
     sendSortedMidiMessagesToReceiver(sortMessagesByTick(sequence), sequence.getDivisionType(),
-      sequence.getResolution(), receiver);
+      sequence.getResolution(), receiver, listener);
   }
 
   /**
@@ -0,0 +1,487 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.ngram;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.pattern.Pattern;
+import org.staccato.StaccatoParser;
+
+/**
+ * Finds the pieces in a directory written by {@link MelodicIndexWriter} whose melodies contain a
+ * given melodic fragment, in any key and at any tempo. The segment files are memory-mapped, so
+ * opening an index reads only the ids of its pieces, and a search reads only the dictionary entries
+ * and postings of the n-grams in the fragment.
+ *
+ * <p>A search lines up the n-grams of the fragment with the places each one occurs in the corpus.
+ * A place in a voice where all of them line up holds the whole fragment and scores 1; a place
+ * where only some do holds a variation of it, and scores the share that line up. Each piece is
+ * scored by its best places.</p>
+ *
+ * <pre>
+ * try (MelodicIndex index = MelodicIndex.open(Paths.get("corpus-index"))) {
+ *   for (MelodicIndex.Match match : index.search("E5q D5q C5q D5q E5q E5q E5h", 10)) { ... }
+ * }
+ * </pre>
+ *
+ * <p>An index sees the segments that were in its directory when it was opened. Searching is
+ * thread-safe.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class MelodicIndex implements Closeable {
+
+  /**
+   * The score a place must reach to be found by {@link #search(String, int)}.
+   */
+  public static final double DEFAULT_MIN_SCORE = 0.5d;
+
+  /**
+   * A place in a piece where a fragment was found.
+   */
+  public static final class Occurrence {
+
+    private final int voice;
+    private final int noteIndex;
+
+    private Occurrence(int voice, int noteIndex) {
+      this.voice = voice;
+      this.noteIndex = noteIndex;
+    }
+
+    /**
+     * <p>getTrack.</p>
+     *
+     * @return an int.
+     */
+    public int getTrack() {
+      return voice / MidiDefaults.LAYERS;
+    }
+
+    /**
+     * <p>getLayer.</p>
+     *
+     * @return an int.
+     */
+    public int getLayer() {
+      return voice % MidiDefaults.LAYERS;
+    }
+
+    /**
+     * <p>Getter for the field <code>noteIndex</code>.</p>
+     *
+     * @return the index, in the melody of the voice, of the note the fragment starts on.
+     */
+    public int getNoteIndex() {
+      return noteIndex;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return "V" + getTrack() + " L" + getLayer() + " #" + noteIndex;
+    }
+  }
+
+  /**
+   * A piece found by a search, with its score and the places the fragment was found in it.
+   */
+  public static final class Match {
+
+    private final String id;
+    private final double score;
+    private final List<Occurrence> occurrences;
+
+    private Match(String id, double score, List<Occurrence> occurrences) {
+      this.id = id;
+      this.score = score;
+      this.occurrences = Collections.unmodifiableList(occurrences);
+    }
+
+    /**
+     * <p>Getter for the field <code>id</code>.</p>
+     *
+     * @return the id the piece was added with.
+     */
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * <p>Getter for the field <code>score</code>.</p>
+     *
+     * @return the share of the fragment's n-grams found at the best places, from 0 to 1.
+     */
+    public double getScore() {
+      return score;
+    }
+
+    /**
+     * <p>Getter for the field <code>occurrences</code>.</p>
+     *
+     * @return the places with the best score, in order of voice and note index.
+     */
+    public List<Occurrence> getOccurrences() {
+      return occurrences;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return id + ":" + score + occurrences;
+    }
+  }
+
+  private final List<Segment> segments;
+  private final String[] ids;
+  private final int length;
+
+  private MelodicIndex(List<Segment> segments, String[] ids, int length) {
+    this.segments = segments;
+    this.ids = ids;
+    this.length = length;
+  }
+
+  /**
+   * Opens the index in the given directory.
+   *
+   * @param directory a {@link java.nio.file.Path} object.
+   * @return a {@link org.jfugue.ngram.MelodicIndex} object.
+   * @throws java.io.IOException if a segment can't be read or is not part of a melodic index, or
+   * if the segments hold n-grams of different lengths or more pieces than an index can number.
+   */
+  public static MelodicIndex open(Path directory) throws IOException {
+    List<Segment> segments = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    int length = MelodicIndexFormat.DEFAULT_LENGTH;
+    for (Path file : listSegments(directory)) {
+      Segment segment = new Segment(map(file), ids.size());
+      if (!segments.isEmpty() && segment.length != length) {
+        throw new IOException(file + " holds n-grams of length " + segment.length + ", not "
+          + length);
+      }
+      if ((long) ids.size() + segment.pieces > MelodicIndexFormat.MAX_PIECES) {
+        throw new IOException(directory + " holds more than " + MelodicIndexFormat.MAX_PIECES
+          + " pieces");
+      }
+      length = segment.length;
+      segment.readIds(ids);
+      segments.add(segment);
+    }
+    return new MelodicIndex(segments, ids.toArray(new String[0]), length);
+  }
+
+  /**
+   * <p>Getter for the field <code>length</code>.</p>
+   *
+   * @return the number of steps in each n-gram.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the number of pieces in the index.
+   *
+   * @return an int.
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * Returns the id of the piece at the given position, in the order the pieces were added.
+   *
+   * @param index an int.
+   * @return a {@link java.lang.String} object.
+   */
+  public String getId(int index) {
+    if (index < 0 || index >= ids.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + ids.length);
+    }
+    return ids[index];
+  }
+
+  /**
+   * Finds the pieces holding the given fragment, or a variation of it scoring at least {@link
+   * #DEFAULT_MIN_SCORE}.
+   *
+   * @param fragment a melody in Staccato.
+   * @param maxResults the most pieces to return.
+   * @return the pieces found, best first.
+   */
+  public List<Match> search(String fragment, int maxResults) {
+    return searchWithMinScore(fragment, DEFAULT_MIN_SCORE, maxResults);
+  }
+
+  /**
+   * Finds the pieces holding the given fragment, or a variation of it. The melody of the first
+   * voice of the fragment that has one is searched for; it needs one more note than the length of
+   * the n-grams. Pieces with the same score come in order of the number of places they reach it
+   * in, then in the order they were added.
+   *
+   * @param fragment a melody in Staccato.
+   * @param minScore the score, above zero and at most 1, a place must reach to be found.
+   * @param maxResults the most pieces to return.
+   * @return the pieces found, best first.
+   */
+  public List<Match> searchWithMinScore(String fragment, double minScore, int maxResults) {
+    if (minScore <= 0 || minScore > 1) {
+      throw new IllegalArgumentException("Minimum score must be above 0 and at most 1: "
+        + minScore);
+    }
+    long[] query = queryNgrams(fragment);
+    if (maxResults < 1 || ids.length == 0) {
+      return Collections.emptyList();
+    }
+
+    // Count, for each place a fragment could start, how many of its n-grams are found there
+    Map<Long, int[]> hits = new HashMap<>();
+    for (int i = 0; i < query.length; i++) {
+      for (Segment segment : segments) {
+        int entry = segment.find(query[i]);
+        if (entry < 0) {
+          continue;
+        }
+        int count = segment.postingCount(entry);
+        int position = segment.postingsStart(entry);
+        long posting = 0;
+        for (int p = 0; p < count; p++) {
+          long value = 0;
+          int shift = 0;
+          byte b;
+          do {
+            b = segment.buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+          } while (b < 0);
+          posting += value;
+          int start = MelodicIndexFormat.noteIndex(posting) - i;
+          if (start >= 0) {
+            long place = MelodicIndexFormat.posting(segment.base
+              + MelodicIndexFormat.piece(posting), MelodicIndexFormat.voice(posting), start);
+            hits.computeIfAbsent(place, key -> new int[1])[0]++;
+          }
+        }
+      }
+    }
+
+    // Keep the best places in each piece
+    int needed = (int) Math.ceil(minScore * query.length - 1e-9);
+    Map<Integer, List<Long>> best = new HashMap<>();
+    Map<Integer, Integer> bestHits = new HashMap<>();
+    for (Map.Entry<Long, int[]> entry : hits.entrySet()) {
+      int count = entry.getValue()[0];
+      if (count < needed) {
+        continue;
+      }
+      int piece = MelodicIndexFormat.piece(entry.getKey());
+      Integer previous = bestHits.get(piece);
+      if (previous == null || count > previous) {
+        bestHits.put(piece, count);
+        best.put(piece, new ArrayList<>());
+      }
+      if (previous == null || count >= previous) {
+        best.get(piece).add(entry.getKey());
+      }
+    }
+
+    List<Integer> pieces = new ArrayList<>(best.keySet());
+    pieces.sort((a, b) -> {
+      int byHits = Integer.compare(bestHits.get(b), bestHits.get(a));
+      if (byHits != 0) {
+        return byHits;
+      }
+      int byPlaces = Integer.compare(best.get(b).size(), best.get(a).size());
+      return byPlaces != 0 ? byPlaces : Integer.compare(a, b);
+    });
+    List<Match> matches = new ArrayList<>();
+    for (int piece : pieces.subList(0, Math.min(maxResults, pieces.size()))) {
+      long[] places = new long[best.get(piece).size()];
+      for (int p = 0; p < places.length; p++) {
+        places[p] = best.get(piece).get(p);
+      }
+      Arrays.sort(places);
+      List<Occurrence> occurrences = new ArrayList<>(places.length);
+      for (long place : places) {
+        occurrences.add(new Occurrence(MelodicIndexFormat.voice(place),
+          MelodicIndexFormat.noteIndex(place)));
+      }
+      matches.add(new Match(ids[piece], (double) bestHits.get(piece) / query.length,
+        occurrences));
+    }
+    return matches;
+  }
+
+  /**
+   * Releases the index. The mapped segments are freed once they are no longer reachable.
+   */
+  @Override
+  public void close() {
+    segments.clear();
+  }
+
+  private long[] queryNgrams(String fragment) {
+    MelodicNgramExtractor extractor = new MelodicNgramExtractor(length);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(extractor);
+    parser.parse(new Pattern(fragment));
+    int count = 0;
+    while (count < extractor.size() && extractor.getTrack(count) == extractor.getTrack(0)
+      && extractor.getLayer(count) == extractor.getLayer(0)) {
+      count++;
+    }
+    if (count == 0) {
+      throw new IllegalArgumentException("A fragment needs a melody of at least " + (length + 1)
+        + " notes: " + fragment);
+    }
+    long[] query = new long[count];
+    for (int i = 0; i < count; i++) {
+      query[i] = extractor.getNgram(i);
+    }
+    return query;
+  }
+
+  static List<Path> listSegments(Path directory) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+      MelodicIndexFormat.SEGMENT_PREFIX + "*" + MelodicIndexFormat.SEGMENT_SUFFIX)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  static int readLength(Path file) throws IOException {
+    try (DataInputStream data = new DataInputStream(Files.newInputStream(file))) {
+      byte[] header = new byte[MelodicIndexFormat.MAGIC.length + 2];
+      data.readFully(header);
+      checkHeader(file, header);
+      return header[MelodicIndexFormat.MAGIC.length + 1];
+    }
+  }
+
+  private static ByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(file + " is too large to map");
+      }
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      byte[] header = new byte[Math.min(buffer.limit(), MelodicIndexFormat.MAGIC.length + 2)];
+      buffer.get(header);
+      checkHeader(file, header);
+      return buffer;
+    }
+  }
+
+  private static void checkHeader(Path file, byte[] header) throws IOException {
+    if (header.length < MelodicIndexFormat.MAGIC.length + 2 || !Arrays.equals(
+      Arrays.copyOf(header, MelodicIndexFormat.MAGIC.length), MelodicIndexFormat.MAGIC)
+      || header[MelodicIndexFormat.MAGIC.length] != MelodicIndexFormat.VERSION) {
+      throw new IOException(file + " is not a melodic index segment");
+    }
+  }
+
+  /**
+   * One mapped segment file, read with absolute gets so that searches can share it.
+   */
+  private static final class Segment {
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int length;
+    private final int pieces;
+    private final int terms;
+    private final int pieceTableOffset;
+    private final int postingsOffset;
+
+    private Segment(ByteBuffer buffer, int base) {
+      this.buffer = buffer;
+      this.base = base;
+      this.length = buffer.get(MelodicIndexFormat.MAGIC.length + 1);
+      this.pieces = buffer.getInt(6);
+      this.terms = buffer.getInt(10);
+      this.pieceTableOffset = (int) buffer.getLong(14);
+      this.postingsOffset = (int) buffer.getLong(22);
+    }
+
+    private void readIds(List<String> ids) {
+      int position = pieceTableOffset;
+      for (int i = 0; i < pieces; i++) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        position += 4;
+        for (int b = 0; b < bytes.length; b++) {
+          bytes[b] = buffer.get(position++);
+        }
+        ids.add(new String(bytes, StandardCharsets.UTF_8));
+      }
+    }
+
+    /**
+     * Returns the dictionary entry of the given n-gram, or -1 if the segment does not hold it.
+     */
+    private int find(long ngram) {
+      int low = 0;
+      int high = terms - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        long value = buffer.getLong(entryOffset(middle));
+        if (value < ngram) {
+          low = middle + 1;
+        } else if (value > ngram) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -1;
+    }
+
+    private int postingsStart(int entry) {
+      return postingsOffset + (int) buffer.getLong(entryOffset(entry) + 8);
+    }
+
+    private int postingCount(int entry) {
+      return buffer.getInt(entryOffset(entry) + 16);
+    }
+
+    private static int entryOffset(int entry) {
+      return MelodicIndexFormat.HEADER_LENGTH + entry * MelodicIndexFormat.DICTIONARY_ENTRY_LENGTH;
+    }
+  }
+}
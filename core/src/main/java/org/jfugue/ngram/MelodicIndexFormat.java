@@ -0,0 +1,98 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.ngram;
+
+/**
+ * Constants and encodings shared by MelodicNgramExtractor, MelodicIndexWriter and MelodicIndex.
+ * Package scope.
+ *
+ * <p>Each step from one melody note to the next is a 12-bit symbol: the interval in half-steps,
+ * clamped to plus or minus 63, in the high 7 bits, and the ratio of the second note's duration to
+ * the first's, as a whole number of half-octaves clamped to plus or minus 15, in the low 5 bits.
+ * An n-gram packs n symbols into a long, oldest first.</p>
+ *
+ * <p>A segment file starts with the four bytes <code>JFNG</code>, a version byte, the n-gram
+ * length, the number of pieces and the number of distinct n-grams as ints, and the offsets of the
+ * piece table and the postings as longs, all big-endian. Then comes the dictionary: one entry of
+ * DICTIONARY_ENTRY_LENGTH bytes per n-gram, sorted by n-gram, holding the n-gram, the offset of its
+ * postings from the start of the postings and the number of postings. The piece table holds each
+ * piece's id as an int byte count followed by UTF-8. A posting packs the piece number, voice and
+ * note index with {@link #posting(int, int, int)}; the postings of an n-gram are sorted, and each
+ * is written as an unsigned LEB128 varint of its difference from the one before.</p>
+ *
+ * @author fmatar
+ */
+final class MelodicIndexFormat {
+
+  static final byte[] MAGIC = {'J', 'F', 'N', 'G'};
+  static final byte VERSION = 1;
+  static final int HEADER_LENGTH = 30;
+  static final int DICTIONARY_ENTRY_LENGTH = 20;
+  static final String SEGMENT_PREFIX = "segment-";
+  static final String SEGMENT_SUFFIX = ".jfng";
+
+  static final int MIN_LENGTH = 2;
+  static final int MAX_LENGTH = 5;
+  static final int DEFAULT_LENGTH = 4;
+  static final int MAX_PIECES = 1 << 24;
+
+  private static final int MAX_INTERVAL = 63;
+  private static final int MAX_RATIO_STEP = 15;
+  private static final int SYMBOL_BITS = 12;
+  private static final double HALF_OCTAVES_PER_LOG = 2 / Math.log(2);
+
+  private MelodicIndexFormat() {
+  }
+
+  static int symbol(int fromValue, double fromDuration, int toValue, double toDuration) {
+    int interval = Math.max(-MAX_INTERVAL, Math.min(MAX_INTERVAL, toValue - fromValue));
+    int ratio = (int) Math.round(Math.log(toDuration / fromDuration) * HALF_OCTAVES_PER_LOG);
+    ratio = Math.max(-MAX_RATIO_STEP, Math.min(MAX_RATIO_STEP, ratio));
+    return ((interval + MAX_INTERVAL) << 5) | (ratio + MAX_RATIO_STEP);
+  }
+
+  static long append(long ngram, int symbol, int length) {
+    long mask = (1L << (SYMBOL_BITS * length)) - 1;
+    return ((ngram << SYMBOL_BITS) | symbol) & mask;
+  }
+
+  static long posting(int piece, int voice, int noteIndex) {
+    return ((long) piece << 40) | ((long) voice << 32) | (noteIndex & 0xFFFFFFFFL);
+  }
+
+  static int piece(long posting) {
+    return (int) (posting >>> 40);
+  }
+
+  static int voice(long posting) {
+    return (int) (posting >>> 32) & 0xFF;
+  }
+
+  static int noteIndex(long posting) {
+    return (int) posting;
+  }
+
+  static void checkLength(int length) {
+    if (length < MIN_LENGTH || length > MAX_LENGTH) {
+      throw new IllegalArgumentException("N-gram length must be from " + MIN_LENGTH + " to "
+        + MAX_LENGTH + ": " + length);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.ngram;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sound.midi.Sequence;
+import org.jfugue.midi.MidiParser;
+import org.jfugue.pattern.PatternProducer;
+import org.staccato.StaccatoParser;
+
+/**
+ * Adds pieces to a {@link MelodicIndex} kept in a directory. The n-grams of the pieces added since
+ * the last commit are held in memory, and {@link #commit()} writes them to a new segment file in
+ * the directory, so a corpus can be indexed a batch at a time and an index grown later without
+ * rewriting what is already there. Segments are written to a temporary file and then moved into
+ * place, so an index opened at any moment sees only whole segments.
+ *
+ * <pre>
+ * MelodicIndexWriter writer = new MelodicIndexWriter(Paths.get("corpus-index"));
+ * writer.addAll(catalog);
+ * writer.commit();
+ * </pre>
+ *
+ * <p>{@link #addAll(Map)} parses its pieces in parallel. The methods of a writer may be called
+ * from several threads, but only one writer should add to a directory at a time.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see MelodicNgramExtractor
+ */
+public class MelodicIndexWriter implements Closeable {
+
+  private final Path directory;
+  private final int length;
+  private final List<String> ids = new ArrayList<>();
+  private final Map<Long, Postings> postings = new HashMap<>();
+  private int nextSegment;
+
+  /**
+   * Opens a writer for the given directory, creating it if needed. N-grams are as long as those
+   * already in the directory, or four steps long if it holds no segments.
+   *
+   * @param directory a {@link java.nio.file.Path} object.
+   * @throws java.io.IOException if the directory can't be created or read.
+   */
+  public MelodicIndexWriter(Path directory) throws IOException {
+    this(directory, 0);
+  }
+
+  /**
+   * Opens a writer for the given directory, creating it if needed.
+   *
+   * @param directory a {@link java.nio.file.Path} object.
+   * @param length the number of steps in each n-gram, from 2 to 5, which must match the segments
+   * already in the directory.
+   * @throws java.io.IOException if the directory can't be created or read, or holds segments with
+   * n-grams of another length.
+   */
+  public MelodicIndexWriter(Path directory, int length) throws IOException {
+    this.directory = directory;
+    Files.createDirectories(directory);
+    List<Path> segments = MelodicIndex.listSegments(directory);
+    int existing = segments.isEmpty() ? 0 : MelodicIndex.readLength(segments.get(0));
+    if (length == 0) {
+      length = existing == 0 ? MelodicIndexFormat.DEFAULT_LENGTH : existing;
+    }
+    MelodicIndexFormat.checkLength(length);
+    if (existing != 0 && existing != length) {
+      throw new IOException("The index holds n-grams of length " + existing + ", not " + length);
+    }
+    this.length = length;
+    for (Path segment : segments) {
+      nextSegment = Math.max(nextSegment, segmentNumber(segment) + 1);
+    }
+  }
+
+  /**
+   * <p>Getter for the field <code>length</code>.</p>
+   *
+   * @return the number of steps in each n-gram.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Parses the given piece with a {@link StaccatoParser} and adds its n-grams.
+   *
+   * @param id the id to report the piece by.
+   * @param patternProducer a {@link org.jfugue.pattern.PatternProducer} object.
+   */
+  public void add(String id, PatternProducer patternProducer) {
+    add(id, extract(patternProducer));
+  }
+
+  /**
+   * Parses the given sequence with a {@link MidiParser} and adds its n-grams.
+   *
+   * @param id the id to report the piece by.
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   */
+  public void add(String id, Sequence sequence) {
+    MelodicNgramExtractor extractor = new MelodicNgramExtractor(length);
+    MidiParser parser = new MidiParser();
+    parser.addParserListener(extractor);
+    parser.parse(sequence);
+    add(id, extractor);
+  }
+
+  /**
+   * Parses the given pieces in parallel and adds their n-grams, in the iteration order of the map.
+   *
+   * @param corpus the pieces, by id.
+   */
+  public void addAll(Map<String, ? extends PatternProducer> corpus) {
+    List<String> keys = new ArrayList<>(corpus.keySet());
+    MelodicNgramExtractor[] extractors = keys.parallelStream()
+      .map(key -> extract(corpus.get(key)))
+      .toArray(MelodicNgramExtractor[]::new);
+    for (int i = 0; i < extractors.length; i++) {
+      add(keys.get(i), extractors[i]);
+    }
+  }
+
+  /**
+   * Adds the n-grams found by an extractor that has parsed a piece. The extractor must find n-grams
+   * of this writer's length.
+   *
+   * @param id the id to report the piece by.
+   * @param extractor a {@link org.jfugue.ngram.MelodicNgramExtractor} object.
+   */
+  public synchronized void add(String id, MelodicNgramExtractor extractor) {
+    if (extractor.getLength() != length) {
+      throw new IllegalArgumentException(
+        "Expected n-grams of length " + length + " but got " + extractor.getLength());
+    }
+    if (ids.size() == MelodicIndexFormat.MAX_PIECES) {
+      throw new IllegalStateException("A segment can hold at most "
+        + MelodicIndexFormat.MAX_PIECES + " pieces; commit before adding more");
+    }
+    long piece = MelodicIndexFormat.posting(ids.size(), 0, 0);
+    ids.add(id);
+    for (int i = 0; i < extractor.size(); i++) {
+      postings.computeIfAbsent(extractor.getNgram(i), ngram -> new Postings())
+        .add(piece | extractor.getPosting(i));
+    }
+  }
+
+  /**
+   * Returns the number of pieces added since the last commit.
+   *
+   * @return an int.
+   */
+  public synchronized int getPendingCount() {
+    return ids.size();
+  }
+
+  /**
+   * Writes the pieces added since the last commit to a new segment, and forgets them. Does nothing
+   * if no pieces have been added.
+   *
+   * @throws java.io.IOException if the segment can't be written.
+   */
+  public synchronized void commit() throws IOException {
+    if (ids.isEmpty()) {
+      return;
+    }
+    long[] ngrams = new long[postings.size()];
+    int terms = 0;
+    for (Long ngram : postings.keySet()) {
+      ngrams[terms++] = ngram;
+    }
+    Arrays.sort(ngrams);
+
+    ByteArrayOutputStream encodedPostings = new ByteArrayOutputStream();
+    long[] offsets = new long[terms];
+    for (int t = 0; t < terms; t++) {
+      offsets[t] = encodedPostings.size();
+      Postings list = postings.get(ngrams[t]);
+      long previous = 0;
+      for (int p = 0; p < list.size; p++) {
+        writeVarLong(encodedPostings, list.values[p] - previous);
+        previous = list.values[p];
+      }
+    }
+    ByteArrayOutputStream pieceTable = new ByteArrayOutputStream();
+    DataOutputStream pieceData = new DataOutputStream(pieceTable);
+    for (String id : ids) {
+      byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+      pieceData.writeInt(bytes.length);
+      pieceData.write(bytes);
+    }
+    long pieceTableOffset = MelodicIndexFormat.HEADER_LENGTH
+      + (long) terms * MelodicIndexFormat.DICTIONARY_ENTRY_LENGTH;
+
+    Path temporary = Files.createTempFile(directory, MelodicIndexFormat.SEGMENT_PREFIX, ".tmp");
+    try {
+      try (DataOutputStream data = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        data.write(MelodicIndexFormat.MAGIC);
+        data.writeByte(MelodicIndexFormat.VERSION);
+        data.writeByte(length);
+        data.writeInt(ids.size());
+        data.writeInt(terms);
+        data.writeLong(pieceTableOffset);
+        data.writeLong(pieceTableOffset + pieceTable.size());
+        for (int t = 0; t < terms; t++) {
+          data.writeLong(ngrams[t]);
+          data.writeLong(offsets[t]);
+          data.writeInt(postings.get(ngrams[t]).size);
+        }
+        pieceTable.writeTo(data);
+        encodedPostings.writeTo(data);
+      }
+      Files.move(temporary, directory.resolve(String.format("%s%08d%s",
+        MelodicIndexFormat.SEGMENT_PREFIX, nextSegment, MelodicIndexFormat.SEGMENT_SUFFIX)),
+        StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    nextSegment++;
+    ids.clear();
+    postings.clear();
+  }
+
+  /**
+   * Commits the pieces added since the last commit.
+   *
+   * @throws java.io.IOException if the segment can't be written.
+   */
+  @Override
+  public void close() throws IOException {
+    commit();
+  }
+
+  private MelodicNgramExtractor extract(PatternProducer patternProducer) {
+    MelodicNgramExtractor extractor = new MelodicNgramExtractor(length);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(extractor);
+    parser.parse(patternProducer);
+    return extractor;
+  }
+
+  private static int segmentNumber(Path segment) {
+    String name = segment.getFileName().toString();
+    return Integer.parseInt(name.substring(MelodicIndexFormat.SEGMENT_PREFIX.length(),
+      name.length() - MelodicIndexFormat.SEGMENT_SUFFIX.length()));
+  }
+
+  private static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  /**
+   * The postings of one n-gram, in the order they were added, which is sorted.
+   */
+  private static final class Postings {
+
+    private long[] values = new long[4];
+    private int size;
+
+    private void add(long posting) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = posting;
+    }
+  }
+}
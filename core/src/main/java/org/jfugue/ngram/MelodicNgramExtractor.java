@@ -0,0 +1,253 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.ngram;
+
+import java.util.Arrays;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.tools.TimedNoteListener;
+
+/**
+ * Listens to parsed music and turns the melody of each voice into n-grams of melodic steps. A voice
+ * is a layer of a track. Its melody is the highest note starting at each moment; rests, and notes
+ * on the percussion track, are left out, as {@link TimedNoteListener} leaves them out. Each step
+ * from one melody note to the next records the interval between the notes and the ratio of their
+ * durations, so the n-grams of a melody are the same whatever key and tempo it is played in.
+ *
+ * <p>Notes may arrive in any order within a voice, as they do from {@link
+ * org.jfugue.midi.MidiParser}, which reports each note when it ends; the n-grams are worked out
+ * once parsing has finished. Each n-gram is reported with the voice it was found in and the index,
+ * within the melody of that voice, of the note it starts on.</p>
+ *
+ * <pre>
+ * MelodicNgramExtractor extractor = new MelodicNgramExtractor(4);
+ * StaccatoParser parser = new StaccatoParser();
+ * parser.addParserListener(extractor);
+ * parser.parse("C5q D5q E5q C5q E5i F5i G5h");
+ * for (int i = 0; i &lt; extractor.size(); i++) { ... extractor.getNgram(i) ... }
+ * </pre>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see MelodicIndexWriter
+ */
+public class MelodicNgramExtractor extends TimedNoteListener {
+
+  private static final int VOICES = MidiDefaults.TRACKS * MidiDefaults.LAYERS;
+  private static final double SAME_TIME = 1e-9;
+
+  private final int length;
+  private final Voice[] voices = new Voice[VOICES];
+
+  private long[] ngrams = new long[64];
+  private long[] positions = new long[64];
+  private int size;
+
+  /**
+   * Creates an extractor of n-grams of four steps, which span five notes.
+   */
+  public MelodicNgramExtractor() {
+    this(MelodicIndexFormat.DEFAULT_LENGTH);
+  }
+
+  /**
+   * <p>Constructor for MelodicNgramExtractor.</p>
+   *
+   * @param length the number of steps in each n-gram, from 2 to 5.
+   */
+  public MelodicNgramExtractor(int length) {
+    MelodicIndexFormat.checkLength(length);
+    this.length = length;
+  }
+
+  /**
+   * <p>Getter for the field <code>length</code>.</p>
+   *
+   * @return the number of steps in each n-gram.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the number of n-grams found by the last parse.
+   *
+   * @return an int.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns an n-gram found by the last parse. N-grams come in order of voice, then of the note
+   * they start on.
+   *
+   * @param index an int.
+   * @return the steps of the n-gram, packed into a long.
+   */
+  public long getNgram(int index) {
+    checkIndex(index);
+    return ngrams[index];
+  }
+
+  /**
+   * <p>getTrack.</p>
+   *
+   * @param index an int.
+   * @return the track of the voice the n-gram at the given index was found in.
+   */
+  public int getTrack(int index) {
+    checkIndex(index);
+    return MelodicIndexFormat.voice(positions[index]) / MidiDefaults.LAYERS;
+  }
+
+  /**
+   * <p>getLayer.</p>
+   *
+   * @param index an int.
+   * @return the layer of the voice the n-gram at the given index was found in.
+   */
+  public int getLayer(int index) {
+    checkIndex(index);
+    return MelodicIndexFormat.voice(positions[index]) % MidiDefaults.LAYERS;
+  }
+
+  /**
+   * <p>getNoteIndex.</p>
+   *
+   * @param index an int.
+   * @return the index, in the melody of its voice, of the note the n-gram starts on.
+   */
+  public int getNoteIndex(int index) {
+    checkIndex(index);
+    return MelodicIndexFormat.noteIndex(positions[index]);
+  }
+
+  /**
+   * Returns the voice and note index of an n-gram as a posting of piece zero.
+   */
+  long getPosting(int index) {
+    return positions[index];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    super.beforeParsingStarts();
+    for (Voice voice : voices) {
+      if (voice != null) {
+        voice.count = 0;
+      }
+    }
+    size = 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterParsingFinished() {
+    size = 0;
+    for (int v = 0; v < VOICES; v++) {
+      if (voices[v] != null && voices[v].count > 0) {
+        extract(v, voices[v]);
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void onNoteSounded(int track, int layer, int noteValue, double start,
+    double duration) {
+    int v = track * MidiDefaults.LAYERS + layer;
+    if (voices[v] == null) {
+      voices[v] = new Voice();
+    }
+    voices[v].add(start, noteValue, duration);
+  }
+
+  /**
+   * Sorts the notes of a voice by start time, highest first, keeps the highest note starting at
+   * each time, and adds an n-gram for every run of length + 1 melody notes.
+   */
+  private void extract(int v, Voice voice) {
+    Integer[] order = new Integer[voice.count];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> {
+      int byStart = Double.compare(voice.starts[a], voice.starts[b]);
+      return byStart != 0 ? byStart : Integer.compare(voice.values[b], voice.values[a]);
+    });
+    long ngram = 0;
+    int melodyNotes = 0;
+    int previous = -1;
+    for (int i : order) {
+      if (previous >= 0 && voice.starts[i] - voice.starts[previous] < SAME_TIME) {
+        continue;
+      }
+      if (previous >= 0) {
+        ngram = MelodicIndexFormat.append(ngram, MelodicIndexFormat.symbol(voice.values[previous],
+          voice.durations[previous], voice.values[i], voice.durations[i]), length);
+        if (melodyNotes >= length) {
+          addNgram(ngram, MelodicIndexFormat.posting(0, v, melodyNotes - length));
+        }
+      }
+      previous = i;
+      melodyNotes++;
+    }
+  }
+
+  private void addNgram(long ngram, long position) {
+    if (size == ngrams.length) {
+      ngrams = Arrays.copyOf(ngrams, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    ngrams[size] = ngram;
+    positions[size] = position;
+    size++;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  /**
+   * The notes parsed so far in one voice, in the order they arrived.
+   */
+  private static final class Voice {
+
+    private double[] starts = new double[16];
+    private int[] values = new int[16];
+    private double[] durations = new double[16];
+    private int count;
+
+    private void add(double start, int value, double duration) {
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+        values = Arrays.copyOf(values, count * 2);
+        durations = Arrays.copyOf(durations, count * 2);
+      }
+      starts[count] = start;
+      values[count] = value;
+      durations[count] = duration;
+      count++;
+    }
+  }
+}
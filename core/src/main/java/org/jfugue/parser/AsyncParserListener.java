@@ -0,0 +1,536 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+
+/**
+ * A ParserListener that hands every event to several other listeners, each running on its own
+ * thread, so that converting one parse into several outputs uses several cores.
+ *
+ * <p>Events are written into a ring of pre-allocated slots. Each listener follows the ring at its
+ * own pace, remembering the last slot it has handled; the parser only waits when the ring is full
+ * because the slowest listener is a whole ring behind. {@link #afterParsingFinished()} waits until
+ * every listener has handled every event, so once the parser returns the listeners can be asked
+ * for their results, and any exception thrown by a listener is rethrown there.</p>
+ *
+ * <p>The notes, chords and other objects passed with the events are shared between the listeners,
+ * which must not change them. Events must come from one parser thread at a time. Call
+ * {@link #close()} to stop the listener threads.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class AsyncParserListener implements ParserListener, AutoCloseable {
+
+  /** Constant <code>DEFAULT_BUFFER_SIZE=1024</code> */
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 200;
+  private static final long MIN_PARK_NANOS = 50_000L;
+  private static final long MAX_PARK_NANOS = 4_000_000L;
+  private static final int PARK_DOUBLINGS = 7;
+
+  private final Slot[] slots;
+  private final int mask;
+  private final AtomicLong cursor = new AtomicLong(-1L);
+  private final Consumer[] consumers;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private volatile boolean closed;
+  private long nextSequence;
+  private long gatingSequence = -1L;
+
+  /**
+   * <p>Constructor for AsyncParserListener.</p>
+   *
+   * @param listeners the listeners to hand the events to.
+   */
+  public AsyncParserListener(ParserListener... listeners) {
+    this(DEFAULT_BUFFER_SIZE, listeners);
+  }
+
+  /**
+   * <p>Constructor for AsyncParserListener.</p>
+   *
+   * @param bufferSize the number of slots in the ring, which must be a power of two.
+   * @param listeners the listeners to hand the events to.
+   */
+  public AsyncParserListener(int bufferSize, ParserListener... listeners) {
+    if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+      throw new IllegalArgumentException("The buffer size must be a power of two, not "
+        + bufferSize);
+    }
+    if (listeners.length == 0) {
+      throw new IllegalArgumentException("At least one listener must be given");
+    }
+    this.slots = new Slot[bufferSize];
+    for (int i = 0; i < bufferSize; i++) {
+      slots[i] = new Slot();
+    }
+    this.mask = bufferSize - 1;
+    this.consumers = new Consumer[listeners.length];
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] == null) {
+        throw new IllegalArgumentException("The listeners must not be null");
+      }
+      consumers[i] = new Consumer(listeners[i]);
+    }
+    for (int i = 0; i < consumers.length; i++) {
+      Thread thread = new Thread(consumers[i], "JFugue listener " + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the listener threads once they have handled the events already written. No more events
+   * can be written afterwards.
+   */
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    claim().type = EventType.BEFORE_PARSING_STARTS;
+    publish();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Waits until every listener has handled every event, and rethrows the first exception thrown
+   * by a listener since the last time this was called.</p>
+   */
+  @Override
+  public void afterParsingFinished() {
+    claim().type = EventType.AFTER_PARSING_FINISHED;
+    long sequence = publish();
+    for (int tries = 0; minimumSequence() < sequence; ) {
+      checkOpen();
+      tries = idle(tries);
+    }
+    Throwable throwable = failure.getAndSet(null);
+    if (throwable instanceof RuntimeException) {
+      throw (RuntimeException) throwable;
+    }
+    if (throwable instanceof Error) {
+      throw (Error) throwable;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackChanged(byte track) {
+    Slot slot = claim();
+    slot.type = EventType.TRACK_CHANGED;
+    slot.byte1 = track;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLayerChanged(byte layer) {
+    Slot slot = claim();
+    slot.type = EventType.LAYER_CHANGED;
+    slot.byte1 = layer;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onInstrumentParsed(byte instrument) {
+    Slot slot = claim();
+    slot.type = EventType.INSTRUMENT;
+    slot.byte1 = instrument;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTempoChanged(int tempoBPM) {
+    Slot slot = claim();
+    slot.type = EventType.TEMPO;
+    slot.longValue = tempoBPM;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onKeySignatureParsed(byte key, byte scale) {
+    Slot slot = claim();
+    slot.type = EventType.KEY_SIGNATURE;
+    slot.byte1 = key;
+    slot.byte2 = scale;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
+    Slot slot = claim();
+    slot.type = EventType.TIME_SIGNATURE;
+    slot.byte1 = numerator;
+    slot.byte2 = powerOfTwo;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onBarLineParsed(long id) {
+    Slot slot = claim();
+    slot.type = EventType.BAR_LINE;
+    slot.longValue = id;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarked(String timeBookmarkId) {
+    Slot slot = claim();
+    slot.type = EventType.TRACK_BEAT_TIME_BOOKMARK;
+    slot.object = timeBookmarkId;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarkRequested(String timeBookmarkId) {
+    Slot slot = claim();
+    slot.type = EventType.TRACK_BEAT_TIME_BOOKMARK_REQUESTED;
+    slot.object = timeBookmarkId;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeRequested(double time) {
+    Slot slot = claim();
+    slot.type = EventType.TRACK_BEAT_TIME_REQUESTED;
+    slot.doubleValue = time;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPitchWheelParsed(byte lsb, byte msb) {
+    Slot slot = claim();
+    slot.type = EventType.PITCH_WHEEL;
+    slot.byte1 = lsb;
+    slot.byte2 = msb;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChannelPressureParsed(byte pressure) {
+    Slot slot = claim();
+    slot.type = EventType.CHANNEL_PRESSURE;
+    slot.byte1 = pressure;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPolyphonicPressureParsed(byte key, byte pressure) {
+    Slot slot = claim();
+    slot.type = EventType.POLYPHONIC_PRESSURE;
+    slot.byte1 = key;
+    slot.byte2 = pressure;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onSystemExclusiveParsed(byte... bytes) {
+    Slot slot = claim();
+    slot.type = EventType.SYSTEM_EXCLUSIVE;
+    slot.object = bytes.clone();
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onControllerEventParsed(byte controller, byte value) {
+    Slot slot = claim();
+    slot.type = EventType.CONTROLLER;
+    slot.byte1 = controller;
+    slot.byte2 = value;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLyricParsed(String lyric) {
+    Slot slot = claim();
+    slot.type = EventType.LYRIC;
+    slot.object = lyric;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onMarkerParsed(String marker) {
+    Slot slot = claim();
+    slot.type = EventType.MARKER;
+    slot.object = marker;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onFunctionParsed(String id, Object message) {
+    Slot slot = claim();
+    slot.type = EventType.FUNCTION;
+    slot.object = id;
+    slot.message = message;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNotePressed(Note note) {
+    Slot slot = claim();
+    slot.type = EventType.NOTE_PRESSED;
+    slot.object = note;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteReleased(Note note) {
+    Slot slot = claim();
+    slot.type = EventType.NOTE_RELEASED;
+    slot.object = note;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteParsed(Note note) {
+    Slot slot = claim();
+    slot.type = EventType.NOTE;
+    slot.object = note;
+    publish();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChordParsed(Chord chord) {
+    Slot slot = claim();
+    slot.type = EventType.CHORD;
+    slot.object = chord;
+    publish();
+  }
+
+  /**
+   * Returns the slot for the next event, first waiting for the slowest listener if it has not yet
+   * handled the event last written to that slot.
+   */
+  private Slot claim() {
+    checkOpen();
+    long wrapPoint = nextSequence - slots.length;
+    if (wrapPoint > gatingSequence) {
+      gatingSequence = minimumSequence();
+      for (int tries = 0; wrapPoint > gatingSequence; ) {
+        checkOpen();
+        tries = idle(tries);
+        gatingSequence = minimumSequence();
+      }
+    }
+    return slots[(int) nextSequence & mask];
+  }
+
+  /**
+   * Makes the slot returned by the last claim visible to the listeners, and returns its sequence.
+   */
+  private long publish() {
+    long sequence = nextSequence++;
+    cursor.lazySet(sequence);
+    return sequence;
+  }
+
+  private long minimumSequence() {
+    long minimum = Long.MAX_VALUE;
+    for (Consumer consumer : consumers) {
+      minimum = Math.min(minimum, consumer.sequence.get());
+    }
+    return minimum;
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("The listener has been closed");
+    }
+  }
+
+  /**
+   * Waits a little, spinning at first, then yielding, then sleeping for twice as long each time up
+   * to a few milliseconds, so that short waits are fast and a thread waiting on an empty ring
+   * hardly wakes at all. Returns the number of tries to pass next time.
+   */
+  private static int idle(int tries) {
+    if (tries < SPIN_TRIES) {
+      return tries + 1;
+    }
+    if (tries < YIELD_TRIES) {
+      Thread.yield();
+      return tries + 1;
+    }
+    int doublings = tries - YIELD_TRIES;
+    LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << doublings, MAX_PARK_NANOS));
+    return Math.min(tries + 1, YIELD_TRIES + PARK_DOUBLINGS);
+  }
+
+  /**
+   * One pre-allocated event, overwritten each time the ring comes round.
+   */
+  private static final class Slot {
+    private EventType type;
+    private byte byte1;
+    private byte byte2;
+    private long longValue;
+    private double doubleValue;
+    private Object object;
+    private Object message;
+  }
+
+  /**
+   * Follows the ring on its own thread and hands each event to one listener.
+   */
+  private final class Consumer implements Runnable {
+
+    private final ParserListener listener;
+    private final AtomicLong sequence = new AtomicLong(-1L);
+
+    Consumer(ParserListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void run() {
+      long next = sequence.get() + 1;
+      while (true) {
+        long available = cursor.get();
+        for (int tries = 0; available < next; ) {
+          if (closed) {
+            return;
+          }
+          tries = idle(tries);
+          available = cursor.get();
+        }
+        for (; next <= available; next++) {
+          try {
+            dispatch(slots[(int) next & mask]);
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+        sequence.lazySet(available);
+      }
+    }
+
+    private void dispatch(Slot slot) {
+      switch (slot.type) {
+        case BEFORE_PARSING_STARTS:
+          listener.beforeParsingStarts();
+          break;
+        case AFTER_PARSING_FINISHED:
+          listener.afterParsingFinished();
+          break;
+        case TRACK_CHANGED:
+          listener.onTrackChanged(slot.byte1);
+          break;
+        case LAYER_CHANGED:
+          listener.onLayerChanged(slot.byte1);
+          break;
+        case INSTRUMENT:
+          listener.onInstrumentParsed(slot.byte1);
+          break;
+        case TEMPO:
+          listener.onTempoChanged((int) slot.longValue);
+          break;
+        case KEY_SIGNATURE:
+          listener.onKeySignatureParsed(slot.byte1, slot.byte2);
+          break;
+        case TIME_SIGNATURE:
+          listener.onTimeSignatureParsed(slot.byte1, slot.byte2);
+          break;
+        case BAR_LINE:
+          listener.onBarLineParsed(slot.longValue);
+          break;
+        case TRACK_BEAT_TIME_BOOKMARK:
+          listener.onTrackBeatTimeBookmarked((String) slot.object);
+          break;
+        case TRACK_BEAT_TIME_BOOKMARK_REQUESTED:
+          listener.onTrackBeatTimeBookmarkRequested((String) slot.object);
+          break;
+        case TRACK_BEAT_TIME_REQUESTED:
+          listener.onTrackBeatTimeRequested(slot.doubleValue);
+          break;
+        case PITCH_WHEEL:
+          listener.onPitchWheelParsed(slot.byte1, slot.byte2);
+          break;
+        case CHANNEL_PRESSURE:
+          listener.onChannelPressureParsed(slot.byte1);
+          break;
+        case POLYPHONIC_PRESSURE:
+          listener.onPolyphonicPressureParsed(slot.byte1, slot.byte2);
+          break;
+        case SYSTEM_EXCLUSIVE:
+          listener.onSystemExclusiveParsed(((byte[]) slot.object).clone());
+          break;
+        case CONTROLLER:
+          listener.onControllerEventParsed(slot.byte1, slot.byte2);
+          break;
+        case LYRIC:
+          listener.onLyricParsed((String) slot.object);
+          break;
+        case MARKER:
+          listener.onMarkerParsed((String) slot.object);
+          break;
+        case FUNCTION:
+          listener.onFunctionParsed((String) slot.object, slot.message);
+          break;
+        case NOTE_PRESSED:
+          listener.onNotePressed((Note) slot.object);
+          break;
+        case NOTE_RELEASED:
+          listener.onNoteReleased((Note) slot.object);
+          break;
+        case NOTE:
+          listener.onNoteParsed((Note) slot.object);
+          break;
+        case CHORD:
+          listener.onChordParsed((Chord) slot.object);
+          break;
+        default:
+          throw new IllegalStateException("Unknown event type " + slot.type);
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+/**
+ * A listener that receives parser events a batch at a time, in an {@link EventBatch}, rather than
+ * through one ParserListener call per event. Add it to a parser with
+ * {@link Parser#addBatchParserListener(BatchParserListener)}; the parser hands over a batch when it
+ * is full and when parsing finishes. {@link BatchParserListenerAdapter} lets a ParserListener be
+ * used where a BatchParserListener is expected, and {@link BatchingParserListener} does the
+ * opposite.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface BatchParserListener {
+
+  /**
+   * Called when the parser first starts up, before the first batch.
+   */
+  void beforeParsingStarts();
+
+  /**
+   * Called with each batch of events, in the order they were parsed.
+   *
+   * @param batch the events, which are only valid until this method returns.
+   */
+  void onEventBatch(EventBatch batch);
+
+  /**
+   * Called after the last batch, when the parser has parsed its last item.
+   */
+  void afterParsingFinished();
+}
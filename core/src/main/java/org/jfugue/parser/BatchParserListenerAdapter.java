@@ -0,0 +1,62 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+/**
+ * Adapts a ParserListener to the BatchParserListener interface by calling its method for each
+ * event of each batch.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class BatchParserListenerAdapter implements BatchParserListener {
+
+  private final ParserListener listener;
+
+  /**
+   * <p>Constructor for BatchParserListenerAdapter.</p>
+   *
+   * @param listener a {@link org.jfugue.parser.ParserListener} object.
+   */
+  public BatchParserListenerAdapter(ParserListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("The listener must be given");
+    }
+    this.listener = listener;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    listener.beforeParsingStarts();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onEventBatch(EventBatch batch) {
+    batch.replay(listener);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterParsingFinished() {
+    listener.afterParsingFinished();
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+
+/**
+ * Collects the events it receives as a ParserListener into an {@link EventBatch}, and hands the
+ * batch to a BatchParserListener each time it fills up, when {@link #flush()} is called, and when
+ * parsing finishes.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class BatchingParserListener implements ParserListener {
+
+  private final BatchParserListener listener;
+  private final EventBatch batch;
+
+  /**
+   * <p>Constructor for BatchingParserListener.</p>
+   *
+   * @param listener a {@link org.jfugue.parser.BatchParserListener} object.
+   */
+  public BatchingParserListener(BatchParserListener listener) {
+    this(listener, EventBatch.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * <p>Constructor for BatchingParserListener.</p>
+   *
+   * @param listener a {@link org.jfugue.parser.BatchParserListener} object.
+   * @param capacity the largest number of events in one batch.
+   */
+  public BatchingParserListener(BatchParserListener listener, int capacity) {
+    if (listener == null) {
+      throw new IllegalArgumentException("The listener must be given");
+    }
+    this.listener = listener;
+    this.batch = new EventBatch(capacity);
+  }
+
+  /**
+   * Hands the events collected so far to the listener, if there are any.
+   */
+  public void flush() {
+    if (batch.size() > 0) {
+      try {
+        listener.onEventBatch(batch);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    flush();
+    listener.beforeParsingStarts();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterParsingFinished() {
+    flush();
+    listener.afterParsingFinished();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackChanged(byte track) {
+    add(EventType.TRACK_CHANGED, track, (byte) 0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLayerChanged(byte layer) {
+    add(EventType.LAYER_CHANGED, layer, (byte) 0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onInstrumentParsed(byte instrument) {
+    add(EventType.INSTRUMENT, instrument, (byte) 0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTempoChanged(int tempoBPM) {
+    add(EventType.TEMPO, tempoBPM, 0.0D, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onKeySignatureParsed(byte key, byte scale) {
+    add(EventType.KEY_SIGNATURE, key, scale);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
+    add(EventType.TIME_SIGNATURE, numerator, powerOfTwo);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onBarLineParsed(long id) {
+    add(EventType.BAR_LINE, id, 0.0D, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarked(String timeBookmarkId) {
+    add(EventType.TRACK_BEAT_TIME_BOOKMARK, 0L, 0.0D, timeBookmarkId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarkRequested(String timeBookmarkId) {
+    add(EventType.TRACK_BEAT_TIME_BOOKMARK_REQUESTED, 0L, 0.0D, timeBookmarkId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeRequested(double time) {
+    add(EventType.TRACK_BEAT_TIME_REQUESTED, 0L, time, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPitchWheelParsed(byte lsb, byte msb) {
+    add(EventType.PITCH_WHEEL, lsb, msb);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChannelPressureParsed(byte pressure) {
+    add(EventType.CHANNEL_PRESSURE, pressure, (byte) 0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPolyphonicPressureParsed(byte key, byte pressure) {
+    add(EventType.POLYPHONIC_PRESSURE, key, pressure);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onSystemExclusiveParsed(byte... bytes) {
+    add(EventType.SYSTEM_EXCLUSIVE, 0L, 0.0D, bytes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onControllerEventParsed(byte controller, byte value) {
+    add(EventType.CONTROLLER, controller, value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLyricParsed(String lyric) {
+    add(EventType.LYRIC, 0L, 0.0D, lyric);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onMarkerParsed(String marker) {
+    add(EventType.MARKER, 0L, 0.0D, marker);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onFunctionParsed(String id, Object message) {
+    batch.add(EventType.FUNCTION, (byte) 0, (byte) 0, 0L, 0.0D, id, message);
+    flushIfFull();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNotePressed(Note note) {
+    batch.addNote(EventType.NOTE_PRESSED, note);
+    flushIfFull();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteReleased(Note note) {
+    batch.addNote(EventType.NOTE_RELEASED, note);
+    flushIfFull();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteParsed(Note note) {
+    batch.addNote(EventType.NOTE, note);
+    flushIfFull();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChordParsed(Chord chord) {
+    Note root = chord.getRoot();
+    add(EventType.CHORD, root.getValue(), root.getDuration(), chord);
+  }
+
+  /**
+   * Adds a note event for a note packed by {@link org.jfugue.theory.PackedNote}, leaving the batch
+   * to create a Note only if a listener asks for one. Package scope.
+   */
+  void addPackedNote(EventType type, long packedNote, double duration) {
+    batch.addPackedNote(type, packedNote, duration);
+    flushIfFull();
+  }
+
+  private void add(EventType type, byte firstByte, byte secondByte) {
+    batch.add(type, firstByte, secondByte);
+    flushIfFull();
+  }
+
+  private void add(EventType type, long longValue, double doubleValue, Object object) {
+    batch.add(type, longValue, doubleValue, object);
+    flushIfFull();
+  }
+
+  private void flushIfFull() {
+    if (batch.isFull()) {
+      flush();
+    }
+  }
+}
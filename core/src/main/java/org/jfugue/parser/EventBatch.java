@@ -0,0 +1,371 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+import java.util.Arrays;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+
+/**
+ * A run of parser events stored column by column, handed to a {@link BatchParserListener} in one
+ * call instead of one call per event. Each event has an {@link EventType} and the same set of
+ * columns; which columns hold what depends on the type:
+ *
+ * <ul>
+ * <li>TRACK_CHANGED, LAYER_CHANGED, INSTRUMENT, CHANNEL_PRESSURE: the first byte.</li>
+ * <li>KEY_SIGNATURE, TIME_SIGNATURE, PITCH_WHEEL, POLYPHONIC_PRESSURE, CONTROLLER: the first and
+ * second bytes, in the order the ParserListener method takes them.</li>
+ * <li>TEMPO, BAR_LINE: the long value.</li>
+ * <li>TRACK_BEAT_TIME_REQUESTED: the double value.</li>
+ * <li>TRACK_BEAT_TIME_BOOKMARK, TRACK_BEAT_TIME_BOOKMARK_REQUESTED, LYRIC, MARKER: the
+ * string.</li>
+ * <li>SYSTEM_EXCLUSIVE: the bytes.</li>
+ * <li>FUNCTION: the string holds the id, and the message is separate.</li>
+ * <li>NOTE_PRESSED, NOTE_RELEASED, NOTE: the note, with its value as the long value, its
+ * duration as the double value, and the rest of it in the packed note column, so that simple
+ * statistics can be read from the primitive columns alone. Parsers that fire packed notes leave
+ * the Note to be created the first time {@link #getNote(int)} is called.</li>
+ * <li>CHORD: the chord, with the value and duration of its root.</li>
+ * </ul>
+ *
+ * <p>A batch is reused once its listeners return, so listeners must not keep it.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class EventBatch {
+
+  /** Constant <code>DEFAULT_CAPACITY=256</code> */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private final EventType[] types;
+  private final byte[] firstBytes;
+  private final byte[] secondBytes;
+  private final long[] longValues;
+  private final long[] packedNotes;
+  private final double[] doubleValues;
+  private final Object[] objects;
+  private final Object[] messages;
+  private int size;
+
+  /**
+   * <p>Constructor for EventBatch.</p>
+   *
+   * @param capacity the largest number of events the batch holds.
+   */
+  public EventBatch(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The capacity of a batch must be positive, not "
+        + capacity);
+    }
+    this.types = new EventType[capacity];
+    this.firstBytes = new byte[capacity];
+    this.secondBytes = new byte[capacity];
+    this.longValues = new long[capacity];
+    this.packedNotes = new long[capacity];
+    this.doubleValues = new double[capacity];
+    this.objects = new Object[capacity];
+    this.messages = new Object[capacity];
+  }
+
+  /**
+   * <p>size.</p>
+   *
+   * @return the number of events in the batch.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * <p>capacity.</p>
+   *
+   * @return the largest number of events the batch holds.
+   */
+  public int capacity() {
+    return types.length;
+  }
+
+  /**
+   * <p>getType.</p>
+   *
+   * @param index the index of an event.
+   * @return a {@link org.jfugue.parser.EventType} object.
+   */
+  public EventType getType(int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  /**
+   * <p>getFirstByte.</p>
+   *
+   * @param index the index of an event.
+   * @return a byte.
+   */
+  public byte getFirstByte(int index) {
+    checkIndex(index);
+    return firstBytes[index];
+  }
+
+  /**
+   * <p>getSecondByte.</p>
+   *
+   * @param index the index of an event.
+   * @return a byte.
+   */
+  public byte getSecondByte(int index) {
+    checkIndex(index);
+    return secondBytes[index];
+  }
+
+  /**
+   * <p>getLongValue.</p>
+   *
+   * @param index the index of an event.
+   * @return a long.
+   */
+  public long getLongValue(int index) {
+    checkIndex(index);
+    return longValues[index];
+  }
+
+  /**
+   * <p>getDoubleValue.</p>
+   *
+   * @param index the index of an event.
+   * @return a double.
+   */
+  public double getDoubleValue(int index) {
+    checkIndex(index);
+    return doubleValues[index];
+  }
+
+  /**
+   * <p>getString.</p>
+   *
+   * @param index the index of an event.
+   * @return a {@link java.lang.String} object.
+   */
+  public String getString(int index) {
+    checkIndex(index);
+    return (String) objects[index];
+  }
+
+  /**
+   * <p>getBytes.</p>
+   *
+   * @param index the index of an event.
+   * @return an array of {@link byte} objects.
+   */
+  public byte[] getBytes(int index) {
+    checkIndex(index);
+    return (byte[]) objects[index];
+  }
+
+  /**
+   * <p>getMessage.</p>
+   *
+   * @param index the index of an event.
+   * @return a {@link java.lang.Object} object.
+   */
+  public Object getMessage(int index) {
+    checkIndex(index);
+    return messages[index];
+  }
+
+  /**
+   * <p>getNote.</p>
+   *
+   * @param index the index of an event.
+   * @return a {@link org.jfugue.theory.Note} object.
+   */
+  public Note getNote(int index) {
+    checkIndex(index);
+    if (objects[index] == null) {
+      objects[index] = PackedNote.toNote(packedNotes[index], doubleValues[index]);
+    }
+    return (Note) objects[index];
+  }
+
+  /**
+   * <p>getPackedNote.</p>
+   *
+   * @param index the index of a note event.
+   * @return the note packed by {@link org.jfugue.theory.PackedNote}, without its duration.
+   */
+  public long getPackedNote(int index) {
+    checkIndex(index);
+    return packedNotes[index];
+  }
+
+  /**
+   * <p>getChord.</p>
+   *
+   * @param index the index of an event.
+   * @return a {@link org.jfugue.theory.Chord} object.
+   */
+  public Chord getChord(int index) {
+    checkIndex(index);
+    return (Chord) objects[index];
+  }
+
+  /**
+   * Calls the ParserListener method matching each event in the batch, in order.
+   *
+   * @param listener a {@link org.jfugue.parser.ParserListener} object.
+   */
+  public void replay(ParserListener listener) {
+    for (int i = 0; i < size; i++) {
+      replay(listener, i);
+    }
+  }
+
+  /**
+   * Calls the ParserListener method matching one event of the batch. Batch listeners that handle
+   * the common events themselves can use this for the rest.
+   *
+   * @param listener a {@link org.jfugue.parser.ParserListener} object.
+   * @param index the index of an event.
+   */
+  public void replay(ParserListener listener, int index) {
+    checkIndex(index);
+    switch (types[index]) {
+      case TRACK_CHANGED:
+        listener.onTrackChanged(firstBytes[index]);
+        break;
+      case LAYER_CHANGED:
+        listener.onLayerChanged(firstBytes[index]);
+        break;
+      case INSTRUMENT:
+        listener.onInstrumentParsed(firstBytes[index]);
+        break;
+      case TEMPO:
+        listener.onTempoChanged((int) longValues[index]);
+        break;
+      case KEY_SIGNATURE:
+        listener.onKeySignatureParsed(firstBytes[index], secondBytes[index]);
+        break;
+      case TIME_SIGNATURE:
+        listener.onTimeSignatureParsed(firstBytes[index], secondBytes[index]);
+        break;
+      case BAR_LINE:
+        listener.onBarLineParsed(longValues[index]);
+        break;
+      case TRACK_BEAT_TIME_BOOKMARK:
+        listener.onTrackBeatTimeBookmarked((String) objects[index]);
+        break;
+      case TRACK_BEAT_TIME_BOOKMARK_REQUESTED:
+        listener.onTrackBeatTimeBookmarkRequested((String) objects[index]);
+        break;
+      case TRACK_BEAT_TIME_REQUESTED:
+        listener.onTrackBeatTimeRequested(doubleValues[index]);
+        break;
+      case PITCH_WHEEL:
+        listener.onPitchWheelParsed(firstBytes[index], secondBytes[index]);
+        break;
+      case CHANNEL_PRESSURE:
+        listener.onChannelPressureParsed(firstBytes[index]);
+        break;
+      case POLYPHONIC_PRESSURE:
+        listener.onPolyphonicPressureParsed(firstBytes[index], secondBytes[index]);
+        break;
+      case SYSTEM_EXCLUSIVE:
+        listener.onSystemExclusiveParsed((byte[]) objects[index]);
+        break;
+      case CONTROLLER:
+        listener.onControllerEventParsed(firstBytes[index], secondBytes[index]);
+        break;
+      case LYRIC:
+        listener.onLyricParsed((String) objects[index]);
+        break;
+      case MARKER:
+        listener.onMarkerParsed((String) objects[index]);
+        break;
+      case FUNCTION:
+        listener.onFunctionParsed((String) objects[index], messages[index]);
+        break;
+      case NOTE_PRESSED:
+        listener.onNotePressed(getNote(index));
+        break;
+      case NOTE_RELEASED:
+        listener.onNoteReleased(getNote(index));
+        break;
+      case NOTE:
+        listener.onNoteParsed(getNote(index));
+        break;
+      case CHORD:
+        listener.onChordParsed((Chord) objects[index]);
+        break;
+      default:
+        throw new IllegalStateException("Unknown event type " + types[index]);
+    }
+  }
+
+  boolean isFull() {
+    return size == types.length;
+  }
+
+  void add(EventType type, byte firstByte, byte secondByte) {
+    add(type, firstByte, secondByte, 0L, 0.0D, null, null);
+  }
+
+  void add(EventType type, long longValue, double doubleValue, Object object) {
+    add(type, (byte) 0, (byte) 0, longValue, doubleValue, object, null);
+  }
+
+  void add(EventType type, byte firstByte, byte secondByte, long longValue, double doubleValue,
+    Object object, Object message) {
+    types[size] = type;
+    firstBytes[size] = firstByte;
+    secondBytes[size] = secondByte;
+    longValues[size] = longValue;
+    doubleValues[size] = doubleValue;
+    objects[size] = object;
+    messages[size] = message;
+    size++;
+  }
+
+  void addNote(EventType type, Note note) {
+    add(type, note.getValue(), note.getDuration(), note);
+    packedNotes[size - 1] = PackedNote.pack(note);
+  }
+
+  void addPackedNote(EventType type, long packedNote, double duration) {
+    add(type, PackedNote.getValue(packedNote), duration, null);
+    packedNotes[size - 1] = packedNote;
+  }
+
+  /**
+   * Empties the batch, dropping its references to notes, chords and strings.
+   */
+  void clear() {
+    Arrays.fill(objects, 0, size, null);
+    Arrays.fill(messages, 0, size, null);
+    size = 0;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+  }
+}
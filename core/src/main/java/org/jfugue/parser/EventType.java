@@ -0,0 +1,39 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+/**
+ * The kinds of event a parser fires, one for each {@link ParserListener} callback. Whatever holds
+ * events to replay later, such as {@link EventBatch}, {@link AsyncParserListener} and {@link
+ * org.jfugue.transform.MusicEvents}, tags them with these. Neither EventBatch nor MusicEvents
+ * holds BEFORE_PARSING_STARTS or AFTER_PARSING_FINISHED, and MusicEvents holds no TRACK_CHANGED or
+ * LAYER_CHANGED, since each of its events knows its own track and layer.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public enum EventType {
+  NOTE, NOTE_PRESSED, NOTE_RELEASED, CHORD,
+  TEMPO, INSTRUMENT, CONTROLLER, PITCH_WHEEL, CHANNEL_PRESSURE, POLYPHONIC_PRESSURE,
+  SYSTEM_EXCLUSIVE, KEY_SIGNATURE, TIME_SIGNATURE, BAR_LINE,
+  TRACK_BEAT_TIME_BOOKMARK, TRACK_BEAT_TIME_BOOKMARK_REQUESTED, TRACK_BEAT_TIME_REQUESTED,
+  LYRIC, MARKER, FUNCTION,
+  TRACK_CHANGED, LAYER_CHANGED, BEFORE_PARSING_STARTS, AFTER_PARSING_FINISHED
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.jfugue.theory.Chord;
 import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
 
 /**
  * <p>Parser class.</p>
@@ -33,12 +34,15 @@ import org.jfugue.theory.Note;
 public class Parser {
 
   private final CopyOnWriteArrayList<ParserListener> parserListeners;
+  private final CopyOnWriteArrayList<BatchParserListener> batchParserListeners;
+  private BatchingParserListener batching;
 
   /**
    * <p>Constructor for Parser.</p>
    */
   protected Parser() {
     parserListeners = new CopyOnWriteArrayList<>();
+    batchParserListeners = new CopyOnWriteArrayList<>();
   }
 
   /**
@@ -63,11 +67,53 @@ public class Parser {
     return parserListeners;
   }
 
+  /**
+   * Adds a listener that receives the events in batches. All batch listeners share one batch,
+   * which is handed over when it is full, when parsing finishes, and when
+   * {@link #flushEventBatch()} is called.
+   *
+   * @param listener a {@link org.jfugue.parser.BatchParserListener} object.
+   */
+  public void addBatchParserListener(BatchParserListener listener) {
+    if (batching == null) {
+      batching = new BatchingParserListener(new BatchFanOut());
+    }
+    batchParserListeners.add(listener);
+  }
+
+  /**
+   * Removes a batch listener, first handing it the events collected so far. Once the last batch
+   * listener is gone, events are no longer collected.
+   *
+   * @param listener a {@link org.jfugue.parser.BatchParserListener} object.
+   */
+  public void removeBatchParserListener(BatchParserListener listener) {
+    flushEventBatch();
+    batchParserListeners.remove(listener);
+    if (batchParserListeners.isEmpty()) {
+      batching = null;
+    }
+  }
+
+  /**
+   * Hands the events collected so far to the batch listeners. Parsers that fire events outside of
+   * a parse, such as one fed by a MIDI device, call this to deliver them without waiting for the
+   * batch to fill up.
+   */
+  public void flushEventBatch() {
+    if (batching != null) {
+      batching.flush();
+    }
+  }
+
   /**
    * <p>clearParserListeners.</p>
    */
   public void clearParserListeners() {
+    flushEventBatch();
     this.parserListeners.clear();
+    this.batchParserListeners.clear();
+    this.batching = null;
   }
 
   //
@@ -82,6 +128,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.beforeParsingStarts();
     }
+    if (batching != null) {
+      batching.beforeParsingStarts();
+    }
   }
 
   /**
@@ -92,6 +141,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.afterParsingFinished();
     }
+    if (batching != null) {
+      batching.afterParsingFinished();
+    }
   }
 
   /**
@@ -104,6 +156,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onTrackChanged(track);
     }
+    if (batching != null) {
+      batching.onTrackChanged(track);
+    }
   }
 
   /**
@@ -116,6 +171,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onLayerChanged(layer);
     }
+    if (batching != null) {
+      batching.onLayerChanged(layer);
+    }
   }
 
   /**
@@ -128,6 +186,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onInstrumentParsed(instrument);
     }
+    if (batching != null) {
+      batching.onInstrumentParsed(instrument);
+    }
   }
 
   /**
@@ -140,6 +201,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onTempoChanged(tempoBPM);
     }
+    if (batching != null) {
+      batching.onTempoChanged(tempoBPM);
+    }
   }
 
   /**
@@ -153,6 +217,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onKeySignatureParsed(key, scale);
     }
+    if (batching != null) {
+      batching.onKeySignatureParsed(key, scale);
+    }
   }
 
   /**
@@ -166,6 +233,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onTimeSignatureParsed(numerator, powerOfTwo);
     }
+    if (batching != null) {
+      batching.onTimeSignatureParsed(numerator, powerOfTwo);
+    }
   }
 
   /**
@@ -178,6 +248,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onBarLineParsed(id);
     }
+    if (batching != null) {
+      batching.onBarLineParsed(id);
+    }
   }
 
   /**
@@ -190,6 +263,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onTrackBeatTimeBookmarked(timeBookmarkId);
     }
+    if (batching != null) {
+      batching.onTrackBeatTimeBookmarked(timeBookmarkId);
+    }
   }
 
   /**
@@ -202,6 +278,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onTrackBeatTimeBookmarkRequested(timeBookmarkId);
     }
+    if (batching != null) {
+      batching.onTrackBeatTimeBookmarkRequested(timeBookmarkId);
+    }
   }
 
   /**
@@ -214,6 +293,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onTrackBeatTimeRequested(time);
     }
+    if (batching != null) {
+      batching.onTrackBeatTimeRequested(time);
+    }
   }
 
   /**
@@ -227,6 +309,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onPitchWheelParsed(lsb, msb);
     }
+    if (batching != null) {
+      batching.onPitchWheelParsed(lsb, msb);
+    }
   }
 
   /**
@@ -239,6 +324,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onChannelPressureParsed(pressure);
     }
+    if (batching != null) {
+      batching.onChannelPressureParsed(pressure);
+    }
   }
 
   /**
@@ -252,6 +340,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onPolyphonicPressureParsed(key, pressure);
     }
+    if (batching != null) {
+      batching.onPolyphonicPressureParsed(key, pressure);
+    }
   }
 
   /**
@@ -264,6 +355,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onSystemExclusiveParsed(bytes);
     }
+    if (batching != null) {
+      batching.onSystemExclusiveParsed(bytes);
+    }
   }
 
   /**
@@ -277,6 +371,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onControllerEventParsed(controller, value);
     }
+    if (batching != null) {
+      batching.onControllerEventParsed(controller, value);
+    }
   }
 
   /**
@@ -289,6 +386,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onLyricParsed(lyric);
     }
+    if (batching != null) {
+      batching.onLyricParsed(lyric);
+    }
   }
 
   /**
@@ -301,6 +401,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onMarkerParsed(marker);
     }
+    if (batching != null) {
+      batching.onMarkerParsed(marker);
+    }
   }
 
   /**
@@ -314,6 +417,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onFunctionParsed(id, message);
     }
+    if (batching != null) {
+      batching.onFunctionParsed(id, message);
+    }
   }
 
   /**
@@ -326,6 +432,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onNotePressed(note);
     }
+    if (batching != null) {
+      batching.onNotePressed(note);
+    }
   }
 
   /**
@@ -338,6 +447,9 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onNoteReleased(note);
     }
+    if (batching != null) {
+      batching.onNoteReleased(note);
+    }
   }
 
   /**
@@ -350,6 +462,70 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onNoteParsed(note);
     }
+    if (batching != null) {
+      batching.onNoteParsed(note);
+    }
+  }
+
+  /**
+   * Fires a note pressed event for a note packed by {@link org.jfugue.theory.PackedNote}. A Note is
+   * only created if there are listeners that receive events one at a time; batch listeners get the
+   * packed note as it is.
+   *
+   * @param packedNote a long.
+   * @param duration a double.
+   */
+  protected void firePackedNotePressed(long packedNote, double duration) {
+    List<ParserListener> listeners = getParserListeners();
+    if (!listeners.isEmpty()) {
+      Note note = PackedNote.toNote(packedNote, duration);
+      for (ParserListener listener : listeners) {
+        listener.onNotePressed(note);
+      }
+    }
+    if (batching != null) {
+      batching.addPackedNote(EventType.NOTE_PRESSED, packedNote, duration);
+    }
+  }
+
+  /**
+   * Fires a note released event for a note packed by {@link org.jfugue.theory.PackedNote}, creating
+   * a Note only for listeners that receive events one at a time.
+   *
+   * @param packedNote a long.
+   * @param duration a double.
+   */
+  protected void firePackedNoteReleased(long packedNote, double duration) {
+    List<ParserListener> listeners = getParserListeners();
+    if (!listeners.isEmpty()) {
+      Note note = PackedNote.toNote(packedNote, duration);
+      for (ParserListener listener : listeners) {
+        listener.onNoteReleased(note);
+      }
+    }
+    if (batching != null) {
+      batching.addPackedNote(EventType.NOTE_RELEASED, packedNote, duration);
+    }
+  }
+
+  /**
+   * Fires a note parsed event for a note packed by {@link org.jfugue.theory.PackedNote}, creating a
+   * Note only for listeners that receive events one at a time.
+   *
+   * @param packedNote a long.
+   * @param duration a double.
+   */
+  protected void firePackedNoteParsed(long packedNote, double duration) {
+    List<ParserListener> listeners = getParserListeners();
+    if (!listeners.isEmpty()) {
+      Note note = PackedNote.toNote(packedNote, duration);
+      for (ParserListener listener : listeners) {
+        listener.onNoteParsed(note);
+      }
+    }
+    if (batching != null) {
+      batching.addPackedNote(EventType.NOTE, packedNote, duration);
+    }
   }
 
   /**
@@ -362,6 +538,35 @@ public class Parser {
     for (ParserListener listener : listeners) {
       listener.onChordParsed(chord);
     }
+    if (batching != null) {
+      batching.onChordParsed(chord);
+    }
   }
 
+  /**
+   * Hands each batch to every batch listener.
+   */
+  private final class BatchFanOut implements BatchParserListener {
+
+    @Override
+    public void beforeParsingStarts() {
+      for (BatchParserListener listener : batchParserListeners) {
+        listener.beforeParsingStarts();
+      }
+    }
+
+    @Override
+    public void onEventBatch(EventBatch batch) {
+      for (BatchParserListener listener : batchParserListeners) {
+        listener.onEventBatch(batch);
+      }
+    }
+
+    @Override
+    public void afterParsingFinished() {
+      for (BatchParserListener listener : batchParserListeners) {
+        listener.afterParsingFinished();
+      }
+    }
+  }
 }
@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import org.jfugue.midi.MidiDefaults;
 import org.jfugue.midi.MidiDictionary;
@@ -44,7 +45,13 @@ import org.staccato.TempoSubparser;
 public class Pattern implements PatternProducer, TokenProducer {
 
   private static final int UNDECLARED_EXPLICIT = -1;
-  private StringBuilder patternSB;
+  private static final ThreadLocal<StaccatoParserPatternHelper> HELPER =
+    ThreadLocal.withInitial(StaccatoParserPatternHelper::new);
+  private Rope contents;
+  private ArrayList<Token> tokens;
+  private Rope tokenizedContents;
+  private int tokenizedVersion;
+  private boolean tokensSelfContained;
   private int explicitVoice = UNDECLARED_EXPLICIT;
   private int explicitLayer = UNDECLARED_EXPLICIT;
   private int explicitInstrument = UNDECLARED_EXPLICIT;
@@ -54,7 +61,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    * <p>Constructor for Pattern.</p>
    */
   public Pattern() {
-    patternSB = new StringBuilder();
+    contents = Rope.EMPTY;
   }
 
   /**
@@ -63,8 +70,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @param string a {@link java.lang.String} object.
    */
   public Pattern(String string) {
-    this();
-    patternSB.append(string);
+    contents = Rope.of(string);
   }
 
   /**
@@ -73,11 +79,12 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @param strings a {@link java.lang.String} object.
    */
   public Pattern(String... strings) {
-    this();
+    StringBuilder builder = new StringBuilder();
     for (String string : strings) {
-      patternSB.append(string);
-      patternSB.append(" ");
+      builder.append(string);
+      builder.append(" ");
     }
+    contents = Rope.of(builder.toString());
   }
 
   /**
@@ -111,14 +118,17 @@ public class Pattern implements PatternProducer, TokenProducer {
   }
 
   /**
-   * <p>add.</p>
+   * Adds each producer to the end of this pattern. The contents of a producer's pattern are shared
+   * rather than copied, so adding a large pattern, or the same pattern many times, is cheap;
+   * changing the producer's pattern afterwards does not change this one.
    *
    * @param producers a {@link org.jfugue.pattern.PatternProducer} object.
    * @return a {@link org.jfugue.pattern.Pattern} object.
    */
   public Pattern add(PatternProducer... producers) {
     for (PatternProducer producer : producers) {
-      this.add(producer.getPattern().toString());
+      Pattern pattern = producer.getPattern();
+      this.add(pattern.toRope(), pattern.selfContainedTokens());
     }
     return this;
   }
@@ -130,13 +140,51 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @return a {@link org.jfugue.pattern.Pattern} object.
    */
   public Pattern add(String string) {
-    if (patternSB.length() > 0) {
-      patternSB.append(" ");
+    return this.add(Rope.of(string), null);
+  }
+
+  /**
+   * Adds the given rope to the end of this pattern. If this pattern's tokens are known, the tokens
+   * of the rope, passed in or found here, are added to them.
+   */
+  private Pattern add(Rope rope, List<Token> ropeTokens) {
+    boolean tokensKnown = canUpdateTokens();
+    boolean wasEmpty = contents.length() == 0;
+    if (!wasEmpty) {
+      contents = contents.concat(Rope.SPACE);
+    }
+    contents = contents.concat(rope);
+    if (tokensKnown) {
+      if (ropeTokens == null) {
+        ropeTokens = selfContainedTokens(rope);
+      }
+      if (ropeTokens == null) {
+        tokens = null;
+      } else {
+        if (wasEmpty && !hasExplicitSettings()) {
+          tokens.clear();
+        }
+        tokens.addAll(ropeTokens);
+        tokenizedContents = contents;
+      }
     }
-    patternSB.append(string);
     return this;
   }
 
+  /**
+   * Adds the given rope the given number of times. A non-empty rope is repeated by doubling, so
+   * the copies share their nodes.
+   */
+  private Pattern add(Rope rope, int repetitions) {
+    if (rope.length() == 0) {
+      for (int i = 0; i < repetitions; i++) {
+        this.add(rope, null);
+      }
+      return this;
+    }
+    return repetitions > 0 ? this.add(rope.repeat(repetitions), null) : this;
+  }
+
   /**
    * <p>add.</p>
    *
@@ -145,10 +193,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @return a {@link org.jfugue.pattern.Pattern} object.
    */
   public Pattern add(PatternProducer producer, int repetitions) {
-    for (int i = 0; i < repetitions; i++) {
-      this.add(producer);
-    }
-    return this;
+    return this.add(producer.getPattern().toRope(), repetitions);
   }
 
   /**
@@ -159,10 +204,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @return a {@link org.jfugue.pattern.Pattern} object.
    */
   public Pattern add(String string, int repetitions) {
-    for (int i = 0; i < repetitions; i++) {
-      this.add(string);
-    }
-    return this;
+    return this.add(Rope.of(string), repetitions);
   }
 
   /**
@@ -173,25 +215,32 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @return the resulting pattern
    */
   public Pattern prepend(PatternProducer... producers) {
-    StringBuilder temp = new StringBuilder();
+    Rope temp = Rope.EMPTY;
     for (PatternProducer producer : producers) {
-      temp.append(producer.getPattern().toString());
-      temp.append(" ");
+      temp = temp.concat(producer.getPattern().toRope()).concat(Rope.SPACE);
     }
-    this.prepend(temp.toString().trim());
+    this.prepend(temp.trim());
     return this;
   }
 
   /**
-   * Inserts the given string to the beginning of this pattern. If there is content in this pattern
-   * already, this method will insert a space between the given string and this pattern so the
+   * Inserts the given rope to the beginning of this pattern. If there is content in this pattern
+   * already, this method will insert a space between the given rope and this pattern so the
    * tokens remain separate.
    */
-  private Pattern prepend(String string) {
-    if (patternSB.length() > 0) {
-      patternSB.insert(0, " ");
+  private Pattern prepend(Rope rope) {
+    if (contents.length() == 0) {
+      return this.add(rope, null);
+    }
+    List<Token> ropeTokens = canUpdateTokens() && !hasExplicitSettings()
+      ? selfContainedTokens(rope) : null;
+    contents = rope.concat(Rope.SPACE.concat(contents));
+    if (ropeTokens == null) {
+      tokens = null;
+    } else {
+      tokens.addAll(0, ropeTokens);
+      tokenizedContents = contents;
     }
-    patternSB.insert(0, string);
     return this;
   }
 
@@ -201,7 +250,8 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @return a {@link org.jfugue.pattern.Pattern} object.
    */
   public Pattern clear() {
-    patternSB.delete(0, patternSB.length());
+    contents = Rope.EMPTY;
+    tokens = null;
     return this;
   }
 
@@ -212,11 +262,19 @@ public class Pattern implements PatternProducer, TokenProducer {
    * @return a {@link org.jfugue.pattern.Pattern} object.
    */
   public Pattern repeat(int n) {
-    Pattern p2 = new Pattern();
-    for (int i = 0; i < n; i++) {
-      p2.add(this.patternSB.toString());
+    boolean tokensKnown = canUpdateTokens() && !hasExplicitSettings() && contents.length() > 0
+      && n > 0;
+    this.contents = contents.repeat(n);
+    if (tokensKnown) {
+      ArrayList<Token> repeated = new ArrayList<>(tokens.size() * n);
+      for (int i = 0; i < n; i++) {
+        repeated.addAll(tokens);
+      }
+      tokens = repeated;
+      tokenizedContents = contents;
+    } else {
+      tokens = null;
     }
-    this.patternSB = p2.patternSB;
     return this;
   }
 
@@ -239,7 +297,8 @@ public class Pattern implements PatternProducer, TokenProducer {
       "" + IVLSubparser.INSTRUMENT + valueOrZero(this.explicitInstrument);
 
     // Clear the current contents of pattern (except for Tempo)
-    this.patternSB.delete(0, this.patternSB.length());
+    this.contents = Rope.EMPTY;
+    this.tokens = null;
     this.explicitVoice = UNDECLARED_EXPLICIT;
     this.explicitLayer = UNDECLARED_EXPLICIT;
     this.explicitInstrument = UNDECLARED_EXPLICIT;
@@ -294,11 +353,66 @@ public class Pattern implements PatternProducer, TokenProducer {
    * Explicit setters for tempo, voice, and instrument
    */
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * The tokens are worked out once and kept until the pattern changes or a preprocessor is
+   * configured differently. When music is added to, prepended to or repeated in a pattern whose
+   * tokens are known, and the music cannot affect the tokens around it (see {@link
+   * StaccatoParserPatternHelper#isSelfContained(CharSequence)}), only the new music is tokenized.
+   * Each call returns a new list. Changes made to a replacement map after it has been given to the
+   * ReplacementMapPreprocessor are not noticed.
+   */
   @Override
   public List<Token> getTokens() {
-    StaccatoParserPatternHelper spph = new StaccatoParserPatternHelper();
-    return spph.getTokens(this.getPattern());
+    if (!tokensValid()) {
+      String string = this.toString();
+      tokens = new ArrayList<>(HELPER.get().getTokens(string));
+      tokenizedContents = contents;
+      tokenizedVersion = StaccatoParserPatternHelper.getConfigurationVersion();
+      tokensSelfContained = contents.length() == 0
+        || HELPER.get().isSelfContained(string.substring(string.length() - contents.length()));
+    }
+    return new ArrayList<>(tokens);
+  }
+
+  private boolean tokensValid() {
+    return tokens != null && tokenizedContents == contents
+      && tokenizedVersion == StaccatoParserPatternHelper.getConfigurationVersion();
+  }
+
+  /**
+   * Tells whether the tokens are known and the contents are such that new music can be tokenized
+   * on its own and joined to them.
+   */
+  private boolean canUpdateTokens() {
+    if (!tokensValid()) {
+      tokens = null;
+      return false;
+    }
+    return tokensSelfContained;
+  }
+
+  /**
+   * Returns the tokens of this pattern if they are known and the pattern has no explicit settings
+   * and is self-contained; otherwise null.
+   */
+  private List<Token> selfContainedTokens() {
+    return tokensValid() && tokensSelfContained && !hasExplicitSettings() && contents.length() > 0
+      ? tokens : null;
+  }
+
+  /**
+   * Tokenizes the given rope if it is self-contained; otherwise returns null.
+   */
+  private static List<Token> selfContainedTokens(Rope rope) {
+    String string = rope.toString();
+    return HELPER.get().isSelfContained(string) ? HELPER.get().getTokens(string) : null;
+  }
+
+  private boolean hasExplicitSettings() {
+    return explicitTempo != UNDECLARED_EXPLICIT || explicitVoice != UNDECLARED_EXPLICIT
+      || explicitLayer != UNDECLARED_EXPLICIT || explicitInstrument != UNDECLARED_EXPLICIT;
   }
 
   /**
@@ -308,6 +422,24 @@ public class Pattern implements PatternProducer, TokenProducer {
    */
   public String toString() {
     StringBuilder b2 = new StringBuilder();
+    appendExplicitSettings(b2);
+
+    // Now add the actual contents of the pattern!
+    contents.appendTo(b2);
+
+    return b2.toString();
+  }
+
+  /**
+   * Returns what toString() would, without copying the contents of the pattern.
+   */
+  Rope toRope() {
+    StringBuilder b2 = new StringBuilder();
+    appendExplicitSettings(b2);
+    return Rope.of(b2.toString()).concat(contents);
+  }
+
+  private void appendExplicitSettings(StringBuilder b2) {
 
     // Add the explicit tempo, if one has been provided
     if (explicitTempo != UNDECLARED_EXPLICIT) {
@@ -337,11 +469,6 @@ public class Pattern implements PatternProducer, TokenProducer {
       b2.append(MidiDictionary.INSTRUMENT_BYTE_TO_STRING.get((byte) explicitInstrument));
       b2.append("] ");
     }
-
-    // Now add the actual contents of the pattern!
-    b2.append(patternSB);
-
-    return b2.toString();
   }
 
   /**
@@ -356,6 +483,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    */
   public Pattern setTempo(int explicitTempo) {
     this.explicitTempo = explicitTempo;
+    this.tokens = null;
     return this;
   }
 
@@ -390,6 +518,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    */
   public Pattern setVoice(int voice) {
     this.explicitVoice = voice;
+    this.tokens = null;
     return this;
   }
 
@@ -406,6 +535,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    */
   public Pattern setLayer(int layer) {
     this.explicitLayer = layer;
+    this.tokens = null;
     return this;
   }
 
@@ -426,6 +556,7 @@ public class Pattern implements PatternProducer, TokenProducer {
    */
   public Pattern setInstrument(int instrument) {
     this.explicitInstrument = instrument;
+    this.tokens = null;
     return this;
   }
 
@@ -475,17 +606,36 @@ public class Pattern implements PatternProducer, TokenProducer {
     StringBuilder b2 = new StringBuilder();
 
     List<Token> tokens = this.getTokens();
+    boolean tokensKnown = canUpdateTokens() && !hasExplicitSettings();
+    ArrayList<Token> newTokens = tokensKnown ? new ArrayList<>(tokens.size()) : null;
     for (Token token : tokens) {
       if (token.getType() == TokenType.NOTE) {
-        b2.append(token);
-        b2.append(decorators[currentDecorator++ % decorators.length]);
+        String decorated = token + decorators[currentDecorator++ % decorators.length];
+        b2.append(decorated);
+        if (tokensKnown) {
+          List<Token> decoratedTokens = HELPER.get().getTokens(decorated);
+          tokensKnown = decoratedTokens.size() == 1;
+          if (tokensKnown) {
+            newTokens.add(decoratedTokens.get(0));
+          }
+        }
       } else {
         b2.append(token);
+        if (tokensKnown) {
+          newTokens.add(token);
+        }
       }
       b2.append(" ");
     }
 
-    this.patternSB = new StringBuilder(b2.toString().trim());
+    String result = b2.toString().trim();
+    this.contents = Rope.of(result);
+    if (tokensKnown && HELPER.get().isSelfContained(result)) {
+      this.tokens = newTokens;
+      this.tokenizedContents = contents;
+    } else {
+      this.tokens = null;
+    }
     return this;
   }
 
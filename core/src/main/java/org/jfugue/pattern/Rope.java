@@ -0,0 +1,272 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.pattern;
+
+/**
+ * An immutable string made of shared segments, used by Pattern to hold its contents. Concatenating
+ * two ropes builds a new node over them instead of copying characters, and the nodes are kept
+ * height-balanced, so appending, prepending and repeating all take time logarithmic in the length
+ * of the result. Ropes never change, so one rope can be part of many patterns at once. The
+ * characters are only copied out when {@link #toString()} or {@link #appendTo(StringBuilder)} is
+ * called. Package scope.
+ *
+ * @author fmatar
+ */
+abstract class Rope implements CharSequence {
+
+  /**
+   * Short leaves are merged when concatenated so that building a pattern one token at a time does
+   * not leave a node per token.
+   */
+  static final int LEAF_LENGTH = 256;
+
+  static final Rope EMPTY = new Leaf("");
+  static final Rope SPACE = new Leaf(" ");
+
+  private Rope() {
+  }
+
+  /**
+   * <p>of.</p>
+   *
+   * @param string a {@link java.lang.String} object.
+   * @return a rope holding the given string.
+   */
+  static Rope of(String string) {
+    return string.isEmpty() ? EMPTY : new Leaf(string);
+  }
+
+  abstract int height();
+
+  /**
+   * Copies the characters of this rope to the end of the given builder.
+   */
+  abstract void appendTo(StringBuilder builder);
+
+  /**
+   * Returns a rope holding this rope followed by the given one.
+   */
+  Rope concat(Rope other) {
+    return join(this, other);
+  }
+
+  /**
+   * Returns n copies of this rope separated by single spaces, built by repeated doubling so the
+   * copies share their nodes. Returns the empty rope if this rope is empty or n is not positive.
+   */
+  Rope repeat(int n) {
+    if (n <= 0 || length() == 0) {
+      return EMPTY;
+    }
+    Rope result = null;
+    Rope unit = this;
+    while (true) {
+      if ((n & 1) != 0) {
+        result = result == null ? unit : join(result, join(SPACE, unit));
+      }
+      n >>>= 1;
+      if (n == 0) {
+        return result;
+      }
+      unit = join(unit, join(SPACE, unit));
+    }
+  }
+
+  /**
+   * Returns this rope without leading or trailing whitespace, as {@link String#trim()} would.
+   */
+  Rope trim() {
+    int start = 0;
+    int end = length();
+    while (start < end && charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return subSequence(start, end);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public abstract Rope subSequence(int start, int end);
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(length());
+    appendTo(builder);
+    return builder.toString();
+  }
+
+  private static Rope join(Rope left, Rope right) {
+    if (left.length() == 0) {
+      return right;
+    }
+    if (right.length() == 0) {
+      return left;
+    }
+    if (left instanceof Leaf && right instanceof Leaf
+      && left.length() + right.length() <= LEAF_LENGTH) {
+      return new Leaf(((Leaf) left).string + ((Leaf) right).string);
+    }
+    if (left.height() > right.height() + 1) {
+      Node node = (Node) left;
+      return balance(node.left, join(node.right, right));
+    }
+    if (right.height() > left.height() + 1) {
+      Node node = (Node) right;
+      return balance(join(left, node.left), node.right);
+    }
+    return new Node(left, right);
+  }
+
+  /**
+   * Joins two ropes whose heights differ by at most two, rotating as an AVL tree would to bring the
+   * difference back to at most one.
+   */
+  private static Rope balance(Rope left, Rope right) {
+    if (right.height() > left.height() + 1) {
+      Node node = (Node) right;
+      if (node.left.height() > node.right.height()) {
+        Node inner = (Node) node.left;
+        return new Node(new Node(left, inner.left), new Node(inner.right, node.right));
+      }
+      return new Node(new Node(left, node.left), node.right);
+    }
+    if (left.height() > right.height() + 1) {
+      Node node = (Node) left;
+      if (node.right.height() > node.left.height()) {
+        Node inner = (Node) node.right;
+        return new Node(new Node(node.left, inner.left), new Node(inner.right, right));
+      }
+      return new Node(node.left, new Node(node.right, right));
+    }
+    return new Node(left, right);
+  }
+
+  private static final class Leaf extends Rope {
+
+    private final String string;
+
+    Leaf(String string) {
+      this.string = string;
+    }
+
+    @Override
+    int height() {
+      return 0;
+    }
+
+    @Override
+    void appendTo(StringBuilder builder) {
+      builder.append(string);
+    }
+
+    @Override
+    public int length() {
+      return string.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      return string.charAt(index);
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+      return start == 0 && end == string.length() ? this : of(string.substring(start, end));
+    }
+
+    @Override
+    public String toString() {
+      return string;
+    }
+  }
+
+  private static final class Node extends Rope {
+
+    private final Rope left;
+    private final Rope right;
+    private final int length;
+    private final int height;
+
+    Node(Rope left, Rope right) {
+      this.left = left;
+      this.right = right;
+      this.length = left.length() + right.length();
+      if (this.length < 0) {
+        throw new IllegalArgumentException("A pattern cannot hold more than "
+          + Integer.MAX_VALUE + " characters");
+      }
+      this.height = Math.max(left.height(), right.height()) + 1;
+    }
+
+    @Override
+    int height() {
+      return height;
+    }
+
+    @Override
+    void appendTo(StringBuilder builder) {
+      left.appendTo(builder);
+      right.appendTo(builder);
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      Rope rope = this;
+      while (rope instanceof Node) {
+        Node node = (Node) rope;
+        if (index < node.left.length()) {
+          rope = node.left;
+        } else {
+          index -= node.left.length();
+          rope = node.right;
+        }
+      }
+      return rope.charAt(index);
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length "
+          + length);
+      }
+      if (start == 0 && end == length) {
+        return this;
+      }
+      int split = left.length();
+      if (end <= split) {
+        return left.subSequence(start, end);
+      }
+      if (start >= split) {
+        return right.subSequence(start - split, end - split);
+      }
+      return join(left.subSequence(start, split), right.subSequence(0, end - split));
+    }
+  }
+}
@@ -24,7 +24,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
 import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Transmitter;
+import org.jfugue.midi.MeasureIndex;
 
 /**
  * This is player that can be "managed" - e.g., started, stopped, paused, resumed, seeked, and
@@ -38,6 +42,7 @@ public class ManagedPlayer implements EndOfTrackListener {
 
   private final CopyOnWriteArrayList<ManagedPlayerListener> playerListeners;
   private SequencerManager common;
+  private MeasureIndex measureIndex;
   private boolean started;
   private boolean finished;
   private boolean paused;
@@ -85,6 +90,22 @@ public class ManagedPlayer implements EndOfTrackListener {
    * @throws javax.sound.midi.MidiUnavailableException if any.
    */
   public void start(Sequence sequence) throws InvalidMidiDataException, MidiUnavailableException {
+    start(sequence, null);
+  }
+
+  /**
+   * Starts the sequence as {@link #start(Sequence)} does, and keeps the given index so that the
+   * player can later seek by measure, beat or time bookmark.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   * @param measureIndex the index built alongside the sequence, or null.
+   * @throws javax.sound.midi.InvalidMidiDataException if any.
+   * @throws javax.sound.midi.MidiUnavailableException if any.
+   * @see org.jfugue.midi.MidiParserListener#getMeasureIndex()
+   */
+  public void start(Sequence sequence, MeasureIndex measureIndex)
+    throws InvalidMidiDataException, MidiUnavailableException {
+    this.measureIndex = measureIndex;
     common.openSequencer();
 //		common.connectSequencerToSynthesizer(); // TODO - TEST connectSequencerToSynthesizer in ManagedPlayer // 2016-03-07 THIS IS CAUSING A PROBLEM WITH DOUBLE-HIT NOTES!!!
     common.addEndOfTrackListener(this);
@@ -121,9 +142,72 @@ public class ManagedPlayer implements EndOfTrackListener {
    */
   public void seek(long tick) {
     fireOnSeek(tick);
+    if (measureIndex != null) {
+      sendControlState(measureIndex.getControlStateAt(tick));
+    }
     common.getSequencer().setTickPosition(tick);
   }
 
+  /**
+   * Seeks to the start of the given measure.
+   *
+   * @param measure the measure number, starting at 1.
+   * @throws IllegalStateException if the sequence was started without a MeasureIndex.
+   */
+  public void seekToMeasure(int measure) {
+    seek(getMeasureIndex().getTickForMeasure(measure));
+  }
+
+  /**
+   * Seeks to a beat within a measure.
+   *
+   * @param measure the measure number, starting at 1.
+   * @param beat the beat within the measure, starting at 1.0.
+   * @throws IllegalStateException if the sequence was started without a MeasureIndex.
+   * @see org.jfugue.midi.MeasureIndex#getTickForBeat(int, double)
+   */
+  public void seekToBeat(int measure, double beat) {
+    seek(getMeasureIndex().getTickForBeat(measure, beat));
+  }
+
+  /**
+   * Seeks to a time bookmark placed in the music.
+   *
+   * @param timeBookmarkID a {@link java.lang.String} object.
+   * @throws IllegalStateException if the sequence was started without a MeasureIndex.
+   */
+  public void seekToBookmark(String timeBookmarkID) {
+    seek(getMeasureIndex().getTickForBookmark(timeBookmarkID));
+  }
+
+  /**
+   * <p>getMeasureIndex.</p>
+   *
+   * @return the index given when the sequence was started.
+   * @throws IllegalStateException if the sequence was started without a MeasureIndex.
+   */
+  public MeasureIndex getMeasureIndex() {
+    if (measureIndex == null) {
+      throw new IllegalStateException("The sequence was started without a MeasureIndex");
+    }
+    return measureIndex;
+  }
+
+  /**
+   * Sends the program and controller values in effect at the seek position straight to whatever
+   * the sequencer is connected to, so instruments are right as soon as playback continues.
+   */
+  private void sendControlState(List<ShortMessage> messages) {
+    for (Transmitter transmitter : common.getSequencer().getTransmitters()) {
+      Receiver receiver = transmitter.getReceiver();
+      if (receiver != null) {
+        for (ShortMessage message : messages) {
+          receiver.send(message, -1);
+        }
+      }
+    }
+  }
+
   private void finish() {
     common.close();
     this.finished = true;
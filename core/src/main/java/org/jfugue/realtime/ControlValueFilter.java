@@ -0,0 +1,108 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the last pitch bend, channel pressure, controller and polyphonic pressure value sent on
+ * each channel, so that interpolators only send a message when the 7- or 14-bit value they compute
+ * actually changes. Every message sent through RealtimePlayer updates the remembered value, but
+ * messages are only suppressed while the scheduler thread is updating interpolators; direct calls
+ * always go out. The values are kept in atomic arrays, since the parsing thread and the scheduler
+ * thread both send messages; channels, keys and controllers are masked to their MIDI range.
+ *
+ * @author fmatar
+ */
+final class ControlValueFilter {
+
+  private static final int CHANNELS = 16;
+  private static final int KEYS = 128;
+  private static final int UNKNOWN = -1;
+
+  private final AtomicIntegerArray pitchBend;
+  private final AtomicIntegerArray channelPressure;
+  private final AtomicIntegerArray controllers;
+  private final AtomicIntegerArray polyPressure;
+  private final AtomicLong suppressedCount;
+  private volatile Thread filteringThread;
+
+  ControlValueFilter() {
+    this.pitchBend = unknownValues(CHANNELS);
+    this.channelPressure = unknownValues(CHANNELS);
+    this.controllers = unknownValues(CHANNELS * KEYS);
+    this.polyPressure = unknownValues(CHANNELS * KEYS);
+    this.suppressedCount = new AtomicLong();
+  }
+
+  private static AtomicIntegerArray unknownValues(int length) {
+    int[] values = new int[length];
+    Arrays.fill(values, UNKNOWN);
+    return new AtomicIntegerArray(values);
+  }
+
+  /**
+   * Suppresses unchanged values sent from the calling thread until {@link #endFiltering()}.
+   */
+  void beginFiltering() {
+    this.filteringThread = Thread.currentThread();
+  }
+
+  void endFiltering() {
+    this.filteringThread = null;
+  }
+
+  /**
+   * Number of messages dropped because their value had not changed.
+   */
+  long getSuppressedCount() {
+    return this.suppressedCount.get();
+  }
+
+  boolean acceptPitchBend(int channel, int value) {
+    return accept(pitchBend.getAndSet(channel & 0x0F, value) != value);
+  }
+
+  boolean acceptChannelPressure(int channel, int value) {
+    return accept(channelPressure.getAndSet(channel & 0x0F, value) != value);
+  }
+
+  boolean acceptController(int channel, int controller, int value) {
+    return accept(controllers.getAndSet(index(channel, controller), value) != value);
+  }
+
+  boolean acceptPolyPressure(int channel, int key, int value) {
+    return accept(polyPressure.getAndSet(index(channel, key), value) != value);
+  }
+
+  private static int index(int channel, int key) {
+    return (channel & 0x0F) * KEYS + (key & 0x7F);
+  }
+
+  private boolean accept(boolean changed) {
+    if (changed || filteringThread != Thread.currentThread()) {
+      return true;
+    }
+    suppressedCount.incrementAndGet();
+    return false;
+  }
+}
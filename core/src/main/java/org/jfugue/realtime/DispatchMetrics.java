@@ -0,0 +1,313 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import org.jfugue.midi.MidiTools;
+
+/**
+ * Collects how late events are dispatched compared with the time they were scheduled for. Metrics
+ * are opt-in: pass an instance to {@link RealtimePlayer#setDispatchMetrics(DispatchMetrics)}, or
+ * send a sequence through {@link #sendSequenceToReceiver(Sequence, Receiver)}. When no instance
+ * is supplied, the dispatch paths skip measurement entirely.
+ *
+ * Lateness is recorded in microseconds, alongside the depth of the scheduler's submission queue
+ * and the number of events dispatched per second. An event later than the deadline (2 ms unless
+ * changed) also counts as a missed deadline. The same numbers can be read through JMX once the
+ * instance has been registered.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class DispatchMetrics implements DispatchMetricsMXBean {
+
+  private static final long DEFAULT_DEADLINE_IN_MICROS = 2000L;
+  private static final long WINDOW_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final LogLinearHistogram lateness;
+  private final LogLinearHistogram queueDepth;
+  private final LogLinearHistogram eventsPerSecond;
+  private final AtomicLong missedDeadlines;
+  private final AtomicLong windowStartNanos;
+  private final AtomicLong windowCount;
+  private final CopyOnWriteArrayList<DispatchMetricsListener> listeners;
+  private volatile long deadlineInMicros;
+  private volatile long lastQueueDepth;
+  private volatile long lastEventsPerSecond;
+  private ObjectName objectName;
+
+  /**
+   * <p>Constructor for DispatchMetrics.</p>
+   */
+  public DispatchMetrics() {
+    this.lateness = new LogLinearHistogram();
+    this.queueDepth = new LogLinearHistogram();
+    this.eventsPerSecond = new LogLinearHistogram();
+    this.missedDeadlines = new AtomicLong();
+    this.windowStartNanos = new AtomicLong(System.nanoTime());
+    this.windowCount = new AtomicLong();
+    this.listeners = new CopyOnWriteArrayList<>();
+    this.deadlineInMicros = DEFAULT_DEADLINE_IN_MICROS;
+  }
+
+  /**
+   * <p>addDispatchMetricsListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.DispatchMetricsListener} object.
+   */
+  public void addDispatchMetricsListener(DispatchMetricsListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * <p>removeDispatchMetricsListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.DispatchMetricsListener} object.
+   */
+  public void removeDispatchMetricsListener(DispatchMetricsListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Registers this instance with the platform MBean server under
+   * <code>org.jfugue:type=DispatchMetrics,name=&lt;name&gt;</code>.
+   *
+   * @param name a {@link java.lang.String} object.
+   * @return the {@link javax.management.ObjectName} it was registered under.
+   * @throws javax.management.JMException if the name is invalid or already taken.
+   */
+  public synchronized ObjectName register(String name) throws JMException {
+    ObjectName newName = new ObjectName(
+      "org.jfugue:type=DispatchMetrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+    this.objectName = newName;
+    return newName;
+  }
+
+  /**
+   * Removes this instance from the platform MBean server, if it was registered.
+   *
+   * @throws javax.management.JMException if any.
+   */
+  public synchronized void unregister() throws JMException {
+    if (objectName != null) {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+      objectName = null;
+    }
+  }
+
+  //
+  // Recording, called from the dispatching thread
+  //
+
+  /**
+   * Records one dispatched event.
+   *
+   * @param scheduledTimeInMillis the time the event was scheduled for, in the caller's time base
+   * @param latenessInMicros how long after that time the event was dispatched
+   */
+  public void recordDispatch(long scheduledTimeInMillis, long latenessInMicros) {
+    lateness.record(latenessInMicros);
+    countTowardsWindow();
+    List<DispatchMetricsListener> currentListeners = listeners;
+    if (latenessInMicros > deadlineInMicros) {
+      missedDeadlines.incrementAndGet();
+      for (DispatchMetricsListener listener : currentListeners) {
+        listener.onDeadlineMissed(scheduledTimeInMillis, latenessInMicros);
+      }
+    }
+    for (DispatchMetricsListener listener : currentListeners) {
+      listener.onEventDispatched(scheduledTimeInMillis, latenessInMicros);
+    }
+  }
+
+  /**
+   * Sends the sequence to the receiver in real time, as {@link
+   * MidiTools#sendSequenceToReceiver(Sequence, Receiver)} does, recording how late each message is
+   * sent compared with its position in the sequence.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   * @param receiver a {@link javax.sound.midi.Receiver} object.
+   */
+  public void sendSequenceToReceiver(Sequence sequence, Receiver receiver) {
+    MidiTools.sendSequenceToReceiver(sequence, receiver, this::recordDispatch);
+  }
+
+  /**
+   * Records the number of requests waiting for the scheduler when it last looked.
+   *
+   * @param depth a int.
+   */
+  public void recordQueueDepth(int depth) {
+    this.lastQueueDepth = depth;
+    queueDepth.record(depth);
+  }
+
+  private void countTowardsWindow() {
+    long now = System.nanoTime();
+    long start = windowStartNanos.get();
+    if (now - start >= WINDOW_IN_NANOS && windowStartNanos.compareAndSet(start, now)) {
+      long count = windowCount.getAndSet(0);
+      this.lastEventsPerSecond = count;
+      eventsPerSecond.record(count);
+    }
+    windowCount.incrementAndGet();
+  }
+
+  //
+  // Reading
+  //
+
+  /**
+   * <p>getLatenessHistogram.</p>
+   *
+   * @return the histogram of dispatch lateness, in microseconds.
+   */
+  public LogLinearHistogram getLatenessHistogram() {
+    return this.lateness;
+  }
+
+  /**
+   * <p>getQueueDepthHistogram.</p>
+   *
+   * @return the histogram of scheduler queue depth.
+   */
+  public LogLinearHistogram getQueueDepthHistogram() {
+    return this.queueDepth;
+  }
+
+  /**
+   * <p>getEventsPerSecondHistogram.</p>
+   *
+   * @return the histogram of events dispatched per one-second window.
+   */
+  public LogLinearHistogram getEventsPerSecondHistogram() {
+    return this.eventsPerSecond;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getDispatchCount() {
+    return lateness.getTotalCount();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMissedDeadlineCount() {
+    return missedDeadlines.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getDeadlineInMicros() {
+    return this.deadlineInMicros;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setDeadlineInMicros(long deadlineInMicros) {
+    this.deadlineInMicros = deadlineInMicros;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getMeanLatenessInMicros() {
+    return lateness.getMean();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMedianLatenessInMicros() {
+    return lateness.getValueAtPercentile(50.0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long get99thPercentileLatenessInMicros() {
+    return lateness.getValueAtPercentile(99.0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long get999thPermilleLatenessInMicros() {
+    return lateness.getValueAtPercentile(99.9);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMaxLatenessInMicros() {
+    return lateness.getMax();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getLastQueueDepth() {
+    return this.lastQueueDepth;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long get99thPercentileQueueDepth() {
+    return queueDepth.getValueAtPercentile(99.0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMaxQueueDepth() {
+    return queueDepth.getMax();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getEventsPerSecond() {
+    return this.lastEventsPerSecond;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMaxEventsPerSecond() {
+    return eventsPerSecond.getMax();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void reset() {
+    lateness.reset();
+    queueDepth.reset();
+    eventsPerSecond.reset();
+    missedDeadlines.set(0);
+    windowCount.set(0);
+    windowStartNanos.set(System.nanoTime());
+    lastQueueDepth = 0;
+    lastEventsPerSecond = 0;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * Receives a callback for every event measured by {@link DispatchMetrics}. Callbacks run on the
+ * dispatching thread, so implementations should return quickly.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface DispatchMetricsListener {
+
+  /**
+   * Called after an event has been handed to its destination.
+   *
+   * @param scheduledTimeInMillis the time at which the event was meant to be dispatched
+   * @param latenessInMicros how long after that time it was actually dispatched
+   */
+  void onEventDispatched(long scheduledTimeInMillis, long latenessInMicros);
+
+  /**
+   * Called when an event was dispatched later than the deadline configured on the metrics.
+   *
+   * @param scheduledTimeInMillis the time at which the event was meant to be dispatched
+   * @param latenessInMicros how long after that time it was actually dispatched
+   */
+  void onDeadlineMissed(long scheduledTimeInMillis, long latenessInMicros);
+}
@@ -0,0 +1,132 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * Management interface through which {@link DispatchMetrics} is exposed over JMX.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface DispatchMetricsMXBean {
+
+  /**
+   * <p>getDispatchCount.</p>
+   *
+   * @return a long.
+   */
+  long getDispatchCount();
+
+  /**
+   * <p>getMissedDeadlineCount.</p>
+   *
+   * @return a long.
+   */
+  long getMissedDeadlineCount();
+
+  /**
+   * <p>getDeadlineInMicros.</p>
+   *
+   * @return a long.
+   */
+  long getDeadlineInMicros();
+
+  /**
+   * <p>setDeadlineInMicros.</p>
+   *
+   * @param deadlineInMicros a long.
+   */
+  void setDeadlineInMicros(long deadlineInMicros);
+
+  /**
+   * <p>getMeanLatenessInMicros.</p>
+   *
+   * @return a double.
+   */
+  double getMeanLatenessInMicros();
+
+  /**
+   * <p>getMedianLatenessInMicros.</p>
+   *
+   * @return a long.
+   */
+  long getMedianLatenessInMicros();
+
+  /**
+   * <p>get99thPercentileLatenessInMicros.</p>
+   *
+   * @return a long.
+   */
+  long get99thPercentileLatenessInMicros();
+
+  /**
+   * <p>get999thPermilleLatenessInMicros.</p>
+   *
+   * @return a long.
+   */
+  long get999thPermilleLatenessInMicros();
+
+  /**
+   * <p>getMaxLatenessInMicros.</p>
+   *
+   * @return a long.
+   */
+  long getMaxLatenessInMicros();
+
+  /**
+   * <p>getLastQueueDepth.</p>
+   *
+   * @return a long.
+   */
+  long getLastQueueDepth();
+
+  /**
+   * <p>get99thPercentileQueueDepth.</p>
+   *
+   * @return a long.
+   */
+  long get99thPercentileQueueDepth();
+
+  /**
+   * <p>getMaxQueueDepth.</p>
+   *
+   * @return a long.
+   */
+  long getMaxQueueDepth();
+
+  /**
+   * Events dispatched during the last complete one-second window.
+   *
+   * @return a long.
+   */
+  long getEventsPerSecond();
+
+  /**
+   * <p>getMaxEventsPerSecond.</p>
+   *
+   * @return a long.
+   */
+  long getMaxEventsPerSecond();
+
+  /**
+   * Clears all counters and histograms.
+   */
+  void reset();
+}
@@ -0,0 +1,155 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of non-negative long values in the style of HdrHistogram: values below 32
+ * are counted exactly, and every power-of-two range above that is split into 16 linear
+ * sub-buckets, so any recorded value is reported to within about 6%. Recording is wait-free and
+ * allocation-free; reads may run concurrently with writes and see a slightly stale picture.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class LogLinearHistogram {
+
+  private static final int PRECISION_BITS = 5;
+  private static final int EXACT_LIMIT = 1 << PRECISION_BITS;
+  private static final int HALF = EXACT_LIMIT >> 1;
+  private static final int BUCKETS = (64 - PRECISION_BITS + 1) * HALF + HALF;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong totalCount;
+  private final AtomicLong sum;
+  private final AtomicLong max;
+
+  /**
+   * <p>Constructor for LogLinearHistogram.</p>
+   */
+  public LogLinearHistogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.totalCount = new AtomicLong();
+    this.sum = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  static int indexFor(long value) {
+    if (value < EXACT_LIMIT) {
+      return (int) value;
+    }
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - PRECISION_BITS + 1;
+    return shift * HALF + (int) (value >>> shift);
+  }
+
+  static long highestValueAt(int index) {
+    if (index < EXACT_LIMIT) {
+      return index;
+    }
+    int shift = index / HALF - 1;
+    long top = index % HALF + HALF;
+    return ((top + 1) << shift) - 1;
+  }
+
+  /**
+   * Records one occurrence of the given value. Negative values are recorded as zero.
+   *
+   * @param value a long.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(indexFor(value));
+    totalCount.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax;
+    while (value > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * <p>getTotalCount.</p>
+   *
+   * @return a long.
+   */
+  public long getTotalCount() {
+    return totalCount.get();
+  }
+
+  /**
+   * <p>getMax.</p>
+   *
+   * @return a long.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * <p>getMean.</p>
+   *
+   * @return a double.
+   */
+  public double getMean() {
+    long count = totalCount.get();
+    return count == 0 ? 0.0 : (double) sum.get() / count;
+  }
+
+  /**
+   * Returns the value below which the given percentage of recorded values fall. The value
+   * reported is the upper bound of the bucket in which that percentile lands.
+   *
+   * @param percentile a double between 0 and 100.
+   * @return a long.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long count = totalCount.get();
+    if (count == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(highestValueAt(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * <p>reset.</p>
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * Told when RealtimePlayer finishes parsing a phrase whose first events were already due by the
+ * time they were ready. A report means the lookahead window is too small for the phrase, or the
+ * parsing stage is backed up.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see RealtimePlayer#setLookaheadInMillis(long)
+ */
+public interface LookaheadListener {
+
+  /**
+   * <p>onParserBehindPlayhead.</p>
+   *
+   * @param phraseStartInMillis the time at which the phrase was meant to start
+   * @param lagInMillis how far behind the playhead the latest-arriving event was
+   */
+  void onParserBehindPlayhead(long phraseStartInMillis, long lagInMillis);
+}
@@ -0,0 +1,49 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * The time base used by RealtimePlayer to decide when scheduled work is due. The default clock
+ * follows the system clock and is driven by a scheduler thread. A {@link VirtualRealtimeClock}
+ * instead drives the scheduler itself, as fast as the caller advances it, so a realtime session
+ * can be rendered offline or tested deterministically.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface RealtimeClock {
+
+  /**
+   * Returns the number of milliseconds since the clock started.
+   *
+   * @return a long.
+   */
+  long getTimeInMillis();
+
+  /**
+   * Returns the number of microseconds since the clock started. Clocks that cannot tell better
+   * than a millisecond may rely on this default.
+   *
+   * @return a long.
+   */
+  default long getTimeInMicros() {
+    return getTimeInMillis() * 1000L;
+  }
+}
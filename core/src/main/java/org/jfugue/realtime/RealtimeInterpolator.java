@@ -99,11 +99,12 @@ public abstract class RealtimeInterpolator {
   }
 
   /**
-   * <p>update.</p>
+   * Called on every control tick while the interpolator is running, and once more when its
+   * duration is reached.
    *
    * @param realtimePlayer a {@link org.jfugue.realtime.RealtimePlayer} object.
-   * @param elapsedTime a long.
-   * @param percentComplete a double.
+   * @param elapsedTime milliseconds since the interpolator started, never more than its duration.
+   * @param percentComplete the fraction of the duration that has elapsed, from 0.0 to 1.0.
    */
   public abstract void update(RealtimePlayer realtimePlayer, long elapsedTime,
     double percentComplete);
@@ -21,8 +21,15 @@ package org.jfugue.realtime;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
 import org.jfugue.midi.MidiDefaults;
 import org.jfugue.midi.TrackTimeManager;
 import org.jfugue.parser.ParserListener;
@@ -35,19 +42,44 @@ import org.jfugue.theory.Note;
  * RealtimePlayer itself. When this listener receives an event from the parser, it schedules the
  * event with a command that will execute directly on the RealtimePlayer.
  *
+ * Scheduling is safe from any number of threads. Producers never touch the schedule itself: each
+ * request is offered to a lock-free queue and the scheduler thread drains that queue once per
+ * millisecond before dispatching what is due. Every request yields a {@link ScheduledHandle} that
+ * can be cancelled without searching the schedule.
+ *
  * @author fmatar
  * @version $Id: $Id
  */
 public class RealtimeMidiParserListener extends TrackTimeManager implements ParserListener {
 
-  private final long originalClockTimeInMillis;
-  private final Map<Long, List<Command>> millisToScheduledCommands;
-  private final Map<Long, List<ScheduledEvent>> millisToScheduledEvents;
-  private final List<RealtimeInterpolator> interpolators;
+  private static final int BATCH_SIZE = 64;
+  private static final int DEFAULT_CONTROL_RATE_IN_HERTZ = 100;
+  private static final long DEFAULT_SCHEDULED_EVENT_BUDGET_IN_MILLIS = 10L;
+
+  private final RealtimeClock clock;
+  private final Queue<Command> submissions;
+  private final Map<Long, List<ScheduledHandle>> millisToScheduledCommands;
+  private final Map<Long, List<ScheduledHandle>> millisToScheduledEvents;
+  private final List<ScheduledHandle> interpolators;
+  private final List<ScheduledHandle> parsedBatch;
+  private final CopyOnWriteArrayList<LookaheadListener> lookaheadListeners;
+  private final CopyOnWriteArrayList<ScheduledEventOverrunListener> overrunListeners;
+  private final Logger logger = Logger.getLogger("org.jfugue");
   private final RealtimePlayer realtimePlayer;
-  private boolean endDaemon;
+  private volatile boolean endDaemon;
+  private volatile DispatchMetrics dispatchMetrics;
+  private volatile long controlPeriodInMillis;
+  private volatile Executor scheduledEventExecutor;
+  private volatile long scheduledEventBudgetInMillis;
+  private long nextControlTimeInMillis;
   private int bpm = MidiDefaults.DEFAULT_TEMPO_BEATS_PER_MINUTE;
-  private long activeTimeInMillis;
+  private long activeTimeInMillis = -1L;
+  private long lastMillis;
+  private long requestedStartTimeInMillis;
+  private long phraseStartTimeInMillis;
+  private long lookaheadEndTimeInMillis;
+  private long lagInMillis;
+  private boolean parsingAhead;
 
   /**
    * <p>Constructor for RealtimeMidiParserListener.</p>
@@ -55,17 +87,38 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
    * @param player a {@link org.jfugue.realtime.RealtimePlayer} object.
    */
   public RealtimeMidiParserListener(RealtimePlayer player) {
+    this(player, new SystemRealtimeClock());
+  }
+
+  /**
+   * Creates a listener that keeps time with the given clock. A {@link VirtualRealtimeClock} drives
+   * this listener itself; any other clock gets a scheduler thread that follows it.
+   *
+   * @param player a {@link org.jfugue.realtime.RealtimePlayer} object.
+   * @param clock a {@link org.jfugue.realtime.RealtimeClock} object.
+   */
+  public RealtimeMidiParserListener(RealtimePlayer player, RealtimeClock clock) {
     super();
+    this.clock = clock;
     this.realtimePlayer = player;
+    this.submissions = new ConcurrentLinkedQueue<>();
     this.millisToScheduledCommands = new HashMap<>();
     this.millisToScheduledEvents = new HashMap<>();
     this.interpolators = new ArrayList<>();
-    this.originalClockTimeInMillis = System.currentTimeMillis();
-    startDaemon();
+    this.parsedBatch = new ArrayList<>();
+    this.lookaheadListeners = new CopyOnWriteArrayList<>();
+    this.overrunListeners = new CopyOnWriteArrayList<>();
+    this.controlPeriodInMillis = 1000L / DEFAULT_CONTROL_RATE_IN_HERTZ;
+    this.scheduledEventBudgetInMillis = DEFAULT_SCHEDULED_EVENT_BUDGET_IN_MILLIS;
+    if (clock instanceof VirtualRealtimeClock) {
+      ((VirtualRealtimeClock) clock).attach(this);
+    } else {
+      startDaemon();
+    }
   }
 
   private long getDeltaClockTimeInMillis() {
-    return System.currentTimeMillis() - this.originalClockTimeInMillis;
+    return clock.getTimeInMillis();
   }
 
   /**
@@ -78,24 +131,9 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
   }
 
   private void startDaemon() {
-    Runnable daemon = new Runnable() {
-      private long lastMillis = 0L;
-
-      public void run() {
-        while (!endDaemon) {
-          setAllTrackBeatTime(getDeltaClockTimeInMillis());
-
-          long deltaMillis = getDeltaClockTimeInMillis() - lastMillis;
-          if (deltaMillis > 0) {
-            for (long time = lastMillis; time < lastMillis + deltaMillis; time++) {
-              setActiveTimeInMillis(time);
-              executeScheduledCommands(time);
-              executeScheduledEvents(time);
-              updateInterpolators(time);
-            }
-          }
-          this.lastMillis = this.lastMillis + deltaMillis;
-        }
+    Runnable daemon = () -> {
+      while (!endDaemon) {
+        processUntil(getDeltaClockTimeInMillis());
       }
     };
 
@@ -103,40 +141,222 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
     t.start();
   }
 
-  // Process any scheduled commands that are internal to this parser
-  private void executeScheduledCommands(long time) {
-    if (millisToScheduledCommands.containsKey(time)) {
-      List<Command> commands = millisToScheduledCommands.get(time);
-      for (Command command : commands) {
-        command.execute();
+  /**
+   * Runs everything due before the given time that has not run yet. Called repeatedly by the
+   * scheduler thread, or by a VirtualRealtimeClock as it advances.
+   */
+  void processUntil(long endTimeInMillis) {
+    long deltaMillis = endTimeInMillis - lastMillis;
+    if (deltaMillis > 0) {
+      for (long time = lastMillis; time < lastMillis + deltaMillis; time++) {
+        setActiveTimeInMillis(time);
+        drainSubmissions();
+        executeScheduledCommands(time);
+        executeScheduledEvents(time);
       }
+      // Interpolators only need the latest time, however many milliseconds were caught up
+      updateInterpolators(lastMillis + deltaMillis - 1);
+      this.lastMillis = this.lastMillis + deltaMillis;
+    }
+  }
+
+  /**
+   * Sets how many times per second interpolators are updated.
+   *
+   * @param controlRateInHertz a int between 1 and 1000.
+   */
+  public void setInterpolatorControlRate(int controlRateInHertz) {
+    if (controlRateInHertz < 1 || controlRateInHertz > 1000) {
+      throw new IllegalArgumentException(
+        "Control rate must be between 1 and 1000 Hz: " + controlRateInHertz);
     }
+    this.controlPeriodInMillis = 1000L / controlRateInHertz;
+  }
+
+  /**
+   * Sets where user ScheduledEvents run. With null, the default, they run on the scheduler thread
+   * itself; otherwise the scheduler hands them to the executor and moves straight on.
+   *
+   * @param executor a {@link java.util.concurrent.Executor} object, or null.
+   */
+  public void setScheduledEventExecutor(Executor executor) {
+    this.scheduledEventExecutor = executor;
+  }
+
+  /**
+   * Sets how long a ScheduledEvent may take, from its scheduled time until it returns, before it
+   * is reported as an overrun.
+   *
+   * @param budgetInMillis a long.
+   */
+  public void setScheduledEventBudgetInMillis(long budgetInMillis) {
+    this.scheduledEventBudgetInMillis = budgetInMillis;
+  }
+
+  /**
+   * <p>addScheduledEventOverrunListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.ScheduledEventOverrunListener} object.
+   */
+  public void addScheduledEventOverrunListener(ScheduledEventOverrunListener listener) {
+    overrunListeners.add(listener);
+  }
+
+  /**
+   * <p>removeScheduledEventOverrunListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.ScheduledEventOverrunListener} object.
+   */
+  public void removeScheduledEventOverrunListener(ScheduledEventOverrunListener listener) {
+    overrunListeners.remove(listener);
+  }
+
+  /**
+   * Turns on dispatch measurement, or turns it off when given null.
+   *
+   * @param dispatchMetrics a {@link org.jfugue.realtime.DispatchMetrics} object.
+   */
+  public void setDispatchMetrics(DispatchMetrics dispatchMetrics) {
+    this.dispatchMetrics = dispatchMetrics;
+  }
+
+  /*
+   * Everything below, up to the ParserListener events, runs on the scheduler thread only. The maps
+   * and the interpolator list are owned by that thread; other threads hand work over through the
+   * lock-free submission queue.
+   */
+
+  // Move work handed over by producer threads into the scheduler's own structures
+  private void drainSubmissions() {
+    int drained = 0;
+    Command submission;
+    while ((submission = submissions.poll()) != null) {
+      submission.execute();
+      drained++;
+    }
+    DispatchMetrics metrics = this.dispatchMetrics;
+    if (metrics != null) {
+      metrics.recordQueueDepth(drained);
+    }
+  }
+
+  // Process any scheduled commands that are internal to this parser
+  private void executeScheduledCommands(long time) {
+    runAndRemove(millisToScheduledCommands, time);
   }
 
   // Process any scheduled events requested by the user
   private void executeScheduledEvents(long time) {
-    if (millisToScheduledEvents.containsKey(time)) {
-      List<ScheduledEvent> scheduledEvents = millisToScheduledEvents.get(time);
-      for (ScheduledEvent event : scheduledEvents) {
-        event.execute(realtimePlayer, time);
+    runAndRemove(millisToScheduledEvents, time);
+  }
+
+  private void runAndRemove(Map<Long, List<ScheduledHandle>> timeline, long time) {
+    List<ScheduledHandle> handles = timeline.remove(time);
+    if (handles == null) {
+      return;
+    }
+    DispatchMetrics metrics = this.dispatchMetrics;
+    for (ScheduledHandle handle : handles) {
+      if (!handle.isCancelled()) {
+        if (metrics != null) {
+          // Measured per handle, so time spent on the handles before it counts against it
+          metrics.recordDispatch(time, clock.getTimeInMicros() - time * 1000L);
+        }
+        handle.getCommand().execute();
       }
     }
   }
 
-  // Process any active interpolators
+  // Process any active interpolators, once per control tick, all in one pass
   private void updateInterpolators(long time) {
-    for (RealtimeInterpolator interpolator : interpolators) {
-      if (!interpolator.isStarted()) {
-        interpolator.start(time);
-      }
-      if (interpolator.isActive()) {
-        long elapsedTime = time - interpolator.getStartTime();
-        double percentComplete = elapsedTime / interpolator.getDurationInMillis();
-        interpolator.update(realtimePlayer, elapsedTime, percentComplete);
-        if (elapsedTime == interpolator.getDurationInMillis()) {
-          interpolator.end();
+    if (interpolators.isEmpty() || time < nextControlTimeInMillis) {
+      return;
+    }
+    nextControlTimeInMillis = time + controlPeriodInMillis;
+    ControlValueFilter filter = realtimePlayer.getControlValueFilter();
+    filter.beginFiltering();
+    try {
+      Iterator<ScheduledHandle> iterator = interpolators.iterator();
+      while (iterator.hasNext()) {
+        ScheduledHandle handle = iterator.next();
+        RealtimeInterpolator interpolator = (RealtimeInterpolator) handle.getSource();
+        if (handle.isCancelled()) {
+          iterator.remove();
+          continue;
+        }
+        if (!interpolator.isStarted()) {
+          interpolator.start(time);
+        }
+        if (interpolator.isActive()) {
+          long duration = interpolator.getDurationInMillis();
+          long elapsedTime = Math.min(time - interpolator.getStartTime(), duration);
+          double percentComplete = duration > 0 ? (double) elapsedTime / duration : 1.0;
+          interpolator.update(realtimePlayer, elapsedTime, percentComplete);
+          if (elapsedTime >= duration) {
+            interpolator.end();
+          }
+        }
+        if (interpolator.isEnded()) {
+          iterator.remove();
         }
       }
+    } finally {
+      filter.endFiltering();
+    }
+  }
+
+  /*
+   * User events either run here, on the scheduler thread, or are handed to the configured
+   * executor so that slow user code cannot hold up the MIDI output behind it.
+   */
+
+  private void dispatchScheduledEvent(final ScheduledEvent event, final long timeInMillis) {
+    Executor executor = this.scheduledEventExecutor;
+    if (executor == null) {
+      runScheduledEvent(event, timeInMillis);
+      return;
+    }
+    try {
+      executor.execute(() -> runScheduledEvent(event, timeInMillis));
+    } catch (RejectedExecutionException e) {
+      for (ScheduledEventOverrunListener listener : overrunListeners) {
+        listener.onRejected(event, timeInMillis);
+      }
+    }
+  }
+
+  private void runScheduledEvent(ScheduledEvent event, long timeInMillis) {
+    long startedAt = getDeltaClockTimeInMillis();
+    try {
+      event.execute(realtimePlayer, timeInMillis);
+    } catch (RuntimeException e) {
+      // A failing user event must not take the scheduler thread down with it
+      logger.warning("Scheduled event failed: " + e);
+    }
+    long finishedAt = getDeltaClockTimeInMillis();
+    if (finishedAt - timeInMillis > scheduledEventBudgetInMillis) {
+      for (ScheduledEventOverrunListener listener : overrunListeners) {
+        listener.onOverrun(event, timeInMillis, Math.max(0, startedAt - timeInMillis),
+          finishedAt - startedAt);
+      }
+    }
+  }
+
+  private void addToTimeline(Map<Long, List<ScheduledHandle>> timeline, ScheduledHandle handle) {
+    long timeInMillis = getNextAvailableTimeInMillis(handle.getTimeInMillis());
+    timeline.computeIfAbsent(timeInMillis, k -> new ArrayList<>()).add(handle);
+  }
+
+  private void removeFromTimeline(Map<Long, List<ScheduledHandle>> timeline, long timeInMillis,
+    Object source) {
+    List<ScheduledHandle> handles = timeline.get(timeInMillis);
+    if (handles == null) {
+      return;
+    }
+    for (ScheduledHandle handle : handles) {
+      if (handle.getSource() == source) {
+        handle.cancel();
+      }
     }
   }
 
@@ -145,6 +365,9 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
    */
   public void finish() {
     this.endDaemon = true;
+    if (clock instanceof VirtualRealtimeClock) {
+      ((VirtualRealtimeClock) clock).detach(this);
+    }
   }
 
   private RealtimePlayer getRealtimePlayer() {
@@ -155,33 +378,85 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
     this.activeTimeInMillis = timeInMillis;
   }
 
+  // Submissions are drained before a millisecond's work runs, so work for the active millisecond
+  // still makes it; work for a millisecond that has already passed runs on the active one
   private long getNextAvailableTimeInMillis(long timeInMillis) {
-    if (timeInMillis <= activeTimeInMillis) {
-      timeInMillis += activeTimeInMillis + 1;
+    if (timeInMillis < activeTimeInMillis) {
+      timeInMillis = activeTimeInMillis;
     }
     return timeInMillis;
   }
 
-  private void scheduleCommand(long timeInMillis, Command command) {
-    timeInMillis = getNextAvailableTimeInMillis(timeInMillis);
-    List<Command> commands = millisToScheduledCommands
-      .computeIfAbsent(timeInMillis, k -> new ArrayList<>());
-    commands.add(command);
-  }
+  /* Submission methods; these may be called from any thread */
+
+  /*
+   * A phrase parsed ahead of playback is collected into batches on the parsing thread, so that it
+   * costs the scheduler one submission per batch rather than one per event, and each event is
+   * checked against the start of its lookahead window. A phrase parsed without lookahead starts as
+   * soon as it is parsed, so each event is submitted at once to be played as early as possible.
+   */
 
-  private void scheduleEvent(long timeInMillis, ScheduledEvent event) {
-    timeInMillis = getNextAvailableTimeInMillis(timeInMillis);
-    List<ScheduledEvent> events = millisToScheduledEvents
-      .computeIfAbsent(timeInMillis, k -> new ArrayList<>());
-    events.add(event);
+  private void addParsedCommand(long timeInMillis, Command command) {
+    parsedBatch.add(new ScheduledHandle(timeInMillis, command, null));
+    if (!parsingAhead) {
+      flushParsedBatch();
+      return;
+    }
+    lagInMillis = Math.max(lagInMillis, getDeltaClockTimeInMillis() - timeInMillis);
+    if (parsedBatch.size() >= BATCH_SIZE) {
+      flushParsedBatch();
+    }
   }
 
-  private void unscheduleEvent(long timeInMillis, ScheduledEvent event) {
-    List<ScheduledEvent> events = millisToScheduledEvents.get(timeInMillis);
-    if (events == null) {
+  private void flushParsedBatch() {
+    if (parsedBatch.isEmpty()) {
       return;
     }
-    events.remove(event);
+    final ScheduledHandle[] batch = parsedBatch.toArray(new ScheduledHandle[0]);
+    parsedBatch.clear();
+    submissions.offer(() -> {
+      for (ScheduledHandle handle : batch) {
+        addToTimeline(millisToScheduledCommands, handle);
+      }
+    });
+  }
+
+  /**
+   * Asks that the next pattern parsed start no earlier than the given time, which is the end of its
+   * lookahead window, or zero if it has none. Must be called on the thread that will do the
+   * parsing, just before it parses.
+   */
+  void setRequestedStartTime(long timeInMillis) {
+    this.requestedStartTimeInMillis = timeInMillis;
+  }
+
+  /**
+   * <p>addLookaheadListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.LookaheadListener} object.
+   */
+  public void addLookaheadListener(LookaheadListener listener) {
+    lookaheadListeners.add(listener);
+  }
+
+  /**
+   * <p>removeLookaheadListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.LookaheadListener} object.
+   */
+  public void removeLookaheadListener(LookaheadListener listener) {
+    lookaheadListeners.remove(listener);
+  }
+
+  private ScheduledHandle scheduleEvent(final long timeInMillis, final ScheduledEvent event) {
+    final ScheduledHandle handle = new ScheduledHandle(timeInMillis,
+      () -> dispatchScheduledEvent(event, timeInMillis), event);
+    submissions.offer(() -> addToTimeline(millisToScheduledEvents, handle));
+    return handle;
+  }
+
+  private void unscheduleEvent(final long timeInMillis, final ScheduledEvent event) {
+    submissions.offer(() -> removeFromTimeline(millisToScheduledEvents, timeInMillis, event));
   }
 
   /* ParserListener Events */
@@ -189,18 +464,33 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
   /** {@inheritDoc} */
   @Override
   public void beforeParsingStarts() {
+    // Anything parsed now can't start before now, or before the start that was asked for
+    long now = getDeltaClockTimeInMillis();
+    this.phraseStartTimeInMillis = Math.max(now, requestedStartTimeInMillis);
+    this.parsingAhead = requestedStartTimeInMillis > 0;
+    // A phrase whose lookahead window is already over when parsing begins is late from the start
+    this.lagInMillis = parsingAhead ? Math.max(0, now - requestedStartTimeInMillis) : 0;
+    this.lookaheadEndTimeInMillis = requestedStartTimeInMillis;
+    this.requestedStartTimeInMillis = 0;
+    setAllTrackBeatTime(phraseStartTimeInMillis);
   }
 
   /** {@inheritDoc} */
   @Override
   public void afterParsingFinished() {
+    flushParsedBatch();
+    if (lagInMillis > 0) {
+      for (LookaheadListener listener : lookaheadListeners) {
+        listener.onParserBehindPlayhead(lookaheadEndTimeInMillis, lagInMillis);
+      }
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public void onTrackChanged(final byte track) {
     setCurrentTrack(track);
-    scheduleCommand((long) getTrackBeatTime(), () -> getRealtimePlayer().changeTrack(track));
+    addParsedCommand((long) getTrackBeatTime(), () -> getRealtimePlayer().changeTrack(track));
   }
 
   /** {@inheritDoc} */
@@ -212,7 +502,7 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
   /** {@inheritDoc} */
   @Override
   public void onInstrumentParsed(final byte instrument) {
-    scheduleCommand((long) getTrackBeatTime(),
+    addParsedCommand((long) getTrackBeatTime(),
       () -> getRealtimePlayer().changeInstrument(instrument));
   }
 
@@ -255,21 +545,21 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
   /** {@inheritDoc} */
   @Override
   public void onPitchWheelParsed(final byte lsb, final byte msb) {
-    scheduleCommand((long) getTrackBeatTime(),
+    addParsedCommand((long) getTrackBeatTime(),
       () -> getRealtimePlayer().setPitchBend(lsb + (msb << 7)));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onChannelPressureParsed(final byte pressure) {
-    scheduleCommand((long) getTrackBeatTime(),
+    addParsedCommand((long) getTrackBeatTime(),
       () -> getRealtimePlayer().changeChannelPressure(pressure));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onPolyphonicPressureParsed(final byte key, final byte pressure) {
-    scheduleCommand((long) getTrackBeatTime(),
+    addParsedCommand((long) getTrackBeatTime(),
       () -> getRealtimePlayer().changePolyphonicPressure(key, pressure));
   }
 
@@ -281,7 +571,7 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
   /** {@inheritDoc} */
   @Override
   public void onControllerEventParsed(final byte controller, final byte value) {
-    scheduleCommand((long) getTrackBeatTime(),
+    addParsedCommand((long) getTrackBeatTime(),
       () -> getRealtimePlayer().changeController(controller, value));
   }
 
@@ -337,7 +627,7 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
     // Add a NOTE_ON event.
     // If the note is continuing a tie, it is already sounding, and there is not need to turn the note on
     if (!note.isEndOfTie()) {
-      scheduleCommand((long) getTrackBeatTime(), () -> getRealtimePlayer().startNote(note));
+      addParsedCommand((long) getTrackBeatTime(), () -> getRealtimePlayer().startNote(note));
     }
 
     // Advance the track timer
@@ -346,7 +636,7 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
     // Add a NOTE_OFF event.
     // If this note is the start of a tie, the note will continue to sound, so we don't want to turn it off.
     if (!note.isStartOfTie()) {
-      scheduleCommand((long) getTrackBeatTime(), () -> getRealtimePlayer().stopNote(note));
+      addParsedCommand((long) getTrackBeatTime(), () -> getRealtimePlayer().stopNote(note));
     }
   }
 
@@ -367,9 +657,10 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
    *
    * @param timeInMillis a long.
    * @param event a {@link org.jfugue.realtime.ScheduledEvent} object.
+   * @return a {@link org.jfugue.realtime.ScheduledHandle} that can cancel the event.
    */
-  public void onEventScheduled(long timeInMillis, ScheduledEvent event) {
-    scheduleEvent(timeInMillis, event);
+  public ScheduledHandle onEventScheduled(long timeInMillis, ScheduledEvent event) {
+    return scheduleEvent(timeInMillis, event);
   }
 
   /**
@@ -387,10 +678,14 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
    *
    * @param interpolator a {@link org.jfugue.realtime.RealtimeInterpolator} object.
    * @param durationInMillis a long.
+   * @return a {@link org.jfugue.realtime.ScheduledHandle} that can stop the interpolator.
    */
-  public void onInterpolatorStarted(RealtimeInterpolator interpolator, long durationInMillis) {
+  public ScheduledHandle onInterpolatorStarted(final RealtimeInterpolator interpolator,
+    long durationInMillis) {
     interpolator.setDurationInMillis(durationInMillis);
-    interpolators.add(interpolator);
+    final ScheduledHandle handle = new ScheduledHandle(getCurrentTime(), null, interpolator);
+    submissions.offer(() -> interpolators.add(handle));
+    return handle;
   }
 
   /**
@@ -398,8 +693,14 @@ public class RealtimeMidiParserListener extends TrackTimeManager implements Pars
    *
    * @param interpolator a {@link org.jfugue.realtime.RealtimeInterpolator} object.
    */
-  public void onInterpolatorStopping(RealtimeInterpolator interpolator) {
-    interpolators.remove(interpolator);
+  public void onInterpolatorStopping(final RealtimeInterpolator interpolator) {
+    submissions.offer(() -> {
+      for (ScheduledHandle handle : interpolators) {
+        if (handle.getSource() == interpolator) {
+          handle.cancel();
+        }
+      }
+    });
   }
 
   private long convertBeatsToMillis(double beats) {
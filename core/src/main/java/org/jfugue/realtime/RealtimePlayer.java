@@ -19,8 +19,12 @@
 
 package org.jfugue.realtime;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.sound.midi.MidiChannel;
 import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
 import javax.sound.midi.Synthesizer;
 import org.jfugue.midi.MidiDictionary;
 import org.jfugue.midi.MidiTools;
@@ -39,6 +43,11 @@ import org.staccato.StaccatoParser;
  * indicated as the start of a tie (e.g., "C4s-") and stop notes should be indicated as the end of a
  * tie (e.g., "C4-s") 2. Call specific methods, like startNote or changeInstrument
  *
+ * By default, play() parses on the calling thread and the phrase starts as soon as parsing is
+ * done. With a lookahead window set, play() returns immediately: a background stage parses the
+ * phrase while the window elapses, and the phrase starts when the window is over. Phrases that
+ * could not be parsed in time are reported to any LookaheadListener.
+ *
  * @author fmatar
  * @version $Id: $Id
  */
@@ -48,6 +57,9 @@ public class RealtimePlayer {
   private int currentChannel;
   private StaccatoParser staccatoParser;
   private RealtimeMidiParserListener rtMidiParserListener;
+  private final ControlValueFilter controlValueFilter = new ControlValueFilter();
+  private ExecutorService lookaheadStage;
+  private volatile long lookaheadInMillis;
 
   /**
    * <p>Constructor for RealtimePlayer.</p>
@@ -57,10 +69,26 @@ public class RealtimePlayer {
   public RealtimePlayer() throws MidiUnavailableException {
     Synthesizer synth = SynthesizerManager.getInstance().getSynthesizer();
     synth.open();
-    this.channels = synth.getChannels();
+    init(synth.getChannels(), new SystemRealtimeClock());
+  }
+
+  /**
+   * Creates a player that sends its MIDI messages to the given receiver instead of the
+   * synthesizer, keeping time with the given clock. With a {@link VirtualRealtimeClock} and a
+   * {@link SequenceRecorder}, a session can be rendered to a Sequence as fast as it can be
+   * computed.
+   *
+   * @param receiver a {@link javax.sound.midi.Receiver} object.
+   * @param clock a {@link org.jfugue.realtime.RealtimeClock} object.
+   */
+  public RealtimePlayer(Receiver receiver, RealtimeClock clock) {
+    init(ReceiverMidiChannel.createChannels(receiver), clock);
+  }
 
+  private void init(MidiChannel[] channels, RealtimeClock clock) {
+    this.channels = channels;
     staccatoParser = new StaccatoParser();
-    rtMidiParserListener = new RealtimeMidiParserListener(this);
+    rtMidiParserListener = new RealtimeMidiParserListener(this, clock);
     staccatoParser.addParserListener(rtMidiParserListener);
   }
 
@@ -70,16 +98,80 @@ public class RealtimePlayer {
    * @param pattern a {@link org.jfugue.pattern.PatternProducer} object.
    */
   public void play(PatternProducer pattern) {
-    staccatoParser.parse(pattern);
+    play(pattern.getPattern().toString());
   }
 
   /**
-   * <p>play.</p>
+   * Parses the given pattern and submits the resulting events to the scheduler. Without a
+   * lookahead window, parsing happens on the calling thread; calls from several threads are parsed
+   * one at a time, since they share one parser. With a lookahead window, this method returns
+   * immediately and the phrase is parsed in the background, in the order play() was called.
    *
    * @param pattern a {@link java.lang.String} object.
    */
-  public void play(String pattern) {
-    staccatoParser.parse(pattern);
+  public void play(final String pattern) {
+    long lookahead = this.lookaheadInMillis;
+    if (lookahead <= 0) {
+      parse(pattern, 0);
+      return;
+    }
+    final long startTimeInMillis = getCurrentTime() + lookahead;
+    getLookaheadStage().execute(() -> parse(pattern, startTimeInMillis));
+  }
+
+  private void parse(String pattern, long startTimeInMillis) {
+    synchronized (staccatoParser) {
+      rtMidiParserListener.setRequestedStartTime(startTimeInMillis);
+      staccatoParser.parse(pattern);
+    }
+  }
+
+  private synchronized ExecutorService getLookaheadStage() {
+    if (lookaheadStage == null) {
+      lookaheadStage = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "JFugue realtime lookahead");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return lookaheadStage;
+  }
+
+  /**
+   * Sets how far ahead of playback phrases passed to play() are parsed. Zero, the default, parses
+   * on the calling thread.
+   *
+   * @param lookaheadInMillis a long.
+   */
+  public void setLookaheadInMillis(long lookaheadInMillis) {
+    this.lookaheadInMillis = lookaheadInMillis;
+  }
+
+  /**
+   * <p>getLookaheadInMillis.</p>
+   *
+   * @return a long.
+   */
+  public long getLookaheadInMillis() {
+    return this.lookaheadInMillis;
+  }
+
+  /**
+   * <p>addLookaheadListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.LookaheadListener} object.
+   */
+  public void addLookaheadListener(LookaheadListener listener) {
+    rtMidiParserListener.addLookaheadListener(listener);
+  }
+
+  /**
+   * <p>removeLookaheadListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.LookaheadListener} object.
+   */
+  public void removeLookaheadListener(LookaheadListener listener) {
+    rtMidiParserListener.removeLookaheadListener(listener);
   }
 
   private MidiChannel getCurrentChannel() {
@@ -96,17 +188,60 @@ public class RealtimePlayer {
   }
 
   /**
-   * <p>schedule.</p>
+   * Schedules an event to be executed at the given time. May be called from any thread.
    *
    * @param timeInMillis a long.
    * @param event a {@link org.jfugue.realtime.ScheduledEvent} object.
+   * @return a {@link org.jfugue.realtime.ScheduledHandle} that cancels the event.
    */
-  public void schedule(long timeInMillis, ScheduledEvent event) {
-    rtMidiParserListener.onEventScheduled(timeInMillis, event);
+  public ScheduledHandle schedule(long timeInMillis, ScheduledEvent event) {
+    return rtMidiParserListener.onEventScheduled(timeInMillis, event);
   }
 
   /**
-   * <p>unschedule.</p>
+   * Sets where scheduled events run. Notes, instrument changes and other MIDI output from play()
+   * always stay on the scheduler thread. By default, user ScheduledEvents run there too, so a slow
+   * event delays everything due after it. Given an executor, the scheduler hands each event to it
+   * instead: a bounded ThreadPoolExecutor caps the threads and the backlog, and on Java 21 or later
+   * Executors.newVirtualThreadPerTaskExecutor() runs each event on its own virtual thread. Pass
+   * null to go back to running events on the scheduler thread.
+   *
+   * @param executor a {@link java.util.concurrent.Executor} object, or null.
+   */
+  public void setScheduledEventExecutor(Executor executor) {
+    rtMidiParserListener.setScheduledEventExecutor(executor);
+  }
+
+  /**
+   * Sets how long a scheduled event may take, counted from its scheduled time until it returns,
+   * before it is reported to ScheduledEventOverrunListeners. The default is 10 ms.
+   *
+   * @param budgetInMillis a long.
+   */
+  public void setScheduledEventBudgetInMillis(long budgetInMillis) {
+    rtMidiParserListener.setScheduledEventBudgetInMillis(budgetInMillis);
+  }
+
+  /**
+   * <p>addScheduledEventOverrunListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.ScheduledEventOverrunListener} object.
+   */
+  public void addScheduledEventOverrunListener(ScheduledEventOverrunListener listener) {
+    rtMidiParserListener.addScheduledEventOverrunListener(listener);
+  }
+
+  /**
+   * <p>removeScheduledEventOverrunListener.</p>
+   *
+   * @param listener a {@link org.jfugue.realtime.ScheduledEventOverrunListener} object.
+   */
+  public void removeScheduledEventOverrunListener(ScheduledEventOverrunListener listener) {
+    rtMidiParserListener.removeScheduledEventOverrunListener(listener);
+  }
+
+  /**
+   * Prefer {@link ScheduledHandle#cancel()}, which does not have to look the event up.
    *
    * @param timeInMillis a long.
    * @param event a {@link org.jfugue.realtime.ScheduledEvent} object.
@@ -115,6 +250,16 @@ public class RealtimePlayer {
     rtMidiParserListener.onEventUnscheduled(timeInMillis, event);
   }
 
+  /**
+   * Measures how late scheduled events are dispatched. Pass null to stop measuring; measurement is
+   * off by default.
+   *
+   * @param dispatchMetrics a {@link org.jfugue.realtime.DispatchMetrics} object.
+   */
+  public void setDispatchMetrics(DispatchMetrics dispatchMetrics) {
+    rtMidiParserListener.setDispatchMetrics(dispatchMetrics);
+  }
+
   /**
    * <p>startNote.</p>
    *
@@ -156,17 +301,35 @@ public class RealtimePlayer {
   }
 
   /**
-   * <p>startInterpolator.</p>
+   * Starts an interpolator on the next millisecond. May be called from any thread.
    *
    * @param interpolator a {@link org.jfugue.realtime.RealtimeInterpolator} object.
    * @param durationInMillis a long.
+   * @return a {@link org.jfugue.realtime.ScheduledHandle} that stops the interpolator.
+   */
+  public ScheduledHandle startInterpolator(RealtimeInterpolator interpolator,
+    long durationInMillis) {
+    return rtMidiParserListener.onInterpolatorStarted(interpolator, durationInMillis);
+  }
+
+  /**
+   * Sets how many times per second running interpolators are updated. All interpolators are
+   * updated together on each control tick, and a pitch bend, pressure or controller message they
+   * send is dropped if its value is the same as the last one sent on that channel. The default is
+   * 100 updates per second.
+   *
+   * @param controlRateInHertz a int between 1 and 1000.
    */
-  public void startInterpolator(RealtimeInterpolator interpolator, long durationInMillis) {
-    rtMidiParserListener.onInterpolatorStarted(interpolator, durationInMillis);
+  public void setInterpolatorControlRate(int controlRateInHertz) {
+    rtMidiParserListener.setInterpolatorControlRate(controlRateInHertz);
+  }
+
+  ControlValueFilter getControlValueFilter() {
+    return this.controlValueFilter;
   }
 
   /**
-   * <p>stopInterpolator.</p>
+   * Prefer {@link ScheduledHandle#cancel()}, which does not have to look the interpolator up.
    *
    * @param interpolator a {@link org.jfugue.realtime.RealtimeInterpolator} object.
    */
@@ -212,7 +375,10 @@ public class RealtimePlayer {
   }
 
   private void setPitchBend(byte lsb, byte msb) {
-    getCurrentChannel().setPitchBend(lsb + (msb << 7));
+    int value = lsb + (msb << 7);
+    if (controlValueFilter.acceptPitchBend(currentChannel, value)) {
+      getCurrentChannel().setPitchBend(value);
+    }
   }
 
   /**
@@ -221,7 +387,9 @@ public class RealtimePlayer {
    * @param pressure a byte.
    */
   public void changeChannelPressure(byte pressure) {
-    getCurrentChannel().setChannelPressure(pressure);
+    if (controlValueFilter.acceptChannelPressure(currentChannel, pressure)) {
+      getCurrentChannel().setChannelPressure(pressure);
+    }
   }
 
   /**
@@ -231,7 +399,9 @@ public class RealtimePlayer {
    * @param pressure a byte.
    */
   public void changePolyphonicPressure(byte key, byte pressure) {
-    getCurrentChannel().setPolyPressure(key, pressure);
+    if (controlValueFilter.acceptPolyPressure(currentChannel, key, pressure)) {
+      getCurrentChannel().setPolyPressure(key, pressure);
+    }
   }
 
   /**
@@ -241,7 +411,9 @@ public class RealtimePlayer {
    * @param value a byte.
    */
   public void changeController(byte controller, byte value) {
-    getCurrentChannel().controlChange(controller, value);
+    if (controlValueFilter.acceptController(currentChannel, controller, value)) {
+      getCurrentChannel().controlChange(controller, value);
+    }
   }
 
   /**
@@ -252,6 +424,11 @@ public class RealtimePlayer {
       channel.allNotesOff();
     }
 
+    synchronized (this) {
+      if (lookaheadStage != null) {
+        lookaheadStage.shutdownNow();
+      }
+    }
     rtMidiParserListener.finish();
   }
 }
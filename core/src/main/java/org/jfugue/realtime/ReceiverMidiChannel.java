@@ -0,0 +1,212 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import java.util.logging.Logger;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiChannel;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * A MidiChannel that turns each call into a ShortMessage for a Receiver, remembering the values it
+ * has sent so the getters can answer. This lets RealtimePlayer play into anything that accepts MIDI
+ * messages, such as a {@link SequenceRecorder}, instead of a Synthesizer.
+ *
+ * @author fmatar
+ */
+final class ReceiverMidiChannel implements MidiChannel {
+
+  private final Logger logger = Logger.getLogger("org.jfugue");
+  private final Receiver receiver;
+  private final int channel;
+  private final int[] polyPressure = new int[128];
+  private final int[] controllers = new int[128];
+  private int channelPressure;
+  private int program;
+  private int pitchBend = 8192;
+  private boolean mono;
+  private boolean omni;
+  private boolean mute;
+  private boolean solo;
+
+  ReceiverMidiChannel(Receiver receiver, int channel) {
+    this.receiver = receiver;
+    this.channel = channel;
+  }
+
+  static MidiChannel[] createChannels(Receiver receiver) {
+    MidiChannel[] channels = new MidiChannel[16];
+    for (int i = 0; i < channels.length; i++) {
+      channels[i] = new ReceiverMidiChannel(receiver, i);
+    }
+    return channels;
+  }
+
+  private void send(int command, int data1, int data2) {
+    try {
+      ShortMessage message = new ShortMessage();
+      message.setMessage(command, channel, data1, data2);
+      receiver.send(message, -1);
+    } catch (InvalidMidiDataException e) {
+      logger.warning(e.getMessage());
+    }
+  }
+
+  @Override
+  public void noteOn(int noteNumber, int velocity) {
+    send(ShortMessage.NOTE_ON, noteNumber, velocity);
+  }
+
+  @Override
+  public void noteOff(int noteNumber, int velocity) {
+    send(ShortMessage.NOTE_OFF, noteNumber, velocity);
+  }
+
+  @Override
+  public void noteOff(int noteNumber) {
+    noteOff(noteNumber, 0);
+  }
+
+  @Override
+  public void setPolyPressure(int noteNumber, int pressure) {
+    polyPressure[noteNumber] = pressure;
+    send(ShortMessage.POLY_PRESSURE, noteNumber, pressure);
+  }
+
+  @Override
+  public int getPolyPressure(int noteNumber) {
+    return polyPressure[noteNumber];
+  }
+
+  @Override
+  public void setChannelPressure(int pressure) {
+    this.channelPressure = pressure;
+    send(ShortMessage.CHANNEL_PRESSURE, pressure, 0);
+  }
+
+  @Override
+  public int getChannelPressure() {
+    return this.channelPressure;
+  }
+
+  @Override
+  public void controlChange(int controller, int value) {
+    controllers[controller] = value;
+    send(ShortMessage.CONTROL_CHANGE, controller, value);
+  }
+
+  @Override
+  public int getController(int controller) {
+    return controllers[controller];
+  }
+
+  @Override
+  public void programChange(int program) {
+    this.program = program;
+    send(ShortMessage.PROGRAM_CHANGE, program, 0);
+  }
+
+  @Override
+  public void programChange(int bank, int program) {
+    controlChange(0, (bank >> 7) & 0x7F);
+    controlChange(32, bank & 0x7F);
+    programChange(program);
+  }
+
+  @Override
+  public int getProgram() {
+    return this.program;
+  }
+
+  @Override
+  public void setPitchBend(int bend) {
+    this.pitchBend = bend;
+    send(ShortMessage.PITCH_BEND, bend & 0x7F, (bend >> 7) & 0x7F);
+  }
+
+  @Override
+  public int getPitchBend() {
+    return this.pitchBend;
+  }
+
+  @Override
+  public void resetAllControllers() {
+    controlChange(121, 0);
+  }
+
+  @Override
+  public void allNotesOff() {
+    controlChange(123, 0);
+  }
+
+  @Override
+  public void allSoundOff() {
+    controlChange(120, 0);
+  }
+
+  @Override
+  public boolean localControl(boolean on) {
+    controlChange(122, on ? 127 : 0);
+    return on;
+  }
+
+  @Override
+  public void setMono(boolean on) {
+    this.mono = on;
+    controlChange(on ? 126 : 127, 0);
+  }
+
+  @Override
+  public boolean getMono() {
+    return this.mono;
+  }
+
+  @Override
+  public void setOmni(boolean on) {
+    this.omni = on;
+    controlChange(on ? 125 : 124, 0);
+  }
+
+  @Override
+  public boolean getOmni() {
+    return this.omni;
+  }
+
+  @Override
+  public void setMute(boolean mute) {
+    this.mute = mute;
+  }
+
+  @Override
+  public boolean getMute() {
+    return this.mute;
+  }
+
+  @Override
+  public void setSolo(boolean soloState) {
+    this.solo = soloState;
+  }
+
+  @Override
+  public boolean getSolo() {
+    return this.solo;
+  }
+}
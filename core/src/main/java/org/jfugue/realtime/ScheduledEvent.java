@@ -1,7 +1,13 @@
 package org.jfugue.realtime;
 
 
-interface ScheduledEvent {
+/**
+ * A user callback that RealtimePlayer runs at a scheduled time.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface ScheduledEvent {
 
   /**
    * <p>execute.</p>
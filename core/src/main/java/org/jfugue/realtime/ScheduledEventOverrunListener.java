@@ -0,0 +1,52 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * Told when a user ScheduledEvent finishes later than the budget set on RealtimePlayer, or cannot
+ * be run at all because its executor refused it. Callbacks run on whichever thread noticed the
+ * problem, so implementations should return quickly.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see RealtimePlayer#setScheduledEventExecutor(java.util.concurrent.Executor)
+ * @see RealtimePlayer#setScheduledEventBudgetInMillis(long)
+ */
+public interface ScheduledEventOverrunListener {
+
+  /**
+   * <p>onOverrun.</p>
+   *
+   * @param event the event that overran
+   * @param scheduledTimeInMillis the time the event was scheduled for
+   * @param startDelayInMillis how long after that time the event started running
+   * @param runTimeInMillis how long the event took to run
+   */
+  void onOverrun(ScheduledEvent event, long scheduledTimeInMillis, long startDelayInMillis,
+    long runTimeInMillis);
+
+  /**
+   * <p>onRejected.</p>
+   *
+   * @param event the event the executor would not accept
+   * @param scheduledTimeInMillis the time the event was scheduled for
+   */
+  void onRejected(ScheduledEvent event, long scheduledTimeInMillis);
+}
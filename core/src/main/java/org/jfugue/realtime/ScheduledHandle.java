@@ -0,0 +1,80 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * Returned by RealtimePlayer when an event, command or interpolator is scheduled. The handle can be
+ * cancelled from any thread; the scheduler thread checks the flag when the work comes due and
+ * simply drops it, so cancelling never has to search the schedule.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class ScheduledHandle {
+
+  private final long timeInMillis;
+  private final RealtimeMidiParserListener.Command command;
+  private final Object source;
+  private volatile boolean cancelled;
+
+  ScheduledHandle(long timeInMillis, RealtimeMidiParserListener.Command command, Object source) {
+    this.timeInMillis = timeInMillis;
+    this.command = command;
+    this.source = source;
+  }
+
+  /**
+   * Returns the time, relative to the start of the player, at which this work was requested to
+   * run. For interpolators, this is the time at which the interpolator was submitted.
+   *
+   * @return a long.
+   */
+  public long getTimeInMillis() {
+    return this.timeInMillis;
+  }
+
+  /**
+   * Prevents the scheduled work from running, or stops an interpolator that is already running.
+   * Cancelling a handle whose work has already run has no effect.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * <p>isCancelled.</p>
+   *
+   * @return a boolean.
+   */
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+
+  RealtimeMidiParserListener.Command getCommand() {
+    return this.command;
+  }
+
+  /**
+   * The user object (ScheduledEvent or RealtimeInterpolator) this handle was created for, if any.
+   */
+  Object getSource() {
+    return this.source;
+  }
+}
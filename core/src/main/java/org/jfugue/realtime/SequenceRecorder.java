@@ -0,0 +1,87 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import org.jfugue.midi.MidiDefaults;
+
+/**
+ * A Receiver that writes every message it is sent into a Sequence, at the time shown by a
+ * RealtimeClock. The sequence is set up so that one tick is one millisecond: a resolution of 500
+ * ticks per quarter note at 120 beats per minute. Pass it to
+ * {@link RealtimePlayer#RealtimePlayer(Receiver, RealtimeClock)} to record a realtime session,
+ * either live with the default clock or offline with a {@link VirtualRealtimeClock}.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class SequenceRecorder implements Receiver {
+
+  private static final int TICKS_PER_QUARTER_NOTE = 500;
+  private static final int MICROSECONDS_PER_QUARTER_NOTE = 500000;
+
+  private final RealtimeClock clock;
+  private final Sequence sequence;
+  private final Track track;
+
+  /**
+   * <p>Constructor for SequenceRecorder.</p>
+   *
+   * @param clock a {@link org.jfugue.realtime.RealtimeClock} object.
+   * @throws javax.sound.midi.InvalidMidiDataException if any.
+   */
+  public SequenceRecorder(RealtimeClock clock) throws InvalidMidiDataException {
+    this.clock = clock;
+    this.sequence = new Sequence(Sequence.PPQ, TICKS_PER_QUARTER_NOTE);
+    this.track = sequence.createTrack();
+    MetaMessage tempo = new MetaMessage();
+    tempo.setMessage(MidiDefaults.META_TEMPO, new byte[]{
+      (byte) (MICROSECONDS_PER_QUARTER_NOTE >> 16), (byte) (MICROSECONDS_PER_QUARTER_NOTE >> 8),
+      (byte) MICROSECONDS_PER_QUARTER_NOTE}, 3);
+    track.add(new MidiEvent(tempo, 0));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void send(MidiMessage message, long timeStamp) {
+    track.add(new MidiEvent((MidiMessage) message.clone(), clock.getTimeInMillis()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() {
+  }
+
+  /**
+   * Returns the recorded sequence. Its single track holds the messages for every channel, in the
+   * order they were sent.
+   *
+   * @return a {@link javax.sound.midi.Sequence} object.
+   */
+  public Sequence getSequence() {
+    return this.sequence;
+  }
+}
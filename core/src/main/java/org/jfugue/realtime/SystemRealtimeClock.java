@@ -0,0 +1,51 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+/**
+ * The default RealtimeClock, which counts elapsed time from its creation. Milliseconds and
+ * microseconds are both read from {@link System#nanoTime()}, so the two always agree.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class SystemRealtimeClock implements RealtimeClock {
+
+  private final long originalNanoTime;
+
+  /**
+   * <p>Constructor for SystemRealtimeClock.</p>
+   */
+  public SystemRealtimeClock() {
+    this.originalNanoTime = System.nanoTime();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getTimeInMillis() {
+    return (System.nanoTime() - this.originalNanoTime) / 1000000L;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getTimeInMicros() {
+    return (System.nanoTime() - this.originalNanoTime) / 1000L;
+  }
+}
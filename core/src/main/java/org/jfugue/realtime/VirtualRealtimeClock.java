@@ -0,0 +1,97 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A RealtimeClock that only moves when told to. A RealtimePlayer created with this clock has no
+ * scheduler thread of its own: advancing the clock runs, on the calling thread, everything that
+ * falls due along the way, one millisecond at a time and as fast as the work allows. Together with
+ * {@link SequenceRecorder}, this renders a realtime session to a Sequence without waiting for it
+ * to play, and makes realtime behaviour reproducible in tests.
+ *
+ * <pre>
+ *  VirtualRealtimeClock clock = new VirtualRealtimeClock();
+ *  SequenceRecorder recorder = new SequenceRecorder(clock);
+ *  RealtimePlayer player = new RealtimePlayer(recorder, clock);
+ *  player.play("C D E F");
+ *  clock.advanceBy(2000);
+ *  Sequence sequence = recorder.getSequence();
+ * </pre>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class VirtualRealtimeClock implements RealtimeClock {
+
+  private final List<RealtimeMidiParserListener> schedulers;
+  private volatile long timeInMillis;
+
+  /**
+   * <p>Constructor for VirtualRealtimeClock.</p>
+   */
+  public VirtualRealtimeClock() {
+    this.schedulers = new CopyOnWriteArrayList<>();
+    this.timeInMillis = 0;
+  }
+
+  void attach(RealtimeMidiParserListener scheduler) {
+    schedulers.add(scheduler);
+  }
+
+  void detach(RealtimeMidiParserListener scheduler) {
+    schedulers.remove(scheduler);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getTimeInMillis() {
+    return this.timeInMillis;
+  }
+
+  /**
+   * Moves the clock forward to the given time, running all work due up to and including it.
+   *
+   * @param newTimeInMillis a long, no earlier than the current time.
+   */
+  public synchronized void advanceTo(long newTimeInMillis) {
+    if (newTimeInMillis < timeInMillis) {
+      throw new IllegalArgumentException(
+        "A virtual clock cannot go backwards from " + timeInMillis + " to " + newTimeInMillis);
+    }
+    for (long time = timeInMillis; time <= newTimeInMillis; time++) {
+      this.timeInMillis = time;
+      for (RealtimeMidiParserListener scheduler : schedulers) {
+        scheduler.processUntil(time + 1);
+      }
+    }
+  }
+
+  /**
+   * Moves the clock forward by the given number of milliseconds.
+   *
+   * @param millis a long.
+   */
+  public void advanceBy(long millis) {
+    advanceTo(timeInMillis + millis);
+  }
+}
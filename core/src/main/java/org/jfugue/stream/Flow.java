@@ -0,0 +1,105 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+/**
+ * The interfaces of a reactive stream, in the shape of <code>java.util.concurrent.Flow</code>,
+ * which is not available on the Java versions JFugue builds for. A subscriber asks for items with
+ * {@link Subscription#request(long)} and the publisher never sends more than it asked for, so a
+ * slow consumer holds back a fast producer instead of being flooded by it.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class Flow {
+
+  private Flow() {
+  }
+
+  /**
+   * A producer of items, received by each subscriber as it asks for them.
+   *
+   * @param <T> the type of the items published.
+   */
+  public interface Publisher<T> {
+
+    /**
+     * Adds the given subscriber, and calls its {@link Subscriber#onSubscribe(Subscription)} with
+     * the new subscription. If the subscriber cannot be added, its
+     * {@link Subscriber#onError(Throwable)} is called instead.
+     *
+     * @param subscriber a {@link org.jfugue.stream.Flow.Subscriber} object.
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+  }
+
+  /**
+   * A receiver of items. The methods of one subscriber are called one at a time, in order.
+   *
+   * @param <T> the type of the items received.
+   */
+  public interface Subscriber<T> {
+
+    /**
+     * Called before any other method, with the subscription used to ask for items.
+     *
+     * @param subscription a {@link org.jfugue.stream.Flow.Subscription} object.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with each item asked for.
+     *
+     * @param item the next item.
+     */
+    void onNext(T item);
+
+    /**
+     * Called when the publisher fails or the subscription is misused. No other method is called
+     * afterwards.
+     *
+     * @param throwable a {@link java.lang.Throwable} object.
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called once every item has been sent. No other method is called afterwards.
+     */
+    void onComplete();
+  }
+
+  /**
+   * The link between one publisher and one subscriber.
+   */
+  public interface Subscription {
+
+    /**
+     * Asks for up to n more items. A value that is not positive fails the subscription.
+     *
+     * @param n the number of items to add to the demand.
+     */
+    void request(long n);
+
+    /**
+     * Stops the items. Items may still arrive for a short while after this returns.
+     */
+    void cancel();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import org.jfugue.midi.MidiParser;
+
+/**
+ * Pulls MusicEvents out of a MIDI sequence an event at a time, in the same order as
+ * MidiParser.parse(Sequence): each track in turn. Splitting happens between tracks, and only when
+ * the tracks on either side use different channels, since MidiParser keeps the time and the
+ * sounding notes of each channel and a fresh parser could not pick those up halfway. Package scope.
+ *
+ * @author fmatar
+ */
+final class MidiSpliterator implements Spliterator<MusicEvent> {
+
+  private static final int UNKNOWN = -1;
+
+  private final Sequence sequence;
+  private final Track[] tracks;
+  private final int[] channelMasks;
+  private int track;
+  private int event;
+  private int endTrack;
+  private MidiParser parser;
+  private MusicEventQueue queue;
+  private boolean finished;
+
+  MidiSpliterator(Sequence sequence) {
+    this.sequence = sequence;
+    this.tracks = sequence.getTracks();
+    this.channelMasks = new int[tracks.length];
+    Arrays.fill(channelMasks, UNKNOWN);
+    this.endTrack = tracks.length;
+  }
+
+  private MidiSpliterator(MidiSpliterator other, int endTrack) {
+    this.sequence = other.sequence;
+    this.tracks = other.tracks;
+    this.channelMasks = other.channelMasks;
+    this.track = other.track;
+    this.event = other.event;
+    this.endTrack = endTrack;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super MusicEvent> action) {
+    if (parser == null) {
+      parser = new MidiParser();
+      queue = new MusicEventQueue();
+      parser.addParserListener(queue);
+      parser.startParser(sequence);
+    }
+    while (queue.isEmpty() && track < endTrack) {
+      if (event < tracks[track].size()) {
+        parser.parseEvent(tracks[track].get(event++));
+      } else {
+        track++;
+        event = 0;
+      }
+    }
+    if (queue.isEmpty() && !finished) {
+      finished = true;
+      parser.stopParser();
+    }
+    MusicEvent next = queue.poll();
+    if (next == null) {
+      return false;
+    }
+    action.accept(next);
+    return true;
+  }
+
+  @Override
+  public Spliterator<MusicEvent> trySplit() {
+    int split = (track + endTrack + 1) >>> 1;
+    if (split <= track || split >= endTrack
+      || (channels(track, split) & channels(split, endTrack)) != 0) {
+      return null;
+    }
+    MidiSpliterator prefix = new MidiSpliterator(this, split);
+    prefix.parser = this.parser;
+    prefix.queue = this.queue;
+    prefix.finished = this.finished;
+    this.parser = null;
+    this.queue = null;
+    this.track = split;
+    this.event = 0;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    long size = -event;
+    for (int i = track; i < endTrack; i++) {
+      size += tracks[i].size();
+    }
+    return Math.max(size, 0L);
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  /**
+   * Returns a mask of the channels used by the tracks in the given range.
+   */
+  private int channels(int from, int to) {
+    int mask = 0;
+    for (int i = from; i < to; i++) {
+      if (channelMasks[i] == UNKNOWN) {
+        int trackMask = 0;
+        for (int j = 0; j < tracks[i].size(); j++) {
+          MidiMessage message = tracks[i].get(j).getMessage();
+          if (message instanceof ShortMessage) {
+            trackMask |= 1 << ((ShortMessage) message).getChannel();
+          }
+        }
+        channelMasks[i] = trackMask;
+      }
+      mask |= channelMasks[i];
+    }
+    return mask;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import org.jfugue.parser.EventType;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+
+/**
+ * One event pulled from a stream of music, together with the track and layer it belongs to. The
+ * values mean the same as the columns of {@link org.jfugue.transform.MusicEvents}: the value of a
+ * note or chord is its note value, of a TEMPO the beats per minute, of a CONTROLLER the controller
+ * value (with the controller as the secondary value), and so on.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see MusicEventStreams
+ */
+public final class MusicEvent {
+
+  private final EventType type;
+  private final byte track;
+  private final byte layer;
+  private final long value;
+  private final int secondaryValue;
+  private final double duration;
+  private final Object payload;
+
+  MusicEvent(EventType type, byte track, byte layer, long value, int secondaryValue,
+    double duration, Object payload) {
+    this.type = type;
+    this.track = track;
+    this.layer = layer;
+    this.value = value;
+    this.secondaryValue = secondaryValue;
+    this.duration = duration;
+    this.payload = payload;
+  }
+
+  /**
+   * <p>getType.</p>
+   *
+   * @return a {@link org.jfugue.parser.EventType} object.
+   */
+  public EventType getType() {
+    return this.type;
+  }
+
+  /**
+   * <p>getTrack.</p>
+   *
+   * @return a byte.
+   */
+  public byte getTrack() {
+    return this.track;
+  }
+
+  /**
+   * <p>getLayer.</p>
+   *
+   * @return a byte.
+   */
+  public byte getLayer() {
+    return this.layer;
+  }
+
+  /**
+   * <p>getValue.</p>
+   *
+   * @return a long.
+   */
+  public long getValue() {
+    return this.value;
+  }
+
+  /**
+   * <p>getSecondaryValue.</p>
+   *
+   * @return a int.
+   */
+  public int getSecondaryValue() {
+    return this.secondaryValue;
+  }
+
+  /**
+   * <p>getDuration.</p>
+   *
+   * @return the duration of a note or chord, or the requested time of a
+   *   TRACK_BEAT_TIME_REQUESTED, in whole notes.
+   */
+  public double getDuration() {
+    return this.duration;
+  }
+
+  /**
+   * <p>isNote.</p>
+   *
+   * @return true for a NOTE, NOTE_PRESSED or NOTE_RELEASED.
+   */
+  public boolean isNote() {
+    return type == EventType.NOTE || type == EventType.NOTE_PRESSED
+      || type == EventType.NOTE_RELEASED;
+  }
+
+  /**
+   * <p>getNote.</p>
+   *
+   * @return the note of a NOTE, NOTE_PRESSED or NOTE_RELEASED, the root of a CHORD, or null.
+   */
+  public Note getNote() {
+    if (payload instanceof Chord) {
+      return ((Chord) payload).getRoot();
+    }
+    return payload instanceof Note ? (Note) payload : null;
+  }
+
+  /**
+   * <p>getChord.</p>
+   *
+   * @return the chord of a CHORD, or null.
+   */
+  public Chord getChord() {
+    return payload instanceof Chord ? (Chord) payload : null;
+  }
+
+  /**
+   * <p>getText.</p>
+   *
+   * @return the text of a LYRIC, MARKER or bookmark, the id of a FUNCTION, or null.
+   */
+  public String getText() {
+    if (type == EventType.FUNCTION) {
+      return (String) ((Object[]) payload)[0];
+    }
+    return payload instanceof String ? (String) payload : null;
+  }
+
+  /**
+   * <p>getBytes.</p>
+   *
+   * @return a copy of the data of a SYSTEM_EXCLUSIVE, or null.
+   */
+  public byte[] getBytes() {
+    return payload instanceof byte[] ? ((byte[]) payload).clone() : null;
+  }
+
+  /**
+   * <p>getMessage.</p>
+   *
+   * @return the message of a FUNCTION, or null.
+   */
+  public Object getMessage() {
+    return type == EventType.FUNCTION ? ((Object[]) payload)[1] : null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    StringBuilder buddy = new StringBuilder();
+    buddy.append(type).append(" V").append(track).append(" L").append(layer).append(' ');
+    if (payload instanceof Note || payload instanceof Chord) {
+      buddy.append(payload);
+    } else if (payload instanceof String) {
+      buddy.append(payload);
+    } else if (type == EventType.FUNCTION) {
+      buddy.append(getText()).append('(').append(getMessage()).append(')');
+    } else if (type == EventType.TRACK_BEAT_TIME_REQUESTED) {
+      buddy.append(duration);
+    } else {
+      buddy.append(value);
+      if (secondaryValue != 0) {
+        buddy.append(',').append(secondaryValue);
+      }
+    }
+    return buddy.toString();
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import java.util.Arrays;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.EventType;
+import org.jfugue.parser.ParserListener;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+
+/**
+ * Turns the events fired by a parser into MusicEvents, keeping track of the track and layer each
+ * belongs to, and hands them to {@link #onEvent(MusicEvent)}. While muted, it follows track and
+ * layer changes but drops every other event. Package scope.
+ *
+ * @author fmatar
+ */
+abstract class MusicEventAdapter implements ParserListener {
+
+  private final byte[] layers = new byte[MidiDefaults.TRACKS];
+  private byte track;
+  private boolean muted;
+
+  /**
+   * Receives each event that is not muted.
+   */
+  abstract void onEvent(MusicEvent event);
+
+  void setMuted(boolean muted) {
+    this.muted = muted;
+  }
+
+  @Override
+  public void beforeParsingStarts() {
+    track = 0;
+    Arrays.fill(layers, (byte) 0);
+  }
+
+  @Override
+  public void afterParsingFinished() {
+  }
+
+  @Override
+  public void onTrackChanged(byte track) {
+    this.track = track;
+  }
+
+  @Override
+  public void onLayerChanged(byte layer) {
+    layers[track] = layer;
+  }
+
+  @Override
+  public void onInstrumentParsed(byte instrument) {
+    add(EventType.INSTRUMENT, instrument, 0, 0.0D, null);
+  }
+
+  @Override
+  public void onTempoChanged(int tempoBPM) {
+    add(EventType.TEMPO, tempoBPM, 0, 0.0D, null);
+  }
+
+  @Override
+  public void onKeySignatureParsed(byte key, byte scale) {
+    add(EventType.KEY_SIGNATURE, key, scale, 0.0D, null);
+  }
+
+  @Override
+  public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
+    add(EventType.TIME_SIGNATURE, numerator, powerOfTwo, 0.0D, null);
+  }
+
+  @Override
+  public void onBarLineParsed(long id) {
+    add(EventType.BAR_LINE, id, 0, 0.0D, null);
+  }
+
+  @Override
+  public void onTrackBeatTimeBookmarked(String timeBookmarkId) {
+    add(EventType.TRACK_BEAT_TIME_BOOKMARK, 0, 0, 0.0D, timeBookmarkId);
+  }
+
+  @Override
+  public void onTrackBeatTimeBookmarkRequested(String timeBookmarkId) {
+    add(EventType.TRACK_BEAT_TIME_BOOKMARK_REQUESTED, 0, 0, 0.0D, timeBookmarkId);
+  }
+
+  @Override
+  public void onTrackBeatTimeRequested(double time) {
+    add(EventType.TRACK_BEAT_TIME_REQUESTED, 0, 0, time, null);
+  }
+
+  @Override
+  public void onPitchWheelParsed(byte lsb, byte msb) {
+    add(EventType.PITCH_WHEEL, (msb & 0x7F) << 7 | lsb & 0x7F, 0, 0.0D, null);
+  }
+
+  @Override
+  public void onChannelPressureParsed(byte pressure) {
+    add(EventType.CHANNEL_PRESSURE, pressure, 0, 0.0D, null);
+  }
+
+  @Override
+  public void onPolyphonicPressureParsed(byte key, byte pressure) {
+    add(EventType.POLYPHONIC_PRESSURE, pressure, key, 0.0D, null);
+  }
+
+  @Override
+  public void onSystemExclusiveParsed(byte... bytes) {
+    add(EventType.SYSTEM_EXCLUSIVE, 0, 0, 0.0D, bytes.clone());
+  }
+
+  @Override
+  public void onControllerEventParsed(byte controller, byte value) {
+    add(EventType.CONTROLLER, value, controller, 0.0D, null);
+  }
+
+  @Override
+  public void onLyricParsed(String lyric) {
+    add(EventType.LYRIC, 0, 0, 0.0D, lyric);
+  }
+
+  @Override
+  public void onMarkerParsed(String marker) {
+    add(EventType.MARKER, 0, 0, 0.0D, marker);
+  }
+
+  @Override
+  public void onFunctionParsed(String id, Object message) {
+    add(EventType.FUNCTION, 0, 0, 0.0D, new Object[]{id, message});
+  }
+
+  @Override
+  public void onNotePressed(Note note) {
+    add(EventType.NOTE_PRESSED, note.getValue(), 0, note.getDuration(), note);
+  }
+
+  @Override
+  public void onNoteReleased(Note note) {
+    add(EventType.NOTE_RELEASED, note.getValue(), 0, note.getDuration(), note);
+  }
+
+  @Override
+  public void onNoteParsed(Note note) {
+    add(EventType.NOTE, note.getValue(), 0, note.getDuration(), note);
+  }
+
+  @Override
+  public void onChordParsed(Chord chord) {
+    add(EventType.CHORD, chord.getRoot().getValue(), 0, chord.getRoot().getDuration(), chord);
+  }
+
+  private void add(EventType type, long value, int secondaryValue, double duration,
+    Object payload) {
+    if (!muted) {
+      onEvent(new MusicEvent(type, track, layers[track], value, secondaryValue, duration,
+        payload));
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import java.util.ArrayDeque;
+
+/**
+ * Queues the events fired by a parser as MusicEvents until a spliterator pulls them. While muted,
+ * it follows track and layer changes but drops every other event; spliterators use that to catch
+ * up on the context of the music before the point they start from. Package scope.
+ *
+ * @author fmatar
+ */
+final class MusicEventQueue extends MusicEventAdapter {
+
+  private final ArrayDeque<MusicEvent> queue = new ArrayDeque<>();
+
+  MusicEvent poll() {
+    return queue.poll();
+  }
+
+  boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  @Override
+  void onEvent(MusicEvent event) {
+    queue.add(event);
+  }
+
+  @Override
+  public void beforeParsingStarts() {
+    queue.clear();
+    super.beforeParsingStarts();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import org.jfugue.pattern.PatternProducer;
+import org.staccato.StaccatoParser;
+
+/**
+ * Streams of the events in a piece of music, for code that would rather pull events than have
+ * them pushed to a ParserListener. The music is parsed lazily, as events are taken from the
+ * stream, so a short-circuiting operation such as <code>limit</code>, <code>anyMatch</code> or
+ * <code>findFirst</code> stops parsing as soon as it has its answer:
+ *
+ * <pre>
+ *  Optional&lt;MusicEvent&gt; firstLyric = MusicEventStreams.of(new File("song.mid"))
+ *      .filter(e -&gt; e.getType() == EventType.LYRIC)
+ *      .findFirst();
+ * </pre>
+ *
+ * <p>The streams are sequential, but can be made parallel: Staccato splits at voice changes and
+ * MIDI between tracks. Events come in the order a parser would have fired them either way.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class MusicEventStreams {
+
+  private MusicEventStreams() {
+  }
+
+  /**
+   * Streams the events of the given Staccato music.
+   *
+   * @param producer a {@link org.jfugue.pattern.PatternProducer} object.
+   * @return a {@link java.util.stream.Stream} object.
+   */
+  public static Stream<MusicEvent> of(PatternProducer producer) {
+    String[] tokens = new StaccatoParser().tokenize(producer.getPattern().toString());
+    return StreamSupport.stream(new StaccatoSpliterator(tokens), false);
+  }
+
+  /**
+   * Streams the events of the given MIDI sequence.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   * @return a {@link java.util.stream.Stream} object.
+   */
+  public static Stream<MusicEvent> of(Sequence sequence) {
+    return StreamSupport.stream(new MidiSpliterator(sequence), false);
+  }
+
+  /**
+   * Streams the events of the given Standard MIDI File.
+   *
+   * @param file a {@link java.io.File} object.
+   * @return a {@link java.util.stream.Stream} object.
+   * @throws java.io.IOException if any.
+   * @throws javax.sound.midi.InvalidMidiDataException if any.
+   */
+  public static Stream<MusicEvent> of(File file) throws IOException, InvalidMidiDataException {
+    return of(MidiSystem.getSequence(file));
+  }
+
+  /**
+   * Streams the events of the Standard MIDI File read from the given stream.
+   *
+   * @param in a {@link java.io.InputStream} object.
+   * @return a {@link java.util.stream.Stream} object.
+   * @throws java.io.IOException if any.
+   * @throws javax.sound.midi.InvalidMidiDataException if any.
+   */
+  public static Stream<MusicEvent> of(InputStream in) throws IOException, InvalidMidiDataException {
+    return of(MidiSystem.getSequence(in));
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ParserListener that publishes the events fired by a parser to reactive subscribers. Add it to
+ * any parser with <code>parser.addParserListener(publisher)</code>, including the parser behind a
+ * {@link org.jfugue.devices.MidiParserReceiver}, and subscribe to it.
+ *
+ * <p>Each subscriber has a buffer holding up to <code>bufferCapacity</code> events, and receives
+ * them in chunks of up to <code>batchSize</code> events, one chunk for each item it requests.
+ * Chunks are sent on the given executor, so the parser never waits for a subscriber to handle
+ * them. When a buffer is full, the {@link OverflowPolicy} decides what happens to the next event:
+ * the parser can wait for the subscriber to catch up, which is the right thing when parsing a file,
+ * or events can be dropped or coalesced, which keeps a realtime input from falling behind.</p>
+ *
+ * <p>The events must come from one parser thread at a time. Call {@link #close()} once no more
+ * events will come, so subscribers can complete.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class ParserPublisher extends MusicEventAdapter implements Flow.Publisher<List<MusicEvent>> {
+
+  /** Constant <code>DEFAULT_BUFFER_CAPACITY=1024</code> */
+  public static final int DEFAULT_BUFFER_CAPACITY = 1024;
+  /** Constant <code>DEFAULT_BATCH_SIZE=64</code> */
+  public static final int DEFAULT_BATCH_SIZE = 64;
+
+  /**
+   * What a subscription does with a new event when its buffer is full.
+   */
+  public enum OverflowPolicy {
+    /** The parser waits until the subscriber has taken some events. */
+    BLOCK,
+    /** The new event is dropped. */
+    DROP_NEWEST,
+    /** The oldest buffered event is dropped to make room for the new one. */
+    DROP_OLDEST,
+    /**
+     * Controller, pitch wheel, pressure and tempo events always replace the buffered events of the
+     * same kind on the same track that they supersede, so only the latest value is sent. When the
+     * buffer is still full, the oldest buffered event is dropped.
+     */
+    COALESCE
+  }
+
+  private final Executor executor;
+  private final int bufferCapacity;
+  private final int batchSize;
+  private final OverflowPolicy overflowPolicy;
+  private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private boolean closed;
+  private Throwable closedException;
+
+  /**
+   * <p>Constructor for ParserPublisher.</p>
+   */
+  public ParserPublisher() {
+    this(OverflowPolicy.BLOCK);
+  }
+
+  /**
+   * <p>Constructor for ParserPublisher.</p>
+   *
+   * @param overflowPolicy a {@link org.jfugue.stream.ParserPublisher.OverflowPolicy} object.
+   */
+  public ParserPublisher(OverflowPolicy overflowPolicy) {
+    this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_CAPACITY, DEFAULT_BATCH_SIZE, overflowPolicy);
+  }
+
+  /**
+   * <p>Constructor for ParserPublisher.</p>
+   *
+   * @param executor the executor that chunks are sent on.
+   * @param bufferCapacity the number of events each subscriber can have waiting.
+   * @param batchSize the largest number of events in one chunk.
+   * @param overflowPolicy a {@link org.jfugue.stream.ParserPublisher.OverflowPolicy} object.
+   */
+  public ParserPublisher(Executor executor, int bufferCapacity, int batchSize,
+    OverflowPolicy overflowPolicy) {
+    if (executor == null || overflowPolicy == null) {
+      throw new IllegalArgumentException("The executor and the overflow policy must be given");
+    }
+    if (bufferCapacity < 1 || batchSize < 1) {
+      throw new IllegalArgumentException("The buffer capacity and the batch size must be positive");
+    }
+    this.executor = executor;
+    this.bufferCapacity = bufferCapacity;
+    this.batchSize = batchSize;
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void subscribe(Flow.Subscriber<? super List<MusicEvent>> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("The subscriber must be given");
+    }
+    EventSubscription subscription = new EventSubscription(subscriber);
+    Throwable rejection = null;
+    synchronized (this) {
+      for (EventSubscription existing : subscriptions) {
+        if (existing.subscriber == subscriber) {
+          rejection = new IllegalStateException("The subscriber is already subscribed");
+        }
+      }
+      if (rejection == null && !closed) {
+        subscriptions.add(subscription);
+      }
+    }
+    if (rejection != null) {
+      subscriber.onError(rejection);
+      return;
+    }
+    subscriber.onSubscribe(subscription);
+    synchronized (this) {
+      if (closed) {
+        subscription.terminate(closedException);
+      }
+    }
+  }
+
+  /**
+   * Completes every subscriber once it has received the events already published.
+   */
+  public void close() {
+    terminate(null);
+  }
+
+  /**
+   * Fails every subscriber with the given exception, dropping the events they have not received.
+   *
+   * @param throwable a {@link java.lang.Throwable} object.
+   */
+  public void closeExceptionally(Throwable throwable) {
+    if (throwable == null) {
+      throw new IllegalArgumentException("The exception must be given");
+    }
+    terminate(throwable);
+  }
+
+  /**
+   * <p>isClosed.</p>
+   *
+   * @return true once {@link #close()} or {@link #closeExceptionally(Throwable)} has been called.
+   */
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * <p>getSubscriberCount.</p>
+   *
+   * @return the number of subscribers that have neither cancelled nor terminated.
+   */
+  public int getSubscriberCount() {
+    return subscriptions.size();
+  }
+
+  /**
+   * <p>getDroppedCount.</p>
+   *
+   * @return the number of events dropped or coalesced away across all subscribers.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  @Override
+  void onEvent(MusicEvent event) {
+    for (EventSubscription subscription : subscriptions) {
+      subscription.offer(event);
+    }
+  }
+
+  private void terminate(Throwable throwable) {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      closedException = throwable;
+    }
+    for (EventSubscription subscription : subscriptions) {
+      subscription.terminate(throwable);
+    }
+  }
+
+  private static boolean supersedes(MusicEvent newer, MusicEvent older) {
+    if (newer.getType() != older.getType() || newer.getTrack() != older.getTrack()) {
+      return false;
+    }
+    switch (newer.getType()) {
+      case TEMPO:
+      case PITCH_WHEEL:
+      case CHANNEL_PRESSURE:
+        return true;
+      case CONTROLLER:
+      case POLYPHONIC_PRESSURE:
+        return newer.getSecondaryValue() == older.getSecondaryValue();
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The buffer and demand of one subscriber. Events go into the buffer on the parser thread, and a
+   * drain task on the executor moves them out to the subscriber. The work counter makes sure only
+   * one drain task runs at a time, so the subscriber is never called concurrently.
+   */
+  private final class EventSubscription implements Flow.Subscription, Runnable {
+
+    private final Flow.Subscriber<? super List<MusicEvent>> subscriber;
+    private final ArrayDeque<MusicEvent> buffer = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger work = new AtomicInteger();
+    private long demand;
+    private boolean cancelled;
+    private boolean terminated;
+    private Throwable exception;
+
+    EventSubscription(Flow.Subscriber<? super List<MusicEvent>> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    void offer(MusicEvent event) {
+      lock.lock();
+      try {
+        if (cancelled || terminated) {
+          return;
+        }
+        if (overflowPolicy == OverflowPolicy.COALESCE) {
+          int size = buffer.size();
+          buffer.removeIf(older -> supersedes(event, older));
+          droppedCount.addAndGet(size - buffer.size());
+        }
+        if (buffer.size() >= bufferCapacity) {
+          switch (overflowPolicy) {
+            case BLOCK:
+              while (buffer.size() >= bufferCapacity && !cancelled && !terminated) {
+                try {
+                  notFull.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  droppedCount.incrementAndGet();
+                  return;
+                }
+              }
+              if (cancelled || terminated) {
+                return;
+              }
+              break;
+            case DROP_NEWEST:
+              droppedCount.incrementAndGet();
+              return;
+            case DROP_OLDEST:
+            case COALESCE:
+              buffer.poll();
+              droppedCount.incrementAndGet();
+              break;
+            default:
+              throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+          }
+        }
+        buffer.add(event);
+      } finally {
+        lock.unlock();
+      }
+      schedule();
+    }
+
+    void terminate(Throwable throwable) {
+      lock.lock();
+      try {
+        if (terminated) {
+          return;
+        }
+        terminated = true;
+        exception = throwable;
+        if (throwable != null) {
+          buffer.clear();
+        }
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      schedule();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        terminate(new IllegalArgumentException(
+          "The number of items requested must be positive, not " + n));
+        return;
+      }
+      lock.lock();
+      try {
+        if (cancelled) {
+          return;
+        }
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      } finally {
+        lock.unlock();
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      lock.lock();
+      try {
+        cancelled = true;
+        buffer.clear();
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      subscriptions.remove(this);
+    }
+
+    private void schedule() {
+      if (work.getAndIncrement() == 0) {
+        executor.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = 1;
+      do {
+        while (drainOne()) {
+          // Keep sending while there are events and demand for them
+        }
+        missed = work.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    /**
+     * Sends one chunk, or the completion once the buffer is empty. Returns whether there may be
+     * more to send.
+     */
+    private boolean drainOne() {
+      List<MusicEvent> batch = null;
+      lock.lock();
+      try {
+        if (cancelled) {
+          return false;
+        }
+        if (buffer.isEmpty() && terminated) {
+          cancelled = true;
+        } else if (demand == 0 || buffer.isEmpty()) {
+          return false;
+        } else {
+          demand--;
+          batch = new ArrayList<>(Math.min(batchSize, buffer.size()));
+          while (batch.size() < batchSize && !buffer.isEmpty()) {
+            batch.add(buffer.poll());
+          }
+          notFull.signalAll();
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (batch == null) {
+        subscriptions.remove(this);
+        if (exception == null) {
+          subscriber.onComplete();
+        } else {
+          subscriber.onError(exception);
+        }
+        return false;
+      }
+      try {
+        subscriber.onNext(Collections.unmodifiableList(batch));
+      } catch (RuntimeException e) {
+        cancel();
+        subscriber.onError(e);
+        return false;
+      }
+      return true;
+    }
+  }
+}
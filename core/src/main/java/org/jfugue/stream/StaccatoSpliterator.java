@@ -0,0 +1,136 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import org.staccato.IVLSubparser;
+import org.staccato.StaccatoParser;
+
+/**
+ * Pulls MusicEvents out of Staccato a token at a time. The music is preprocessed and split into
+ * tokens up front, which is cheap; each token is parsed only when the events before it have been
+ * consumed. Splitting happens at voice tokens: the part after the split gets its own parser, which
+ * first reads the voice, layer, key and time signature tokens before the split, without passing on
+ * their events, so it starts in the same context the whole parse would have reached there. Package
+ * scope.
+ *
+ * @author fmatar
+ */
+final class StaccatoSpliterator implements Spliterator<MusicEvent> {
+
+  private static final Object parserLock = new Object();
+
+  private final String[] tokens;
+  private int position;
+  private int end;
+  private StaccatoParser parser;
+  private MusicEventQueue queue;
+
+  StaccatoSpliterator(String[] tokens) {
+    this(tokens, 0, tokens.length);
+  }
+
+  private StaccatoSpliterator(String[] tokens, int position, int end) {
+    this.tokens = tokens;
+    this.position = position;
+    this.end = end;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super MusicEvent> action) {
+    if (parser == null) {
+      start();
+    }
+    while (queue.isEmpty() && position < end) {
+      parser.parseToken(tokens[position++]);
+    }
+    MusicEvent event = queue.poll();
+    if (event == null) {
+      return false;
+    }
+    action.accept(event);
+    return true;
+  }
+
+  @Override
+  public Spliterator<MusicEvent> trySplit() {
+    int split = findVoiceToken((position + end) >>> 1, end);
+    if (split == -1) {
+      split = findVoiceToken(position + 1, (position + end) >>> 1);
+    }
+    if (split == -1) {
+      return null;
+    }
+    StaccatoSpliterator prefix = new StaccatoSpliterator(tokens, position, split);
+    prefix.parser = this.parser;
+    prefix.queue = this.queue;
+    this.parser = null;
+    this.queue = null;
+    this.position = split;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - position;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  /**
+   * Creates the parser and brings it up to the context at the current position.
+   */
+  private void start() {
+    synchronized (parserLock) {
+      parser = new StaccatoParser();
+    }
+    queue = new MusicEventQueue();
+    parser.addParserListener(queue);
+    queue.setMuted(true);
+    for (int i = 0; i < position; i++) {
+      if (isContextToken(tokens[i])) {
+        parser.parseToken(tokens[i]);
+      }
+    }
+    queue.setMuted(false);
+  }
+
+  /**
+   * Returns the index of the first voice token in the given range, or -1 if there is none.
+   */
+  private int findVoiceToken(int from, int to) {
+    for (int i = Math.max(from, position + 1); i < to; i++) {
+      String token = tokens[i];
+      if (token.length() > 1 && token.charAt(0) == 'V' && IVLSubparser.getInstance().matches(token)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isContextToken(String token) {
+    return !token.isEmpty() && (token.charAt(0) == 'V' || token.charAt(0) == 'L'
+      || token.startsWith("KEY:") || token.startsWith("TIME:"));
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.temporal;
+
+import java.util.function.LongSupplier;
+import org.jfugue.parser.Parser;
+
+/**
+ * A play head over the events collected by TemporalPLP that never blocks. Instead of sleeping
+ * between events, the caller calls {@link #update()} from its own loop, timer or animation frame,
+ * and the cursor fires every event that has come due since the last call. The cursor can be
+ * started from any point in the music, played faster or slower than written, paused, and moved
+ * with {@link #seek(long)}, which restores the instruments, controllers and tempo in effect at the
+ * new position before any further events are fired.
+ *
+ * <p>A cursor is not thread-safe; drive it from one thread.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see TemporalPLP#createCursor()
+ */
+public final class TemporalCursor {
+
+  private final TemporalEventStore store;
+  private final Parser parser;
+  private final LongSupplier clock;
+  private double rate = 1.0D;
+  private boolean running;
+  private boolean announce = true;
+  private int row;
+  private long positionInMillis;
+  private long anchorClockInMillis;
+  private long anchorPositionInMillis;
+
+  TemporalCursor(TemporalEventStore store, Parser parser, LongSupplier clock) {
+    this.store = store;
+    this.parser = parser;
+    this.clock = clock;
+  }
+
+  /**
+   * Starts, or resumes, moving the cursor forward with the clock.
+   */
+  public void start() {
+    if (!running) {
+      anchor();
+      running = true;
+    }
+  }
+
+  /**
+   * Stops the cursor where it is. Events that have come due are fired first.
+   */
+  public void pause() {
+    if (running) {
+      update();
+      running = false;
+    }
+  }
+
+  /**
+   * <p>isRunning.</p>
+   *
+   * @return a boolean.
+   */
+  public boolean isRunning() {
+    return this.running;
+  }
+
+  /**
+   * Sets how fast the cursor moves through the music: 2.0 plays twice as fast as written, 0.5 half
+   * as fast. The change takes effect from the current position.
+   *
+   * @param rate a double greater than 0.
+   */
+  public void setRate(double rate) {
+    if (!(rate > 0.0D)) {
+      throw new IllegalArgumentException("The playback rate must be greater than 0, not " + rate);
+    }
+    if (running) {
+      update();
+      anchor();
+    }
+    this.rate = rate;
+  }
+
+  /**
+   * <p>getRate.</p>
+   *
+   * @return a double.
+   */
+  public double getRate() {
+    return this.rate;
+  }
+
+  /**
+   * Moves the cursor to the given time in the music without firing the events it passes over.
+   * Instead, the tempo, key and time signature, and each track's layer, instrument, controllers,
+   * pitch wheel and pressure as they stand at that time are fired, so listeners can pick up from
+   * there. A running cursor keeps running from the new position.
+   *
+   * @param millis the time, in milliseconds from the start of the music.
+   */
+  public void seek(long millis) {
+    this.row = store.indexOf(millis);
+    this.positionInMillis = millis;
+    store.stateBefore(row).fire(parser);
+    this.announce = true;
+    if (running) {
+      anchor();
+    }
+  }
+
+  /**
+   * Fires every event that has come due since the last update, given the time on the clock, the
+   * playback rate and the position the cursor was started or sought from. Returns at once if the
+   * cursor is not running.
+   *
+   * @return the number of events fired.
+   */
+  public int update() {
+    if (!running) {
+      return 0;
+    }
+    long elapsed = clock.getAsLong() - anchorClockInMillis;
+    return advanceTo(anchorPositionInMillis + (long) (elapsed * rate));
+  }
+
+  /**
+   * Fires every event up to and including the given time in the music, whether or not the cursor
+   * is running, and leaves the cursor there. A time before the current position does nothing; use
+   * {@link #seek(long)} to go back.
+   *
+   * @param millis the time, in milliseconds from the start of the music.
+   * @return the number of events fired.
+   */
+  public int advanceTo(long millis) {
+    if (millis < positionInMillis) {
+      return 0;
+    }
+    int next = store.indexOf(millis + 1);
+    int fired = next - row;
+    if (fired > 0) {
+      store.replayRows(parser, row, next, announce);
+      announce = false;
+      row = next;
+    }
+    positionInMillis = millis;
+    return fired;
+  }
+
+  /**
+   * <p>getPositionInMillis.</p>
+   *
+   * @return the time in the music, in milliseconds, the cursor has reached.
+   */
+  public long getPositionInMillis() {
+    return this.positionInMillis;
+  }
+
+  /**
+   * Returns how long, in milliseconds on the clock, until the next event comes due at the current
+   * rate; 0 if it already has, or -1 if the cursor has fired every event.
+   *
+   * @return a long.
+   */
+  public long getMillisUntilNextEvent() {
+    if (isFinished()) {
+      return -1;
+    }
+    long now = running
+      ? anchorPositionInMillis + (long) ((clock.getAsLong() - anchorClockInMillis) * rate)
+      : positionInMillis;
+    long remaining = store.getTimeInMillis(row) - now;
+    return remaining <= 0 ? 0 : (long) Math.ceil(remaining / rate);
+  }
+
+  /**
+   * <p>isFinished.</p>
+   *
+   * @return true once every event has been fired.
+   */
+  public boolean isFinished() {
+    return row >= store.size();
+  }
+
+  private void anchor() {
+    this.anchorClockInMillis = clock.getAsLong();
+    this.anchorPositionInMillis = positionInMillis;
+  }
+}
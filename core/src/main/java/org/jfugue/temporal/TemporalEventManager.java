@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import org.jfugue.midi.MidiDefaults;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
 
 /**
  * Places musical data into the MIDI sequence. Package scope, final class.
@@ -33,7 +35,7 @@ import org.jfugue.midi.MidiDefaults;
  */
 final class TemporalEventManager {
 
-  private final Map<Long, List<TemporalEvent>> timeToEventMap = new TreeMap<>();
+  private final TemporalEventStore store = new TemporalEventStore();
   private final byte[] currentLayer = new byte[MidiDefaults.TRACKS];
   private final double[][] beatTime = new double[MidiDefaults.TRACKS][MidiDefaults.LAYERS];
   private int tempoBeatsPerMinute = MidiDefaults.DEFAULT_TEMPO_BEATS_PER_MINUTE;
@@ -56,13 +58,19 @@ final class TemporalEventManager {
     for (int i = 0; i < MidiDefaults.TRACKS; i++) {
       this.currentLayer[i] = 0;
     }
-    this.timeToEventMap.clear();
+    for (int i = 0; i < MidiDefaults.TRACKS; i++) {
+      for (int j = 0; j < MidiDefaults.LAYERS; j++) {
+        this.beatTime[i][j] = 0.0D;
+      }
+    }
+    this.store.clear();
   }
 
   /**
    * <p>finish.</p>
    */
   public void finish() {
+    this.store.sort();
   }
 
   /**
@@ -139,33 +147,87 @@ final class TemporalEventManager {
   }
 
   /**
-   * <p>addRealTimeEvent.</p>
+   * Adds an event whose arguments are packed into a long, at the current time of the current track
+   * and layer.
+   *
+   * @param type one of the TemporalEventStore types.
+   * @param arg a long.
+   */
+  public void addEvent(byte type, long arg) {
+    store.add(getTimeInMillis(), currentTrack, currentLayer[currentTrack], type, arg);
+  }
+
+  /**
+   * Adds an event whose arguments are kept in the store's side table.
+   *
+   * @param type one of the TemporalEventStore types.
+   * @param payload an {@link java.lang.Object} object.
+   */
+  public void addEventWithPayload(byte type, Object payload) {
+    store.addWithPayload(getTimeInMillis(), currentTrack, currentLayer[currentTrack], type, payload);
+  }
+
+  /**
+   * Adds a note and advances the current track by its duration.
+   *
+   * @param note a {@link org.jfugue.theory.Note} object.
+   */
+  public void addNote(Note note) {
+    store.addNote(getTimeInMillis(), currentTrack, currentLayer[currentTrack], note);
+    advanceTrackBeatTime(note.getDuration());
+  }
+
+  /**
+   * Adds a chord and advances the current track by the duration of its first note.
    *
-   * @param event a {@link org.jfugue.temporal.DurationTemporalEvent} object.
+   * @param chord a {@link org.jfugue.theory.Chord} object.
    */
-  public void addRealTimeEvent(DurationTemporalEvent event) {
-    addRealTimeEvent((TemporalEvent) event);
-    advanceTrackBeatTime(event.getDuration());
+  public void addChord(Chord chord) {
+    store.addChord(getTimeInMillis(), currentTrack, currentLayer[currentTrack], chord);
+    advanceTrackBeatTime(chord.getNotes()[0].getDuration());
   }
 
   /**
-   * <p>addRealTimeEvent.</p>
+   * <p>getEventStore.</p>
    *
-   * @param event a {@link org.jfugue.temporal.TemporalEvent} object.
+   * @return a {@link org.jfugue.temporal.TemporalEventStore} object.
    */
-  public void addRealTimeEvent(TemporalEvent event) {
-    List<TemporalEvent> eventList = timeToEventMap
-      .computeIfAbsent(convertBeatsToMillis(getTrackBeatTime()), k -> new ArrayList<>());
-    eventList.add(event);
+  public TemporalEventStore getEventStore() {
+    return this.store;
   }
 
   /**
-   * <p>Getter for the field <code>timeToEventMap</code>.</p>
+   * Builds the time-to-event map that TemporalPLP used to keep, from the rows of the store. Each
+   * run of rows from a different track or layer than the row before is preceded by a track and
+   * layer event, as {@link TemporalEventStore#replay(org.jfugue.parser.Parser)} would fire them.
    *
    * @return a {@link java.util.Map} object.
    */
   public Map<Long, List<TemporalEvent>> getTimeToEventMap() {
-    return this.timeToEventMap;
+    Map<Long, List<TemporalEvent>> timeToEventMap = new TreeMap<>();
+    TemporalEvents events = new TemporalEvents();
+    int track = -1;
+    int layer = -1;
+    for (int i = 0; i < store.size(); i++) {
+      List<TemporalEvent> eventList = timeToEventMap
+        .computeIfAbsent(store.getTimeInMillis(i), k -> new ArrayList<>());
+      if (store.getTrack(i) != track) {
+        track = store.getTrack(i);
+        layer = -1;
+        eventList.add(events.new TrackEvent(store.getTrack(i)));
+      }
+      if (store.getLayer(i) != layer) {
+        layer = store.getLayer(i);
+        eventList.add(events.new LayerEvent(store.getLayer(i)));
+      }
+      final int row = i;
+      eventList.add(parser -> store.execute(row, parser));
+    }
+    return timeToEventMap;
+  }
+
+  private long getTimeInMillis() {
+    return convertBeatsToMillis(getTrackBeatTime());
   }
 
   private long convertBeatsToMillis(double beats) {
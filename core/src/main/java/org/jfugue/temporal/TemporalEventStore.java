@@ -0,0 +1,426 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.temporal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jfugue.parser.Parser;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+
+/**
+ * Holds the events collected by TemporalPLP in time order, one row per event, as parallel
+ * primitive arrays: the time in milliseconds, the event type, the track and layer it belongs to,
+ * up to 64 bits of packed arguments, and a duration. Payloads that don't fit in a long (system
+ * exclusive data, lyrics, markers, chords and user objects) live in a side table that the row
+ * points into, and the original strings of notes are interned so that a score with ten thousand
+ * C5s keeps one copy of "C5".
+ *
+ * <p>Rows are appended in parse order and sorted by time, stably, when parsing finishes. After
+ * that, a range of time is found with a binary search and replayed into any Parser. Track and
+ * layer changes are not stored as rows; replay fires them whenever the next row belongs to a
+ * different track or layer than the one before it, so events from interleaved voices still reach
+ * listeners with the right context.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class TemporalEventStore {
+
+  static final byte INSTRUMENT = 1;
+  static final byte TEMPO = 2;
+  static final byte KEY_SIGNATURE = 3;
+  static final byte TIME_SIGNATURE = 4;
+  static final byte BAR_LINE = 5;
+  static final byte PITCH_WHEEL = 6;
+  static final byte CHANNEL_PRESSURE = 7;
+  static final byte POLYPHONIC_PRESSURE = 8;
+  static final byte SYSTEM_EXCLUSIVE = 9;
+  static final byte CONTROLLER = 10;
+  static final byte LYRIC = 11;
+  static final byte MARKER = 12;
+  static final byte FUNCTION = 13;
+  static final byte NOTE = 14;
+  static final byte CHORD = 16;
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int SNAPSHOT_INTERVAL = 1024;
+
+  private static final int STRING_SHIFT = 40;
+  private static final long PACKED_NOTE_MASK = (1L << STRING_SHIFT) - 1;
+
+  private long[] times;
+  private byte[] types;
+  private byte[] tracks;
+  private byte[] layers;
+  private long[] args;
+  private double[] durations;
+  private int size;
+  private boolean sorted;
+
+  private List<TemporalState> snapshots;
+
+  private final List<Object> payloads;
+  private final List<String> strings;
+  private final Map<String, Integer> stringIndex;
+
+  /**
+   * <p>Constructor for TemporalEventStore.</p>
+   */
+  public TemporalEventStore() {
+    this.payloads = new ArrayList<>();
+    this.strings = new ArrayList<>();
+    this.stringIndex = new HashMap<>();
+    clear();
+  }
+
+  /**
+   * <p>clear.</p>
+   */
+  void clear() {
+    this.times = new long[INITIAL_CAPACITY];
+    this.types = new byte[INITIAL_CAPACITY];
+    this.tracks = new byte[INITIAL_CAPACITY];
+    this.layers = new byte[INITIAL_CAPACITY];
+    this.args = new long[INITIAL_CAPACITY];
+    this.durations = new double[INITIAL_CAPACITY];
+    this.size = 0;
+    this.sorted = true;
+    this.snapshots = null;
+    this.payloads.clear();
+    this.strings.clear();
+    this.stringIndex.clear();
+  }
+
+  /**
+   * Returns the number of events in the store.
+   *
+   * @return a int.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * <p>getTimeInMillis.</p>
+   *
+   * @param index the row of the event, from 0 to size() - 1.
+   * @return the time, in milliseconds from the start of the music, of the event.
+   */
+  public long getTimeInMillis(int index) {
+    sort();
+    return times[index];
+  }
+
+  /**
+   * <p>getTrack.</p>
+   *
+   * @param index the row of the event, from 0 to size() - 1.
+   * @return the track of the event.
+   */
+  public byte getTrack(int index) {
+    sort();
+    return tracks[index];
+  }
+
+  /**
+   * <p>getLayer.</p>
+   *
+   * @param index the row of the event, from 0 to size() - 1.
+   * @return the layer of the event.
+   */
+  public byte getLayer(int index) {
+    sort();
+    return layers[index];
+  }
+
+  /**
+   * Returns the time of the last event in the store, or 0 if the store is empty.
+   *
+   * @return a long.
+   */
+  public long getLastTimeInMillis() {
+    sort();
+    return size == 0 ? 0 : times[size - 1];
+  }
+
+  /**
+   * Returns the row of the first event at or after the given time, or size() if there is none.
+   * This is a binary search.
+   *
+   * @param millis a long.
+   * @return a int.
+   */
+  public int indexOf(long millis) {
+    sort();
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (times[mid] < millis) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Fires every event in the store, in time order, to the listeners of the given Parser. Unlike
+   * {@link TemporalPLP#parse()}, this does not wait between events and does not fire
+   * beforeParsingStarts or afterParsingFinished.
+   *
+   * @param parser a {@link org.jfugue.parser.Parser} object.
+   */
+  public void replay(Parser parser) {
+    replay(parser, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Fires the events whose time is at or after fromMillis and before toMillis to the listeners of
+   * the given Parser. The track and layer of the first event are always fired first.
+   *
+   * @param parser a {@link org.jfugue.parser.Parser} object.
+   * @param fromMillis a long.
+   * @param toMillis a long.
+   */
+  public void replay(Parser parser, long fromMillis, long toMillis) {
+    replayRows(parser, indexOf(fromMillis), indexOf(toMillis), true);
+  }
+
+  /**
+   * Fires the events in rows [from, to), along with a track and layer change before every row whose
+   * track or layer differs from the row before it. The first row is announced this way as well if
+   * announceFirst is set or it is the first row of the store; a caller replaying consecutive ranges
+   * can leave it unset to carry the context over from the previous range.
+   */
+  void replayRows(Parser parser, int from, int to, boolean announceFirst) {
+    for (int i = from; i < to; i++) {
+      boolean newTrack = (i == from && announceFirst) || i == 0 || tracks[i] != tracks[i - 1];
+      if (newTrack) {
+        parser.fireTrackChanged(tracks[i]);
+      }
+      if (newTrack || layers[i] != layers[i - 1]) {
+        parser.fireLayerChanged(layers[i]);
+      }
+      execute(i, parser);
+    }
+  }
+
+  /**
+   * Returns the context left behind by the rows before the given row. A snapshot of the context is
+   * kept every SNAPSHOT_INTERVAL rows, so this never replays more than that many rows, however
+   * far into the music the row lies.
+   */
+  TemporalState stateBefore(int row) {
+    sort();
+    if (snapshots == null) {
+      snapshots = new ArrayList<>();
+      TemporalState state = new TemporalState();
+      for (int i = 0; i < size; i++) {
+        if (i % SNAPSHOT_INTERVAL == 0) {
+          snapshots.add(new TemporalState(state));
+        }
+        state.apply(types[i], tracks[i], layers[i], args[i]);
+      }
+    }
+    int snapshot = Math.min(row / SNAPSHOT_INTERVAL, snapshots.size() - 1);
+    if (snapshot < 0) {
+      return new TemporalState();
+    }
+    TemporalState state = new TemporalState(snapshots.get(snapshot));
+    for (int i = snapshot * SNAPSHOT_INTERVAL; i < Math.min(row, size); i++) {
+      state.apply(types[i], tracks[i], layers[i], args[i]);
+    }
+    return state;
+  }
+
+  /**
+   * Fires the single event in the given row, without any track or layer change.
+   */
+  void execute(int i, Parser parser) {
+    long a = args[i];
+    switch (types[i]) {
+      case INSTRUMENT:
+        parser.fireInstrumentParsed((byte) a);
+        break;
+      case TEMPO:
+        parser.fireTempoChanged((int) a);
+        break;
+      case KEY_SIGNATURE:
+        parser.fireKeySignatureParsed((byte) a, (byte) (a >> 8));
+        break;
+      case TIME_SIGNATURE:
+        parser.fireTimeSignatureParsed((byte) a, (byte) (a >> 8));
+        break;
+      case BAR_LINE:
+        parser.fireBarLineParsed(a);
+        break;
+      case PITCH_WHEEL:
+        parser.firePitchWheelParsed((byte) a, (byte) (a >> 8));
+        break;
+      case CHANNEL_PRESSURE:
+        parser.fireChannelPressureParsed((byte) a);
+        break;
+      case POLYPHONIC_PRESSURE:
+        parser.firePolyphonicPressureParsed((byte) a, (byte) (a >> 8));
+        break;
+      case SYSTEM_EXCLUSIVE:
+        parser.fireSystemExclusiveParsed((byte[]) payloads.get((int) a));
+        break;
+      case CONTROLLER:
+        parser.fireControllerEventParsed((byte) a, (byte) (a >> 8));
+        break;
+      case LYRIC:
+        parser.fireLyricParsed((String) payloads.get((int) a));
+        break;
+      case MARKER:
+        parser.fireMarkerParsed((String) payloads.get((int) a));
+        break;
+      case FUNCTION:
+        Object[] function = (Object[]) payloads.get((int) a);
+        parser.fireFunctionParsed((String) function[0], function[1]);
+        break;
+      case NOTE:
+        parser.fireNoteParsed(decodeNote(a, durations[i]));
+        break;
+      case CHORD:
+        parser.fireChordParsed((Chord) payloads.get((int) a));
+        break;
+      default:
+        break;
+    }
+  }
+
+  void add(long time, byte track, byte layer, byte type, long arg) {
+    add(time, track, layer, type, arg, 0.0D);
+  }
+
+  void addWithPayload(long time, byte track, byte layer, byte type, Object payload) {
+    payloads.add(payload);
+    add(time, track, layer, type, payloads.size() - 1);
+  }
+
+  /**
+   * Adds a note as a row of primitives, from which it is rebuilt with its duration exactly.
+   */
+  void addNote(long time, byte track, byte layer, Note note) {
+    add(time, track, layer, NOTE, encodeNote(note), note.getDuration());
+  }
+
+  void addChord(long time, byte track, byte layer, Chord chord) {
+    payloads.add(chord);
+    add(time, track, layer, CHORD, payloads.size() - 1, chord.getNotes()[0].getDuration());
+  }
+
+  private void add(long time, byte track, byte layer, byte type, long arg, double duration) {
+    if (size == times.length) {
+      int capacity = size * 2;
+      times = Arrays.copyOf(times, capacity);
+      types = Arrays.copyOf(types, capacity);
+      tracks = Arrays.copyOf(tracks, capacity);
+      layers = Arrays.copyOf(layers, capacity);
+      args = Arrays.copyOf(args, capacity);
+      durations = Arrays.copyOf(durations, capacity);
+    }
+    if (size > 0 && time < times[size - 1]) {
+      sorted = false;
+    }
+    snapshots = null;
+    times[size] = time;
+    types[size] = type;
+    tracks[size] = track;
+    layers[size] = layer;
+    args[size] = arg;
+    durations[size] = duration;
+    size++;
+  }
+
+  /**
+   * Puts the rows in time order. Rows with the same time keep the order they were added in.
+   */
+  void sort() {
+    if (sorted) {
+      return;
+    }
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    final long[] keys = times;
+    Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+    long[] newTimes = new long[times.length];
+    byte[] newTypes = new byte[times.length];
+    byte[] newTracks = new byte[times.length];
+    byte[] newLayers = new byte[times.length];
+    long[] newArgs = new long[times.length];
+    double[] newDurations = new double[times.length];
+    for (int i = 0; i < size; i++) {
+      int from = order[i];
+      newTimes[i] = times[from];
+      newTypes[i] = types[from];
+      newTracks[i] = tracks[from];
+      newLayers[i] = layers[from];
+      newArgs[i] = args[from];
+      newDurations[i] = durations[from];
+    }
+    this.times = newTimes;
+    this.types = newTypes;
+    this.tracks = newTracks;
+    this.layers = newLayers;
+    this.args = newArgs;
+    this.durations = newDurations;
+    this.sorted = true;
+  }
+
+  /**
+   * Packs a note into a long: the note as {@link PackedNote} packs it in the low bits, then one
+   * more than the index of the interned original string (0 for none).
+   */
+  private long encodeNote(Note note) {
+    long string = (note.getOriginalString() == null) ? 0 : intern(note.getOriginalString()) + 1;
+    return PackedNote.pack(note) | string << STRING_SHIFT;
+  }
+
+  private Note decodeNote(long packed, double duration) {
+    Note note = PackedNote.toNote(packed & PACKED_NOTE_MASK, duration);
+    int string = (int) (packed >>> STRING_SHIFT);
+    if (string > 0) {
+      note.setOriginalString(strings.get(string - 1));
+    }
+    return note;
+  }
+
+  private int intern(String string) {
+    Integer index = stringIndex.get(string);
+    if (index == null) {
+      index = strings.size();
+      strings.add(string);
+      stringIndex.put(string, index);
+    }
+    return index;
+  }
+}
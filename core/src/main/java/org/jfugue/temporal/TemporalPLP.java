@@ -21,7 +21,7 @@ package org.jfugue.temporal;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.LongSupplier;
 import org.jfugue.parser.Parser;
 import org.jfugue.parser.ParserListener;
 import org.jfugue.theory.Chord;
@@ -36,19 +36,18 @@ import org.jfugue.theory.Note;
 public class TemporalPLP extends Parser implements ParserListener {
 
   private final TemporalEventManager eventManager;
-  private final TemporalEvents events;
 
   /**
    * <p>Constructor for TemporalPLP.</p>
    */
   public TemporalPLP() {
     super();
-    this.events = new TemporalEvents();
     this.eventManager = new TemporalEventManager();
   }
 
   /**
-   * <p>getTimeToEventMap.</p>
+   * Returns the events collected by the last parse, keyed by time. The map is built from the event
+   * store each time this is called; {@link #getEventStore()} is the cheaper way to read them.
    *
    * @return a {@link java.util.Map} object.
    */
@@ -56,6 +55,19 @@ public class TemporalPLP extends Parser implements ParserListener {
     return eventManager.getTimeToEventMap();
   }
 
+  /**
+   * Returns the events collected by the last parse, in time order.
+   *
+   * @return a {@link org.jfugue.temporal.TemporalEventStore} object.
+   */
+  public TemporalEventStore getEventStore() {
+    return eventManager.getEventStore();
+  }
+
+  private static long pack(byte low, byte high) {
+    return (low & 0xFF) | (high & 0xFF) << 8;
+  }
+
   /* ParserListener Events */
 
   /** {@inheritDoc} */
@@ -74,45 +86,43 @@ public class TemporalPLP extends Parser implements ParserListener {
   @Override
   public void onTrackChanged(byte track) {
     this.eventManager.setCurrentTrack(track);
-    this.eventManager.addRealTimeEvent(events.new TrackEvent(track));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onLayerChanged(byte layer) {
     this.eventManager.setCurrentLayer(layer);
-    this.eventManager.addRealTimeEvent(events.new LayerEvent(layer));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onInstrumentParsed(byte instrument) {
-    this.eventManager.addRealTimeEvent(events.new InstrumentEvent(instrument));
+    this.eventManager.addEvent(TemporalEventStore.INSTRUMENT, instrument);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onTempoChanged(int tempoBPM) {
     this.eventManager.setTempo(tempoBPM);
-    this.eventManager.addRealTimeEvent(events.new TempoEvent(tempoBPM));
+    this.eventManager.addEvent(TemporalEventStore.TEMPO, tempoBPM);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onKeySignatureParsed(byte key, byte scale) {
-    this.eventManager.addRealTimeEvent(events.new KeySignatureEvent(key, scale));
+    this.eventManager.addEvent(TemporalEventStore.KEY_SIGNATURE, pack(key, scale));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
-    this.eventManager.addRealTimeEvent(events.new TimeSignatureEvent(numerator, powerOfTwo));
+    this.eventManager.addEvent(TemporalEventStore.TIME_SIGNATURE, pack(numerator, powerOfTwo));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onBarLineParsed(long time) {
-    this.eventManager.addRealTimeEvent(events.new BarEvent(time));
+    this.eventManager.addEvent(TemporalEventStore.BAR_LINE, time);
   }
 
   /** {@inheritDoc} */
@@ -137,49 +147,51 @@ public class TemporalPLP extends Parser implements ParserListener {
   /** {@inheritDoc} */
   @Override
   public void onPitchWheelParsed(byte lsb, byte msb) {
-    this.eventManager.addRealTimeEvent(events.new PitchWheelEvent(lsb, msb));
+    this.eventManager.addEvent(TemporalEventStore.PITCH_WHEEL, pack(lsb, msb));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onChannelPressureParsed(byte pressure) {
-    this.eventManager.addRealTimeEvent(events.new ChannelPressureEvent(pressure));
+    this.eventManager.addEvent(TemporalEventStore.CHANNEL_PRESSURE, pressure);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onPolyphonicPressureParsed(byte key, byte pressure) {
-    this.eventManager.addRealTimeEvent(events.new PolyphonicPressureEvent(key, pressure));
+    this.eventManager.addEvent(TemporalEventStore.POLYPHONIC_PRESSURE, pack(key, pressure));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onSystemExclusiveParsed(byte... bytes) {
-    this.eventManager.addRealTimeEvent(events.new SystemExclusiveEvent(bytes));
+    this.eventManager
+      .addEventWithPayload(TemporalEventStore.SYSTEM_EXCLUSIVE, bytes);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onControllerEventParsed(byte controller, byte value) {
-    this.eventManager.addRealTimeEvent(events.new ControllerEvent(controller, value));
+    this.eventManager.addEvent(TemporalEventStore.CONTROLLER, pack(controller, value));
   }
 
   /** {@inheritDoc} */
   @Override
   public void onLyricParsed(String lyric) {
-    this.eventManager.addRealTimeEvent(events.new LyricEvent(lyric));
+    this.eventManager.addEventWithPayload(TemporalEventStore.LYRIC, lyric);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onMarkerParsed(String marker) {
-    this.eventManager.addRealTimeEvent(events.new MarkerEvent(marker));
+    this.eventManager.addEventWithPayload(TemporalEventStore.MARKER, marker);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onFunctionParsed(String id, Object message) {
-    this.eventManager.addRealTimeEvent(events.new UserEvent(id, message));
+    this.eventManager
+      .addEventWithPayload(TemporalEventStore.FUNCTION, new Object[]{id, message});
   }
 
   /** {@inheritDoc} */
@@ -195,13 +207,13 @@ public class TemporalPLP extends Parser implements ParserListener {
   /** {@inheritDoc} */
   @Override
   public void onNoteParsed(Note note) {
-    this.eventManager.addRealTimeEvent(events.new NoteEvent(note));
+    this.eventManager.addNote(note);
   }
 
   /** {@inheritDoc} */
   @Override
   public void onChordParsed(Chord chord) {
-    this.eventManager.addRealTimeEvent(events.new ChordEvent(chord));
+    this.eventManager.addChord(chord);
   }
 
   private void delay(long millis) {
@@ -213,22 +225,75 @@ public class TemporalPLP extends Parser implements ParserListener {
   }
 
   /**
-   * <p>parse.</p>
+   * Fires the events collected by the last parse to the listeners of this TemporalPLP as they come
+   * due, sleeping in between, as if the music were playing.
    */
   public void parse() {
-    fireBeforeParsingStarts();
+    parse(0, 1.0D);
+  }
 
-    long oldTime = 0;
-    Set<Long> times = this.eventManager.getTimeToEventMap().keySet();
-    for (long time : times) {
-      delay(time - oldTime);
-      oldTime = time;
+  /**
+   * Plays the events collected by the last parse to the listeners of this TemporalPLP from the
+   * given point in the music and at the given rate, sleeping in between. The context in effect at
+   * the starting point is fired first; see {@link TemporalCursor#seek(long)}.
+   *
+   * @param fromMillis the time in the music, in milliseconds, to start from.
+   * @param rate the playback rate; 2.0 plays twice as fast as written.
+   */
+  public void parse(long fromMillis, double rate) {
+    fireBeforeParsingStarts();
 
-      for (TemporalEvent event : this.eventManager.getTimeToEventMap().get(time)) {
-        event.execute(this);
-      }
+    TemporalCursor cursor = createCursor();
+    cursor.setRate(rate);
+    cursor.seek(fromMillis);
+    cursor.start();
+    while (!cursor.isFinished()) {
+      delay(cursor.getMillisUntilNextEvent());
+      cursor.update();
     }
 
     fireAfterParsingFinished();
   }
+
+  /**
+   * Fires, without waiting, the events collected by the last parse that fall at or after fromMillis
+   * and before toMillis, to the given listener alone. The listener is told that parsing starts and
+   * finishes around them, and the context in effect at fromMillis is fired before the first event,
+   * so a MidiParserListener, for example, will build a Sequence of just that part of the music.
+   *
+   * @param fromMillis a long.
+   * @param toMillis a long.
+   * @param listener a {@link org.jfugue.parser.ParserListener} object.
+   */
+  public void replay(long fromMillis, long toMillis, ParserListener listener) {
+    Parser parser = new Parser() {
+    };
+    parser.addParserListener(listener);
+    TemporalEventStore store = eventManager.getEventStore();
+    int from = store.indexOf(fromMillis);
+    listener.beforeParsingStarts();
+    store.stateBefore(from).fire(parser);
+    store.replayRows(parser, from, store.indexOf(toMillis), true);
+    listener.afterParsingFinished();
+  }
+
+  /**
+   * Creates a cursor that fires the events collected by the last parse to the listeners of this
+   * TemporalPLP when it is updated, timed by the system clock.
+   *
+   * @return a {@link org.jfugue.temporal.TemporalCursor} object.
+   */
+  public TemporalCursor createCursor() {
+    return createCursor(System::currentTimeMillis);
+  }
+
+  /**
+   * Creates a cursor timed by the given clock, which must count milliseconds.
+   *
+   * @param clock a {@link java.util.function.LongSupplier} object.
+   * @return a {@link org.jfugue.temporal.TemporalCursor} object.
+   */
+  public TemporalCursor createCursor(LongSupplier clock) {
+    return new TemporalCursor(eventManager.getEventStore(), this, clock);
+  }
 }
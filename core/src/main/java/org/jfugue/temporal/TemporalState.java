@@ -0,0 +1,139 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.temporal;
+
+import java.util.Arrays;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.Parser;
+
+/**
+ * The context that the events before some point in a TemporalEventStore leave behind: the tempo,
+ * key and time signature, and for each track its layer, instrument, controller values, pitch wheel
+ * and channel pressure. Seeking restores this context by firing it, so a listener that joins
+ * halfway through hears the same instruments and controllers as one that listened from the start.
+ * Package scope.
+ *
+ * @author fmatar
+ */
+final class TemporalState {
+
+  private static final int UNSET = -1;
+  private static final int CONTROLLERS = 128;
+
+  private int tempo = UNSET;
+  private int keySignature = UNSET;
+  private int timeSignature = UNSET;
+  private final byte[] layer = new byte[MidiDefaults.TRACKS];
+  private final boolean[] trackUsed = new boolean[MidiDefaults.TRACKS];
+  private final short[] instrument = new short[MidiDefaults.TRACKS];
+  private final int[] pitchWheel = new int[MidiDefaults.TRACKS];
+  private final short[] pressure = new short[MidiDefaults.TRACKS];
+  private final short[] controllers = new short[MidiDefaults.TRACKS * CONTROLLERS];
+
+  TemporalState() {
+    Arrays.fill(instrument, (short) UNSET);
+    Arrays.fill(pitchWheel, UNSET);
+    Arrays.fill(pressure, (short) UNSET);
+    Arrays.fill(controllers, (short) UNSET);
+  }
+
+  TemporalState(TemporalState other) {
+    this.tempo = other.tempo;
+    this.keySignature = other.keySignature;
+    this.timeSignature = other.timeSignature;
+    System.arraycopy(other.layer, 0, layer, 0, layer.length);
+    System.arraycopy(other.trackUsed, 0, trackUsed, 0, trackUsed.length);
+    System.arraycopy(other.instrument, 0, instrument, 0, instrument.length);
+    System.arraycopy(other.pitchWheel, 0, pitchWheel, 0, pitchWheel.length);
+    System.arraycopy(other.pressure, 0, pressure, 0, pressure.length);
+    System.arraycopy(other.controllers, 0, controllers, 0, controllers.length);
+  }
+
+  /**
+   * Updates the state with one row of the store.
+   */
+  void apply(byte type, byte track, byte trackLayer, long arg) {
+    trackUsed[track] = true;
+    layer[track] = trackLayer;
+    switch (type) {
+      case TemporalEventStore.TEMPO:
+        tempo = (int) arg;
+        break;
+      case TemporalEventStore.KEY_SIGNATURE:
+        keySignature = (int) arg & 0xFFFF;
+        break;
+      case TemporalEventStore.TIME_SIGNATURE:
+        timeSignature = (int) arg & 0xFFFF;
+        break;
+      case TemporalEventStore.INSTRUMENT:
+        instrument[track] = (short) (arg & 0xFF);
+        break;
+      case TemporalEventStore.CONTROLLER:
+        controllers[track * CONTROLLERS + (int) (arg & 0x7F)] = (short) (arg >> 8 & 0xFF);
+        break;
+      case TemporalEventStore.PITCH_WHEEL:
+        pitchWheel[track] = (int) arg & 0xFFFF;
+        break;
+      case TemporalEventStore.CHANNEL_PRESSURE:
+        pressure[track] = (short) (arg & 0xFF);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Fires the state to the listeners of the given parser: the tempo and signatures first, then,
+   * for each track that has been used, its track and layer followed by everything set on it.
+   */
+  void fire(Parser parser) {
+    if (tempo != UNSET) {
+      parser.fireTempoChanged(tempo);
+    }
+    if (keySignature != UNSET) {
+      parser.fireKeySignatureParsed((byte) keySignature, (byte) (keySignature >> 8));
+    }
+    if (timeSignature != UNSET) {
+      parser.fireTimeSignatureParsed((byte) timeSignature, (byte) (timeSignature >> 8));
+    }
+    for (byte track = 0; track < MidiDefaults.TRACKS; track++) {
+      if (!trackUsed[track]) {
+        continue;
+      }
+      parser.fireTrackChanged(track);
+      parser.fireLayerChanged(layer[track]);
+      if (instrument[track] != UNSET) {
+        parser.fireInstrumentParsed((byte) instrument[track]);
+      }
+      for (int controller = 0; controller < CONTROLLERS; controller++) {
+        short value = controllers[track * CONTROLLERS + controller];
+        if (value != UNSET) {
+          parser.fireControllerEventParsed((byte) controller, (byte) value);
+        }
+      }
+      if (pitchWheel[track] != UNSET) {
+        parser.firePitchWheelParsed((byte) pitchWheel[track], (byte) (pitchWheel[track] >> 8));
+      }
+      if (pressure[track] != UNSET) {
+        parser.fireChannelPressureParsed((byte) pressure[track]);
+      }
+    }
+  }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jfugue.pattern.Pattern;
 import org.jfugue.pattern.PatternProducer;
 import org.jfugue.provider.ChordProviderFactory;
@@ -57,6 +58,7 @@ public class Chord implements PatternProducer {
   /** Constant <code>chordMap</code> */
   public static final Map<String, Intervals> chordMap;
   private static final Map<String, String> humanReadableMap;
+  private static final AtomicInteger chordMapVersion = new AtomicInteger();
 
   static {
     // @formatter:off
@@ -193,6 +195,17 @@ public class Chord implements PatternProducer {
 
   private static void addChord(String name, Intervals intervalPattern) {
     chordMap.put(name, intervalPattern);
+    chordMapVersion.incrementAndGet();
+  }
+
+  /**
+   * Returns a number that changes whenever a chord is added or removed, so that chords parsed
+   * against an earlier chord map can be recognized.
+   *
+   * @return an int.
+   */
+  public static int getChordMapVersion() {
+    return chordMapVersion.get();
   }
 
   /**
@@ -212,6 +225,7 @@ public class Chord implements PatternProducer {
    */
   public static void removeChord(String name) {
     chordMap.remove(name);
+    chordMapVersion.incrementAndGet();
   }
 
   private static String getChordType(Intervals intervals) {
@@ -439,8 +453,8 @@ public class Chord implements PatternProducer {
    * @return a {@link org.jfugue.theory.Note} object.
    */
   public Note getBassNote() {
-    int bassNoteValue = rootNote.getValue() - Note.OCTAVE + Intervals
-      .getHalfsteps(this.intervals.getNthInterval(this.inversion));
+    int bassNoteValue = rootNote.getValue() - Note.OCTAVE
+      + this.intervals.getNthHalfsteps(this.inversion);
 //	    Note r = new Note(bassNoteValue).setOriginalString(Note.NOTE_NAMES_COMMON[bassNoteValue % Note.OCTAVE]).useSameExplicitOctaveSettingAs(getRoot());
     return new Note(Note.NOTE_NAMES_COMMON[bassNoteValue % Note.OCTAVE])
       .useSameExplicitOctaveSettingAs(getRoot());
@@ -471,7 +485,7 @@ public class Chord implements PatternProducer {
 
     for (int i = 0; i < intervals.size(); i++) {
       if (newBass.getValue() % 12
-        == (rootNote.getValue() + Intervals.getHalfsteps(intervals.getNthInterval(i))) % 12) {
+        == (rootNote.getValue() + intervals.getNthHalfsteps(i)) % 12) {
         this.inversion = i;
       }
     }
@@ -496,7 +510,7 @@ public class Chord implements PatternProducer {
    * @return an array of {@link org.jfugue.theory.Note} objects.
    */
   public Note[] getNotes() {
-    int[] halfsteps = this.intervals.toHalfstepArray();
+    int[] halfsteps = this.intervals.getHalfstepArray();
     Note[] retVal = new Note[halfsteps.length];
     retVal[0] = new Note(this.getRoot());
     for (int i = 0; i < halfsteps.length - 1; i++) {
@@ -92,6 +92,13 @@ public class ChordProgression implements PatternProducer {
     return cp;
   }
 
+  /**
+   * Returns the Roman numerals of this progression, or null if it was made from known chords.
+   */
+  String[] getProgressionElements() {
+    return progressionElements;
+  }
+
   private void createProgression(String[] progressionElements) {
     this.progressionElements = progressionElements;
     this.key = Key.DEFAULT_KEY;
@@ -161,32 +168,7 @@ public class ChordProgression implements PatternProducer {
       Note rootNote = NoteProviderFactory.getNoteProvider()
         .createNote(scaleNotes[romanNumeralToIndex(progressionElement)]);
       rootNote.useSameDurationAs(key.getRoot());
-      Intervals intervals = Chord.MAJOR_INTERVALS;
-      if ((progressionElement.charAt(0) == 'i') || (progressionElement.charAt(0) == 'v')) {
-        // Checking to see if the progression element is lowercase
-        intervals = Chord.MINOR_INTERVALS;
-      }
-      if ((progressionElement.toLowerCase().indexOf("o") > 0) || (
-        progressionElement.toLowerCase().indexOf("d") > 0)) {
-        // Checking to see if the progression element is diminished
-        intervals = Chord.DIMINISHED_INTERVALS;
-      }
-      if (progressionElement.endsWith("7")) {
-        if (intervals.equals(Chord.MAJOR_INTERVALS)) {
-          intervals = Chord.MAJOR_SEVENTH_INTERVALS;
-        } else if (intervals.equals(Chord.MINOR_INTERVALS)) {
-          intervals = Chord.MINOR_SEVENTH_INTERVALS;
-        } else if (intervals.equals(Chord.DIMINISHED_INTERVALS)) {
-          intervals = Chord.DIMINISHED_SEVENTH_INTERVALS;
-        }
-      }
-      if (progressionElement.endsWith("7%6")) {
-        if (intervals.equals(Chord.MAJOR_INTERVALS)) {
-          intervals = Chord.MAJOR_SEVENTH_SIXTH_INTERVALS;
-        } else if (intervals.equals(Chord.MINOR_INTERVALS)) {
-          intervals = Chord.MINOR_SEVENTH_SIXTH_INTERVALS;
-        }
-      }
+      Intervals intervals = getIntervals(progressionElement);
 
       // Check for inversions
       int inversions = countInversions(progressionElement);
@@ -200,11 +182,46 @@ public class ChordProgression implements PatternProducer {
     return chords;
   }
 
+  /**
+   * Returns the intervals of the chord named by the given progression element: major or minor
+   * depending on case, diminished if marked with "o" or "d", and extended by a trailing "7" or
+   * "7%6".
+   */
+  static Intervals getIntervals(String progressionElement) {
+    Intervals intervals = Chord.MAJOR_INTERVALS;
+    if ((progressionElement.charAt(0) == 'i') || (progressionElement.charAt(0) == 'v')) {
+      // Checking to see if the progression element is lowercase
+      intervals = Chord.MINOR_INTERVALS;
+    }
+    if ((progressionElement.toLowerCase().indexOf("o") > 0) || (
+      progressionElement.toLowerCase().indexOf("d") > 0)) {
+      // Checking to see if the progression element is diminished
+      intervals = Chord.DIMINISHED_INTERVALS;
+    }
+    if (progressionElement.endsWith("7")) {
+      if (intervals.equals(Chord.MAJOR_INTERVALS)) {
+        intervals = Chord.MAJOR_SEVENTH_INTERVALS;
+      } else if (intervals.equals(Chord.MINOR_INTERVALS)) {
+        intervals = Chord.MINOR_SEVENTH_INTERVALS;
+      } else if (intervals.equals(Chord.DIMINISHED_INTERVALS)) {
+        intervals = Chord.DIMINISHED_SEVENTH_INTERVALS;
+      }
+    }
+    if (progressionElement.endsWith("7%6")) {
+      if (intervals.equals(Chord.MAJOR_INTERVALS)) {
+        intervals = Chord.MAJOR_SEVENTH_SIXTH_INTERVALS;
+      } else if (intervals.equals(Chord.MINOR_INTERVALS)) {
+        intervals = Chord.MINOR_SEVENTH_SIXTH_INTERVALS;
+      }
+    }
+    return intervals;
+  }
+
   /**
    * Only converts Roman numerals I through VII, because that's all we need in music theory... VIII
    * would be the octave and equal I!
    */
-  private int romanNumeralToIndex(String romanNumeral) {
+  static int romanNumeralToIndex(String romanNumeral) {
     String s = romanNumeral.toLowerCase();
     if (s.startsWith("vii")) {
       return 6;
@@ -225,7 +242,7 @@ public class ChordProgression implements PatternProducer {
     }
   }
 
-  private int countInversions(String s) {
+  static int countInversions(String s) {
     int counter = 0;
     for (int i = 0; i < s.length(); i++) {
       if (s.charAt(i) == '^') {
@@ -0,0 +1,304 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jfugue.theory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jfugue.pattern.Pattern;
+
+/**
+ * The chords of a Roman numeral {@link ChordProgression}, worked out once as tables of scale
+ * degrees, interval half-steps and inversions so that the progression can be generated in any
+ * number of keys, inversions and voicings without parsing anything again. Notes come out either
+ * as arrays of MIDI note values, one row per chord, or as Patterns. The table is immutable, so
+ * the bulk methods generate their keys in parallel, and the stream methods generate each key only
+ * when it is pulled.
+ *
+ * <p>The table is a snapshot: changing the progression afterwards, for example with {@link
+ * ChordProgression#distribute(String)}, does not change the table.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class ChordProgressionTable {
+
+  /**
+   * How the notes of each chord are spread out once the chord has been inverted.
+   */
+  public enum Voicing {
+    /** The notes as stacked by the chord, within an octave or so of each other. */
+    CLOSE,
+    /** The second-highest note moved down an octave. */
+    DROP_2,
+    /** The third-highest note moved down an octave. */
+    DROP_3,
+    /** Every other note, starting from the second-lowest, moved up an octave. */
+    OPEN
+  }
+
+  private final String[] elements;
+  private final int[] degrees;
+  private final int[] inversions;
+  private final Intervals[] intervals;
+  private final int[][] halfsteps;
+
+  /**
+   * <p>Constructor for ChordProgressionTable.</p>
+   *
+   * @param progression a {@link org.jfugue.theory.ChordProgression} of Roman numerals.
+   * @throws java.lang.IllegalArgumentException if the progression was made from known chords.
+   */
+  public ChordProgressionTable(ChordProgression progression) {
+    String[] progressionElements = progression.getProgressionElements();
+    if (progressionElements == null) {
+      throw new IllegalArgumentException(
+        "Only a progression of Roman numerals can be generated in other keys");
+    }
+    this.elements = progressionElements.clone();
+    this.degrees = new int[elements.length];
+    this.inversions = new int[elements.length];
+    this.intervals = new Intervals[elements.length];
+    this.halfsteps = new int[elements.length][];
+    for (int i = 0; i < elements.length; i++) {
+      degrees[i] = ChordProgression.romanNumeralToIndex(elements[i]);
+      inversions[i] = ChordProgression.countInversions(elements[i]);
+      intervals[i] = ChordProgression.getIntervals(elements[i]);
+      int[] chordHalfsteps = intervals[i].getHalfstepArray();
+      halfsteps[i] = new int[chordHalfsteps.length];
+      for (int j = 0; j < chordHalfsteps.length; j++) {
+        halfsteps[i][j] = chordHalfsteps[j] - chordHalfsteps[0];
+      }
+    }
+  }
+
+  /**
+   * Returns the twelve keys that share the scale of the given key, with roots rising by a
+   * half-step from the root of the given key.
+   *
+   * @param key a {@link org.jfugue.theory.Key} object.
+   * @return a {@link java.util.List} of twelve keys.
+   */
+  public static List<Key> transpositions(Key key) {
+    List<Key> keys = new ArrayList<>(Note.OCTAVE);
+    byte rootValue = key.getRoot().getValue();
+    for (int i = 0; i < Note.OCTAVE; i++) {
+      byte value = (byte) (rootValue + i);
+      Note root = new Note(value).setOriginalString(Note.getToneStringWithoutOctave(value));
+      keys.add(new Key(root, key.getScale()));
+    }
+    return Collections.unmodifiableList(keys);
+  }
+
+  /**
+   * Returns the number of chords in the progression.
+   *
+   * @return an int.
+   */
+  public int size() {
+    return elements.length;
+  }
+
+  /**
+   * Returns the MIDI note values of each chord of the progression in the given key, lowest note
+   * first. The inversion is added to any inversion marked in the progression with "^".
+   *
+   * @param key a {@link org.jfugue.theory.Key} object.
+   * @param inversion the number of further inversions to apply to every chord.
+   * @param voicing a {@link org.jfugue.theory.ChordProgressionTable.Voicing} object.
+   * @return one array of note values per chord.
+   */
+  public int[][] getNoteValues(Key key, int inversion, Voicing voicing) {
+    checkInversion(inversion);
+    int[] rootValues = getRootValues(key);
+    int[][] values = new int[elements.length][];
+    for (int i = 0; i < elements.length; i++) {
+      values[i] = voice(invert(rootValues[i], halfsteps[i], inversions[i] + inversion), voicing);
+    }
+    return values;
+  }
+
+  /**
+   * Returns the note values of the progression in each of the given keys, in the order of the
+   * keys. The keys are generated in parallel.
+   *
+   * @param keys a {@link java.util.List} of keys.
+   * @param inversion the number of further inversions to apply to every chord.
+   * @param voicing a {@link org.jfugue.theory.ChordProgressionTable.Voicing} object.
+   * @return the note values for each key, as returned by {@link #getNoteValues(Key, int,
+   * Voicing)}.
+   */
+  public int[][][] getNoteValues(List<Key> keys, int inversion, Voicing voicing) {
+    checkInversion(inversion);
+    return noteValues(keys, inversion, voicing).parallel().toArray(int[][][]::new);
+  }
+
+  /**
+   * Returns a lazy stream of the note values of the progression in each of the given keys. Each key
+   * is generated as it is pulled, so very many variations can be written out without holding them
+   * all; the stream may be made parallel.
+   *
+   * @param keys a {@link java.util.List} of keys.
+   * @param inversion the number of further inversions to apply to every chord.
+   * @param voicing a {@link org.jfugue.theory.ChordProgressionTable.Voicing} object.
+   * @return a {@link java.util.stream.Stream} of note values, one element per key.
+   */
+  public Stream<int[][]> noteValues(List<Key> keys, int inversion, Voicing voicing) {
+    checkInversion(inversion);
+    return keys.stream().map(key -> getNoteValues(key, inversion, voicing));
+  }
+
+  /**
+   * Returns the progression in the given key as a Pattern. Close voicings come out as chords, as
+   * {@link ChordProgression#getPattern()} would write them; other voicings come out as notes
+   * played together.
+   *
+   * @param key a {@link org.jfugue.theory.Key} object.
+   * @param inversion the number of further inversions to apply to every chord.
+   * @param voicing a {@link org.jfugue.theory.ChordProgressionTable.Voicing} object.
+   * @return a {@link org.jfugue.pattern.Pattern} object.
+   */
+  public Pattern getPattern(Key key, int inversion, Voicing voicing) {
+    checkInversion(inversion);
+    Note keyRoot = key.getRoot();
+    Pattern pattern = new Pattern();
+    if (voicing == Voicing.CLOSE) {
+      int[] rootValues = getRootValues(key);
+      for (int i = 0; i < elements.length; i++) {
+        Note root = new Note(Note.getToneString((byte) rootValues[i]));
+        root.useSameDurationAs(keyRoot);
+        Chord chord = new Chord(root, intervals[i]);
+        if (inversions[i] + inversion > 0) {
+          chord.setInversion(inversions[i] + inversion);
+        }
+        pattern.add(chord);
+      }
+      return pattern;
+    }
+    String duration = keyRoot.isDurationExplicitlySet()
+      ? Note.getDurationString(keyRoot.getDuration()) : "";
+    StringBuilder buddy = new StringBuilder();
+    for (int[] chord : getNoteValues(key, inversion, voicing)) {
+      buddy.setLength(0);
+      for (int j = 0; j < chord.length; j++) {
+        if (j > 0) {
+          buddy.append('+');
+        }
+        buddy.append(Note.getToneString((byte) chord[j])).append(duration);
+      }
+      pattern.add(buddy.toString());
+    }
+    return pattern;
+  }
+
+  /**
+   * Returns the progression in each of the given keys as Patterns, in the order of the keys. The
+   * keys are generated in parallel.
+   *
+   * @param keys a {@link java.util.List} of keys.
+   * @param inversion the number of further inversions to apply to every chord.
+   * @param voicing a {@link org.jfugue.theory.ChordProgressionTable.Voicing} object.
+   * @return a {@link java.util.List} of patterns, one per key.
+   */
+  public List<Pattern> getPatterns(List<Key> keys, int inversion, Voicing voicing) {
+    checkInversion(inversion);
+    return patterns(keys, inversion, voicing).parallel().collect(Collectors.toList());
+  }
+
+  /**
+   * Returns a lazy stream of the progression in each of the given keys as Patterns. See {@link
+   * #noteValues(List, int, Voicing)}.
+   *
+   * @param keys a {@link java.util.List} of keys.
+   * @param inversion the number of further inversions to apply to every chord.
+   * @param voicing a {@link org.jfugue.theory.ChordProgressionTable.Voicing} object.
+   * @return a {@link java.util.stream.Stream} of patterns, one per key.
+   */
+  public Stream<Pattern> patterns(List<Key> keys, int inversion, Voicing voicing) {
+    checkInversion(inversion);
+    return keys.stream().map(key -> getPattern(key, inversion, voicing));
+  }
+
+  private int[] getRootValues(Key key) {
+    int[] scale = key.getScale().getIntervals().getHalfstepArray();
+    int rootValue = key.getRoot().getValue();
+    int[] rootValues = new int[elements.length];
+    for (int i = 0; i < elements.length; i++) {
+      if (degrees[i] >= scale.length) {
+        throw new IllegalArgumentException("The scale of " + key.getKeySignature()
+          + " has no degree " + (degrees[i] + 1) + " for " + elements[i]);
+      }
+      rootValues[i] = rootValue + scale[degrees[i]];
+    }
+    return rootValues;
+  }
+
+  private static void checkInversion(int inversion) {
+    if (inversion < 0) {
+      throw new IllegalArgumentException("Inversion must not be negative: " + inversion);
+    }
+  }
+
+  /**
+   * Inverts as {@link Chord#getNotes()} does: the lowest notes are moved up an octave, one per
+   * inversion, and the notes are rotated so that the new lowest note comes first.
+   */
+  private static int[] invert(int rootValue, int[] halfsteps, int inversion) {
+    int length = halfsteps.length;
+    int[] stacked = new int[length];
+    for (int j = 0; j < length; j++) {
+      stacked[j] = rootValue + halfsteps[j] + (j < inversion ? Note.OCTAVE : 0);
+    }
+    int[] notes = new int[length];
+    for (int j = 0; j < length; j++) {
+      notes[j] = stacked[(j + inversion) % length];
+    }
+    return notes;
+  }
+
+  private static int[] voice(int[] notes, Voicing voicing) {
+    int length = notes.length;
+    switch (voicing) {
+      case DROP_2:
+        if (length >= 2) {
+          notes[length - 2] -= Note.OCTAVE;
+        }
+        break;
+      case DROP_3:
+        if (length >= 3) {
+          notes[length - 3] -= Note.OCTAVE;
+        }
+        break;
+      case OPEN:
+        for (int j = 1; j < length; j += 2) {
+          notes[j] += Note.OCTAVE;
+        }
+        break;
+      default:
+        return notes;
+    }
+    Arrays.sort(notes);
+    return notes;
+  }
+}
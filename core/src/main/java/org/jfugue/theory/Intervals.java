@@ -20,10 +20,8 @@
 package org.jfugue.theory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.Objects;
 import org.jfugue.pattern.NoteProducer;
 import org.jfugue.pattern.Pattern;
 import org.jfugue.pattern.PatternProducer;
@@ -39,10 +37,21 @@ import org.staccato.NoteSubparser;
  */
 public class Intervals implements PatternProducer, NoteProducer {
 
-  private static final Map<Integer, Integer> wholeNumberDegreeToHalfsteps;
-  private static final Map<Integer, Integer> halfstepsToWholeNumberDegree;
-  private static final java.util.regex.Pattern numberPattern = java.util.regex.Pattern
-    .compile("\\d+");
+  private static final int NOT_AN_INTERVAL = Integer.MIN_VALUE;
+
+  /**
+   * The number of half-steps above the root of each whole-number degree, indexed by degree. Index
+   * 0 is not a degree.
+   */
+  private static final int[] DEGREE_TO_HALFSTEPS = {
+    NOT_AN_INTERVAL, 0, 2, 4, 5, 7, 9, 11, 12, 14, 16, 17, 19, 21, 23, 24};
+
+  /**
+   * The whole-number degree that is the given number of half-steps above the root, or 0 if no
+   * degree is.
+   */
+  private static final int[] HALFSTEPS_TO_DEGREE = {
+    1, 0, 2, 0, 3, 4, 0, 5, 0, 6, 0, 7, 8, 0, 9, 0, 10, 11, 0, 12, 0, 13, 0, 14, 15};
 
   private static String[] CANDIDATE_INTERVALS = new String[]{"b1", "1", "#1", "b2", "2", "#2", "b3",
     "3", "#3",
@@ -51,45 +60,14 @@ public class Intervals implements PatternProducer, NoteProducer {
     "b10", "10", "#10", "b11", "11", "#11", "b12", "12", "#12",
     "b13", "13", "#13", "b14", "14", "#14", "b15", "15", "#15"};
 
-  static {
-    wholeNumberDegreeToHalfsteps = new HashMap<>();
-    wholeNumberDegreeToHalfsteps.put(1, 0);
-    wholeNumberDegreeToHalfsteps.put(2, 2);
-    wholeNumberDegreeToHalfsteps.put(3, 4);
-    wholeNumberDegreeToHalfsteps.put(4, 5);
-    wholeNumberDegreeToHalfsteps.put(5, 7);
-    wholeNumberDegreeToHalfsteps.put(6, 9);
-    wholeNumberDegreeToHalfsteps.put(7, 11);
-    wholeNumberDegreeToHalfsteps.put(8, 12);
-    wholeNumberDegreeToHalfsteps.put(9, 14);
-    wholeNumberDegreeToHalfsteps.put(10, 16);
-    wholeNumberDegreeToHalfsteps.put(11, 17);
-    wholeNumberDegreeToHalfsteps.put(12, 19);
-    wholeNumberDegreeToHalfsteps.put(13, 21);
-    wholeNumberDegreeToHalfsteps.put(14, 23);
-    wholeNumberDegreeToHalfsteps.put(15, 24);
-
-    halfstepsToWholeNumberDegree = new HashMap<>();
-    halfstepsToWholeNumberDegree.put(0, 1);
-    halfstepsToWholeNumberDegree.put(2, 2);
-    halfstepsToWholeNumberDegree.put(4, 3);
-    halfstepsToWholeNumberDegree.put(5, 4);
-    halfstepsToWholeNumberDegree.put(7, 5);
-    halfstepsToWholeNumberDegree.put(9, 6);
-    halfstepsToWholeNumberDegree.put(11, 7);
-    halfstepsToWholeNumberDegree.put(12, 8);
-    halfstepsToWholeNumberDegree.put(14, 9);
-    halfstepsToWholeNumberDegree.put(16, 10);
-    halfstepsToWholeNumberDegree.put(17, 11);
-    halfstepsToWholeNumberDegree.put(19, 12);
-    halfstepsToWholeNumberDegree.put(21, 13);
-    halfstepsToWholeNumberDegree.put(23, 14);
-    halfstepsToWholeNumberDegree.put(24, 15);
-  }
-
   private String intervalPattern;
+  private String[] intervals;
+  private int[] halfsteps;
   private Note rootNote;
   private String asSequence;
+  private String cachedPattern;
+  private byte cachedRootValue;
+  private String cachedAsSequence;
 
   /**
    * <p>Constructor for Intervals.</p>
@@ -98,6 +76,11 @@ public class Intervals implements PatternProducer, NoteProducer {
    */
   public Intervals(String intervalPattern) {
     this.intervalPattern = intervalPattern;
+    this.intervals = intervalPattern.split(" ");
+    this.halfsteps = new int[intervals.length];
+    for (int i = 0; i < intervals.length; i++) {
+      halfsteps[i] = parseHalfsteps(intervals[i]);
+    }
   }
 
   /**
@@ -107,39 +90,44 @@ public class Intervals implements PatternProducer, NoteProducer {
    * @return a int.
    */
   public static int getHalfsteps(String wholeNumberDegree) {
-    return wholeNumberDegreeToHalfsteps.get(getNumberPortionOfInterval(wholeNumberDegree))
-      + calculateHalfstepDeltaFromFlatsAndSharps(wholeNumberDegree);
+    int halfsteps = parseHalfsteps(wholeNumberDegree);
+    if (halfsteps == NOT_AN_INTERVAL) {
+      throw new IllegalArgumentException("Not an interval: " + wholeNumberDegree);
+    }
+    return halfsteps;
   }
 
   /**
-   * Counts the number of halfsteps reflected by the flats or sharps in a given interval. So, for
-   * "b3", this would return -1. For "##5", this would return 2.
+   * Returns the number of half-steps for an interval token like "3", "b3" or "##5": the half-steps
+   * of the first whole number in the token, less one for each flat and plus one for each sharp.
+   * Returns NOT_AN_INTERVAL if the token has no whole number from 1 to 15.
    */
-  private static int calculateHalfstepDeltaFromFlatsAndSharps(String wholeNumberDegree) {
-    int numHalfsteps = 0;
-    for (char ch : wholeNumberDegree.toUpperCase().toCharArray()) {
-      if (ch == 'B') {
-        numHalfsteps -= 1;
-      } else if (ch == '#') {
-        numHalfsteps += 1;
+  private static int parseHalfsteps(String wholeNumberDegree) {
+    int degree = -1;
+    boolean numberEnded = false;
+    int delta = 0;
+    for (int i = 0; i < wholeNumberDegree.length(); i++) {
+      char ch = wholeNumberDegree.charAt(i);
+      if (ch >= '0' && ch <= '9') {
+        if (!numberEnded) {
+          degree = (degree < 0 ? 0 : degree * 10) + ch - '0';
+          if (degree >= DEGREE_TO_HALFSTEPS.length) {
+            return NOT_AN_INTERVAL;
+          }
+        }
+      } else {
+        numberEnded = degree >= 0;
+        if (ch == 'b' || ch == 'B') {
+          delta--;
+        } else if (ch == '#') {
+          delta++;
+        }
       }
     }
-    return numHalfsteps;
-  }
-
-  /**
-   * Returns the number part of an interval token. Interval tokens are typically like "1" or "3" but
-   * could also be like "b3" or "#5". So, for example, given either "3" or "b3", this method would
-   * return 3. If there is no number in the given String (e.g., "#"), which would probably be in
-   * error anyway, this method returns 0.
-   */
-  private static int getNumberPortionOfInterval(String interval) {
-    Matcher m = numberPattern.matcher(interval);
-    if (m.find()) {
-      return Integer.parseInt(m.group());
-    } else {
-      return 0;
+    if (degree < 1) {
+      return NOT_AN_INTERVAL;
     }
+    return DEGREE_TO_HALFSTEPS[degree] + delta;
   }
 
   /**
@@ -183,11 +171,11 @@ public class Intervals implements PatternProducer, NoteProducer {
       } else {
         diff = notes[i].getPositionInOctave() - notes[0].getPositionInOctave();
       }
-      if (!halfstepsToWholeNumberDegree.containsKey(diff)) {
+      if (HALFSTEPS_TO_DEGREE[diff] == 0) {
         diff += 1;
         buddy.append("b");
       }
-      int wholeNumberDegree = halfstepsToWholeNumberDegree.get(diff);
+      int wholeNumberDegree = HALFSTEPS_TO_DEGREE[diff];
       buddy.append(wholeNumberDegree);
       buddy.append(" ");
     }
@@ -215,27 +203,39 @@ public class Intervals implements PatternProducer, NoteProducer {
     return this;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The text of the pattern is kept for the last root and replacement sequence it was built
+   * for, so asking again for the same root does not build it again.</p>
+   */
   @Override
   public org.jfugue.pattern.Pattern getPattern() {
     assert (rootNote != null);
 
-    String[] intervals = intervalPattern.split(" ");
-    int counter = 0;
-    Note[] candidateNotes = new Note[intervals.length];
+    byte rootValue = rootNote.getValue();
+    if (cachedPattern != null && cachedRootValue == rootValue
+      && Objects.equals(cachedAsSequence, asSequence)) {
+      return new Pattern(cachedPattern);
+    }
 
-    for (String interval : intervals) {
-      Note note = new Note((byte) (rootNote.getValue() + Intervals.getHalfsteps(interval)));
-      candidateNotes[counter++] = note;
+    Note[] candidateNotes = new Note[intervals.length];
+    for (int i = 0; i < intervals.length; i++) {
+      candidateNotes[i] = new Note((byte) (rootValue + getNthHalfsteps(i)));
     }
     Pattern intervalNotes = new Pattern(candidateNotes);
 
+    Pattern pattern;
     if (asSequence != null) {
-      return ReplacementFormatUtil
+      pattern = ReplacementFormatUtil
         .replaceDollarsWithCandidates(asSequence, candidateNotes, intervalNotes);
     } else {
-      return intervalNotes;
+      pattern = intervalNotes;
     }
+    this.cachedPattern = pattern.toString();
+    this.cachedRootValue = rootValue;
+    this.cachedAsSequence = asSequence;
+    return pattern;
   }
 
   /** {@inheritDoc} */
@@ -258,7 +258,21 @@ public class Intervals implements PatternProducer, NoteProducer {
    * @return a {@link java.lang.String} object.
    */
   public String getNthInterval(int n) {
-    return intervalPattern.split(" ")[n];
+    return intervals[n];
+  }
+
+  /**
+   * Returns the number of half-steps between the root and the nth interval.
+   *
+   * @param n a int.
+   * @return a int.
+   */
+  public int getNthHalfsteps(int n) {
+    int result = halfsteps[n];
+    if (result == NOT_AN_INTERVAL) {
+      throw new IllegalArgumentException("Not an interval: " + intervals[n]);
+    }
+    return result;
   }
 
   /**
@@ -267,7 +281,7 @@ public class Intervals implements PatternProducer, NoteProducer {
    * @return a int.
    */
   public int size() {
-    return intervalPattern.split(" ").length;
+    return intervals.length;
   }
 
   /**
@@ -276,12 +290,18 @@ public class Intervals implements PatternProducer, NoteProducer {
    * @return an array of {@link int} objects.
    */
   public int[] toHalfstepArray() {
-    String[] intervals = intervalPattern.split(" ");
-    int[] halfSteps = new int[intervals.length];
-    for (int i = 0; i < intervals.length; i++) {
-      halfSteps[i] = Intervals.getHalfsteps(intervals[i]);
+    return getHalfstepArray().clone();
+  }
+
+  /**
+   * Returns the half-steps of every interval without copying them, for callers in this package
+   * that only read them.
+   */
+  int[] getHalfstepArray() {
+    for (int i = 0; i < halfsteps.length; i++) {
+      getNthHalfsteps(i);
     }
-    return halfSteps;
+    return halfsteps;
   }
 
   /**
@@ -292,18 +312,18 @@ public class Intervals implements PatternProducer, NoteProducer {
    * @return a {@link org.jfugue.theory.Intervals} object.
    */
   public Intervals rotate(int n) {
-    String[] intervals = intervalPattern.split(" ");
-    n %= intervals.length;
-    StringBuilder buddy = new StringBuilder();
-    for (int i = 0; i < intervals.length - n; i++) {
-      buddy.append(intervals[n + i]);
-      buddy.append(" ");
+    int length = intervals.length;
+    n %= length;
+    String[] rotatedIntervals = new String[length];
+    int[] rotatedHalfsteps = new int[length];
+    for (int i = 0; i < length; i++) {
+      rotatedIntervals[i] = intervals[(n + i) % length];
+      rotatedHalfsteps[i] = halfsteps[(n + i) % length];
     }
-    for (int i = 0; i < n; i++) {
-      buddy.append(intervals[i]);
-      buddy.append(" ");
-    }
-    this.intervalPattern = buddy.toString().trim();
+    this.intervals = rotatedIntervals;
+    this.halfsteps = rotatedHalfsteps;
+    this.intervalPattern = String.join(" ", rotatedIntervals).trim();
+    this.cachedPattern = null;
     return this;
   }
 
@@ -326,8 +346,8 @@ public class Intervals implements PatternProducer, NoteProducer {
     if (this.rootNote == null) {
       return false;
     }
-    for (String interval : intervalPattern.split(" ")) {
-      int intervalValue = (rootNote.getValue() + getHalfsteps(interval)) % Note.OCTAVE;
+    for (int i = 0; i < intervals.length; i++) {
+      int intervalValue = (rootNote.getValue() + getNthHalfsteps(i)) % Note.OCTAVE;
       if (intervalValue == note.getPositionInOctave()) {
         return true;
       }
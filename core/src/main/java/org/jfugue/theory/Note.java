@@ -192,6 +192,25 @@ public class Note implements PatternProducer {
     setDuration(duration);
   }
 
+  /**
+   * Unpacks a note packed by {@link PackedNote}. Package scope.
+   */
+  Note(long packedNote, double duration) {
+    this.value = PackedNote.getValue(packedNote);
+    this.duration = duration;
+    this.onVelocity = PackedNote.getOnVelocity(packedNote);
+    this.offVelocity = PackedNote.getOffVelocity(packedNote);
+    this.isRest = PackedNote.is(packedNote, PackedNote.REST);
+    this.isStartOfTie = PackedNote.is(packedNote, PackedNote.START_OF_TIE);
+    this.isEndOfTie = PackedNote.is(packedNote, PackedNote.END_OF_TIE);
+    this.isFirstNote = PackedNote.is(packedNote, PackedNote.FIRST_NOTE);
+    this.isMelodicNote = PackedNote.is(packedNote, PackedNote.MELODIC_NOTE);
+    this.isHarmonicNote = PackedNote.is(packedNote, PackedNote.HARMONIC_NOTE);
+    this.isPercussionNote = PackedNote.is(packedNote, PackedNote.PERCUSSION_NOTE);
+    this.wasOctaveExplicitlySet = PackedNote.is(packedNote, PackedNote.OCTAVE_EXPLICITLY_SET);
+    this.wasDurationExplicitlySet = PackedNote.is(packedNote, PackedNote.DURATION_EXPLICITLY_SET);
+  }
+
   /**
    * <p>isSameNote.</p>
    *
@@ -607,7 +626,12 @@ public class Note implements PatternProducer {
     return this;
   }
 
-  private boolean isPercussionNote() {
+  /**
+   * <p>isPercussionNote.</p>
+   *
+   * @return a boolean.
+   */
+  public boolean isPercussionNote() {
     return this.isPercussionNote;
   }
 
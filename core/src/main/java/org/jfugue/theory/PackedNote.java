@@ -0,0 +1,181 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.theory;
+
+/**
+ * Packs everything about a Note except its duration and original string into a single long, so
+ * parsers and listeners that handle many notes can pass them around without allocating a Note for
+ * each. The value and both velocities take a byte each and the flags take the bits above them; the
+ * duration stays a double beside the long, as the parser events and batches already carry it.
+ * {@link #toNote(long, double)} and {@link #pack(Note)} convert to and from Note.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public final class PackedNote {
+
+  /** Constant <code>REST=1 &lt;&lt; 24</code> */
+  public static final long REST = 1L << 24;
+  /** Constant <code>START_OF_TIE=1 &lt;&lt; 25</code> */
+  public static final long START_OF_TIE = 1L << 25;
+  /** Constant <code>END_OF_TIE=1 &lt;&lt; 26</code> */
+  public static final long END_OF_TIE = 1L << 26;
+  /** Constant <code>FIRST_NOTE=1 &lt;&lt; 27</code> */
+  public static final long FIRST_NOTE = 1L << 27;
+  /** Constant <code>MELODIC_NOTE=1 &lt;&lt; 28</code> */
+  public static final long MELODIC_NOTE = 1L << 28;
+  /** Constant <code>HARMONIC_NOTE=1 &lt;&lt; 29</code> */
+  public static final long HARMONIC_NOTE = 1L << 29;
+  /** Constant <code>PERCUSSION_NOTE=1 &lt;&lt; 30</code> */
+  public static final long PERCUSSION_NOTE = 1L << 30;
+  /** Constant <code>OCTAVE_EXPLICITLY_SET=1 &lt;&lt; 31</code> */
+  public static final long OCTAVE_EXPLICITLY_SET = 1L << 31;
+  /** Constant <code>DURATION_EXPLICITLY_SET=1 &lt;&lt; 32</code> */
+  public static final long DURATION_EXPLICITLY_SET = 1L << 32;
+
+  private static final int ON_VELOCITY_SHIFT = 8;
+  private static final int OFF_VELOCITY_SHIFT = 16;
+
+  private PackedNote() {
+  }
+
+  /**
+   * Packs a note value, its velocities and any of the flag constants of this class.
+   *
+   * @param value a byte.
+   * @param onVelocity a byte.
+   * @param offVelocity a byte.
+   * @param flags the flag constants of this class, or'ed together.
+   * @return a long.
+   */
+  public static long of(byte value, byte onVelocity, byte offVelocity, long flags) {
+    return value & 0xFFL
+      | (onVelocity & 0xFFL) << ON_VELOCITY_SHIFT
+      | (offVelocity & 0xFFL) << OFF_VELOCITY_SHIFT
+      | flags & (REST | START_OF_TIE | END_OF_TIE | FIRST_NOTE | MELODIC_NOTE | HARMONIC_NOTE
+      | PERCUSSION_NOTE | OCTAVE_EXPLICITLY_SET | DURATION_EXPLICITLY_SET);
+  }
+
+  /**
+   * <p>pack.</p>
+   *
+   * @param note a {@link org.jfugue.theory.Note} object.
+   * @return the note without its duration and original string, packed into a long.
+   */
+  public static long pack(Note note) {
+    long flags = 0L;
+    flags |= note.isRest() ? REST : 0L;
+    flags |= note.isStartOfTie() ? START_OF_TIE : 0L;
+    flags |= note.isEndOfTie() ? END_OF_TIE : 0L;
+    flags |= note.isFirstNote() ? FIRST_NOTE : 0L;
+    flags |= note.isMelodicNote() ? MELODIC_NOTE : 0L;
+    flags |= note.isHarmonicNote() ? HARMONIC_NOTE : 0L;
+    flags |= note.isPercussionNote() ? PERCUSSION_NOTE : 0L;
+    flags |= note.isOctaveExplicitlySet() ? OCTAVE_EXPLICITLY_SET : 0L;
+    flags |= note.isDurationExplicitlySet() ? DURATION_EXPLICITLY_SET : 0L;
+    return of(note.getValue(), note.getOnVelocity(), note.getOffVelocity(), flags);
+  }
+
+  /**
+   * Creates a Note from a packed note and its duration.
+   *
+   * @param packedNote a long.
+   * @param duration a double.
+   * @return a {@link org.jfugue.theory.Note} object.
+   */
+  public static Note toNote(long packedNote, double duration) {
+    return new Note(packedNote, duration);
+  }
+
+  /**
+   * <p>getValue.</p>
+   *
+   * @param packedNote a long.
+   * @return a byte.
+   */
+  public static byte getValue(long packedNote) {
+    return (byte) packedNote;
+  }
+
+  /**
+   * <p>getOnVelocity.</p>
+   *
+   * @param packedNote a long.
+   * @return a byte.
+   */
+  public static byte getOnVelocity(long packedNote) {
+    return (byte) (packedNote >>> ON_VELOCITY_SHIFT);
+  }
+
+  /**
+   * <p>getOffVelocity.</p>
+   *
+   * @param packedNote a long.
+   * @return a byte.
+   */
+  public static byte getOffVelocity(long packedNote) {
+    return (byte) (packedNote >>> OFF_VELOCITY_SHIFT);
+  }
+
+  /**
+   * Returns whether the packed note has the given flag constant set.
+   *
+   * @param packedNote a long.
+   * @param flag one of the flag constants of this class.
+   * @return a boolean.
+   */
+  public static boolean is(long packedNote, long flag) {
+    return (packedNote & flag) != 0L;
+  }
+
+  /**
+   * Returns the packed note with its value replaced.
+   *
+   * @param packedNote a long.
+   * @param value a byte.
+   * @return a long.
+   */
+  public static long withValue(long packedNote, byte value) {
+    return packedNote & ~0xFFL | value & 0xFFL;
+  }
+
+  /**
+   * Returns the packed note with its on velocity replaced.
+   *
+   * @param packedNote a long.
+   * @param onVelocity a byte.
+   * @return a long.
+   */
+  public static long withOnVelocity(long packedNote, byte onVelocity) {
+    return packedNote & ~(0xFFL << ON_VELOCITY_SHIFT) | (onVelocity & 0xFFL) << ON_VELOCITY_SHIFT;
+  }
+
+  /**
+   * Returns the packed note with its off velocity replaced.
+   *
+   * @param packedNote a long.
+   * @param offVelocity a byte.
+   * @return a long.
+   */
+  public static long withOffVelocity(long packedNote, byte offVelocity) {
+    return packedNote & ~(0xFFL << OFF_VELOCITY_SHIFT)
+      | (offVelocity & 0xFFL) << OFF_VELOCITY_SHIFT;
+  }
+}
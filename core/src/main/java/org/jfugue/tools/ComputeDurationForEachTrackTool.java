@@ -20,6 +20,9 @@
 package org.jfugue.tools;
 
 import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.BatchParserListener;
+import org.jfugue.parser.EventBatch;
+import org.jfugue.parser.EventType;
 import org.jfugue.parser.ParserListenerAdapter;
 import org.jfugue.theory.Note;
 
@@ -29,7 +32,8 @@ import org.jfugue.theory.Note;
  * @author David Koelle
  * @version 5.0
  */
-public class ComputeDurationForEachTrackTool extends ParserListenerAdapter {
+public class ComputeDurationForEachTrackTool extends ParserListenerAdapter
+  implements BatchParserListener {
 
   private final double[] durations;
   private int currentTrack;
@@ -61,6 +65,19 @@ public class ComputeDurationForEachTrackTool extends ParserListenerAdapter {
     durations[currentTrack] += note.getDuration();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void onEventBatch(EventBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      EventType type = batch.getType(i);
+      if (type == EventType.TRACK_CHANGED) {
+        onTrackChanged(batch.getFirstByte(i));
+      } else if (type == EventType.NOTE) {
+        onNoteParsed(batch.getNote(i));
+      }
+    }
+  }
+
   /**
    * <p>Getter for the field <code>durations</code>.</p>
    *
@@ -21,6 +21,9 @@ package org.jfugue.tools;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.jfugue.parser.BatchParserListener;
+import org.jfugue.parser.EventBatch;
+import org.jfugue.parser.EventType;
 import org.jfugue.parser.ParserException;
 import org.jfugue.parser.ParserListenerAdapter;
 import org.jfugue.pattern.PatternProducer;
@@ -34,7 +37,8 @@ import org.staccato.StaccatoParser;
  * @author David Koelle
  * @version 4.0
  */
-public class GetInstrumentsUsedTool extends ParserListenerAdapter {
+public class GetInstrumentsUsedTool extends ParserListenerAdapter
+  implements BatchParserListener {
 
   private final List<Byte> instruments;
 
@@ -53,6 +57,16 @@ public class GetInstrumentsUsedTool extends ParserListenerAdapter {
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void onEventBatch(EventBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.getType(i) == EventType.INSTRUMENT) {
+        onInstrumentParsed(batch.getFirstByte(i));
+      }
+    }
+  }
+
   /**
    * <p>getInstrumentsUsedInPattern.</p>
    *
@@ -63,7 +77,7 @@ public class GetInstrumentsUsedTool extends ParserListenerAdapter {
     this.instruments.clear();
 
     StaccatoParser parser = new StaccatoParser();
-    parser.addParserListener(this);
+    parser.addBatchParserListener(this);
     try {
       parser.parse(patternProducer);
     } catch (ParserException e) {
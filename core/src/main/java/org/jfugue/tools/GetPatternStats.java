@@ -27,6 +27,8 @@ import java.util.Comparator;
 import java.util.List;
 import javax.sound.midi.InvalidMidiDataException;
 import org.jfugue.midi.MidiFileManager;
+import org.jfugue.parser.BatchParserListener;
+import org.jfugue.parser.EventBatch;
 import org.jfugue.parser.ParserListener;
 import org.jfugue.pattern.Pattern;
 import org.jfugue.theory.Key;
@@ -40,11 +42,22 @@ import org.staccato.StaccatoParser;
  * (half-steps), Inter Onset Interval (IOI), Harmonic Descriptors (Non-diatonics), Rhythm
  * Descriptors (Syncopations), Normality Descriptors.
  *
+ * <p>By default every parsed event is kept until parsing finishes, so that events can be put in
+ * time order and the differences between patterns can be compared element by element. In streaming
+ * mode, events are instead summarized by {@link StreamingStats} as they are parsed, in the order
+ * the parser reports them, which gives the same statistics in constant memory for music that is
+ * reported in time order. Streaming instances can be used as a listener on any parser, through
+ * {@link #getParserListener()}, and partial results from different threads can be combined with
+ * {@link #merge(GetPatternStats)}.</p>
+ *
  * @author Grant Mehrer (gtmehrer@gmail.com)
  * @version $Id: $Id
  */
 public class GetPatternStats {
 
+  /** The number of features returned by {@link #getFeatures()}. */
+  public static final int FEATURE_COUNT = 16;
+
   private final List<Number> pitches = new ArrayList<>();
   private final List<Number> intervals = new ArrayList<>();
   private final List<Number> degreeNonDiatonic = new ArrayList<>();
@@ -54,9 +67,86 @@ public class GetPatternStats {
   private final List<Byte> attacks = new ArrayList<>();
   private final List<Byte> decays = new ArrayList<>();
   private final List<TimeEvent> musicEvents = new ArrayList<>();
+  private final boolean streaming;
+  private final StreamingStats pitchStats = new StreamingStats();
+  private final StreamingStats intervalStats = new StreamingStats();
+  private final StreamingStats degreeStats = new StreamingStats();
+  private final StreamingStats ioiStats = new StreamingStats();
+  private final StreamingStats durationStats = new StreamingStats();
+  private final StreamingStats restStats = new StreamingStats();
+  private final StreamingStats attackStats = new StreamingStats();
+  private final StreamingStats decayStats = new StreamingStats();
+  private final Listener listener = new Listener();
   private int rhythm, measures = 0;
   private double tickPos = 0;
   private Key key = new Key("Cmaj");
+  private double lastTime;
+  private double ioi;
+  private int ticks;
+  private byte interval;
+  private boolean noteSeen;
+  private boolean intervalSeen;
+
+  /**
+   * <p>Constructor for GetPatternStats.</p>
+   */
+  public GetPatternStats() {
+    this(false);
+  }
+
+  /**
+   * <p>Constructor for GetPatternStats.</p>
+   *
+   * @param streaming true to summarize events as they are parsed, in constant memory.
+   */
+  public GetPatternStats(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Returns whether this instance summarizes events as they are parsed.
+   *
+   * @return a boolean.
+   */
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  /**
+   * Returns the listener that gathers the statistics, which may be added to any parser. Statistics
+   * gathered by a batch instance this way are only computed by a later call to parsePattern, so
+   * the listener is meant for streaming instances.
+   *
+   * @return a {@link org.jfugue.parser.ParserListener} that is also a {@link
+   * org.jfugue.parser.BatchParserListener}.
+   */
+  public ParserListener getParserListener() {
+    return listener;
+  }
+
+  /**
+   * Adds the statistics gathered by another streaming instance to this one, as when a long piece
+   * is summarized in parts on different threads. Intervals and syncopations that span the
+   * boundary between the parts are not counted.
+   *
+   * @param other a streaming {@link org.jfugue.tools.GetPatternStats}.
+   * @throws java.lang.IllegalStateException if either instance is not streaming.
+   */
+  public void merge(GetPatternStats other) {
+    if (!streaming || !other.streaming) {
+      throw new IllegalStateException("Only streaming statistics can be merged");
+    }
+    pitchStats.merge(other.pitchStats);
+    intervalStats.merge(other.intervalStats);
+    degreeStats.merge(other.degreeStats);
+    ioiStats.merge(other.ioiStats);
+    durationStats.merge(other.durationStats);
+    restStats.merge(other.restStats);
+    attackStats.merge(other.attackStats);
+    decayStats.merge(other.decayStats);
+    measures += other.measures;
+    rhythm += other.rhythm;
+  }
 
 
   /**
@@ -65,16 +155,17 @@ public class GetPatternStats {
    * @param pattern The JFuge Pattern to be parsed.
    * @param clear True to clear previous data, false to add to previous data
    */
-  private void parsePattern(Pattern pattern, Boolean clear) {
+  public void parsePattern(Pattern pattern, Boolean clear) {
     tickPos = 0;
     if (clear) {
       this.clearLists();
     }
     StaccatoParser sp = new StaccatoParser();
-    Listener l = new Listener();
-    sp.addParserListener(l);
+    sp.addBatchParserListener(listener);
     sp.parse(pattern.toString());
-    processEvents();
+    if (!streaming) {
+      processEvents();
+    }
   }
 
   /**
@@ -107,6 +198,14 @@ public class GetPatternStats {
     attacks.clear();
     decays.clear();
     musicEvents.clear();
+    pitchStats.clear();
+    intervalStats.clear();
+    degreeStats.clear();
+    ioiStats.clear();
+    durationStats.clear();
+    restStats.clear();
+    attackStats.clear();
+    decayStats.clear();
     measures = 0;
     rhythm = 0;
   }
@@ -166,6 +265,32 @@ public class GetPatternStats {
     return Math.abs(computeAverage(difference));
   }
 
+  /**
+   * Returns the descriptors that comparePatterns compares, in the same order: the numbers of notes,
+   * rests and measures; the average and SD of pitch, duration, rest, interval, IOI and harmonic
+   * stats; and the number of syncopations. The average difference between the features of two
+   * patterns is what comparePatterns returns, so features can be computed once per pattern and
+   * compared many times, as PatternSimilarityIndex does.
+   *
+   * @return an array of {@link #FEATURE_COUNT} doubles.
+   */
+  public double[] getFeatures() {
+    int[] general = getGeneralStats();
+    Stats[] stats = {getPitchStats(), getDurationStats(), getRestStats(), getIntervalStats(),
+      getIOIStats(), getHarmonicStats()};
+    double[] features = new double[FEATURE_COUNT];
+    int f = 0;
+    for (int g : general) {
+      features[f++] = g;
+    }
+    for (Stats s : stats) {
+      features[f++] = s.getAverage();
+      features[f++] = s.getSD();
+    }
+    features[f] = getRhythmStats();
+    return features;
+  }
+
   private void findDifference(List<Number> p1, List<Number> p2, List<Number> thisList) {
     if (p1.isEmpty()) {
       if (!p2.isEmpty()) {
@@ -197,6 +322,9 @@ public class GetPatternStats {
    * @return Array index 0: N of Notes; index 1: N of rests; index 2: N of measures
    */
   private int[] getGeneralStats() {
+    if (streaming) {
+      return new int[]{(int) durationStats.getN(), (int) restStats.getN(), measures};
+    }
     return new int[]{durations.size(), restDurations.size(), measures};
   }
 
@@ -206,7 +334,7 @@ public class GetPatternStats {
    * @return <code>Stats</code> object for pitch
    */
   private Stats getPitchStats() {
-    return new Stats(pitches);
+    return streaming ? new Stats(pitchStats) : new Stats(pitches);
   }
 
   /**
@@ -216,7 +344,7 @@ public class GetPatternStats {
    * @return <code>Stats</code> object for note duration
    */
   private Stats getDurationStats() {
-    return new Stats(durations);
+    return streaming ? new Stats(durationStats) : new Stats(durations);
   }
 
   /**
@@ -226,7 +354,7 @@ public class GetPatternStats {
    * @return <code>Stats</code> object for rest duration
    */
   private Stats getRestStats() {
-    return new Stats(restDurations);
+    return streaming ? new Stats(restStats) : new Stats(restDurations);
   }
 
   /**
@@ -236,7 +364,7 @@ public class GetPatternStats {
    * @return <code>Stats</code> object for pitch interval
    */
   private Stats getIntervalStats() {
-    return new Stats(intervals);
+    return streaming ? new Stats(intervalStats) : new Stats(intervals);
   }
 
   /**
@@ -247,7 +375,7 @@ public class GetPatternStats {
    * @return <code>Stats</code> object for IOI
    */
   private Stats getIOIStats() {
-    return new Stats(interOI);
+    return streaming ? new Stats(ioiStats) : new Stats(interOI);
   }
 
   /**
@@ -269,7 +397,7 @@ public class GetPatternStats {
    * @return <code>Stats</code> object for harmonics
    */
   private Stats getHarmonicStats() {
-    return new Stats(degreeNonDiatonic);
+    return streaming ? new Stats(degreeStats) : new Stats(degreeNonDiatonic);
   }
 
   /**
@@ -341,11 +469,12 @@ public class GetPatternStats {
   }
 
   /**
-   * Checks the degree of non-diatonics and adds the degree to list
+   * Checks the degree of non-diatonics
    *
    * @param n The note to have it's value checked
+   * @return The degree, or -1 if the note is not above the root within an octave
    */
-  private void checkDegree(Number n) {
+  private int checkDegree(Number n) {
     int rootValue = reduceValue(key.getRoot().getValue());
     int noteValue = n.intValue();
     //degrees are: 0: ♭II, 1: ♭III (♮III for minor key), 2: ♭V, 3: ♭VI, 4: ♭VII.
@@ -356,28 +485,23 @@ public class GetPatternStats {
     switch (difference) {
       case 0:
       case 1:
-        degreeNonDiatonic.add(0);
-        break;
+        return 0;
       case 2:
       case 3:
       case 4:
-        degreeNonDiatonic.add(1);
-        break;
+        return 1;
       case 5:
       case 6:
-        degreeNonDiatonic.add(2);
-        break;
+        return 2;
       case 7:
       case 8:
-        degreeNonDiatonic.add(3);
-        break;
+        return 3;
       case 9:
       case 10:
       case 11:
-        degreeNonDiatonic.add(4);
-        break;
+        return 4;
       default:
-        break;
+        return -1;
     }
 
   }
@@ -388,72 +512,124 @@ public class GetPatternStats {
    */
   private void processEvents() {
     sortTimeEvents();
-    double lastTime = 0;
-    double ioi = 0.0;
-    int ticks = 0;
-    byte interval = 60;
-    sortTimeEvents();
-
-    //Find first note event and get first stats for relative calculations
+    startEvents();
     for (TimeEvent t : musicEvents) {
-      if (t.getEvent() instanceof Note || t.getEvent() instanceof org.jfugue.theory.Chord) {
-        Note note = (Note) t.getEvent();
+      processEvent(t.time, t.getEvent());
+    }
+    if (intervals.size() > 0) {
+      intervals.remove(0); //remove first interval (first note value)
+    }
+  }
+
+  private void startEvents() {
+    lastTime = 0;
+    ioi = 0.0;
+    ticks = 0;
+    interval = 60;
+    noteSeen = false;
+    intervalSeen = false;
+  }
+
+  /**
+   * Records an event parsed at the given time: kept for processEvents, or processed at once when
+   * streaming.
+   */
+  private void addEvent(double time, Object event) {
+    if (streaming) {
+      processEvent(time, event);
+    } else {
+      musicEvents.add(new TimeEvent<>(time, event));
+    }
+  }
+
+  /**
+   * Collects the stats of one event, in chronological order.
+   */
+  private void processEvent(double time, Object event) {
+    Note note;
+    //If event is note, collect stats
+    if (event instanceof Note || event instanceof org.jfugue.theory.Chord) {
+      if (event instanceof org.jfugue.theory.Chord) {
+        org.jfugue.theory.Chord c = (org.jfugue.theory.Chord) event;
+        note = c.getRoot();
+      } else {
+        note = (Note) event;
+      }
+      //First note event gives first stats for relative calculations
+      if (!noteSeen) {
+        noteSeen = true;
         interval = note.getValue(); //set interval to fist note value
-        lastTime = t.time; //get first time
-        durations.add(note.getDuration()); //add first duration
+        lastTime = time; //get first time
+        addDuration(note.getDuration()); //add first duration
         ioi = (int) convertDecimalToTicks(note.getDuration());
-        break;
       }
-    }
-    for (TimeEvent t : musicEvents) {
-      Note note;
-      //If event is note, collect stats
-      if (t.getEvent() instanceof Note || t.getEvent() instanceof org.jfugue.theory.Chord) {
-        if (t.getEvent() instanceof org.jfugue.theory.Chord) {
-          org.jfugue.theory.Chord c = (org.jfugue.theory.Chord) t.getEvent();
-          note = c.getRoot();
+      int noteTicks = (int) convertDecimalToTicks(note.getDuration());
+      if (!note.isRest()) {
+        if (streaming) {
+          pitchStats.add(note.getValue());
+          attackStats.add(note.getOnVelocity());
+          decayStats.add(note.getOffVelocity());
         } else {
-          note = (Note) t.getEvent();
-        }
-        int noteTicks = (int) convertDecimalToTicks(note.getDuration());
-        if (!note.isRest()) {
           pitches.add(note.getValue());
           attacks.add(note.getOnVelocity());
           decays.add(note.getOffVelocity());
-          //check for non-diatonics
-          if (checkHarmonics(note)) {
-            checkDegree(reduceValue(note.getValue()));
-          }
-          //check for syncopations
-          if (ticks % 128 > 15 && ticks % 128 < 112
-            && noteTicks > (142 - ticks % 128)) { //16 TICKS IS 32ND NOTE 16+128 = 142
-            rhythm++;
+        }
+        //check for non-diatonics
+        if (checkHarmonics(note)) {
+          int degree = checkDegree(reduceValue(note.getValue()));
+          if (degree >= 0 && streaming) {
+            degreeStats.add(degree);
+          } else if (degree >= 0) {
+            degreeNonDiatonic.add(degree);
           }
+        }
+        //check for syncopations
+        if (ticks % 128 > 15 && ticks % 128 < 112
+          && noteTicks > (142 - ticks % 128)) { //16 TICKS IS 32ND NOTE 16+128 = 142
+          rhythm++;
+        }
 
-          ticks = ticks + noteTicks;
-          interval = (byte) (Math.abs(note.getValue() - interval));
+        ticks = ticks + noteTicks;
+        interval = (byte) (Math.abs(note.getValue() - interval));
+        if (!streaming) {
           intervals.add(interval);
-          interval = note.getValue();
-          if (lastTime != t.time) {
-            durations.add(note.getDuration()); //ADD NOTE IF IT IS NOT SYNCRONOUS
+        } else if (intervalSeen) {
+          intervalStats.add(interval); //the first interval is the first note value
+        }
+        intervalSeen = true;
+        interval = note.getValue();
+        if (lastTime != time) {
+          addDuration(note.getDuration()); //ADD NOTE IF IT IS NOT SYNCRONOUS
+          if (streaming) {
+            ioiStats.add(ioi);
+          } else {
             interOI.add(ioi);
-            ioi = noteTicks;
           }
-          lastTime = t.time;
-        } else {
-          ioi = ioi + noteTicks;
-          ticks = ticks + noteTicks;
-          lastTime = t.time;
-          if (note.getDuration() > .0615) {
+          ioi = noteTicks;
+        }
+        lastTime = time;
+      } else {
+        ioi = ioi + noteTicks;
+        ticks = ticks + noteTicks;
+        lastTime = time;
+        if (note.getDuration() > .0615) {
+          if (streaming) {
+            restStats.add(note.getDuration());
+          } else {
             restDurations.add(note.getDuration());
           }
         }
-      } else if (t.getEvent() instanceof Key) {
-        key = (Key) t.getEvent();
       }
+    } else if (event instanceof Key) {
+      key = (Key) event;
     }
-    if (intervals.size() > 0) {
-      intervals.remove(0); //remove first interval (first note value)
+  }
+
+  private void addDuration(double duration) {
+    if (streaming) {
+      durationStats.add(duration);
+    } else {
+      durations.add(duration);
     }
   }
 
@@ -589,6 +765,13 @@ public class GetPatternStats {
       average = calcAverage(list);
     }
 
+    private Stats(StreamingStats stats) {
+      n = (int) stats.getN();
+      range = stats.getRange();
+      sd = stats.getStandardDeviation();
+      average = stats.getMean() - stats.getMin();
+    }
+
     private Stats(List<Number> list1, List<Number> list2) {
       n = calcN(list1);
       range = calcRange(list1);
@@ -628,12 +811,33 @@ public class GetPatternStats {
     }
   }
 
-  private class Listener implements ParserListener {
+  private class Listener implements ParserListener, BatchParserListener {
+
+    @Override
+    public void onEventBatch(EventBatch batch) {
+      for (int i = 0; i < batch.size(); i++) {
+        switch (batch.getType(i)) {
+          case NOTE:
+            onNoteParsed(batch.getNote(i));
+            break;
+          case CHORD:
+            onChordParsed(batch.getChord(i));
+            break;
+          case TRACK_BEAT_TIME_REQUESTED:
+            onTrackBeatTimeRequested(batch.getDoubleValue(i));
+            break;
+          default:
+            batch.replay(this, i);
+            break;
+        }
+      }
+    }
 
 
     @Override
     public void beforeParsingStarts() {
-      // System.out.println("Begin Parse");
+      tickPos = 0;
+      startEvents();
     }
 
     @Override
@@ -643,23 +847,23 @@ public class GetPatternStats {
 
     @Override
     public void onTrackChanged(byte t) {
-      musicEvents.add(new TimeEvent<>(tickPos, t));
+      addEvent(tickPos, t);
     }
 
     @Override
     public void onLayerChanged(byte layerNum) {
-      musicEvents.add(new TimeEvent<>(tickPos, layerNum));
+      addEvent(tickPos, layerNum);
       tickPos = 0;
     }
 
     @Override
     public void onInstrumentParsed(byte i) {
-      musicEvents.add(new TimeEvent<>(tickPos, i));
+      addEvent(tickPos, i);
     }
 
     @Override
     public void onTempoChanged(int tBPM) {
-      musicEvents.add(new TimeEvent<>(tickPos, tBPM));
+      addEvent(tickPos, tBPM);
     }
 
     @Override
@@ -671,17 +875,17 @@ public class GetPatternStats {
       } else {
         k = new Key(new Note(keyB).toString() + min);
       }
-      musicEvents.add(new TimeEvent<>(tickPos, k));
+      addEvent(tickPos, k);
     }
 
     @Override
     public void onTimeSignatureParsed(byte bDuration, byte bNumber) {
-      musicEvents.add(new TimeEvent<>(tickPos, new Byte[]{bDuration, bNumber}));
+      addEvent(tickPos, new Byte[]{bDuration, bNumber});
     }
 
     @Override
     public void onBarLineParsed(long m) {
-      musicEvents.add(new TimeEvent<>(tickPos, m));
+      addEvent(tickPos, m);
       ++measures;
     }
 
@@ -702,17 +906,17 @@ public class GetPatternStats {
 
     @Override
     public void onPitchWheelParsed(byte b, byte b1) {
-      musicEvents.add(new TimeEvent<>(tickPos, new Byte[]{b, b1}));
+      addEvent(tickPos, new Byte[]{b, b1});
     }
 
     @Override
     public void onChannelPressureParsed(byte b) {
-      musicEvents.add(new TimeEvent<>(tickPos, b));
+      addEvent(tickPos, b);
     }
 
     @Override
     public void onPolyphonicPressureParsed(byte b, byte b1) {
-      musicEvents.add(new TimeEvent<>(tickPos, new Byte[]{b, b1}));
+      addEvent(tickPos, new Byte[]{b, b1});
     }
 
     @Override
@@ -735,22 +939,22 @@ public class GetPatternStats {
 
     @Override
     public void onControllerEventParsed(byte b, byte b1) {
-      musicEvents.add(new TimeEvent<>(tickPos, new Byte[]{b, b1}));
+      addEvent(tickPos, new Byte[]{b, b1});
     }
 
     @Override
     public void onLyricParsed(String lyric) {
-      musicEvents.add(new TimeEvent<>(tickPos, lyric));
+      addEvent(tickPos, lyric);
     }
 
     @Override
     public void onMarkerParsed(String string) {
-      musicEvents.add(new TimeEvent<>(tickPos, string));
+      addEvent(tickPos, string);
     }
 
     @Override
     public void onFunctionParsed(String string, Object o) {
-      musicEvents.add(new TimeEvent<>(tickPos, o));
+      addEvent(tickPos, o);
     }
 
     @Override
@@ -763,13 +967,13 @@ public class GetPatternStats {
 
     @Override
     public void onNoteParsed(Note note) {
-      musicEvents.add(new TimeEvent<>(tickPos, note));
+      addEvent(tickPos, note);
       tickPos = tickPos + convertDecimalToTicks(note.getDuration()); //advance tick position
     }
 
     @Override
     public void onChordParsed(org.jfugue.theory.Chord chord) {
-      musicEvents.add(new TimeEvent<>(tickPos, chord));
+      addEvent(tickPos, chord);
       tickPos = tickPos + convertDecimalToTicks(chord.getRoot().getDuration());
     }
   }
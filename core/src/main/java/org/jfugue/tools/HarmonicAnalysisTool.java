@@ -0,0 +1,439 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import org.jfugue.midi.MidiParser;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Key;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.Scale;
+
+/**
+ * Listens to parsed music and works out, as it goes, which chord is played on each beat and which
+ * key the music is in. Each note adds its duration to a pitch-class histogram of the beats it
+ * sounds in. Once a beat is complete, its pitch classes are looked up in a table of chords, and the
+ * beat joins a rolling window of recent beats whose histogram is correlated with the
+ * Krumhansl-Kessler profile of each of the 24 major and minor keys. The correlations are kept up to
+ * date as beats enter and leave the window, so no note is ever looked at twice.
+ *
+ * <p>The tool holds a fixed number of beats, whatever the length of the music, so it can follow
+ * hours of MIDI or an endless realtime stream. Notes are expected to arrive more or less in time
+ * order; a beat is complete once a note has started a given number of beats after it. A note that
+ * arrives later than that still counts toward the key while its beat is in the window, but the
+ * chord for its beat has already been reported. A note sustained past the beats being held is
+ * added to the later beats as they come. Parsers that report one track after another, like
+ * {@link MidiParser#parse(Sequence)}, should be given the events of all tracks in time order, as
+ * {@link #analyze(Sequence)} does.</p>
+ *
+ * <p>Notes on the percussion track are ignored.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class HarmonicAnalysisTool extends TimedNoteListener {
+
+  /** The default length of a beat: a quarter note. */
+  public static final double DEFAULT_BEAT_DURATION = 0.25d;
+  /** The default number of beats over which the key is estimated: four bars of 4/4. */
+  public static final int DEFAULT_WINDOW_BEATS = 16;
+  /** The default number of beats a beat is kept open for notes that are reported late. */
+  public static final int DEFAULT_LATENCY_BEATS = 4;
+
+  private static final double[][] KEY_PROFILES = {
+    {6.35, 2.23, 3.48, 2.33, 4.38, 4.09, 2.52, 5.19, 2.39, 3.66, 2.29, 2.88},
+    {6.33, 2.68, 3.52, 5.38, 2.60, 3.53, 2.54, 4.75, 3.98, 2.69, 3.34, 3.17}};
+  private static final double[] PROFILE_SUMS = new double[2];
+  private static final double[] PROFILE_SPREADS = new double[2];
+  private static final Scale[] KEY_SCALES = {Scale.MAJOR, Scale.MINOR};
+
+  /**
+   * The chords that beats are labelled with, in order of preference when several fit equally well.
+   */
+  private static final String[] CHORD_NAMES = {"MAJ", "MIN", "DOM7", "MAJ7", "MIN7", "DIM", "DIM7",
+    "AUG", "SUS4", "SUS2", "MAJ6", "MIN6"};
+  /** A pitch class is part of a beat's chord if it sounds for this share of the loudest one. */
+  private static final double CHORD_TONE_RATIO = 1.0d / 3.0d;
+  private static final short[] CHORD_TABLE = new short[1 << Note.OCTAVE];
+
+  static {
+    for (int m = 0; m < KEY_PROFILES.length; m++) {
+      double sum = 0;
+      double sumOfSquares = 0;
+      for (double p : KEY_PROFILES[m]) {
+        sum += p;
+        sumOfSquares += p * p;
+      }
+      PROFILE_SUMS[m] = sum;
+      PROFILE_SPREADS[m] = Note.OCTAVE * sumOfSquares - sum * sum;
+    }
+
+    int[] templates = new int[CHORD_NAMES.length * Note.OCTAVE];
+    for (int c = 0; c < CHORD_NAMES.length; c++) {
+      int shape = 0;
+      for (int halfstep : Chord.getIntervals(CHORD_NAMES[c]).toHalfstepArray()) {
+        shape |= 1 << Math.floorMod(halfstep, Note.OCTAVE);
+      }
+      for (int root = 0; root < Note.OCTAVE; root++) {
+        templates[c * Note.OCTAVE + root] =
+          ((shape << root) | (shape >>> (Note.OCTAVE - root))) & (CHORD_TABLE.length - 1);
+      }
+    }
+    for (int mask = 0; mask < CHORD_TABLE.length; mask++) {
+      int best = -1;
+      int bestScore = Integer.MIN_VALUE;
+      for (int t = 0; t < templates.length; t++) {
+        int root = t % Note.OCTAVE;
+        int matched = Integer.bitCount(mask & templates[t]);
+        if ((mask & (1 << root)) == 0 || matched < 2) {
+          continue;
+        }
+        int score = 2 * matched - Integer.bitCount(templates[t] & ~mask)
+          - Integer.bitCount(mask & ~templates[t]);
+        if (score > bestScore) {
+          bestScore = score;
+          best = t;
+        }
+      }
+      CHORD_TABLE[mask] = (short) best;
+    }
+  }
+
+  private final double beatDuration;
+  private final int windowBeats;
+  private final int latencyBeats;
+  private final double[][] beats;
+  private final double[] histogram;
+  private final double[] dots;
+  private final List<HarmonyListener> listeners;
+  private final List<double[]> sustained;
+  private double sum;
+  private double sumOfSquares;
+  private long closedBeat;
+  private long frontierBeat;
+  private long lastSoundBeat;
+  private int keyIndex;
+  private double keyCorrelation;
+
+  /**
+   * Creates a tool that labels every quarter note and estimates the key over the last sixteen.
+   */
+  public HarmonicAnalysisTool() {
+    this(DEFAULT_BEAT_DURATION, DEFAULT_WINDOW_BEATS, DEFAULT_LATENCY_BEATS);
+  }
+
+  /**
+   * <p>Constructor for HarmonicAnalysisTool.</p>
+   *
+   * @param beatDuration the length of a beat, as a note duration; 0.25 is a quarter note.
+   * @param windowBeats the number of beats over which the key is estimated.
+   * @param latencyBeats the number of beats the music must move past a beat before the beat is
+   * complete.
+   */
+  public HarmonicAnalysisTool(double beatDuration, int windowBeats, int latencyBeats) {
+    if (beatDuration <= 0 || windowBeats < 1 || latencyBeats < 0) {
+      throw new IllegalArgumentException("Beat duration and window must be positive, "
+        + "and latency must not be negative");
+    }
+    this.beatDuration = beatDuration;
+    this.windowBeats = windowBeats;
+    this.latencyBeats = latencyBeats;
+    this.beats = new double[windowBeats + latencyBeats + 1][Note.OCTAVE];
+    this.histogram = new double[Note.OCTAVE];
+    this.dots = new double[KEY_PROFILES.length * Note.OCTAVE];
+    this.listeners = new CopyOnWriteArrayList<>();
+    this.sustained = new ArrayList<>();
+    reset();
+  }
+
+  /**
+   * <p>addHarmonyListener.</p>
+   *
+   * @param listener a {@link org.jfugue.tools.HarmonyListener} object.
+   */
+  public void addHarmonyListener(HarmonyListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * <p>removeHarmonyListener.</p>
+   *
+   * @param listener a {@link org.jfugue.tools.HarmonyListener} object.
+   */
+  public void removeHarmonyListener(HarmonyListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns the key that best fits the beats in the window, or null if no notes have been heard.
+   *
+   * @return a {@link org.jfugue.theory.Key} object.
+   */
+  public Key getKey() {
+    return keyIndex < 0 ? null : createKey(keyIndex);
+  }
+
+  /**
+   * Returns how well the notes in the window fit {@link #getKey()}, from -1 to 1.
+   *
+   * @return a double.
+   */
+  public double getKeyCorrelation() {
+    return keyCorrelation;
+  }
+
+  /**
+   * Parses the given sequence with a {@link MidiParser}, handing it the events of all tracks in
+   * time order so that every beat is complete before it is labelled.
+   *
+   * @param sequence a {@link javax.sound.midi.Sequence} object.
+   */
+  public void analyze(Sequence sequence) {
+    MidiParser parser = new MidiParser();
+    parser.addParserListener(this);
+    parser.startParser(sequence);
+    Track[] tracks = sequence.getTracks();
+    int[] positions = new int[tracks.length];
+    while (true) {
+      int next = -1;
+      for (int t = 0; t < tracks.length; t++) {
+        if (positions[t] < tracks[t].size() && (next < 0
+          || tracks[t].get(positions[t]).getTick() < tracks[next].get(positions[next]).getTick())) {
+          next = t;
+        }
+      }
+      if (next < 0) {
+        break;
+      }
+      MidiEvent event = tracks[next].get(positions[next]++);
+      parser.parseEvent(event);
+    }
+    parser.stopParser();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    super.beforeParsingStarts();
+    reset();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterParsingFinished() {
+    if (lastSoundBeat >= closedBeat) {
+      closeBeatsBefore(lastSoundBeat + 1);
+    }
+  }
+
+  private void reset() {
+    for (double[] beat : beats) {
+      Arrays.fill(beat, 0);
+    }
+    clearHistogram();
+    closedBeat = 0;
+    frontierBeat = -1;
+    lastSoundBeat = -1;
+    sustained.clear();
+    keyIndex = -1;
+    keyCorrelation = 0;
+  }
+
+  private void clearHistogram() {
+    Arrays.fill(histogram, 0);
+    Arrays.fill(dots, 0);
+    sum = 0;
+    sumOfSquares = 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void onNoteSounded(int track, int layer, int noteValue, double start,
+    double duration) {
+    addSound(noteValue % Note.OCTAVE, start, start + duration);
+  }
+
+  /**
+   * Moves the frontier to the beat the sound starts in, then adds the sound to the beats that are
+   * open. A sound lasting past the last open beat is kept, and added to each later beat as it
+   * opens.
+   */
+  private void addSound(int pitchClass, double start, double end) {
+    long firstBeat = (long) Math.floor(start / beatDuration);
+    long lastBeat = (long) Math.ceil(end / beatDuration) - 1;
+    lastSoundBeat = Math.max(lastSoundBeat, lastBeat);
+    if (firstBeat > frontierBeat) {
+      frontierBeat = firstBeat;
+      closeBeatsBefore(frontierBeat - latencyBeats);
+    }
+    long lastOpenBeat = closedBeat + latencyBeats;
+    for (long b = Math.max(firstBeat, closedBeat - windowBeats);
+      b <= Math.min(lastBeat, lastOpenBeat); b++) {
+      addOverlap(pitchClass, start, end, b);
+    }
+    if (lastBeat > lastOpenBeat) {
+      sustained.add(new double[]{pitchClass, start, end});
+    }
+  }
+
+  private void addOverlap(int pitchClass, double start, double end, long beat) {
+    double overlap =
+      Math.min(end, (beat + 1) * beatDuration) - Math.max(start, beat * beatDuration);
+    if (overlap <= 0) {
+      return;
+    }
+    beats[slot(beat)][pitchClass] += overlap;
+    if (beat < closedBeat) {
+      // Reported after its beat was complete, but still inside the key window
+      addToHistogram(pitchClass, overlap);
+    }
+  }
+
+  private void closeBeatsBefore(long beat) {
+    for (int closed = 0; closedBeat < beat; closed++) {
+      if (closed == beats.length && sustained.isEmpty()) {
+        // Every beat in the ring has been closed, so the rest of the gap is silence. Forget the
+        // beats before it, which may still hold the ends of sustained sounds, but keep those
+        // already open past it.
+        for (long b = closedBeat - windowBeats; b < beat && b <= closedBeat + latencyBeats; b++) {
+          Arrays.fill(beats[slot(b)], 0);
+        }
+        sustained.clear();
+        closedBeat = beat;
+        clearHistogram();
+        return;
+      }
+      closeBeat();
+    }
+  }
+
+  private void closeBeat() {
+    long beat = closedBeat++;
+    double[] weights = beats[slot(beat)];
+    labelChord(beat, weights);
+    for (int pc = 0; pc < Note.OCTAVE; pc++) {
+      if (weights[pc] != 0) {
+        addToHistogram(pc, weights[pc]);
+      }
+    }
+    long leaving = beat - windowBeats;
+    if (leaving >= 0) {
+      double[] old = beats[slot(leaving)];
+      for (int pc = 0; pc < Note.OCTAVE; pc++) {
+        if (old[pc] != 0) {
+          addToHistogram(pc, -old[pc]);
+          old[pc] = 0;
+        }
+      }
+      if (sum < 1e-9) {
+        // Wipe out rounding errors once the window is empty
+        clearHistogram();
+      }
+    }
+    long openedBeat = closedBeat + latencyBeats;
+    for (Iterator<double[]> i = sustained.iterator(); i.hasNext(); ) {
+      double[] sound = i.next();
+      addOverlap((int) sound[0], sound[1], sound[2], openedBeat);
+      if (sound[2] <= (openedBeat + 1) * beatDuration) {
+        i.remove();
+      }
+    }
+    estimateKey(beat);
+  }
+
+  private void labelChord(long beat, double[] weights) {
+    double loudest = 0;
+    for (double weight : weights) {
+      loudest = Math.max(loudest, weight);
+    }
+    if (loudest <= 0 || listeners.isEmpty()) {
+      return;
+    }
+    int mask = 0;
+    for (int pc = 0; pc < Note.OCTAVE; pc++) {
+      if (weights[pc] >= loudest * CHORD_TONE_RATIO) {
+        mask |= 1 << pc;
+      }
+    }
+    int template = CHORD_TABLE[mask];
+    if (template < 0) {
+      return;
+    }
+    Note root = new Note(Note.getToneStringWithoutOctave((byte) (template % Note.OCTAVE)));
+    Chord chord = new Chord(root, Chord.getIntervals(CHORD_NAMES[template / Note.OCTAVE]));
+    for (HarmonyListener listener : listeners) {
+      listener.onChordDetected(beat * beatDuration, chord);
+    }
+  }
+
+  private void addToHistogram(int pitchClass, double weight) {
+    sumOfSquares += (2 * histogram[pitchClass] + weight) * weight;
+    histogram[pitchClass] += weight;
+    sum += weight;
+    for (int m = 0; m < KEY_PROFILES.length; m++) {
+      for (int tonic = 0; tonic < Note.OCTAVE; tonic++) {
+        dots[m * Note.OCTAVE + tonic] +=
+          weight * KEY_PROFILES[m][Math.floorMod(pitchClass - tonic, Note.OCTAVE)];
+      }
+    }
+  }
+
+  private void estimateKey(long beat) {
+    double spread = Note.OCTAVE * sumOfSquares - sum * sum;
+    if (sum <= 0 || spread <= 1e-12) {
+      return;
+    }
+    int best = -1;
+    double bestCorrelation = -2;
+    for (int k = 0; k < dots.length; k++) {
+      int m = k / Note.OCTAVE;
+      double correlation = (Note.OCTAVE * dots[k] - sum * PROFILE_SUMS[m])
+        / Math.sqrt(spread * PROFILE_SPREADS[m]);
+      if (correlation > bestCorrelation) {
+        bestCorrelation = correlation;
+        best = k;
+      }
+    }
+    keyCorrelation = bestCorrelation;
+    if (best != keyIndex) {
+      keyIndex = best;
+      Key key = createKey(best);
+      for (HarmonyListener listener : listeners) {
+        listener.onKeyDetected(beat * beatDuration, key, bestCorrelation);
+      }
+    }
+  }
+
+  private int slot(long beat) {
+    return (int) Math.floorMod(beat, (long) beats.length);
+  }
+
+  private static Key createKey(int keyIndex) {
+    Note tonic = new Note(Note.getToneStringWithoutOctave((byte) (keyIndex % Note.OCTAVE)));
+    return new Key(tonic, KEY_SCALES[keyIndex / Note.OCTAVE]);
+  }
+}
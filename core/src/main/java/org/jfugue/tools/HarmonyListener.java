@@ -0,0 +1,51 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Key;
+
+/**
+ * Told by a {@link HarmonicAnalysisTool} about the chords and keys it hears. Times are given in
+ * whole notes from the start of the music, the same unit as note durations.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public interface HarmonyListener {
+
+  /**
+   * Called once a beat has been heard in full, with the chord that best fits the notes sounding
+   * during the beat. Beats without a recognizable chord are not reported.
+   *
+   * @param time the time at which the beat starts
+   * @param chord a {@link org.jfugue.theory.Chord} without an octave
+   */
+  void onChordDetected(double time, Chord chord);
+
+  /**
+   * Called when the key that best fits the recent notes changes.
+   *
+   * @param time the time at which the beat that changed the key starts
+   * @param key a {@link org.jfugue.theory.Key} without an octave
+   * @param correlation how well the notes fit the key, from -1 to 1
+   */
+  void onKeyDetected(double time, Key key, double correlation);
+}
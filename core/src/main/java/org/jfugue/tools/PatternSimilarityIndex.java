@@ -0,0 +1,392 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.pattern.PatternProducer;
+
+/**
+ * Holds the {@link GetPatternStats#getFeatures() features} of every piece in a corpus, computed
+ * once, so that a query can be compared with the whole corpus without parsing any piece again.
+ * The features are kept one piece after another in a single array of doubles, and searches scan
+ * it in parallel, keeping the nearest pieces found by each thread and merging them at the end.
+ * The index can be written to a compact binary file and read back.
+ *
+ * <pre>
+ * PatternSimilarityIndex catalogIndex = PatternSimilarityIndex.build(catalog);
+ * catalogIndex.write(new FileOutputStream("catalog.features"));
+ * ...
+ * PatternSimilarityIndex index = PatternSimilarityIndex.read(new FileInputStream(file));
+ * List&lt;Match&gt; nearest = index.search(query, 10, Metric.EUCLIDEAN);
+ * </pre>
+ *
+ * <p>Adding pieces is not thread-safe; searching an index that is not being added to is.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class PatternSimilarityIndex {
+
+  /**
+   * How far apart two pieces are.
+   */
+  public enum Metric {
+    /**
+     * The absolute value of the average difference between the features, which is what {@link
+     * GetPatternStats#comparePatterns(Pattern, Pattern)} returns, up to rounding.
+     */
+    AVERAGE_DIFFERENCE,
+    /** The Euclidean distance between the features. */
+    EUCLIDEAN
+  }
+
+  /**
+   * A piece found by a search, with its distance from the query.
+   */
+  public static final class Match {
+
+    private final String id;
+    private final double distance;
+
+    private Match(String id, double distance) {
+      this.id = id;
+      this.distance = distance;
+    }
+
+    /**
+     * <p>Getter for the field <code>id</code>.</p>
+     *
+     * @return the id the piece was added with.
+     */
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * <p>Getter for the field <code>distance</code>.</p>
+     *
+     * @return a double.
+     */
+    public double getDistance() {
+      return distance;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return id + ":" + distance;
+    }
+  }
+
+  private static final byte[] MAGIC = {'J', 'F', 'P', 'F'};
+  private static final byte VERSION = 1;
+  private static final int FEATURES = GetPatternStats.FEATURE_COUNT;
+  private static final int CHUNK_SIZE = 4096;
+
+  private String[] ids;
+  private double[] features;
+  private double[] sums;
+  private int size;
+
+  /**
+   * Creates an empty index.
+   */
+  public PatternSimilarityIndex() {
+    ids = new String[16];
+    features = new double[16 * FEATURES];
+    sums = new double[16];
+  }
+
+  /**
+   * Creates an index of the given pieces, computing their features in parallel.
+   *
+   * @param corpus the pieces, by id.
+   * @return a {@link org.jfugue.tools.PatternSimilarityIndex} object.
+   */
+  public static PatternSimilarityIndex build(Map<String, ? extends PatternProducer> corpus) {
+    List<String> keys = new ArrayList<>(corpus.keySet());
+    double[][] computed = keys.parallelStream()
+      .map(key -> computeFeatures(corpus.get(key)))
+      .toArray(double[][]::new);
+    PatternSimilarityIndex index = new PatternSimilarityIndex();
+    for (int i = 0; i < computed.length; i++) {
+      index.add(keys.get(i), computed[i]);
+    }
+    return index;
+  }
+
+  /**
+   * Computes the features of the given piece, as {@link GetPatternStats#getFeatures()} does.
+   *
+   * @param patternProducer a {@link org.jfugue.pattern.PatternProducer} object.
+   * @return an array of {@link GetPatternStats#FEATURE_COUNT} doubles.
+   */
+  public static double[] computeFeatures(PatternProducer patternProducer) {
+    GetPatternStats stats = new GetPatternStats();
+    stats.parsePattern(patternProducer.getPattern(), true);
+    return stats.getFeatures();
+  }
+
+  /**
+   * Parses the given piece and adds its features to the index.
+   *
+   * @param id the id to report the piece by.
+   * @param patternProducer a {@link org.jfugue.pattern.PatternProducer} object.
+   */
+  public void add(String id, PatternProducer patternProducer) {
+    add(id, computeFeatures(patternProducer));
+  }
+
+  /**
+   * Adds a piece whose features have already been computed.
+   *
+   * @param id the id to report the piece by.
+   * @param pieceFeatures an array of {@link GetPatternStats#FEATURE_COUNT} doubles.
+   */
+  public void add(String id, double[] pieceFeatures) {
+    checkFeatures(pieceFeatures);
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+      features = Arrays.copyOf(features, size * 2 * FEATURES);
+      sums = Arrays.copyOf(sums, size * 2);
+    }
+    ids[size] = id;
+    System.arraycopy(pieceFeatures, 0, features, size * FEATURES, FEATURES);
+    sums[size] = sum(pieceFeatures);
+    size++;
+  }
+
+  /**
+   * Returns the number of pieces in the index.
+   *
+   * @return an int.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the id of the piece at the given position, in the order the pieces were added.
+   *
+   * @param index an int.
+   * @return a {@link java.lang.String} object.
+   */
+  public String getId(int index) {
+    checkIndex(index);
+    return ids[index];
+  }
+
+  /**
+   * Returns a copy of the features of the piece at the given position.
+   *
+   * @param index an int.
+   * @return an array of {@link GetPatternStats#FEATURE_COUNT} doubles.
+   */
+  public double[] getFeatures(int index) {
+    checkIndex(index);
+    return Arrays.copyOfRange(features, index * FEATURES, (index + 1) * FEATURES);
+  }
+
+  /**
+   * Parses the query and returns the pieces nearest to it.
+   *
+   * @param query a {@link org.jfugue.pattern.PatternProducer} object.
+   * @param k the most pieces to return.
+   * @param metric a {@link org.jfugue.tools.PatternSimilarityIndex.Metric} object.
+   * @return the nearest pieces, nearest first.
+   */
+  public List<Match> search(PatternProducer query, int k, Metric metric) {
+    return search(computeFeatures(query), k, metric);
+  }
+
+  /**
+   * Returns the pieces nearest to the given features. Pieces at the same distance come in the
+   * order they were added.
+   *
+   * @param query an array of {@link GetPatternStats#FEATURE_COUNT} doubles.
+   * @param k the most pieces to return.
+   * @param metric a {@link org.jfugue.tools.PatternSimilarityIndex.Metric} object.
+   * @return the nearest pieces, nearest first.
+   */
+  public List<Match> search(double[] query, int k, Metric metric) {
+    checkFeatures(query);
+    if (k < 1 || size == 0) {
+      return Collections.emptyList();
+    }
+    int limit = Math.min(k, size);
+    double[] q = query.clone();
+    double querySum = sum(q);
+    int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    Nearest nearest = IntStream.range(0, chunks).parallel()
+      .mapToObj(chunk -> {
+        Nearest found = new Nearest(limit);
+        int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+        for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+          found.offer(i, distance(metric, q, querySum, i));
+        }
+        return found;
+      })
+      .reduce(Nearest::merge)
+      .orElseThrow(IllegalStateException::new);
+    List<Match> matches = new ArrayList<>(nearest.count);
+    for (int i = 0; i < nearest.count; i++) {
+      matches.add(new Match(ids[nearest.indices[i]], nearest.distances[i]));
+    }
+    return matches;
+  }
+
+  /**
+   * Writes the index: the four bytes <code>JFPF</code>, a version byte, the number of features
+   * per piece and the number of pieces, then for each piece its id and its features.
+   *
+   * @param out a {@link java.io.OutputStream} object, which is flushed but not closed.
+   * @throws java.io.IOException if the stream can't be written.
+   */
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.write(MAGIC);
+    data.writeByte(VERSION);
+    data.writeInt(FEATURES);
+    data.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      data.writeUTF(ids[i]);
+      for (int f = i * FEATURES; f < (i + 1) * FEATURES; f++) {
+        data.writeDouble(features[f]);
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads an index written by {@link #write(OutputStream)}.
+   *
+   * @param in a {@link java.io.InputStream} object, which is not closed.
+   * @return a {@link org.jfugue.tools.PatternSimilarityIndex} object.
+   * @throws java.io.IOException if the stream can't be read or does not hold an index.
+   */
+  public static PatternSimilarityIndex read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    byte[] magic = new byte[MAGIC.length];
+    data.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC) || data.readByte() != VERSION) {
+      throw new IOException("Not a pattern feature index");
+    }
+    if (data.readInt() != FEATURES) {
+      throw new IOException("The index holds a different number of features");
+    }
+    int count = data.readInt();
+    PatternSimilarityIndex index = new PatternSimilarityIndex();
+    double[] pieceFeatures = new double[FEATURES];
+    for (int i = 0; i < count; i++) {
+      String id = data.readUTF();
+      for (int f = 0; f < FEATURES; f++) {
+        pieceFeatures[f] = data.readDouble();
+      }
+      index.add(id, pieceFeatures);
+    }
+    return index;
+  }
+
+  private double distance(Metric metric, double[] query, double querySum, int piece) {
+    if (metric == Metric.AVERAGE_DIFFERENCE) {
+      return Math.abs(sums[piece] - querySum) / FEATURES;
+    }
+    int offset = piece * FEATURES;
+    double total = 0;
+    for (int f = 0; f < FEATURES; f++) {
+      double difference = features[offset + f] - query[f];
+      total += difference * difference;
+    }
+    return Math.sqrt(total);
+  }
+
+  private static double sum(double[] values) {
+    double total = 0;
+    for (double value : values) {
+      total += value;
+    }
+    return total;
+  }
+
+  private static void checkFeatures(double[] pieceFeatures) {
+    if (pieceFeatures.length != FEATURES) {
+      throw new IllegalArgumentException(
+        "Expected " + FEATURES + " features but got " + pieceFeatures.length);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  /**
+   * The k nearest pieces seen so far, nearest first.
+   */
+  private static final class Nearest {
+
+    private final int[] indices;
+    private final double[] distances;
+    private int count;
+
+    private Nearest(int k) {
+      indices = new int[k];
+      distances = new double[k];
+    }
+
+    private void offer(int index, double distance) {
+      if (count == indices.length && !closer(index, distance, count - 1)) {
+        return;
+      }
+      int position = count == indices.length ? count - 1 : count++;
+      while (position > 0 && closer(index, distance, position - 1)) {
+        indices[position] = indices[position - 1];
+        distances[position] = distances[position - 1];
+        position--;
+      }
+      indices[position] = index;
+      distances[position] = distance;
+    }
+
+    private boolean closer(int index, double distance, int position) {
+      return distance < distances[position]
+        || (distance == distances[position] && index < indices[position]);
+    }
+
+    private Nearest merge(Nearest other) {
+      for (int i = 0; i < other.count; i++) {
+        offer(other.indices[i], other.distances[i]);
+      }
+      return this;
+    }
+  }
+}
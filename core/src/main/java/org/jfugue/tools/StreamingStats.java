@@ -0,0 +1,261 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import java.util.Arrays;
+
+/**
+ * Summarizes a stream of values in a fixed amount of memory: the count, mean, population variance,
+ * minimum and maximum are kept with Welford's method, and the values are also counted in a
+ * histogram of fixed, logarithmically spaced buckets from which quantiles can be estimated to
+ * within one percent of the true value. Two StreamingStats can be merged, so a stream may be
+ * summarized in pieces on different threads and the pieces combined afterwards.
+ *
+ * <p>Values whose magnitude is below 10<sup>-6</sup> are counted as zero in the histogram, and
+ * values above 10<sup>6</sup> are counted in its last bucket; the count, mean, variance, minimum
+ * and maximum are exact in any case. StreamingStats is not thread-safe.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see GetPatternStats
+ */
+public final class StreamingStats {
+
+  private static final double RELATIVE_ACCURACY = 0.01d;
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  private static final double MIN_MAGNITUDE = 1e-6d;
+  private static final double MAX_MAGNITUDE = 1e6d;
+  private static final int INDEX_OFFSET = bucketIndex(MIN_MAGNITUDE);
+  private static final int BUCKETS = bucketIndex(MAX_MAGNITUDE) - INDEX_OFFSET + 1;
+
+  private final long[] positiveBuckets;
+  private long[] negativeBuckets;
+  private long zeroCount;
+  private long n;
+  private double mean;
+  private double m2;
+  private double min;
+  private double max;
+
+  /**
+   * <p>Constructor for StreamingStats.</p>
+   */
+  public StreamingStats() {
+    positiveBuckets = new long[BUCKETS];
+    clear();
+  }
+
+  /**
+   * Adds a value to the summary.
+   *
+   * @param value a double.
+   */
+  public void add(double value) {
+    n++;
+    double delta = value - mean;
+    mean += delta / n;
+    m2 += delta * (value - mean);
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+    double magnitude = Math.abs(value);
+    if (magnitude < MIN_MAGNITUDE) {
+      zeroCount++;
+    } else if (value > 0) {
+      positiveBuckets[bucket(magnitude)]++;
+    } else {
+      if (negativeBuckets == null) {
+        negativeBuckets = new long[BUCKETS];
+      }
+      negativeBuckets[bucket(magnitude)]++;
+    }
+  }
+
+  /**
+   * Adds the values summarized by another StreamingStats, as if they had been added to this one.
+   *
+   * @param other a {@link org.jfugue.tools.StreamingStats} object.
+   */
+  public void merge(StreamingStats other) {
+    if (other.n == 0) {
+      return;
+    }
+    if (n == 0) {
+      mean = other.mean;
+      m2 = other.m2;
+    } else {
+      long total = n + other.n;
+      double delta = other.mean - mean;
+      mean += delta * other.n / total;
+      m2 += other.m2 + delta * delta * ((double) n * other.n / total);
+    }
+    n += other.n;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    zeroCount += other.zeroCount;
+    for (int i = 0; i < BUCKETS; i++) {
+      positiveBuckets[i] += other.positiveBuckets[i];
+    }
+    if (other.negativeBuckets != null) {
+      if (negativeBuckets == null) {
+        negativeBuckets = new long[BUCKETS];
+      }
+      for (int i = 0; i < BUCKETS; i++) {
+        negativeBuckets[i] += other.negativeBuckets[i];
+      }
+    }
+  }
+
+  /**
+   * Forgets every value.
+   */
+  public void clear() {
+    Arrays.fill(positiveBuckets, 0);
+    negativeBuckets = null;
+    zeroCount = 0;
+    n = 0;
+    mean = 0;
+    m2 = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * <p>getN.</p>
+   *
+   * @return the number of values added.
+   */
+  public long getN() {
+    return n;
+  }
+
+  /**
+   * <p>getMean.</p>
+   *
+   * @return the mean of the values, or zero if there are none.
+   */
+  public double getMean() {
+    return mean;
+  }
+
+  /**
+   * <p>getVariance.</p>
+   *
+   * @return the population variance of the values, or zero if there are none.
+   */
+  public double getVariance() {
+    return n == 0 ? 0 : Math.max(0, m2 / n);
+  }
+
+  /**
+   * <p>getStandardDeviation.</p>
+   *
+   * @return the population standard deviation of the values, or zero if there are none.
+   */
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  /**
+   * <p>getMin.</p>
+   *
+   * @return the smallest value, or zero if there are none.
+   */
+  public double getMin() {
+    return n == 0 ? 0 : min;
+  }
+
+  /**
+   * <p>getMax.</p>
+   *
+   * @return the largest value, or zero if there are none.
+   */
+  public double getMax() {
+    return n == 0 ? 0 : max;
+  }
+
+  /**
+   * <p>getRange.</p>
+   *
+   * @return the largest value less the smallest, or zero if there are none.
+   */
+  public double getRange() {
+    return getMax() - getMin();
+  }
+
+  /**
+   * Estimates the value below which the given share of the values fall, to within one percent.
+   *
+   * @param quantile a double from 0 to 1; 0.5 estimates the median.
+   * @return the estimated value, or zero if there are none.
+   */
+  public double getQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Quantile must be from 0 to 1: " + quantile);
+    }
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.floor(quantile * (n - 1));
+    long seen = 0;
+    if (negativeBuckets != null) {
+      for (int i = BUCKETS - 1; i >= 0; i--) {
+        seen += negativeBuckets[i];
+        if (seen > rank) {
+          return clamp(-bucketValue(i));
+        }
+      }
+    }
+    seen += zeroCount;
+    if (seen > rank) {
+      return clamp(0);
+    }
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += positiveBuckets[i];
+      if (seen > rank) {
+        return clamp(bucketValue(i));
+      }
+    }
+    return max;
+  }
+
+  private double clamp(double value) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  private static int bucketIndex(double magnitude) {
+    return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+  }
+
+  private static int bucket(double magnitude) {
+    return Math.min(BUCKETS - 1, bucketIndex(magnitude) - INDEX_OFFSET);
+  }
+
+  /**
+   * Returns the value that is within the relative accuracy of every value in the bucket.
+   */
+  private static double bucketValue(int bucket) {
+    return 2 * Math.pow(GAMMA, bucket + INDEX_OFFSET) / (GAMMA + 1);
+  }
+}
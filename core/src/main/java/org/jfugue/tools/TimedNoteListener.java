@@ -0,0 +1,164 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import java.util.Arrays;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.BatchParserListener;
+import org.jfugue.parser.EventBatch;
+import org.jfugue.parser.ParserListenerAdapter;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+import org.staccato.DefaultNoteSettingsManager;
+
+/**
+ * Keeps the time of each track and layer as MidiEventManager does, and hands every note that
+ * sounds to {@link #onNoteSounded(int, int, int, double, double)} with the time it starts. Rests
+ * and notes on the percussion track move the time on but are not handed over. Times and durations
+ * are note durations; 0.25 is a quarter note.
+ *
+ * <p>Notes come in the order the parser reports them, which for {@link
+ * org.jfugue.midi.MidiParser} is the order they end in, one track after another. Subclasses that
+ * override {@link #beforeParsingStarts()} must call it on the superclass, which sets every time
+ * back to zero.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public abstract class TimedNoteListener extends ParserListenerAdapter
+  implements BatchParserListener {
+
+  private final double[][] beatTime;
+  private final byte[] currentLayer;
+  private byte currentTrack;
+  private double harmonicStartTime;
+
+  /**
+   * <p>Constructor for TimedNoteListener.</p>
+   */
+  protected TimedNoteListener() {
+    this.beatTime = new double[MidiDefaults.TRACKS][MidiDefaults.LAYERS];
+    this.currentLayer = new byte[MidiDefaults.TRACKS];
+  }
+
+  /**
+   * Called for each note that sounds.
+   *
+   * @param track the track of the note.
+   * @param layer the layer of the note.
+   * @param noteValue the MIDI value of the note.
+   * @param start the time the note starts.
+   * @param duration the duration of the note, which is positive.
+   */
+  protected abstract void onNoteSounded(int track, int layer, int noteValue, double start,
+    double duration);
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    for (double[] layers : beatTime) {
+      Arrays.fill(layers, 0);
+    }
+    Arrays.fill(currentLayer, (byte) 0);
+    currentTrack = 0;
+    harmonicStartTime = 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackChanged(byte track) {
+    this.currentTrack = track;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLayerChanged(byte layer) {
+    currentLayer[currentTrack] = layer;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeRequested(double time) {
+    beatTime[currentTrack][currentLayer[currentTrack]] = time;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteParsed(Note note) {
+    addNote(PackedNote.pack(note), note.getDuration());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChordParsed(Chord chord) {
+    for (Note note : chord.getNotes()) {
+      onNoteParsed(note);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onEventBatch(EventBatch batch) {
+    for (int i = 0; i < batch.size(); i++) {
+      switch (batch.getType(i)) {
+        case NOTE:
+          addNote(batch.getPackedNote(i), batch.getDoubleValue(i));
+          break;
+        case CHORD:
+          onChordParsed(batch.getChord(i));
+          break;
+        case TRACK_CHANGED:
+          onTrackChanged(batch.getFirstByte(i));
+          break;
+        case LAYER_CHANGED:
+          onLayerChanged(batch.getFirstByte(i));
+          break;
+        case TRACK_BEAT_TIME_REQUESTED:
+          onTrackBeatTimeRequested(batch.getDoubleValue(i));
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private void addNote(long packedNote, double duration) {
+    if (duration == 0.0) {
+      duration = DefaultNoteSettingsManager.getInstance().getDefaultDuration();
+    }
+    double[] layerTimes = beatTime[currentTrack];
+    byte layer = currentLayer[currentTrack];
+    if (PackedNote.is(packedNote, PackedNote.FIRST_NOTE)) {
+      harmonicStartTime = layerTimes[layer];
+    }
+    if (PackedNote.is(packedNote, PackedNote.HARMONIC_NOTE)) {
+      layerTimes[layer] = harmonicStartTime;
+    }
+    double start = layerTimes[layer];
+    layerTimes[layer] += duration;
+    if (PackedNote.is(packedNote, PackedNote.REST)
+      || PackedNote.is(packedNote, PackedNote.PERCUSSION_NOTE)
+      || currentTrack == MidiDefaults.PERCUSSION_TRACK || duration <= 0) {
+      return;
+    }
+    onNoteSounded(currentTrack, layer, PackedNote.getValue(packedNote), start, duration);
+  }
+}
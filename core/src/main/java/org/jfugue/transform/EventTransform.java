@@ -0,0 +1,39 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.transform;
+
+/**
+ * One step of a {@link Transformation}. It is called once for each row of a MusicEvents, in order,
+ * and changes that row in place through the setters of MusicEvents.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+@FunctionalInterface
+public interface EventTransform {
+
+  /**
+   * <p>apply.</p>
+   *
+   * @param events a {@link org.jfugue.transform.MusicEvents} object.
+   * @param row the row to transform.
+   */
+  void apply(MusicEvents events, int row);
+}
@@ -0,0 +1,501 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.transform;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.Map;
+import javax.sound.midi.Sequence;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.midi.MidiFileManager;
+import org.jfugue.midi.MidiParserListener;
+import org.jfugue.parser.EventType;
+import org.jfugue.parser.ParserListener;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.pattern.PatternProducer;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+import org.jfugue.theory.PackedNote;
+import org.staccato.DefaultNoteSettingsManager;
+import org.staccato.StaccatoParser;
+import org.staccato.StaccatoParserListener;
+
+/**
+ * The events of a piece of music held in memory in the order they were parsed, one row per event,
+ * as parallel primitive arrays: the event type, the track and layer it belongs to, a primary value,
+ * a secondary value, and a duration. Strings, system exclusive data, function parameters and the
+ * intervals of chords live in a side table. Notes are held as {@link PackedNote} values, not Note
+ * objects, until the events are replayed, so a transformation can change the pitch, duration or
+ * velocity of every note in a piece without allocating anything.
+ *
+ * <p>What the values of a row mean depends on its type:</p>
+ * <ul>
+ * <li>NOTE, NOTE_PRESSED, NOTE_RELEASED and CHORD: the value is the note (or root) value, the
+ * duration is in whole notes, and the note's velocities and flags are available through their own
+ * getters.</li>
+ * <li>TEMPO: the value is beats per minute. INSTRUMENT: the instrument. CHANNEL_PRESSURE: the
+ * pressure. PITCH_WHEEL: the 14-bit wheel position.</li>
+ * <li>CONTROLLER: the value is the controller value and the secondary value the controller.
+ * POLYPHONIC_PRESSURE: the pressure and the key.</li>
+ * <li>KEY_SIGNATURE: the key and the scale. TIME_SIGNATURE: the numerator and the power of
+ * two.</li>
+ * <li>BAR_LINE: the value is the bar line's id. TRACK_BEAT_TIME_REQUESTED: the duration is the
+ * requested time in whole notes.</li>
+ * </ul>
+ *
+ * <p>Track and layer changes are not stored as rows; every row knows its own track and layer, and
+ * replay fires a change whenever they differ from the row before. That is what lets a
+ * transformation move events to another voice by changing one column.</p>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ * @see Transformation
+ */
+public final class MusicEvents implements PatternProducer {
+
+  private static final EventType[] TYPES = EventType.values();
+  private static final int INITIAL_CAPACITY = 256;
+
+  private int size;
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  private byte[] tracks = new byte[INITIAL_CAPACITY];
+  private byte[] layers = new byte[INITIAL_CAPACITY];
+  private long[] values = new long[INITIAL_CAPACITY];
+  private int[] extras = new int[INITIAL_CAPACITY];
+  private double[] durations = new double[INITIAL_CAPACITY];
+  private Object[] payloads = new Object[INITIAL_CAPACITY];
+
+  /**
+   * Parses the given music with a StaccatoParser and returns its events.
+   *
+   * @param producer a {@link org.jfugue.pattern.PatternProducer} object.
+   * @return a {@link org.jfugue.transform.MusicEvents} object.
+   */
+  public static MusicEvents of(PatternProducer producer) {
+    MusicEventsParserListener listener = new MusicEventsParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(listener);
+    parser.parse(producer);
+    return listener.getMusicEvents();
+  }
+
+  /**
+   * <p>size.</p>
+   *
+   * @return the number of events.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * <p>getType.</p>
+   *
+   * @param row a int.
+   * @return a {@link org.jfugue.parser.EventType} object.
+   */
+  public EventType getType(int row) {
+    return TYPES[types[check(row)]];
+  }
+
+  /**
+   * <p>getTrack.</p>
+   *
+   * @param row a int.
+   * @return a int.
+   */
+  public int getTrack(int row) {
+    return tracks[check(row)];
+  }
+
+  /**
+   * <p>setTrack.</p>
+   *
+   * @param row a int.
+   * @param track a int between 0 and 15.
+   */
+  public void setTrack(int row, int track) {
+    if (track < 0 || track >= MidiDefaults.TRACKS) {
+      throw new IllegalArgumentException("The track must be between 0 and "
+        + (MidiDefaults.TRACKS - 1) + ", not " + track);
+    }
+    tracks[check(row)] = (byte) track;
+  }
+
+  /**
+   * <p>getLayer.</p>
+   *
+   * @param row a int.
+   * @return a int.
+   */
+  public int getLayer(int row) {
+    return layers[check(row)];
+  }
+
+  /**
+   * <p>setLayer.</p>
+   *
+   * @param row a int.
+   * @param layer a int between 0 and 15.
+   */
+  public void setLayer(int row, int layer) {
+    if (layer < 0 || layer >= MidiDefaults.LAYERS) {
+      throw new IllegalArgumentException("The layer must be between 0 and "
+        + (MidiDefaults.LAYERS - 1) + ", not " + layer);
+    }
+    layers[check(row)] = (byte) layer;
+  }
+
+  /**
+   * Returns the primary value of the event; see the class description for what it means for each
+   * type.
+   *
+   * @param row a int.
+   * @return a long.
+   */
+  public long getValue(int row) {
+    return isNote(check(row)) ? PackedNote.getValue(values[row]) : values[row];
+  }
+
+  /**
+   * Sets the primary value of the event. Changing the value of a note or chord drops the string
+   * it was originally written as, so it is written out again from its new value.
+   *
+   * @param row a int.
+   * @param value a long.
+   */
+  public void setValue(int row, long value) {
+    if (!isNote(check(row))) {
+      values[row] = value;
+      return;
+    }
+    values[row] = PackedNote.withValue(values[row], (byte) value);
+    if (types[row] != EventType.CHORD.ordinal()) {
+      payloads[row] = null;
+    }
+  }
+
+  /**
+   * Returns the secondary value of the event: the controller of a CONTROLLER, the key of a
+   * POLYPHONIC_PRESSURE, the scale of a KEY_SIGNATURE or the power of two of a TIME_SIGNATURE.
+   *
+   * @param row a int.
+   * @return a int.
+   */
+  public int getSecondaryValue(int row) {
+    return isNote(check(row)) ? 0 : extras[row];
+  }
+
+  /**
+   * <p>setSecondaryValue.</p>
+   *
+   * @param row a int.
+   * @param value a int.
+   */
+  public void setSecondaryValue(int row, int value) {
+    if (isNote(check(row))) {
+      throw new IllegalStateException("Row " + row + " is a " + getType(row)
+        + ", which has no secondary value");
+    }
+    extras[row] = value;
+  }
+
+  /**
+   * <p>getDuration.</p>
+   *
+   * @param row a int.
+   * @return the duration of a note or chord, or the requested time of a
+   *   TRACK_BEAT_TIME_REQUESTED, in whole notes.
+   */
+  public double getDuration(int row) {
+    return durations[check(row)];
+  }
+
+  /**
+   * Sets the duration of a note or chord, which from then on counts as explicitly set, or the
+   * requested time of a TRACK_BEAT_TIME_REQUESTED.
+   *
+   * @param row a int.
+   * @param duration a double.
+   */
+  public void setDuration(int row, double duration) {
+    durations[check(row)] = duration;
+    if (isNote(row)) {
+      values[row] |= PackedNote.DURATION_EXPLICITLY_SET;
+    }
+  }
+
+  /**
+   * <p>getOnVelocity.</p>
+   *
+   * @param row a int.
+   * @return a int.
+   */
+  public int getOnVelocity(int row) {
+    return isNote(check(row)) ? PackedNote.getOnVelocity(values[row]) : 0;
+  }
+
+  /**
+   * <p>setOnVelocity.</p>
+   *
+   * @param row a int.
+   * @param velocity a int between 0 and 127.
+   */
+  public void setOnVelocity(int row, int velocity) {
+    checkNote(row);
+    values[row] = PackedNote.withOnVelocity(values[row], (byte) checkVelocity(velocity));
+  }
+
+  /**
+   * <p>getOffVelocity.</p>
+   *
+   * @param row a int.
+   * @return a int.
+   */
+  public int getOffVelocity(int row) {
+    return isNote(check(row)) ? PackedNote.getOffVelocity(values[row]) : 0;
+  }
+
+  /**
+   * <p>setOffVelocity.</p>
+   *
+   * @param row a int.
+   * @param velocity a int between 0 and 127.
+   */
+  public void setOffVelocity(int row, int velocity) {
+    checkNote(row);
+    values[row] = PackedNote.withOffVelocity(values[row], (byte) checkVelocity(velocity));
+  }
+
+  /**
+   * <p>isRest.</p>
+   *
+   * @param row a int.
+   * @return true if the row is a rest.
+   */
+  public boolean isRest(int row) {
+    return isNote(check(row)) && PackedNote.is(values[row], PackedNote.REST);
+  }
+
+  /**
+   * <p>isPercussionNote.</p>
+   *
+   * @param row a int.
+   * @return true if the row is a note that was written as a percussion instrument.
+   */
+  public boolean isPercussionNote(int row) {
+    return isNote(check(row)) && PackedNote.is(values[row], PackedNote.PERCUSSION_NOTE);
+  }
+
+  /**
+   * Returns the text of a LYRIC, MARKER, TRACK_BEAT_TIME_BOOKMARK or
+   * TRACK_BEAT_TIME_BOOKMARK_REQUESTED, or the id of a FUNCTION; null for any other event.
+   *
+   * @param row a int.
+   * @return a {@link java.lang.String} object.
+   */
+  public String getText(int row) {
+    Object payload = payloads[check(row)];
+    if (types[row] == EventType.FUNCTION.ordinal()) {
+      return ((Map.Entry<?, ?>) payload).getKey().toString();
+    }
+    return payload instanceof String && !isNote(row) ? (String) payload : null;
+  }
+
+  /**
+   * Returns a copy of these events that can be transformed without changing this one.
+   *
+   * @return a {@link org.jfugue.transform.MusicEvents} object.
+   */
+  public MusicEvents copy() {
+    MusicEvents copy = new MusicEvents();
+    copy.size = size;
+    copy.types = Arrays.copyOf(types, Math.max(size, 1));
+    copy.tracks = Arrays.copyOf(tracks, Math.max(size, 1));
+    copy.layers = Arrays.copyOf(layers, Math.max(size, 1));
+    copy.values = Arrays.copyOf(values, Math.max(size, 1));
+    copy.extras = Arrays.copyOf(extras, Math.max(size, 1));
+    copy.durations = Arrays.copyOf(durations, Math.max(size, 1));
+    copy.payloads = Arrays.copyOf(payloads, Math.max(size, 1));
+    return copy;
+  }
+
+  /**
+   * Replays the events to the given listener, as if the music were being parsed again.
+   *
+   * @param listener a {@link org.jfugue.parser.ParserListener} object.
+   */
+  public void replay(ParserListener listener) {
+    MusicEventsParser parser = new MusicEventsParser();
+    parser.addParserListener(listener);
+    parser.parse(this);
+  }
+
+  /**
+   * Writes the events out as Staccato.
+   *
+   * @return a {@link org.jfugue.pattern.Pattern} object.
+   */
+  @Override
+  public Pattern getPattern() {
+    StaccatoParserListener listener = new StaccatoParserListener();
+    replay(listener);
+    return listener.getPattern();
+  }
+
+  /**
+   * <p>getSequence.</p>
+   *
+   * @return the events rendered as a MIDI sequence.
+   */
+  public Sequence getSequence() {
+    MidiParserListener listener = new MidiParserListener();
+    replay(listener);
+    return listener.getSequence();
+  }
+
+  /**
+   * Writes the events to the given stream as a Standard MIDI File.
+   *
+   * @param out a {@link java.io.OutputStream} object.
+   * @throws java.io.IOException if any.
+   */
+  public void save(OutputStream out) throws IOException {
+    MidiFileManager.save(getSequence(), out);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return getPattern().toString();
+  }
+
+  //
+  // Package-level access for MusicEventsParserListener and MusicEventsParser
+  //
+
+  boolean isNote(int row) {
+    byte type = types[row];
+    return type == EventType.NOTE.ordinal() || type == EventType.NOTE_PRESSED.ordinal()
+      || type == EventType.NOTE_RELEASED.ordinal() || type == EventType.CHORD.ordinal();
+  }
+
+  byte getTypeOrdinal(int row) {
+    return types[row];
+  }
+
+  Object getPayload(int row) {
+    return payloads[row];
+  }
+
+  void clear() {
+    Arrays.fill(payloads, 0, size, null);
+    size = 0;
+  }
+
+  void add(EventType type, int track, int layer, long value, int extra, double duration,
+    Object payload) {
+    if (size == types.length) {
+      int capacity = size * 2;
+      types = Arrays.copyOf(types, capacity);
+      tracks = Arrays.copyOf(tracks, capacity);
+      layers = Arrays.copyOf(layers, capacity);
+      values = Arrays.copyOf(values, capacity);
+      extras = Arrays.copyOf(extras, capacity);
+      durations = Arrays.copyOf(durations, capacity);
+      payloads = Arrays.copyOf(payloads, capacity);
+    }
+    types[size] = (byte) type.ordinal();
+    tracks[size] = (byte) track;
+    layers[size] = (byte) layer;
+    values[size] = value;
+    extras[size] = extra;
+    durations[size] = duration;
+    payloads[size] = payload;
+    size++;
+  }
+
+  void addNote(EventType type, int track, int layer, Note note) {
+    add(type, track, layer, PackedNote.pack(note), 0, note.getDuration(),
+      note.getOriginalString());
+  }
+
+  void addChord(int track, int layer, Chord chord) {
+    addNote(EventType.CHORD, track, layer, chord.getRoot());
+    payloads[size - 1] = chord;
+  }
+
+  void addFunction(int track, int layer, String id, Object message) {
+    add(EventType.FUNCTION, track, layer, 0, 0, 0.0D, new SimpleImmutableEntry<>(id, message));
+  }
+
+  /**
+   * Builds the Note for a NOTE, NOTE_PRESSED or NOTE_RELEASED row, or the root of a CHORD row.
+   */
+  Note createNote(int row) {
+    Note note = PackedNote.toNote(values[row], durations[row]);
+    if (!note.isDurationExplicitlySet()
+      && durations[row] != DefaultNoteSettingsManager.getInstance().getDefaultDuration()) {
+      note.setDuration(durations[row]);
+    }
+    Object payload = payloads[row];
+    if (payload instanceof String) {
+      note.setOriginalString((String) payload);
+    } else if (payload instanceof Chord) {
+      Note root = ((Chord) payload).getRoot();
+      if (root.getValue() == note.getValue() && root.getOriginalString() != null) {
+        note.setOriginalString(root.getOriginalString());
+      }
+    }
+    return note;
+  }
+
+  Chord createChord(int row) {
+    Chord chord = (Chord) payloads[row];
+    return new Chord(createNote(row), chord.getIntervals()).setInversion(chord.getInversion());
+  }
+
+  Object getFunctionMessage(int row) {
+    return ((Map.Entry<?, ?>) payloads[row]).getValue();
+  }
+
+  private int check(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+    }
+    return row;
+  }
+
+  private void checkNote(int row) {
+    if (!isNote(check(row))) {
+      throw new IllegalStateException("Row " + row + " is a " + getType(row)
+        + ", not a note or chord");
+    }
+  }
+
+  private static int checkVelocity(int velocity) {
+    if (velocity < 0 || velocity > 127) {
+      throw new IllegalArgumentException("A velocity must be between 0 and 127, not " + velocity);
+    }
+    return velocity;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.transform;
+
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.EventType;
+import org.jfugue.parser.Parser;
+
+/**
+ * Replays a {@link MusicEvents} to its ParserListeners. A track change is fired before the first
+ * event and whenever an event belongs to a different track than the one before it, and a layer
+ * change whenever an event belongs to a different layer than the last one fired for its track.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class MusicEventsParser extends Parser {
+
+  private static final EventType[] TYPES = EventType.values();
+
+  /**
+   * <p>parse.</p>
+   *
+   * @param events a {@link org.jfugue.transform.MusicEvents} object.
+   */
+  public void parse(MusicEvents events) {
+    fireBeforeParsingStarts();
+    byte[] layers = new byte[MidiDefaults.TRACKS];
+    int track = 0;
+    for (int row = 0; row < events.size(); row++) {
+      int rowTrack = events.getTrack(row);
+      if (row == 0 || rowTrack != track) {
+        track = rowTrack;
+        fireTrackChanged((byte) track);
+      }
+      int rowLayer = events.getLayer(row);
+      if (rowLayer != layers[track]) {
+        layers[track] = (byte) rowLayer;
+        fireLayerChanged((byte) rowLayer);
+      }
+      fire(events, row);
+    }
+    fireAfterParsingFinished();
+  }
+
+  private void fire(MusicEvents events, int row) {
+    long value = events.getValue(row);
+    switch (TYPES[events.getTypeOrdinal(row)]) {
+      case NOTE:
+        fireNoteParsed(events.createNote(row));
+        break;
+      case NOTE_PRESSED:
+        fireNotePressed(events.createNote(row));
+        break;
+      case NOTE_RELEASED:
+        fireNoteReleased(events.createNote(row));
+        break;
+      case CHORD:
+        fireChordParsed(events.createChord(row));
+        break;
+      case TEMPO:
+        fireTempoChanged((int) value);
+        break;
+      case INSTRUMENT:
+        fireInstrumentParsed((byte) value);
+        break;
+      case CONTROLLER:
+        fireControllerEventParsed((byte) events.getSecondaryValue(row), (byte) value);
+        break;
+      case PITCH_WHEEL:
+        firePitchWheelParsed((byte) (value & 0x7F), (byte) (value >> 7 & 0x7F));
+        break;
+      case CHANNEL_PRESSURE:
+        fireChannelPressureParsed((byte) value);
+        break;
+      case POLYPHONIC_PRESSURE:
+        firePolyphonicPressureParsed((byte) events.getSecondaryValue(row), (byte) value);
+        break;
+      case SYSTEM_EXCLUSIVE:
+        fireSystemExclusiveParsed(((byte[]) events.getPayload(row)).clone());
+        break;
+      case KEY_SIGNATURE:
+        fireKeySignatureParsed((byte) value, (byte) events.getSecondaryValue(row));
+        break;
+      case TIME_SIGNATURE:
+        fireTimeSignatureParsed((byte) value, (byte) events.getSecondaryValue(row));
+        break;
+      case BAR_LINE:
+        fireBarLineParsed(value);
+        break;
+      case TRACK_BEAT_TIME_BOOKMARK:
+        fireTrackBeatTimeBookmarked(events.getText(row));
+        break;
+      case TRACK_BEAT_TIME_BOOKMARK_REQUESTED:
+        fireTrackBeatTimeBookmarkRequested(events.getText(row));
+        break;
+      case TRACK_BEAT_TIME_REQUESTED:
+        fireTrackBeatTimeRequested(events.getDuration(row));
+        break;
+      case LYRIC:
+        fireLyricParsed(events.getText(row));
+        break;
+      case MARKER:
+        fireMarkerParsed(events.getText(row));
+        break;
+      case FUNCTION:
+        fireFunctionParsed(events.getText(row), events.getFunctionMessage(row));
+        break;
+      default:
+        break;
+    }
+  }
+}
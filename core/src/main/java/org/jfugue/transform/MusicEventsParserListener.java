@@ -0,0 +1,200 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.transform;
+
+import java.util.Arrays;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.EventType;
+import org.jfugue.parser.ParserListener;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Note;
+
+/**
+ * Collects the events of a parse into a {@link MusicEvents}, keeping track of the track and layer
+ * each event belongs to. Listen to any parser, such as a StaccatoParser or a MidiParser, and call
+ * {@link #getMusicEvents()} when it is done.
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class MusicEventsParserListener implements ParserListener {
+
+  private MusicEvents events = new MusicEvents();
+  private final byte[] layers = new byte[MidiDefaults.TRACKS];
+  private byte track;
+
+  /**
+   * <p>getMusicEvents.</p>
+   *
+   * @return the events collected so far.
+   */
+  public MusicEvents getMusicEvents() {
+    return this.events;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void beforeParsingStarts() {
+    events = new MusicEvents();
+    track = 0;
+    Arrays.fill(layers, (byte) 0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterParsingFinished() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackChanged(byte track) {
+    this.track = track;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLayerChanged(byte layer) {
+    layers[track] = layer;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onInstrumentParsed(byte instrument) {
+    add(EventType.INSTRUMENT, instrument, 0, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTempoChanged(int tempoBPM) {
+    add(EventType.TEMPO, tempoBPM, 0, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onKeySignatureParsed(byte key, byte scale) {
+    add(EventType.KEY_SIGNATURE, key, scale, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTimeSignatureParsed(byte numerator, byte powerOfTwo) {
+    add(EventType.TIME_SIGNATURE, numerator, powerOfTwo, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onBarLineParsed(long id) {
+    add(EventType.BAR_LINE, id, 0, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarked(String timeBookmarkId) {
+    add(EventType.TRACK_BEAT_TIME_BOOKMARK, 0, 0, timeBookmarkId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeBookmarkRequested(String timeBookmarkId) {
+    add(EventType.TRACK_BEAT_TIME_BOOKMARK_REQUESTED, 0, 0, timeBookmarkId);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onTrackBeatTimeRequested(double time) {
+    events.add(EventType.TRACK_BEAT_TIME_REQUESTED, track, layers[track], 0, 0, time, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPitchWheelParsed(byte lsb, byte msb) {
+    add(EventType.PITCH_WHEEL, (msb & 0x7F) << 7 | lsb & 0x7F, 0, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChannelPressureParsed(byte pressure) {
+    add(EventType.CHANNEL_PRESSURE, pressure, 0, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onPolyphonicPressureParsed(byte key, byte pressure) {
+    add(EventType.POLYPHONIC_PRESSURE, pressure, key, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onSystemExclusiveParsed(byte... bytes) {
+    add(EventType.SYSTEM_EXCLUSIVE, 0, 0, bytes.clone());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onControllerEventParsed(byte controller, byte value) {
+    add(EventType.CONTROLLER, value, controller, null);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onLyricParsed(String lyric) {
+    add(EventType.LYRIC, 0, 0, lyric);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onMarkerParsed(String marker) {
+    add(EventType.MARKER, 0, 0, marker);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onFunctionParsed(String id, Object message) {
+    events.addFunction(track, layers[track], id, message);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNotePressed(Note note) {
+    events.addNote(EventType.NOTE_PRESSED, track, layers[track], note);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteReleased(Note note) {
+    events.addNote(EventType.NOTE_RELEASED, track, layers[track], note);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onNoteParsed(Note note) {
+    events.addNote(EventType.NOTE, track, layers[track], note);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void onChordParsed(Chord chord) {
+    events.addChord(track, layers[track], chord);
+  }
+
+  private void add(EventType type, long value, int extra, Object payload) {
+    events.add(type, track, layers[track], value, extra, 0.0D, payload);
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jfugue.midi.MidiDefaults;
+import org.jfugue.parser.EventType;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.pattern.PatternProducer;
+
+/**
+ * A chain of transformations applied to the events of a piece of music in a single pass. Each
+ * step is an {@link EventTransform}; the common ones (transposing, stretching time, scaling
+ * velocities and tempos, remapping instruments and moving voices) have their own methods. The
+ * music is parsed once into a {@link MusicEvents}, every step is applied to each event in turn,
+ * and the result is written out once, whether as a Pattern, a Sequence or a MIDI file, so no
+ * Staccato is generated or parsed between the steps.
+ *
+ * <pre>
+ *  Pattern arranged = new Transformation()
+ *      .transpose(-3)
+ *      .stretch(2.0)
+ *      .scaleVelocity(0.8)
+ *      .remapInstrument(0, 24)
+ *      .moveVoice(1, 3)
+ *      .transform(new Pattern("V0 I[Piano] C D E V1 G A B"));
+ * </pre>
+ *
+ * @author fmatar
+ * @version $Id: $Id
+ */
+public class Transformation {
+
+  private final List<EventTransform> transforms = new ArrayList<>();
+
+  /**
+   * Adds a step to the end of the chain.
+   *
+   * @param transform a {@link org.jfugue.transform.EventTransform} object.
+   * @return this transformation.
+   */
+  public Transformation add(EventTransform transform) {
+    transforms.add(transform);
+    return this;
+  }
+
+  /**
+   * Moves every note, chord and polyphonic pressure key by the given number of half steps. Rests
+   * and percussion are left alone, and values that would leave the range 0 to 127 are clamped to
+   * it.
+   *
+   * @param halfSteps a int.
+   * @return this transformation.
+   */
+  public Transformation transpose(int halfSteps) {
+    return add((events, row) -> {
+      if (events.getTrack(row) == MidiDefaults.PERCUSSION_TRACK) {
+        return;
+      }
+      if (events.getType(row) == EventType.POLYPHONIC_PRESSURE) {
+        events.setSecondaryValue(row, clamp(events.getSecondaryValue(row) + halfSteps));
+      } else if (isPitched(events, row)) {
+        events.setValue(row, clamp(events.getValue(row) + halfSteps));
+      }
+    });
+  }
+
+  /**
+   * Multiplies the duration of every note and chord, and every requested beat time, by the given
+   * factor.
+   *
+   * @param factor a double greater than 0.
+   * @return this transformation.
+   */
+  public Transformation stretch(double factor) {
+    checkFactor(factor);
+    return add((events, row) -> {
+      if (isNoteOrChord(events, row)
+        || events.getType(row) == EventType.TRACK_BEAT_TIME_REQUESTED) {
+        events.setDuration(row, events.getDuration(row) * factor);
+      }
+    });
+  }
+
+  /**
+   * Multiplies the attack velocity of every note and chord by the given factor, clamping the result
+   * to 127.
+   *
+   * @param factor a double of 0 or more.
+   * @return this transformation.
+   */
+  public Transformation scaleVelocity(double factor) {
+    if (!(factor >= 0.0D)) {
+      throw new IllegalArgumentException("The factor must be 0 or more, not " + factor);
+    }
+    return add((events, row) -> {
+      if (isNoteOrChord(events, row) && !events.isRest(row)) {
+        events.setOnVelocity(row,
+          clamp(Math.round(events.getOnVelocity(row) * factor)));
+      }
+    });
+  }
+
+  /**
+   * Multiplies every tempo by the given factor.
+   *
+   * @param factor a double greater than 0.
+   * @return this transformation.
+   */
+  public Transformation scaleTempo(double factor) {
+    checkFactor(factor);
+    return add((events, row) -> {
+      if (events.getType(row) == EventType.TEMPO) {
+        events.setValue(row, Math.max(1L, Math.round(events.getValue(row) * factor)));
+      }
+    });
+  }
+
+  /**
+   * Replaces every change to the given instrument with a change to another.
+   *
+   * @param from a int.
+   * @param to a int.
+   * @return this transformation.
+   */
+  public Transformation remapInstrument(int from, int to) {
+    return add((events, row) -> {
+      if (events.getType(row) == EventType.INSTRUMENT && events.getValue(row) == from) {
+        events.setValue(row, to);
+      }
+    });
+  }
+
+  /**
+   * Moves every event in one voice to another.
+   *
+   * @param from a int.
+   * @param to a int between 0 and 15.
+   * @return this transformation.
+   */
+  public Transformation moveVoice(int from, int to) {
+    if (to < 0 || to >= MidiDefaults.TRACKS) {
+      throw new IllegalArgumentException("The voice must be between 0 and "
+        + (MidiDefaults.TRACKS - 1) + ", not " + to);
+    }
+    return add((events, row) -> {
+      if (events.getTrack(row) == from) {
+        events.setTrack(row, to);
+      }
+    });
+  }
+
+  /**
+   * Applies every step, in order, to each event in turn, changing the given events in place.
+   *
+   * @param events a {@link org.jfugue.transform.MusicEvents} object.
+   * @return the given events.
+   */
+  public MusicEvents apply(MusicEvents events) {
+    EventTransform[] steps = transforms.toArray(new EventTransform[0]);
+    int size = events.size();
+    for (int row = 0; row < size; row++) {
+      for (EventTransform step : steps) {
+        step.apply(events, row);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Parses the given music, applies every step to it and writes the result out as Staccato.
+   *
+   * @param producer a {@link org.jfugue.pattern.PatternProducer} object.
+   * @return a {@link org.jfugue.pattern.Pattern} object.
+   */
+  public Pattern transform(PatternProducer producer) {
+    return apply(MusicEvents.of(producer)).getPattern();
+  }
+
+  private static boolean isNoteOrChord(MusicEvents events, int row) {
+    EventType type = events.getType(row);
+    return type == EventType.NOTE || type == EventType.NOTE_PRESSED
+      || type == EventType.NOTE_RELEASED || type == EventType.CHORD;
+  }
+
+  private static boolean isPitched(MusicEvents events, int row) {
+    return isNoteOrChord(events, row) && !events.isRest(row) && !events.isPercussionNote(row);
+  }
+
+  private static int clamp(long value) {
+    return (int) Math.max(0L, Math.min(127L, value));
+  }
+
+  private static void checkFactor(double factor) {
+    if (!(factor > 0.0D)) {
+      throw new IllegalArgumentException("The factor must be greater than 0, not " + factor);
+    }
+  }
+}
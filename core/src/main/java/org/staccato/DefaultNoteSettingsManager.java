@@ -29,6 +29,7 @@ public class DefaultNoteSettingsManager {
   private byte defaultOnVelocity = MidiDefaults.MIDI_DEFAULT_ON_VELOCITY;
   private byte defaultOffVelocity = MidiDefaults.MIDI_DEFAULT_OFF_VELOCITY;
   private boolean adjustNotesByKeySignature = DEFAULT_ADJUST_NOTES_BY_KEY_SIGNATURE;
+  private volatile int version;
 
   private DefaultNoteSettingsManager() {
   }
@@ -62,6 +63,7 @@ public class DefaultNoteSettingsManager {
   public void setDefaultOctave(byte octave) {
     assert (octave >= Note.MIN_OCTAVE) && (octave <= Note.MAX_OCTAVE);
     this.defaultOctave = octave;
+    version++;
   }
 
   /**
@@ -81,6 +83,7 @@ public class DefaultNoteSettingsManager {
   public void setDefaultBassOctave(byte octave) {
     assert (octave >= Note.MIN_OCTAVE) && (octave <= Note.MAX_OCTAVE);
     this.defaultBassOctave = octave;
+    version++;
   }
 
   /**
@@ -99,6 +102,7 @@ public class DefaultNoteSettingsManager {
    */
   public void setDefaultDuration(double duration) {
     this.defaultDuration = duration;
+    version++;
   }
 
   /**
@@ -118,6 +122,7 @@ public class DefaultNoteSettingsManager {
   public void setDefaultOnVelocity(byte attack) {
     assert (attack >= MidiDefaults.MIN_ON_VELOCITY) && (attack <= MidiDefaults.MAX_ON_VELOCITY);
     this.defaultOnVelocity = attack;
+    version++;
   }
 
   /**
@@ -137,6 +142,7 @@ public class DefaultNoteSettingsManager {
   public void setDefaultOffVelocity(byte decay) {
     assert (decay >= MidiDefaults.MIN_OFF_VELOCITY) && (decay <= MidiDefaults.MAX_OFF_VELOCITY);
     this.defaultOffVelocity = decay;
+    version++;
   }
 
   /**
@@ -155,5 +161,14 @@ public class DefaultNoteSettingsManager {
    */
   public void setAdjustNotesByKeySignature(boolean b) {
     this.adjustNotesByKeySignature = b;
+    version++;
+  }
+
+  /**
+   * Returns a number that changes whenever one of the defaults is set, so that notes parsed under
+   * earlier defaults can be recognized.
+   */
+  int getVersion() {
+    return this.version;
   }
 }
@@ -62,6 +62,7 @@ public class InstructionPreprocessor implements Preprocessor {
    */
   public void addInstruction(String key, Instruction value) {
     instructions.put(key, value);
+    StaccatoParserPatternHelper.configurationChanged();
   }
 
   /**
@@ -82,6 +83,7 @@ public class InstructionPreprocessor implements Preprocessor {
    */
   public void addInstruction(String key, final String value) {
     instructions.put(key, instructions -> value);
+    StaccatoParserPatternHelper.configurationChanged();
   }
 
   /** {@inheritDoc} */
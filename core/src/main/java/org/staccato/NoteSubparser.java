@@ -21,6 +21,8 @@ package org.staccato;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jfugue.parser.ParserException;
@@ -40,9 +42,20 @@ import org.jfugue.theory.Note;
  */
 public class NoteSubparser implements Subparser, NoteProvider, ChordProvider {
 
+  /**
+   * The most notes, chords or durations remembered at once by {@link #createNote(String)}, {@link
+   * #createChord(String)} and {@link #getDurationForString(String)}. Each cache is emptied when it
+   * fills up.
+   */
+  public static final int MAX_CACHED_TOKENS = 4096;
+
   private static NoteSubparser instance;
   private final List<Character> charArray = new ArrayList<>();
   private final Logger logger = Logger.getLogger("org.jfugue");
+  private final Map<String, Parsed<Note>> noteCache = new ConcurrentHashMap<>();
+  private final Map<String, Parsed<Chord>> chordCache = new ConcurrentHashMap<>();
+  private final Map<String, Parsed<Double>> durationCache = new ConcurrentHashMap<>();
+  private volatile StaccatoParserContext sharedContext;
 
   private NoteSubparser() {
     charArray.add('C'); // Do
@@ -968,13 +981,23 @@ public class NoteSubparser implements Subparser, NoteProvider, ChordProvider {
   //
   // Methods from NoteProvider
   //
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * Notes are parsed once per string and remembered; each call returns a new copy.
+   */
   @Override
   public Note createNote(String noteString) {
-    StaccatoParserContext parserContext = new StaccatoParserContext(new StaccatoParser());
-    NoteContext noteContext = new NoteContext();
-    parseNoteElement(noteString, 0, noteContext, parserContext);
-    return noteContext.createNote(parserContext);
+    long stamp = getCacheStamp();
+    Parsed<Note> parsed = noteCache.get(noteString);
+    if (parsed == null || parsed.stamp != stamp) {
+      StaccatoParserContext parserContext = getSharedContext();
+      NoteContext noteContext = new NoteContext();
+      parseNoteElement(noteString, 0, noteContext, parserContext);
+      parsed = remember(noteCache, noteString,
+        new Parsed<>(stamp, noteContext.createNote(parserContext)));
+    }
+    return new Note(parsed.value);
   }
 
   /** {@inheritDoc} */
@@ -986,23 +1009,87 @@ public class NoteSubparser implements Subparser, NoteProvider, ChordProvider {
   /** {@inheritDoc} */
   @Override
   public double getDurationForString(String s) {
-    NoteContext noteContext = new NoteContext();
-    StaccatoParserContext parserContext = new StaccatoParserContext(new StaccatoParser());
-    this.parseDuration(s, 0, noteContext, parserContext);
-    return noteContext.decimalDuration;
+    long stamp = getCacheStamp();
+    Parsed<Double> parsed = durationCache.get(s);
+    if (parsed == null || parsed.stamp != stamp) {
+      NoteContext noteContext = new NoteContext();
+      this.parseDuration(s, 0, noteContext, getSharedContext());
+      parsed = remember(durationCache, s, new Parsed<>(stamp, noteContext.decimalDuration));
+    }
+    return parsed.value;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * Chords are parsed once per string and remembered; each call returns a new copy.
+   */
   public Chord createChord(String chordString) {
     // If the user requested a chord like "C" or "Ab" without providing any additional details, assume it's MAJOR
     if (chordString.length() <= 2) {
       chordString = chordString + "MAJ";
     }
 
-    StaccatoParserContext parserContext = new StaccatoParserContext(new StaccatoParser());
-    NoteContext noteContext = new NoteContext();
-    parseNoteElement(chordString, 0, noteContext, parserContext);
-    return noteContext.createChord(parserContext);
+    long stamp = getCacheStamp();
+    Parsed<Chord> parsed = chordCache.get(chordString);
+    if (parsed == null || parsed.stamp != stamp) {
+      StaccatoParserContext parserContext = getSharedContext();
+      NoteContext noteContext = new NoteContext();
+      parseNoteElement(chordString, 0, noteContext, parserContext);
+      parsed = remember(chordCache, chordString,
+        new Parsed<>(stamp, noteContext.createChord(parserContext)));
+    }
+    Chord chord = parsed.value;
+    if (chord == null) {
+      return null;
+    }
+    return new Chord(new Note(chord.getRoot()), chord.getIntervals())
+      .setInversion(chord.getInversion());
+  }
+
+  /**
+   * The context used to parse single notes and chords is built once, since building it means
+   * building a StaccatoParser and filling its dictionary. Parsing a note only reads the context.
+   */
+  private StaccatoParserContext getSharedContext() {
+    StaccatoParserContext context = sharedContext;
+    if (context == null) {
+      context = new StaccatoParserContext(new StaccatoParser());
+      sharedContext = context;
+    }
+    return context;
+  }
+
+  /**
+   * Remembered notes and chords depend on the default note settings and on the chord map, so each
+   * is stamped with their versions and is parsed again once either has changed.
+   */
+  private static long getCacheStamp() {
+    return (long) Chord.getChordMapVersion() << 32
+      | DefaultNoteSettingsManager.getInstance().getVersion() & 0xFFFFFFFFL;
+  }
+
+  private static <T> Parsed<T> remember(Map<String, Parsed<T>> cache, String key,
+    Parsed<T> parsed) {
+    if (cache.size() >= MAX_CACHED_TOKENS) {
+      cache.clear();
+    }
+    cache.put(key, parsed);
+    return parsed;
+  }
+
+  /**
+   * A parsed note, chord or duration, along with the cache stamp it was parsed under.
+   */
+  private static final class Parsed<T> {
+
+    final long stamp;
+    final T value;
+
+    Parsed(long stamp, T value) {
+      this.stamp = stamp;
+      this.value = value;
+    }
   }
 
   //
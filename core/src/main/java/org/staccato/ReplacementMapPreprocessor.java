@@ -62,6 +62,7 @@ public class ReplacementMapPreprocessor implements Preprocessor {
    */
   public ReplacementMapPreprocessor setRequireAngleBrackets(boolean require) {
     this.requiresAngleBrackets = require;
+    StaccatoParserPatternHelper.configurationChanged();
     return this;
   }
 
@@ -82,6 +83,7 @@ public class ReplacementMapPreprocessor implements Preprocessor {
    */
   public ReplacementMapPreprocessor setCaseSensitive(boolean caseSensitive) {
     this.caseSensitive = caseSensitive;
+    StaccatoParserPatternHelper.configurationChanged();
     return this;
   }
 
@@ -93,6 +95,7 @@ public class ReplacementMapPreprocessor implements Preprocessor {
    */
   public ReplacementMapPreprocessor setReplacementMap(Map<String, String> map) {
     this.map = map;
+    StaccatoParserPatternHelper.configurationChanged();
     return this;
   }
 
@@ -113,6 +116,7 @@ public class ReplacementMapPreprocessor implements Preprocessor {
    */
   public ReplacementMapPreprocessor setIterations(int iterations) {
     this.iterations = iterations;
+    StaccatoParserPatternHelper.configurationChanged();
     return this;
   }
 
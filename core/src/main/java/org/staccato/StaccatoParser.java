@@ -152,6 +152,42 @@ public class StaccatoParser extends Parser {
     return preprocess(s).split(" ");
   }
 
+  /**
+   * Preprocesses the given music and splits it into the tokens that {@link #parseToken(String)}
+   * takes. Together they let music be parsed a token at a time, as it is needed; parsing every
+   * token in order is the same as calling {@link #parse(String)}, apart from the
+   * beforeParsingStarts and afterParsingFinished events.
+   *
+   * @param s a {@link java.lang.String} object.
+   * @return an array of {@link java.lang.String} objects.
+   */
+  public String[] tokenize(String s) {
+    return preprocessAndSplit(s);
+  }
+
+  /**
+   * Parses one token returned by {@link #tokenize(String)}, firing its events to the listeners.
+   *
+   * @param token a {@link java.lang.String} object.
+   */
+  public void parseToken(String token) {
+    if (token.isEmpty()) {
+      return;
+    }
+    boolean matchingSubparserFound = false;
+    for (Subparser sub : subparsers) {
+      if (!matchingSubparserFound && sub.matches(token)) {
+        sub.parse(token, context);
+        matchingSubparserFound = true;
+      }
+    }
+    if (!matchingSubparserFound) {
+      if (throwsExceptionOnUnknownToken()) {
+        throw new ParserException(StaccatoMessages.NO_PARSER_FOUND, token);
+      }
+    }
+  }
+
   /**
    * <p>parse.</p>
    *
@@ -161,20 +197,7 @@ public class StaccatoParser extends Parser {
     fireBeforeParsingStarts();
 
     for (String substring : preprocessAndSplit(s)) {
-      if (!substring.isEmpty()) {
-        boolean matchingSubparserFound = false;
-        for (Subparser sub : subparsers) {
-          if (!matchingSubparserFound && sub.matches(substring)) {
-            sub.parse(substring, context);
-            matchingSubparserFound = true;
-          }
-        }
-        if (!matchingSubparserFound) {
-          if (throwsExceptionOnUnknownToken()) {
-            throw new ParserException(StaccatoMessages.NO_PARSER_FOUND, substring);
-          }
-        }
-      }
+      parseToken(substring);
     }
 
     fireAfterParsingFinished();
@@ -21,6 +21,7 @@ package org.staccato;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jfugue.pattern.Pattern;
 import org.jfugue.pattern.PatternProducer;
 import org.jfugue.pattern.Token;
@@ -40,6 +41,19 @@ import org.jfugue.pattern.Token.TokenType;
  */
 public class StaccatoParserPatternHelper {
 
+  /**
+   * Characters that let preprocessing reach across token boundaries: collected notes and function
+   * parameters in parentheses, replacement keys in angle brackets, instructions in braces, and
+   * the colons of functions and broken chords.
+   */
+  private static final String CONTEXT_CHARS = "()<>{}:";
+  /**
+   * Characters a self-contained fragment must not end in: the prefixes of lyrics, track times and
+   * markers, which left with nothing after them may read the music that follows as their text.
+   */
+  private static final String UNSAFE_TRAILING_CHARS = "'@#";
+  private static final AtomicInteger configurationVersion = new AtomicInteger();
+
   private final StaccatoParser parser;
 
   /**
@@ -56,7 +70,17 @@ public class StaccatoParserPatternHelper {
    * @return a {@link java.util.List} object.
    */
   public List<Token> getTokens(PatternProducer p) {
-    String[] tokenStrings = parser.preprocessAndSplit(p.toString());
+    return getTokens(p.toString());
+  }
+
+  /**
+   * <p>getTokens.</p>
+   *
+   * @param s a {@link java.lang.String} object.
+   * @return a {@link java.util.List} object.
+   */
+  public List<Token> getTokens(String s) {
+    String[] tokenStrings = parser.preprocessAndSplit(s);
 
     List<Token> retVal = new ArrayList<>();
     for (String tokenString : tokenStrings) {
@@ -66,6 +90,58 @@ public class StaccatoParserPatternHelper {
     return retVal;
   }
 
+  /**
+   * Tells whether the given music tokenizes the same way wherever it appears, so that the tokens of
+   * "a b" are the tokens of "a" followed by the tokens of "b" whenever both are self-contained.
+   * Pattern relies on this to keep its tokens up to date as music is added without preprocessing
+   * it all again. The answer is conservative: music with parentheses, angle brackets, braces,
+   * colons or microtones, music with leading, trailing or doubled spaces, music ending in the
+   * <code>'</code>, <code>@</code> or <code>#</code> that starts a lyric, track time or marker,
+   * and music changed by the current replacement map is never self-contained.
+   *
+   * @param s a {@link java.lang.CharSequence} object.
+   * @return a boolean.
+   */
+  public boolean isSelfContained(CharSequence s) {
+    int length = s.length();
+    if (length == 0 || s.charAt(0) == ' ' || s.charAt(length - 1) == ' '
+      || UNSAFE_TRAILING_CHARS.indexOf(s.charAt(length - 1)) != -1) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (CONTEXT_CHARS.indexOf(c) != -1 || c <= ' ' && c != ' ') {
+        return false;
+      }
+      boolean tokenStart = i == 0 || s.charAt(i - 1) == ' ';
+      if (tokenStart && (c == ' ' || c == 'M' || c == 'm')) {
+        return false;
+      }
+    }
+    String string = s.toString();
+    return ReplacementMapPreprocessor.getInstance().preprocess(string, parser.getContext())
+      .equals(string);
+  }
+
+  /**
+   * Returns a number that changes whenever a preprocessor is configured differently, for example
+   * when a replacement map, instruction or preprocessor function is added. Tokens computed under
+   * one version may not hold under another.
+   *
+   * @return an int.
+   */
+  public static int getConfigurationVersion() {
+    return configurationVersion.get();
+  }
+
+  /**
+   * Records that the configuration of a preprocessor has changed. See {@link
+   * #getConfigurationVersion()}.
+   */
+  public static void configurationChanged() {
+    configurationVersion.incrementAndGet();
+  }
+
   private TokenType getTokenType(String tokenString) {
     for (Subparser sub : parser.getSubparsers()) {
       if (sub.matches(tokenString)) {
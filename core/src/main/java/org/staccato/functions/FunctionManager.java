@@ -22,6 +22,7 @@ package org.staccato.functions;
 import java.util.HashMap;
 import java.util.Map;
 import org.staccato.PreprocessorFunction;
+import org.staccato.StaccatoParserPatternHelper;
 import org.staccato.SubparserFunction;
 
 /**
@@ -64,7 +65,9 @@ public class FunctionManager {
    */
   public void addPreprocessorFunction(PreprocessorFunction function) {
     for (String name : function.getNames()) {
-      preprocessorFunctions.put(name.toUpperCase(), function);
+      if (preprocessorFunctions.put(name.toUpperCase(), function) != function) {
+        StaccatoParserPatternHelper.configurationChanged();
+      }
     }
   }
 
@@ -75,7 +78,9 @@ public class FunctionManager {
    */
   public void removePreprocessorFunction(PreprocessorFunction function) {
     for (String name : function.getNames()) {
-      preprocessorFunctions.remove(name.toUpperCase());
+      if (preprocessorFunctions.remove(name.toUpperCase()) != null) {
+        StaccatoParserPatternHelper.configurationChanged();
+      }
     }
   }
 
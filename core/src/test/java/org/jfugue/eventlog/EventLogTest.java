@@ -0,0 +1,115 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.eventlog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jfugue.parser.Parser;
+import org.jfugue.parser.ParserListener;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class EventLogTest {
+
+  private static final String MUSIC = "T140 TIME:3/4 KEY:Cmaj V0 I[Piano] C5q D5i. 'la E5h | "
+    + "Cmaj7w :CON(7,100) #verse V1 I[Flute] Rq G4q+B4q A4/0.375 ^^ Bbmin^ V9 [BASS_DRUM]q";
+
+  private static ParserListener recorder(List<String> calls) {
+    return (ParserListener) Proxy.newProxyInstance(ParserListener.class.getClassLoader(),
+      new Class<?>[]{ParserListener.class},
+      (proxy, method, args) -> {
+        calls.add(method.getName() + (args == null ? "" : Arrays.deepToString(args)));
+        return null;
+      });
+  }
+
+  private static byte[] write(String music, boolean indexed) {
+    ByteArrayOutputStream log = new ByteArrayOutputStream();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(new EventLogWriter(log, indexed));
+    parser.parse(music);
+    return log.toByteArray();
+  }
+
+  private static List<String> direct(String music) {
+    List<String> calls = new ArrayList<>();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(recorder(calls));
+    parser.parse(music);
+    return calls;
+  }
+
+  private static List<String> replay(byte[] log, long fromRecord) {
+    List<String> calls = new ArrayList<>();
+    EventLogParser parser = new EventLogParser();
+    parser.addParserListener(recorder(calls));
+    if (fromRecord < 0) {
+      parser.parse(log);
+    } else {
+      parser.parse(log, fromRecord);
+    }
+    return calls;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    List<String> expected = direct(MUSIC);
+    assertEquals(expected, replay(write(MUSIC, false), -1));
+    assertEquals(expected, replay(write(MUSIC, true), -1));
+  }
+
+  @Test
+  public void testKeyFramesAndIndex() {
+    StringBuilder music = new StringBuilder("V0 ");
+    for (int i = 0; i < 1500; i++) {
+      music.append(i % 2 == 0 ? "C5s " : "E5s 'word").append(i % 3).append(' ');
+    }
+    music.append("V1 G5w");
+    List<String> expected = direct(music.toString());
+    byte[] log = write(music.toString(), true);
+    assertEquals(expected, replay(log, -1));
+    assertEquals(expected.size() - 2, EventLogParser.getRecordCount(log));
+
+    List<String> tail = replay(log, 1200);
+    assertEquals("onTrackChanged[0]", tail.get(1));
+    assertEquals(expected.subList(1201, expected.size()), tail.subList(3, tail.size()));
+    assertTrue(log.length < expected.size() * 8);
+  }
+
+  @Test
+  public void testSeekToEnd() {
+    byte[] log = write("V0 C5q D5q E5q", true);
+    long records = EventLogParser.getRecordCount(log);
+    assertEquals("[beforeParsingStarts, onTrackChanged[0], onLayerChanged[0], "
+      + "afterParsingFinished]", replay(log, records).toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeekPastEnd() {
+    byte[] log = write("V0 C5q D5q E5q", true);
+    replay(log, 1023);
+  }
+}
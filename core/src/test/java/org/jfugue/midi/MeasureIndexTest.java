@@ -0,0 +1,98 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.midi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import javax.sound.midi.ShortMessage;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class MeasureIndexTest {
+
+  private MeasureIndex index(String music) {
+    StaccatoParser parser = new StaccatoParser();
+    MidiParserListener listener = new MidiParserListener();
+    parser.addParserListener(listener);
+    parser.parse(music);
+    return listener.getMeasureIndex();
+  }
+
+  @Test
+  public void testMeasuresFromBarLines() {
+    MeasureIndex index = index(
+      "TIME:3/4 I[Piano] C5q D5q E5q | F5q G5q A5q | I[Flute] :CON(7,50) #chorus B5h. | C6q D6q E6q");
+    assertEquals(0, index.getTickForMeasure(1));
+    assertEquals(384, index.getTickForMeasure(2));
+    assertEquals(768, index.getTickForMeasure(3));
+    assertEquals(1152, index.getTickForMeasure(4));
+    assertEquals(4, index.getMeasureCount());
+    assertEquals(512, index.getTickForBeat(2, 2.0));
+    assertEquals(3, index.getMeasureAt(800));
+    assertEquals(768, index.getTickForBookmark("chorus"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMeasureAfterEnd() {
+    index("C5w | D5w").getTickForMeasure(4);
+  }
+
+  @Test
+  public void testMeasuresWithoutBarLines() {
+    MeasureIndex index = index("C5w D5w E5w");
+    assertEquals(1024, index.getTickForMeasure(3));
+    assertEquals(3, index.getMeasureAt(1100));
+    assertEquals(3, index.getMeasureCount());
+  }
+
+  @Test
+  public void testTempoMap() {
+    MeasureIndex index = index("T60 C5q T120 D5q E5q");
+    assertEquals(1000000, index.getMicrosecondPosition(128));
+    assertEquals(1500000, index.getMicrosecondPosition(256));
+    assertEquals(120, index.getTempoAt(200));
+  }
+
+  @Test
+  public void testControlState() {
+    MeasureIndex index = index("I[Piano] C5w | I[Flute] :CON(7,50) D5w");
+    List<ShortMessage> before = index.getControlStateAt(512);
+    assertEquals(1, before.size());
+    assertEquals(0, before.get(0).getData1());
+
+    List<ShortMessage> after = index.getControlStateAt(513);
+    assertEquals(2, after.size());
+    assertEquals(ShortMessage.PROGRAM_CHANGE, after.get(0).getCommand());
+    assertEquals(73, after.get(0).getData1());
+    assertEquals(ShortMessage.CONTROL_CHANGE, after.get(1).getCommand());
+    assertEquals(7, after.get(1).getData1());
+    assertEquals(50, after.get(1).getData2());
+  }
+
+  @Test
+  public void testEventsBeforeParsingStarts() {
+    MidiParserListener listener = new MidiParserListener();
+    listener.onBarLineParsed(0);
+    listener.onTrackBeatTimeBookmarked("verse");
+    assertNull(listener.getMeasureIndex());
+  }
+}
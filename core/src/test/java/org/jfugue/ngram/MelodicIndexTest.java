@@ -0,0 +1,171 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.ngram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jfugue.midi.MidiParserListener;
+import org.jfugue.pattern.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class MelodicIndexTest {
+
+  private static final String ODE = "E5q E5q F5q G5q G5q F5q E5q D5q C5q C5q D5q E5q E5q. D5i D5h";
+  private static final String TWINKLE = "C5q C5q G5q G5q A5q A5q G5h F5q F5q E5q E5q D5q D5q C5h";
+  private static final String SCALE = "C5q D5q E5q F5q G5q A5q B5q C6q";
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("melodic-index");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  private static List<MelodicIndex.Match> search(Path directory, String fragment)
+    throws IOException {
+    try (MelodicIndex index = MelodicIndex.open(directory)) {
+      return index.search(fragment, 10);
+    }
+  }
+
+  @Test
+  public void testExtractsTopNoteNgrams() {
+    MelodicNgramExtractor extractor = new MelodicNgramExtractor(2);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(extractor);
+    parser.parse("C5q+E5q+G5q A5h Rq G5q C5q V1 C4w V9 [BASS_DRUM]q [BASS_DRUM]q [BASS_DRUM]q");
+    assertEquals(2, extractor.size());
+    assertEquals(MelodicIndexFormat.append(MelodicIndexFormat.symbol(67, 0.25, 69, 0.5),
+      MelodicIndexFormat.symbol(69, 0.5, 67, 0.25), 2), extractor.getNgram(0));
+    assertEquals(0, extractor.getTrack(1));
+    assertEquals(1, extractor.getNoteIndex(1));
+  }
+
+  @Test
+  public void testFindsTransposedFragmentAtAnotherTempo() throws IOException {
+    Map<String, Pattern> corpus = new LinkedHashMap<>();
+    corpus.put("ode", new Pattern(ODE));
+    corpus.put("twinkle", new Pattern(TWINKLE));
+    corpus.put("scale", new Pattern("V3 " + SCALE));
+    try (MelodicIndexWriter writer = new MelodicIndexWriter(directory)) {
+      writer.addAll(corpus);
+    }
+
+    List<MelodicIndex.Match> matches = search(directory, "G4h G4h D5h D5h E5h E5h D5w");
+    assertEquals(1, matches.size());
+    assertEquals("twinkle", matches.get(0).getId());
+    assertEquals(1.0, matches.get(0).getScore(), 0.0);
+    assertEquals("[V0 L0 #0]", matches.get(0).getOccurrences().toString());
+
+    matches = search(directory, "F4i G4i A4i Bb4i C5i");
+    assertEquals("scale", matches.get(0).getId());
+    assertEquals("[V3 L0 #0]", matches.get(0).getOccurrences().toString());
+  }
+
+  @Test
+  public void testRanksVariations() throws IOException {
+    try (MelodicIndexWriter writer = new MelodicIndexWriter(directory, 3)) {
+      writer.add("ode", new Pattern(ODE));
+      writer.add("twinkle", new Pattern(TWINKLE));
+    }
+    try (MelodicIndex index = MelodicIndex.open(directory)) {
+      assertEquals(3, index.getLength());
+      String variation = "E5q E5q F5q G5q G5q F5q E5q C5q";
+      List<MelodicIndex.Match> matches = index.searchWithMinScore(variation, 0.25, 10);
+      assertEquals("ode", matches.get(0).getId());
+      assertEquals(0.8, matches.get(0).getScore(), 1e-9);
+      assertTrue(index.searchWithMinScore(variation, 0.9, 10).isEmpty());
+    }
+  }
+
+  @Test
+  public void testAddsSegmentsIncrementally() throws IOException {
+    try (MelodicIndexWriter writer = new MelodicIndexWriter(directory)) {
+      writer.add("ode", new Pattern(ODE));
+    }
+    MidiParserListener midi = new MidiParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(midi);
+    parser.parse("V0 " + TWINKLE + " V1 C3w C3w C3w");
+    MelodicIndexWriter writer = new MelodicIndexWriter(directory);
+    writer.add("twinkle.mid", midi.getSequence());
+    assertEquals(1, writer.getPendingCount());
+    writer.commit();
+    assertEquals(0, writer.getPendingCount());
+
+    try (MelodicIndex index = MelodicIndex.open(directory)) {
+      assertEquals(2, index.size());
+      assertEquals("twinkle.mid", index.getId(1));
+      assertEquals("twinkle.mid", index.search("C4q C4q G4q G4q A4q A4q G4h", 10).get(0).getId());
+      assertEquals("ode", index.search("E5q F5q G5q G5q F5q", 10).get(0).getId());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsAnotherLength() throws IOException {
+    try (MelodicIndexWriter writer = new MelodicIndexWriter(directory, 4)) {
+      writer.add("ode", new Pattern(ODE));
+    }
+    new MelodicIndexWriter(directory, 2);
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsTooManyPieces() throws IOException {
+    try (MelodicIndexWriter writer = new MelodicIndexWriter(directory)) {
+      writer.add("ode", new Pattern(ODE));
+    }
+    Path first = MelodicIndex.listSegments(directory).get(0);
+    byte[] segment = Files.readAllBytes(first);
+    ByteBuffer.wrap(segment).putInt(6, MelodicIndexFormat.MAX_PIECES);
+    Files.write(directory.resolve(MelodicIndexFormat.SEGMENT_PREFIX + "00000001"
+      + MelodicIndexFormat.SEGMENT_SUFFIX), segment);
+    MelodicIndex.open(directory);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsShortFragment() throws IOException {
+    try (MelodicIndexWriter writer = new MelodicIndexWriter(directory)) {
+      writer.add("ode", new Pattern(ODE));
+    }
+    search(directory, "C5q D5q E5q");
+  }
+}
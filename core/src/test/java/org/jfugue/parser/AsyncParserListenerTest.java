@@ -0,0 +1,142 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jfugue.integration.LilyPondParserListener;
+import org.jfugue.midi.MidiParserListener;
+import org.jfugue.testtools.MusicFixture;
+import org.jfugue.theory.Note;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+import org.staccato.StaccatoParserListener;
+
+public class AsyncParserListenerTest {
+
+  @Test
+  public void testListenersSeeTheSameEventsAsDirectly() {
+    StaccatoParserListener staccato = new StaccatoParserListener();
+    MidiParserListener midi = new MidiParserListener();
+    LilyPondParserListener lilyPond = new LilyPondParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(staccato);
+    parser.addParserListener(midi);
+    parser.addParserListener(lilyPond);
+    parser.parse(MusicFixture.voices(4).repeat(20));
+
+    StaccatoParserListener asyncStaccato = new StaccatoParserListener();
+    MidiParserListener asyncMidi = new MidiParserListener();
+    LilyPondParserListener asyncLilyPond = new LilyPondParserListener();
+    try (AsyncParserListener async = new AsyncParserListener(16, asyncStaccato, asyncMidi,
+      asyncLilyPond)) {
+      StaccatoParser asyncParser = new StaccatoParser();
+      asyncParser.addParserListener(async);
+      asyncParser.parse(MusicFixture.voices(4).repeat(20));
+    }
+
+    assertEquals(staccato.getPattern().toString(), asyncStaccato.getPattern().toString());
+    assertEquals(lilyPond.getLyString(), asyncLilyPond.getLyString());
+    MusicFixture.assertSameSequence(midi.getSequence(), asyncMidi.getSequence());
+  }
+
+  @Test
+  public void testSlowListenerDoesNotLoseEvents() {
+    AtomicInteger fast = new AtomicInteger();
+    AtomicInteger slow = new AtomicInteger();
+    ParserListener slowListener = new ParserListenerAdapter() {
+      @Override
+      public void onNoteParsed(Note note) {
+        if (slow.incrementAndGet() % 50 == 0) {
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+    ParserListener fastListener = new ParserListenerAdapter() {
+      @Override
+      public void onNoteParsed(Note note) {
+        fast.incrementAndGet();
+      }
+    };
+    try (AsyncParserListener async = new AsyncParserListener(4, fastListener, slowListener)) {
+      StaccatoParser parser = new StaccatoParser();
+      parser.addParserListener(async);
+      parser.parse(MusicFixture.voices(4).repeat(20));
+      assertEquals(fast.get(), slow.get());
+      assertEquals(20 * 4 * 8, slow.get());
+      parser.parse("C D E");
+      assertEquals(20 * 4 * 8 + 3, slow.get());
+    }
+  }
+
+  @Test
+  public void testListenerExceptionIsRethrownAfterParsing() {
+    ParserListener failing = new ParserListenerAdapter() {
+      @Override
+      public void onTempoChanged(int tempoBPM) {
+        throw new IllegalStateException("tempo " + tempoBPM);
+      }
+    };
+    AtomicInteger notes = new AtomicInteger();
+    ParserListener counting = new ParserListenerAdapter() {
+      @Override
+      public void onNoteParsed(Note note) {
+        notes.incrementAndGet();
+      }
+    };
+    try (AsyncParserListener async = new AsyncParserListener(failing, counting)) {
+      StaccatoParser parser = new StaccatoParser();
+      parser.addParserListener(async);
+      try {
+        parser.parse("T90 C D");
+        fail("The exception thrown by the listener should be rethrown");
+      } catch (IllegalStateException e) {
+        assertEquals("tempo 90", e.getMessage());
+      }
+      assertEquals(2, notes.get());
+      parser.parse("E F");
+      assertEquals(4, notes.get());
+    }
+  }
+
+  @Test
+  public void testClosedListenerRejectsEvents() {
+    AsyncParserListener async = new AsyncParserListener(new ParserListenerAdapter());
+    async.close();
+    try {
+      async.onTempoChanged(120);
+      fail("A closed listener should reject events");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("closed"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBufferSizeMustBeAPowerOfTwo() {
+    new AsyncParserListener(1000, new ParserListenerAdapter());
+  }
+}
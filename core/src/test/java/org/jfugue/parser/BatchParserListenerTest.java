@@ -0,0 +1,147 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jfugue.midi.MidiParserListener;
+import org.jfugue.testtools.MusicFixture;
+import org.jfugue.tools.GetInstrumentsUsedTool;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+import org.staccato.StaccatoParserListener;
+
+public class BatchParserListenerTest {
+
+  private static class Recorder implements BatchParserListener {
+
+    private final List<Integer> sizes = new ArrayList<>();
+    private final List<EventType> types = new ArrayList<>();
+    private final List<Long> values = new ArrayList<>();
+    private int started;
+    private int finished;
+
+    @Override
+    public void beforeParsingStarts() {
+      started++;
+    }
+
+    @Override
+    public void onEventBatch(EventBatch batch) {
+      sizes.add(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        types.add(batch.getType(i));
+        values.add(batch.getLongValue(i));
+      }
+    }
+
+    @Override
+    public void afterParsingFinished() {
+      finished++;
+    }
+  }
+
+  @Test
+  public void testMidiParserListenerBuildsTheSameSequenceFromBatches() {
+    MidiParserListener direct = new MidiParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(direct);
+    parser.parse(MusicFixture.voices(3).repeat(40));
+
+    MidiParserListener batched = new MidiParserListener();
+    Recorder recorder = new Recorder();
+    StaccatoParser batchParser = new StaccatoParser();
+    batchParser.addBatchParserListener(batched);
+    batchParser.addBatchParserListener(recorder);
+    batchParser.parse(MusicFixture.voices(3).repeat(40));
+
+    MusicFixture.assertSameSequence(direct.getSequence(), batched.getSequence());
+    assertTrue(recorder.sizes.size() > 1);
+    assertEquals(EventBatch.DEFAULT_CAPACITY, (int) recorder.sizes.get(0));
+    assertEquals(1, recorder.started);
+    assertEquals(1, recorder.finished);
+  }
+
+  @Test
+  public void testAdapterReplaysEveryEvent() {
+    StaccatoParserListener direct = new StaccatoParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(direct);
+    parser.parse(MusicFixture.voices(3).repeat(40));
+
+    StaccatoParserListener adapted = new StaccatoParserListener();
+    StaccatoParser batchParser = new StaccatoParser();
+    batchParser.addBatchParserListener(new BatchParserListenerAdapter(adapted));
+    batchParser.parse(MusicFixture.voices(3).repeat(40));
+
+    assertEquals(direct.getPattern().toString(), adapted.getPattern().toString());
+  }
+
+  @Test
+  public void testBatchingParserListenerFlushes() {
+    Recorder recorder = new Recorder();
+    BatchingParserListener batching = new BatchingParserListener(recorder, 3);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(batching);
+    parser.parse("C D E F G");
+
+    assertEquals(5, recorder.types.size());
+    assertEquals(3, (int) recorder.sizes.get(0));
+    assertEquals(2, (int) recorder.sizes.get(1));
+    assertEquals(EventType.NOTE, recorder.types.get(0));
+    assertEquals(60L, (long) recorder.values.get(0));
+
+    batching.onTempoChanged(140);
+    assertEquals(2, recorder.sizes.size());
+    batching.flush();
+    assertEquals(3, recorder.sizes.size());
+    assertEquals(EventType.TEMPO, recorder.types.get(5));
+    assertEquals(140L, (long) recorder.values.get(5));
+  }
+
+  @Test
+  public void testRemovedListenerReceivesPendingEvents() {
+    Recorder recorder = new Recorder();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addBatchParserListener(recorder);
+    parser.fireTempoChanged(100);
+    parser.fireInstrumentParsed((byte) 3);
+    assertEquals(0, recorder.types.size());
+    parser.removeBatchParserListener(recorder);
+    assertEquals(2, recorder.types.size());
+    parser.fireTempoChanged(110);
+    Recorder latecomer = new Recorder();
+    parser.addBatchParserListener(latecomer);
+    parser.flushEventBatch();
+    assertEquals(2, recorder.types.size());
+    assertEquals(0, latecomer.types.size());
+  }
+
+  @Test
+  public void testToolsUseBatches() {
+    List<Byte> instruments = new GetInstrumentsUsedTool()
+      .getInstrumentsUsedInPattern(MusicFixture.voices(3));
+    assertEquals(3, instruments.size());
+    assertTrue(instruments.contains((byte) 20));
+  }
+}
@@ -20,8 +20,14 @@
 package org.jfugue.pattern;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.junit.Test;
+import org.staccato.ReplacementMapPreprocessor;
+import org.staccato.StaccatoParserPatternHelper;
 
 public class PatternTest {
 
@@ -156,4 +162,89 @@ public class PatternTest {
     pattern.prepend(new Pattern[]{new Pattern("A A"), new Pattern("B B"), new Pattern("C C")});
     assertEquals("A A B B C C D D", pattern.toString());
   }
+
+  @Test
+  public void testAddSharesContentsWithoutAliasing() {
+    Pattern riff = new Pattern("C D E");
+    Pattern song = new Pattern().add(riff, 3).add(riff.setTempo(90));
+    riff.add("F");
+    assertEquals("C D E C D E C D E T90 C D E", song.toString());
+    song.prepend(new Pattern("  V1"), new Pattern("G  "));
+    assertEquals("V1 G C D E C D E C D E T90 C D E", song.toString());
+  }
+
+  @Test
+  public void testLargeRepeatAndManyAdds() {
+    Pattern pattern = new Pattern("A").repeat(100000);
+    assertEquals(100000 * 2 - 1, pattern.toString().length());
+    StringBuilder expected = new StringBuilder();
+    Pattern built = new Pattern();
+    for (int i = 0; i < 20000; i++) {
+      if (i % 3 == 0) {
+        built.prepend(new Pattern("P" + i));
+        expected.insert(0, expected.length() > 0 ? "P" + i + " " : "P" + i);
+      } else {
+        built.add("N" + i);
+        expected.append(expected.length() > 0 ? " N" : "N").append(i);
+      }
+    }
+    assertEquals(expected.toString(), built.toString());
+  }
+
+  private static void assertTokens(Pattern pattern) {
+    List<Token> expected = new StaccatoParserPatternHelper().getTokens(pattern.toString());
+    List<Token> actual = pattern.getTokens();
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).toString(), actual.get(i).toString());
+      assertEquals(expected.get(i).getType(), actual.get(i).getType());
+    }
+  }
+
+  @Test
+  public void testTokensFollowChanges() {
+    Pattern pattern = new Pattern("V0 I[Piano] c5q D5h");
+    assertTokens(pattern);
+    pattern.add("E F 'la |");
+    assertTokens(pattern);
+    pattern.add(new Pattern("(C E G)q :CON(7,50)"));
+    assertTokens(pattern);
+    pattern.add("G A");
+    assertTokens(pattern);
+    pattern.clear().add("C D");
+    assertTokens(pattern);
+    pattern.prepend(new Pattern("B"));
+    assertTokens(pattern);
+    pattern.repeat(3).setTempo(90);
+    assertTokens(pattern);
+    pattern.add("C", 4);
+    assertTokens(pattern);
+    assertNotSame(pattern.getTokens(), pattern.getTokens());
+  }
+
+  @Test
+  public void testTokensAfterAddToEachNoteToken() {
+    Pattern pattern = new Pattern("A B T120 C");
+    assertTokens(pattern);
+    pattern.addToEachNoteToken("q i");
+    assertEquals("Aq Bi T120 Cq", pattern.toString());
+    assertTokens(pattern);
+  }
+
+  @Test
+  public void testTokensNoticeReplacementMapChanges() {
+    Pattern pattern = new Pattern("X Y");
+    assertTokens(pattern);
+    Map<String, String> map = new HashMap<>();
+    map.put("X", "C D");
+    ReplacementMapPreprocessor.getInstance().setReplacementMap(map).setRequireAngleBrackets(false);
+    try {
+      assertEquals(3, pattern.getTokens().size());
+      pattern.add("X");
+      assertTokens(pattern);
+    } finally {
+      ReplacementMapPreprocessor.getInstance().setReplacementMap(null)
+        .setRequireAngleBrackets(true);
+    }
+  }
 }
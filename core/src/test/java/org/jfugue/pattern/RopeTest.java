@@ -0,0 +1,68 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class RopeTest {
+
+  @Test
+  public void testConcatStaysBalanced() {
+    Random random = new Random(7);
+    Rope rope = Rope.EMPTY;
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      String piece = Integer.toString(random.nextInt(1000)) + (i % 50 == 0 ? "" : " ");
+      if (random.nextBoolean()) {
+        rope = rope.concat(Rope.of(piece));
+        expected.append(piece);
+      } else {
+        rope = Rope.of(piece).concat(rope);
+        expected.insert(0, piece);
+      }
+    }
+    assertEquals(expected.toString(), rope.toString());
+    assertTrue("height " + rope.height(), rope.height() < 2 * 32 - Integer.numberOfLeadingZeros(
+      rope.length()));
+    for (int i = 0; i < expected.length(); i += 997) {
+      assertEquals(expected.charAt(i), rope.charAt(i));
+    }
+  }
+
+  @Test
+  public void testSubSequenceAndTrim() {
+    Rope rope = Rope.of("  A B").concat(Rope.of(" C ").repeat(200)).concat(Rope.of("D \t"));
+    String string = rope.toString();
+    assertEquals(string.trim(), rope.trim().toString());
+    assertEquals(string.substring(3, 500), rope.subSequence(3, 500).toString());
+    assertEquals("", Rope.of("   ").trim().toString());
+  }
+
+  @Test
+  public void testRepeat() {
+    assertEquals("A B A B A B", Rope.of("A B").repeat(3).toString());
+    assertEquals("", Rope.EMPTY.repeat(5).toString());
+    assertEquals("", Rope.of("A").repeat(0).toString());
+  }
+}
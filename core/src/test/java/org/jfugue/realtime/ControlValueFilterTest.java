@@ -0,0 +1,76 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ControlValueFilterTest {
+
+  @Test
+  public void testUnchangedValuesAreDroppedWhileFiltering() {
+    ControlValueFilter filter = new ControlValueFilter();
+    filter.beginFiltering();
+    assertTrue(filter.acceptPitchBend(0, 8192));
+    assertFalse(filter.acceptPitchBend(0, 8192));
+    assertTrue(filter.acceptPitchBend(0, 8193));
+    assertTrue(filter.acceptPitchBend(1, 8193));
+    assertTrue(filter.acceptController(0, 7, 100));
+    assertFalse(filter.acceptController(0, 7, 100));
+    assertTrue(filter.acceptController(0, 10, 100));
+    filter.endFiltering();
+    assertEquals(2, filter.getSuppressedCount());
+  }
+
+  @Test
+  public void testDirectMessagesAreNeverDropped() {
+    ControlValueFilter filter = new ControlValueFilter();
+    assertTrue(filter.acceptChannelPressure(3, 64));
+    assertTrue(filter.acceptChannelPressure(3, 64));
+    assertEquals(0, filter.getSuppressedCount());
+  }
+
+  @Test
+  public void testDirectMessagesUpdateTheRememberedValue() {
+    ControlValueFilter filter = new ControlValueFilter();
+    filter.beginFiltering();
+    assertTrue(filter.acceptPolyPressure(0, 60, 10));
+    filter.endFiltering();
+    assertTrue(filter.acceptPolyPressure(0, 60, 20));
+    filter.beginFiltering();
+    assertTrue(filter.acceptPolyPressure(0, 60, 10));
+    filter.endFiltering();
+  }
+
+  @Test
+  public void testNegativeBytesAreMaskedToTheirMidiRange() {
+    ControlValueFilter filter = new ControlValueFilter();
+    filter.beginFiltering();
+    assertTrue(filter.acceptController(0, (byte) 0xFF, 5));
+    assertFalse(filter.acceptController(0, 127, 5));
+    assertTrue(filter.acceptPolyPressure(0, (byte) 0x80, 5));
+    assertFalse(filter.acceptPolyPressure(16, 0, 5));
+    filter.endFiltering();
+    assertEquals(2, filter.getSuppressedCount());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.midi.InvalidMidiDataException;
+import org.junit.Test;
+
+public class DispatchMetricsTest {
+
+  @Test
+  public void testHistogramIsExactForSmallValues() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    for (int i = 1; i <= 10; i++) {
+      histogram.record(i);
+    }
+    assertEquals(10, histogram.getTotalCount());
+    assertEquals(5, histogram.getValueAtPercentile(50.0));
+    assertEquals(10, histogram.getValueAtPercentile(100.0));
+    assertEquals(5.5, histogram.getMean(), 0.0001);
+  }
+
+  @Test
+  public void testHistogramPrecisionForLargeValues() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    histogram.record(1000000L);
+    long reported = histogram.getValueAtPercentile(50.0);
+    assertTrue(reported >= 1000000L * 94 / 100);
+    assertTrue(reported <= 1000000L);
+  }
+
+  @Test
+  public void testBucketsAreContiguous() {
+    for (long value = 0; value < 100000; value++) {
+      int index = LogLinearHistogram.indexFor(value);
+      assertTrue(LogLinearHistogram.highestValueAt(index) >= value);
+      if (index > 0) {
+        assertTrue(LogLinearHistogram.highestValueAt(index - 1) < value);
+      }
+    }
+  }
+
+  @Test
+  public void testMissedDeadlinesAreCountedAndReported() {
+    DispatchMetrics metrics = new DispatchMetrics();
+    metrics.setDeadlineInMicros(1000);
+    final List<Long> missed = new ArrayList<>();
+    metrics.addDispatchMetricsListener(new DispatchMetricsListener() {
+      @Override
+      public void onEventDispatched(long scheduledTimeInMillis, long latenessInMicros) {
+      }
+
+      @Override
+      public void onDeadlineMissed(long scheduledTimeInMillis, long latenessInMicros) {
+        missed.add(scheduledTimeInMillis);
+      }
+    });
+    metrics.recordDispatch(10, 200);
+    metrics.recordDispatch(20, 5000);
+    metrics.recordDispatch(30, -50);
+    assertEquals(3, metrics.getDispatchCount());
+    assertEquals(1, metrics.getMissedDeadlineCount());
+    assertEquals(1, missed.size());
+    assertEquals(20L, (long) missed.get(0));
+    assertEquals(5000, metrics.getMaxLatenessInMicros());
+
+    metrics.reset();
+    assertEquals(0, metrics.getDispatchCount());
+    assertEquals(0, metrics.getMissedDeadlineCount());
+  }
+
+  @Test
+  public void testEachEventIsMeasuredWhenItIsDispatched() throws InvalidMidiDataException {
+    // A clock on which every event takes 700 microseconds to run
+    VirtualRealtimeClock clock = new VirtualRealtimeClock() {
+      private final AtomicLong reads = new AtomicLong();
+
+      @Override
+      public long getTimeInMicros() {
+        return getTimeInMillis() * 1000L + 700 * reads.getAndIncrement();
+      }
+    };
+    RealtimePlayer player = new RealtimePlayer(new SequenceRecorder(clock), clock);
+    DispatchMetrics metrics = new DispatchMetrics();
+    metrics.setDeadlineInMicros(1000);
+    player.setDispatchMetrics(metrics);
+    player.schedule(10, (p, t) -> {
+    });
+    player.schedule(10, (p, t) -> {
+    });
+    player.schedule(10, (p, t) -> {
+    });
+    clock.advanceTo(20);
+    assertEquals(3, metrics.getDispatchCount());
+    assertEquals(1400, metrics.getMaxLatenessInMicros());
+    assertEquals(1, metrics.getMissedDeadlineCount());
+  }
+}
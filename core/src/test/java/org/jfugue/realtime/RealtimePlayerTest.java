@@ -0,0 +1,188 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.realtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RealtimePlayerTest {
+
+  private VirtualRealtimeClock clock;
+  private SequenceRecorder recorder;
+  private RealtimePlayer player;
+
+  @Before
+  public void setUp() throws InvalidMidiDataException {
+    clock = new VirtualRealtimeClock();
+    recorder = new SequenceRecorder(clock);
+    player = new RealtimePlayer(recorder, clock);
+  }
+
+  private List<String> recordedShortMessages() {
+    List<String> messages = new ArrayList<>();
+    Track track = recorder.getSequence().getTracks()[0];
+    for (int i = 0; i < track.size(); i++) {
+      MidiEvent event = track.get(i);
+      if (event.getMessage() instanceof ShortMessage) {
+        ShortMessage message = (ShortMessage) event.getMessage();
+        messages.add(event.getTick() + ":" + message.getCommand() + ":" + message.getData1() + ":"
+          + message.getData2());
+      }
+    }
+    return messages;
+  }
+
+  @Test
+  public void testPlayRendersOfflineAtTheRightTimes() {
+    player.play("C5q D5q");
+    clock.advanceTo(1000);
+    List<String> messages = recordedShortMessages();
+    assertEquals(4, messages.size());
+    assertEquals("0:144:60:64", messages.get(0));
+    assertEquals("500:128:60:64", messages.get(1));
+    assertEquals("500:144:62:64", messages.get(2));
+    assertEquals("1000:128:62:64", messages.get(3));
+  }
+
+  @Test
+  public void testCancelledEventDoesNotRun() {
+    final List<Long> ran = new ArrayList<>();
+    ScheduledEvent event = (player, timeInMillis) -> ran.add(timeInMillis);
+    player.schedule(10, event);
+    ScheduledHandle cancelled = player.schedule(20, event);
+    cancelled.cancel();
+    clock.advanceTo(50);
+    assertEquals(1, ran.size());
+    assertEquals(10L, (long) ran.get(0));
+  }
+
+  @Test
+  public void testFailingEventDoesNotStopTheScheduler() {
+    final List<Long> ran = new ArrayList<>();
+    player.schedule(10, (player, timeInMillis) -> {
+      throw new IllegalStateException("expected by the test");
+    });
+    player.schedule(20, (player, timeInMillis) -> ran.add(timeInMillis));
+    clock.advanceTo(50);
+    assertEquals(1, ran.size());
+  }
+
+  @Test
+  public void testInterpolatorReachesCompletionAndSkipsUnchangedValues() {
+    final List<Double> percentages = new ArrayList<>();
+    player.setInterpolatorControlRate(100);
+    player.startInterpolator(new RealtimeInterpolator() {
+      @Override
+      public void update(RealtimePlayer realtimePlayer, long elapsedTime,
+        double percentComplete) {
+        percentages.add(percentComplete);
+        realtimePlayer.changeController((byte) 7, (byte) (percentComplete * 10));
+      }
+    }, 1000);
+    clock.advanceTo(2000);
+
+    assertEquals(0.0, percentages.get(0), 0.0);
+    assertEquals(1.0, percentages.get(percentages.size() - 1), 0.0);
+    assertTrue(percentages.size() >= 100);
+    // Eleven distinct controller values: 0 through 10
+    assertEquals(11, recordedShortMessages().size());
+  }
+
+  @Test
+  public void testOverrunIsReported() {
+    final List<Long> overruns = new ArrayList<>();
+    player.setScheduledEventBudgetInMillis(5);
+    player.addScheduledEventOverrunListener(new ScheduledEventOverrunListener() {
+      @Override
+      public void onOverrun(ScheduledEvent event, long scheduledTimeInMillis,
+        long startDelayInMillis, long runTimeInMillis) {
+        overruns.add(scheduledTimeInMillis);
+      }
+
+      @Override
+      public void onRejected(ScheduledEvent event, long scheduledTimeInMillis) {
+      }
+    });
+    final List<Runnable> handedOver = new ArrayList<>();
+    player.setScheduledEventExecutor(handedOver::add);
+    player.schedule(10, (p, t) -> {
+    });
+    clock.advanceTo(30);
+    assertEquals(1, handedOver.size());
+    // The executor only gets round to the event twenty milliseconds after it was due
+    handedOver.get(0).run();
+    assertTrue(overruns.contains(10L));
+  }
+
+  /**
+   * Returns a player whose clock moves on by ten milliseconds every time it is read, as if parsing
+   * were slow, and which reports late phrases to the given list.
+   */
+  private static RealtimePlayer slowPlayer(List<Long> lags, CountDownLatch reported)
+    throws InvalidMidiDataException {
+    VirtualRealtimeClock slowClock = new VirtualRealtimeClock() {
+      private final AtomicLong reads = new AtomicLong();
+
+      @Override
+      public long getTimeInMillis() {
+        return super.getTimeInMillis() + 10 * reads.incrementAndGet();
+      }
+    };
+    RealtimePlayer slowPlayer = new RealtimePlayer(new SequenceRecorder(slowClock), slowClock);
+    slowPlayer.addLookaheadListener((phraseStartInMillis, lagInMillis) -> {
+      lags.add(lagInMillis);
+      reported.countDown();
+    });
+    return slowPlayer;
+  }
+
+  @Test
+  public void testPhraseWithoutLookaheadIsNeverLate() throws InvalidMidiDataException {
+    List<Long> lags = new ArrayList<>();
+    slowPlayer(lags, new CountDownLatch(1)).play("C5q D5q E5q F5q");
+    assertTrue(lags.isEmpty());
+  }
+
+  @Test
+  public void testLookaheadReportsLatePhrase()
+    throws InterruptedException, InvalidMidiDataException {
+    List<Long> lags = new CopyOnWriteArrayList<>();
+    CountDownLatch reported = new CountDownLatch(1);
+    RealtimePlayer slowPlayer = slowPlayer(lags, reported);
+    slowPlayer.setLookaheadInMillis(15);
+    assertEquals(15, slowPlayer.getLookaheadInMillis());
+    slowPlayer.play("C5q D5q E5q F5q");
+    assertTrue(reported.await(10, TimeUnit.SECONDS));
+    assertTrue(lags.get(0) > 0);
+  }
+}
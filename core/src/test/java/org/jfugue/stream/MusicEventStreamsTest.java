@@ -0,0 +1,107 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.sound.midi.Sequence;
+import org.jfugue.midi.MidiParser;
+import org.jfugue.parser.EventType;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.testtools.MusicFixture;
+import org.jfugue.transform.MusicEvents;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class MusicEventStreamsTest {
+
+  private static List<String> drain(MusicEventQueue queue) {
+    List<String> events = new ArrayList<>();
+    for (MusicEvent event = queue.poll(); event != null; event = queue.poll()) {
+      events.add(event.toString());
+    }
+    return events;
+  }
+
+  @Test
+  public void testStaccatoStreamMatchesParse() {
+    Pattern music = MusicFixture.voices(6);
+    MusicEventQueue queue = new MusicEventQueue();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(queue);
+    parser.parse(music);
+    List<String> expected = drain(queue);
+    List<String> sequential = MusicEventStreams.of(music).map(MusicEvent::toString)
+      .collect(Collectors.toList());
+    List<String> parallel = MusicEventStreams.of(music).parallel().map(MusicEvent::toString)
+      .collect(Collectors.toList());
+    assertEquals(expected, sequential);
+    assertEquals(expected, parallel);
+    assertTrue(MusicEventStreams.of(music).anyMatch(e -> e.getType() == EventType.NOTE
+      && e.getTrack() == 5 && e.getLayer() == 1 && e.getValue() == 66));
+  }
+
+  @Test
+  public void testSplitPrimesContext() {
+    StaccatoSpliterator spliterator = new StaccatoSpliterator(
+      new StaccatoParser().tokenize("KEY:Dmaj V1 L2 C F V2 F V1 F"));
+    StaccatoSpliterator prefix = (StaccatoSpliterator) spliterator.trySplit();
+    List<String> rest = new ArrayList<>();
+    spliterator.forEachRemaining(
+      e -> rest.add(e.getType() + " " + e.getTrack() + " " + e.getLayer() + " " + e.getValue()));
+    assertEquals("[NOTE 2 0 66, NOTE 1 2 66]", rest.toString());
+    List<EventType> first = new ArrayList<>();
+    prefix.forEachRemaining(e -> first.add(e.getType()));
+    assertEquals("[KEY_SIGNATURE, NOTE, NOTE]", first.toString());
+  }
+
+  @Test
+  public void testStreamIsLazy() {
+    Pattern pattern = new Pattern("C D E").add(new Pattern("KEY:ZZZmaj"));
+    assertEquals(3, MusicEventStreams.of(pattern).limit(3).count());
+    try {
+      MusicEventStreams.of(pattern).count();
+      fail("The bad key signature should have been parsed");
+    } catch (RuntimeException expected) {
+      // The fourth token is only parsed when every event is pulled
+    }
+  }
+
+  @Test
+  public void testMidiStreamMatchesParse() {
+    Sequence sequence = MusicEvents.of(MusicFixture.voices(6)).getSequence();
+    MusicEventQueue queue = new MusicEventQueue();
+    MidiParser parser = new MidiParser();
+    parser.addParserListener(queue);
+    parser.parse(sequence);
+    List<String> expected = drain(queue);
+    assertEquals(expected, MusicEventStreams.of(sequence).map(MusicEvent::toString)
+      .collect(Collectors.toList()));
+    assertEquals(expected, MusicEventStreams.of(sequence).parallel().map(MusicEvent::toString)
+      .collect(Collectors.toList()));
+    assertEquals(6 * 11, MusicEventStreams.of(sequence).parallel()
+      .filter(e -> e.getType() == EventType.NOTE && !e.getNote().isRest()).count());
+  }
+}
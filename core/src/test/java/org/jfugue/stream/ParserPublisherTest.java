@@ -0,0 +1,225 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jfugue.parser.EventType;
+import org.jfugue.stream.ParserPublisher.OverflowPolicy;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class ParserPublisherTest {
+
+  private static final String NOTES = "C D E F G A B C6 D6 E6";
+
+  private static class Recorder implements Flow.Subscriber<List<MusicEvent>> {
+
+    final long initialRequest;
+    final List<List<MusicEvent>> batches = new ArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile Flow.Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    Recorder(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (initialRequest > 0) {
+        subscription.request(initialRequest);
+      }
+    }
+
+    @Override
+    public void onNext(List<MusicEvent> item) {
+      batches.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      done.countDown();
+    }
+
+    List<Long> values() {
+      List<Long> values = new ArrayList<>();
+      for (List<MusicEvent> batch : batches) {
+        for (MusicEvent event : batch) {
+          values.add(event.getValue());
+        }
+      }
+      return values;
+    }
+  }
+
+  private static void parse(ParserPublisher publisher, String music) {
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(publisher);
+    parser.parse(music);
+  }
+
+  @Test
+  public void testEventsArriveInBatches() {
+    ParserPublisher publisher = new ParserPublisher(Runnable::run, 100, 3, OverflowPolicy.BLOCK);
+    Recorder recorder = new Recorder(0);
+    publisher.subscribe(recorder);
+    parse(publisher, NOTES);
+    recorder.subscription.request(Long.MAX_VALUE);
+    publisher.close();
+
+    assertTrue(recorder.completed);
+    assertEquals(10, recorder.values().size());
+    assertEquals(4, recorder.batches.size());
+    assertEquals(3, recorder.batches.get(0).size());
+    assertEquals(1, recorder.batches.get(3).size());
+    assertEquals(EventType.NOTE, recorder.batches.get(0).get(0).getType());
+    assertEquals(60L, (long) recorder.values().get(0));
+    assertEquals(0, publisher.getSubscriberCount());
+  }
+
+  @Test
+  public void testDemandLimitsWhatIsSent() {
+    ParserPublisher publisher = new ParserPublisher(Runnable::run, 100, 4, OverflowPolicy.BLOCK);
+    Recorder recorder = new Recorder(1);
+    publisher.subscribe(recorder);
+    parse(publisher, NOTES);
+
+    assertEquals(1, recorder.batches.size());
+    assertEquals(1, recorder.batches.get(0).size());
+    recorder.subscription.request(2);
+    assertEquals(3, recorder.batches.size());
+    assertEquals(9, recorder.values().size());
+    publisher.close();
+    assertTrue(!recorder.completed);
+    recorder.subscription.request(1);
+    assertEquals(10, recorder.values().size());
+    assertTrue(recorder.completed);
+  }
+
+  @Test
+  public void testDropPolicies() {
+    ParserPublisher newest = new ParserPublisher(Runnable::run, 4, 10, OverflowPolicy.DROP_NEWEST);
+    Recorder first = new Recorder(0);
+    newest.subscribe(first);
+    parse(newest, NOTES);
+    assertEquals(6, newest.getDroppedCount());
+
+    ParserPublisher oldest = new ParserPublisher(Runnable::run, 4, 10, OverflowPolicy.DROP_OLDEST);
+    Recorder last = new Recorder(0);
+    oldest.subscribe(last);
+    parse(oldest, NOTES);
+    assertEquals(6, oldest.getDroppedCount());
+
+    first.subscription.request(1);
+    last.subscription.request(1);
+    assertEquals(Arrays.asList(60L, 62L, 64L, 65L), first.values());
+    assertEquals(Arrays.asList(71L, 72L, 74L, 76L), last.values());
+  }
+
+  @Test
+  public void testCoalesceKeepsLatestControllerValue() {
+    ParserPublisher publisher = new ParserPublisher(Runnable::run, 3, 10, OverflowPolicy.COALESCE);
+    Recorder recorder = new Recorder(0);
+    publisher.subscribe(recorder);
+    publisher.onControllerEventParsed((byte) 7, (byte) 10);
+    publisher.onControllerEventParsed((byte) 10, (byte) 64);
+    publisher.onControllerEventParsed((byte) 7, (byte) 20);
+    for (int value = 30; value <= 100; value += 10) {
+      publisher.onControllerEventParsed((byte) 7, (byte) value);
+    }
+    publisher.close();
+    recorder.subscription.request(1);
+
+    List<MusicEvent> batch = recorder.batches.get(0);
+    assertEquals(2, batch.size());
+    assertEquals(10, batch.get(0).getSecondaryValue());
+    assertEquals(64L, batch.get(0).getValue());
+    assertEquals(7, batch.get(1).getSecondaryValue());
+    assertEquals(100L, batch.get(1).getValue());
+    assertEquals(9, publisher.getDroppedCount());
+    assertTrue(recorder.completed);
+  }
+
+  @Test
+  public void testBlockingHoldsBackTheParser() throws InterruptedException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ParserPublisher publisher = new ParserPublisher(executor, 2, 1, OverflowPolicy.BLOCK);
+      Recorder recorder = new Recorder(1) {
+        @Override
+        public void onNext(List<MusicEvent> item) {
+          super.onNext(item);
+          subscription.request(1);
+        }
+      };
+      publisher.subscribe(recorder);
+      StringBuilder music = new StringBuilder();
+      for (int i = 0; i < 50; i++) {
+        music.append(" C").append(i % 8 + 2);
+      }
+      parse(publisher, music.toString());
+      publisher.close();
+
+      assertTrue(recorder.done.await(10, TimeUnit.SECONDS));
+      assertTrue(recorder.completed);
+      List<Long> values = recorder.values();
+      assertEquals(50, values.size());
+      for (int i = 0; i < 50; i++) {
+        assertEquals(12L * (i % 8 + 2), (long) values.get(i));
+      }
+      assertEquals(0, publisher.getDroppedCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testInvalidRequestFailsTheSubscription() {
+    ParserPublisher publisher = new ParserPublisher(Runnable::run, 10, 10, OverflowPolicy.BLOCK);
+    Recorder recorder = new Recorder(0);
+    publisher.subscribe(recorder);
+    recorder.subscription.request(0);
+    assertTrue(recorder.error instanceof IllegalArgumentException);
+    assertEquals(0, publisher.getSubscriberCount());
+
+    Recorder late = new Recorder(1);
+    publisher.close();
+    publisher.subscribe(late);
+    assertTrue(late.completed);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jfugue.parser.ParserListenerAdapter;
+import org.jfugue.theory.Note;
+import org.junit.Before;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class TemporalCursorTest {
+
+  private TemporalPLP plp;
+  private List<String> fired;
+  private long now;
+
+  private class Recorder extends ParserListenerAdapter {
+
+    @Override
+    public void beforeParsingStarts() {
+      fired.add("start");
+    }
+
+    @Override
+    public void afterParsingFinished() {
+      fired.add("end");
+    }
+
+    @Override
+    public void onInstrumentParsed(byte instrument) {
+      fired.add("I" + instrument);
+    }
+
+    @Override
+    public void onControllerEventParsed(byte controller, byte value) {
+      fired.add("X" + controller + "=" + value);
+    }
+
+    @Override
+    public void onNoteParsed(Note note) {
+      fired.add(note.getOriginalString());
+    }
+  }
+
+  @Before
+  public void setUp() {
+    StaccatoParser parser = new StaccatoParser();
+    plp = new TemporalPLP();
+    parser.addParserListener(plp);
+    parser.parse("I[Piano] C5q :CON(7,50) D5q E5q F5q");
+    fired = new ArrayList<>();
+  }
+
+  @Test
+  public void testCursorFollowsClockAndRate() {
+    plp.addParserListener(new Recorder());
+    TemporalCursor cursor = plp.createCursor(() -> now);
+    cursor.start();
+    cursor.update();
+    assertEquals("[I0, C5]", fired.toString());
+    now = 499;
+    assertEquals(0, cursor.update());
+    now = 500;
+    assertTrue(cursor.update() > 0);
+    assertEquals(500, cursor.getMillisUntilNextEvent());
+
+    cursor.setRate(2.0);
+    assertEquals(250, cursor.getMillisUntilNextEvent());
+    now = 750;
+    assertEquals(1, cursor.update());
+    assertEquals("[I0, C5, X7=50, D5, E5]", fired.toString());
+  }
+
+  @Test
+  public void testSeekRestoresState() {
+    plp.addParserListener(new Recorder());
+    TemporalCursor cursor = plp.createCursor(() -> now);
+    cursor.seek(1200);
+    assertEquals("[I0, X7=50]", fired.toString());
+    cursor.start();
+    now = 299;
+    assertEquals(0, cursor.update());
+    now = 300;
+    assertEquals(1, cursor.update());
+    assertTrue(cursor.isFinished());
+    assertEquals(-1, cursor.getMillisUntilNextEvent());
+  }
+
+  @Test
+  public void testReplayRange() {
+    plp.replay(1000, 2000, new Recorder());
+    assertEquals("[start, I0, X7=50, E5, F5, end]", fired.toString());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jfugue.parser.Parser;
+import org.jfugue.parser.ParserListenerAdapter;
+import org.jfugue.theory.Note;
+import org.junit.Before;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class TemporalEventStoreTest {
+
+  private TemporalEventStore store;
+  private List<String> fired;
+  private List<Note> notes;
+  private Parser parser;
+
+  @Before
+  public void setUp() {
+    StaccatoParser staccatoParser = new StaccatoParser();
+    TemporalPLP plp = new TemporalPLP();
+    staccatoParser.addParserListener(plp);
+    staccatoParser.parse("V0 I[Piano] C5q 'hello D5q V1 E5h");
+    store = plp.getEventStore();
+
+    fired = new ArrayList<>();
+    notes = new ArrayList<>();
+    parser = new Parser() {
+    };
+    parser.addParserListener(new ParserListenerAdapter() {
+      @Override
+      public void onTrackChanged(byte track) {
+        fired.add("V" + track);
+      }
+
+      @Override
+      public void onInstrumentParsed(byte instrument) {
+        fired.add("I" + instrument);
+      }
+
+      @Override
+      public void onLyricParsed(String lyric) {
+        fired.add("'" + lyric);
+      }
+
+      @Override
+      public void onNoteParsed(Note note) {
+        fired.add(note.getOriginalString());
+        notes.add(note);
+      }
+    });
+  }
+
+  @Test
+  public void testRowsAreInTimeOrder() {
+    assertEquals(5, store.size());
+    assertEquals(0, store.getTimeInMillis(0));
+    assertEquals(500, store.getLastTimeInMillis());
+    assertEquals(3, store.indexOf(1));
+    assertEquals(5, store.indexOf(501));
+  }
+
+  @Test
+  public void testReplayAll() {
+    store.replay(parser);
+    assertEquals("[V0, I0, C5, V1, E5, V0, 'hello, D5]", fired.toString());
+    Note c = notes.get(0);
+    assertEquals(60, c.getValue());
+    assertEquals(0.25, c.getDuration(), 0.0);
+    assertTrue(c.isDurationExplicitlySet());
+  }
+
+  @Test
+  public void testReplayRange() {
+    store.replay(parser, 1, 1000);
+    assertEquals("[V0, 'hello, D5]", fired.toString());
+  }
+}
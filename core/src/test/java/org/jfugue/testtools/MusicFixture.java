@@ -0,0 +1,77 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.testtools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import org.jfugue.pattern.Pattern;
+import org.junit.Ignore;
+
+/**
+ * Music shared by the tests that check a parse comes out the same whichever way its events are
+ * delivered.
+ */
+@Ignore
+public final class MusicFixture {
+
+  private MusicFixture() {
+  }
+
+  /**
+   * Returns a tempo, key and time signature followed by the given number of voices. Each voice has
+   * its own instrument and plays, in layer 1, notes the key changes, bar lines, a lyric, a marker,
+   * a chord and a controller event, then a rest and a whole note in layer 0. Each voice fires eight
+   * note events, seven of them sounding, and one chord.
+   *
+   * @param voices the number of voices, at most 9 so that the percussion track is left out.
+   * @return a new Pattern.
+   */
+  public static Pattern voices(int voices) {
+    Pattern pattern = new Pattern("T100 KEY:Gmaj TIME:3/4");
+    for (int voice = 0; voice < voices; voice++) {
+      pattern.add("V" + voice + " L1 I" + voice * 10
+        + " C D E | F G A 'la #mark | Bmaj7 :CON(7,80) L0 R C5w");
+    }
+    return pattern;
+  }
+
+  /**
+   * Checks that two sequences hold the same events at the same ticks, track by track.
+   *
+   * @param expected a Sequence.
+   * @param actual a Sequence.
+   */
+  public static void assertSameSequence(Sequence expected, Sequence actual) {
+    Track[] expectedTracks = expected.getTracks();
+    Track[] actualTracks = actual.getTracks();
+    assertEquals(expectedTracks.length, actualTracks.length);
+    for (int t = 0; t < expectedTracks.length; t++) {
+      assertEquals(expectedTracks[t].size(), actualTracks[t].size());
+      for (int e = 0; e < expectedTracks[t].size(); e++) {
+        assertEquals(expectedTracks[t].get(e).getTick(), actualTracks[t].get(e).getTick());
+        assertArrayEquals(expectedTracks[t].get(e).getMessage().getMessage(),
+          actualTracks[t].get(e).getMessage().getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jfugue.theory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.theory.ChordProgressionTable.Voicing;
+import org.junit.Test;
+
+public class ChordProgressionTableTest {
+
+  private static final String PROGRESSION = "I ii^ V7 vii^^ iii IV7%6";
+
+  private static List<Key> allKeys() {
+    List<Key> keys = new ArrayList<>();
+    keys.addAll(ChordProgressionTable.transpositions(new Key("C4maj")));
+    keys.addAll(ChordProgressionTable.transpositions(new Key("A4minw")));
+    return keys;
+  }
+
+  @Test
+  public void testMatchesChordProgression() {
+    ChordProgressionTable table = new ChordProgressionTable(new ChordProgression(PROGRESSION));
+    assertEquals(6, table.size());
+    List<Key> keys = allKeys();
+    int[][][] values = table.getNoteValues(keys, 0, Voicing.CLOSE);
+    List<Pattern> patterns = table.getPatterns(keys, 0, Voicing.CLOSE);
+    for (int k = 0; k < keys.size(); k++) {
+      ChordProgression progression = new ChordProgression(PROGRESSION).setKey(keys.get(k));
+      Chord[] chords = progression.getChords();
+      for (int i = 0; i < chords.length; i++) {
+        Note[] notes = chords[i].getNotes();
+        int[] expected = new int[notes.length];
+        for (int j = 0; j < notes.length; j++) {
+          expected[j] = notes[j].getValue();
+        }
+        assertArrayEquals(expected, values[k][i]);
+      }
+      assertEquals(progression.getPattern().toString(), patterns.get(k).toString());
+    }
+  }
+
+  @Test
+  public void testInversionsAndVoicings() {
+    ChordProgressionTable table = new ChordProgressionTable(new ChordProgression("I V7"));
+    assertArrayEquals(new int[][]{{52, 55, 60}, {59, 62, 66, 67}},
+      table.getNoteValues(Key.DEFAULT_KEY, 1, Voicing.CLOSE));
+    assertArrayEquals(new int[][]{{48, 52, 55}, {55, 59, 62, 66}},
+      table.getNoteValues(Key.DEFAULT_KEY, 0, Voicing.CLOSE));
+    assertArrayEquals(new int[][]{{40, 48, 55}, {50, 55, 59, 66}},
+      table.getNoteValues(Key.DEFAULT_KEY, 0, Voicing.DROP_2));
+    assertArrayEquals(new int[][]{{48, 55, 64}, {55, 62, 71, 78}},
+      table.getNoteValues(Key.DEFAULT_KEY, 0, Voicing.OPEN));
+    assertEquals("C4+G4+E5 G4+D5+B5+F#6",
+      table.getPattern(Key.DEFAULT_KEY, 0, Voicing.OPEN).toString());
+  }
+
+  @Test
+  public void testStreamsInKeyOrder() {
+    ChordProgressionTable table = new ChordProgressionTable(new ChordProgression("I IV V"));
+    List<Key> keys = ChordProgressionTable.transpositions(new Key("Cmaj"));
+    List<String> streamed = table.patterns(keys, 0, Voicing.CLOSE).parallel()
+      .map(Pattern::toString).collect(Collectors.toList());
+    assertEquals("C4MAJ F4MAJ G4MAJ", streamed.get(0));
+    assertEquals("B4MAJ E5MAJ F#5MAJ", streamed.get(11));
+    assertEquals(12, table.noteValues(keys, 0, Voicing.DROP_3).count());
+  }
+
+  @Test
+  public void testTranspositionsNameTheirKeys() {
+    List<Key> keys = ChordProgressionTable.transpositions(new Key("Cmaj"));
+    assertEquals("Cmaj", keys.get(0).getKeySignature());
+    assertEquals("Dmaj", keys.get(2).getKeySignature());
+    assertEquals("Bmaj", keys.get(11).getKeySignature());
+    assertEquals("Emin", ChordProgressionTable.transpositions(new Key("Amin")).get(7)
+      .getKeySignature());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testKnownChordsCannotBeTransposed() {
+    new ChordProgressionTable(ChordProgression.fromChords("Cmaj Fmaj"));
+  }
+}
@@ -19,10 +19,12 @@
 
 package org.jfugue.theory;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import org.jfugue.pattern.Pattern;
 import org.junit.Test;
 
 public class IntervalsTest {
@@ -89,4 +91,43 @@ public class IntervalsTest {
     Intervals intervals = new Intervals("1 3 5").setRoot("C").as("$0q. $1q $2h");
     assertTrue(intervals.getPattern().toString().equalsIgnoreCase("C5q. E5q G5h"));
   }
+
+  @Test
+  public void testHalfsteps() {
+    assertEquals(0, Intervals.getHalfsteps("1"));
+    assertEquals(3, Intervals.getHalfsteps("b3"));
+    assertEquals(3, Intervals.getHalfsteps("B3"));
+    assertEquals(9, Intervals.getHalfsteps("##5"));
+    assertEquals(24, Intervals.getHalfsteps("15"));
+    assertArrayEquals(new int[]{0, 4, 7, 10, 14}, new Intervals("1 3 5 b7 9").toHalfstepArray());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHalfstepsOfSomethingThatIsNotAnInterval() {
+    Intervals.getHalfsteps("#");
+  }
+
+  @Test
+  public void testRotateKeepsHalfsteps() {
+    Intervals intervals = new Intervals("1 b3 5 b7");
+    intervals.rotate(2);
+    assertEquals("5 b7 1 b3", intervals.toString());
+    assertArrayEquals(new int[]{7, 10, 0, 3}, intervals.toHalfstepArray());
+    assertEquals(10, intervals.getNthHalfsteps(1));
+    assertEquals(4, intervals.size());
+  }
+
+  @Test
+  public void testPatternFollowsRootAndSequence() {
+    Intervals intervals = new Intervals("1 3 5").setRoot("C");
+    Pattern first = intervals.getPattern();
+    first.add("D5");
+    assertEquals("C5 E5 G5", intervals.getPattern().toString());
+    intervals.setRoot("D");
+    assertEquals("D5 F#5 A5", intervals.getPattern().toString());
+    intervals.as("$2 $0");
+    assertEquals("A5 D5", intervals.getPattern().toString());
+    intervals.rotate(1);
+    assertEquals("D5 F#5", intervals.getPattern().toString());
+  }
 }
@@ -0,0 +1,144 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.sound.midi.Sequence;
+import org.jfugue.midi.MidiParser;
+import org.jfugue.midi.MidiParserListener;
+import org.jfugue.parser.BatchParserListener;
+import org.jfugue.parser.EventBatch;
+import org.jfugue.parser.EventType;
+import org.jfugue.parser.ParserListenerAdapter;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class PackedNoteTest {
+
+  private static void assertSameNote(Note expected, Note actual) {
+    assertEquals(expected.getValue(), actual.getValue());
+    assertEquals(expected.getDuration(), actual.getDuration(), 0.0D);
+    assertEquals(expected.getOnVelocity(), actual.getOnVelocity());
+    assertEquals(expected.getOffVelocity(), actual.getOffVelocity());
+    assertEquals(expected.isRest(), actual.isRest());
+    assertEquals(expected.isStartOfTie(), actual.isStartOfTie());
+    assertEquals(expected.isEndOfTie(), actual.isEndOfTie());
+    assertEquals(expected.isFirstNote(), actual.isFirstNote());
+    assertEquals(expected.isMelodicNote(), actual.isMelodicNote());
+    assertEquals(expected.isHarmonicNote(), actual.isHarmonicNote());
+    assertEquals(expected.isPercussionNote(), actual.isPercussionNote());
+    assertEquals(expected.isOctaveExplicitlySet(), actual.isOctaveExplicitlySet());
+    assertEquals(expected.isDurationExplicitlySet(), actual.isDurationExplicitlySet());
+  }
+
+  @Test
+  public void testRoundTrip() {
+    List<Note> notes = new ArrayList<>();
+    notes.add(new Note("C5q"));
+    notes.add(new Note("Eb3w-a10d120"));
+    notes.add(new Note("G-"));
+    notes.add(Note.createRest(0.375));
+    notes.add(new Note(127).setOnVelocity((byte) -1).setPercussionNote(true));
+    notes.add(new Note(60, 1.0 / 3).setFirstNote(false).setHarmonicNote(true)
+      .setMelodicNote(true));
+    for (Note note : notes) {
+      long packed = PackedNote.pack(note);
+      assertSameNote(note, PackedNote.toNote(packed, note.getDuration()));
+      assertEquals(packed, PackedNote.pack(PackedNote.toNote(packed, note.getDuration())));
+    }
+  }
+
+  @Test
+  public void testAccessors() {
+    long packed = PackedNote.of((byte) 64, (byte) 100, (byte) 20,
+      PackedNote.START_OF_TIE | PackedNote.FIRST_NOTE);
+    assertEquals(64, PackedNote.getValue(packed));
+    assertEquals(100, PackedNote.getOnVelocity(packed));
+    assertEquals(20, PackedNote.getOffVelocity(packed));
+    assertTrue(PackedNote.is(packed, PackedNote.START_OF_TIE));
+    assertFalse(PackedNote.is(packed, PackedNote.END_OF_TIE));
+
+    long transposed = PackedNote.withValue(packed, (byte) 71);
+    assertEquals(71, PackedNote.getValue(transposed));
+    assertEquals(100, PackedNote.getOnVelocity(transposed));
+    assertTrue(PackedNote.is(transposed, PackedNote.START_OF_TIE));
+
+    long softer = PackedNote.withOffVelocity(PackedNote.withOnVelocity(packed, (byte) 30),
+      (byte) 127);
+    assertEquals(64, PackedNote.getValue(softer));
+    assertEquals(30, PackedNote.getOnVelocity(softer));
+    assertEquals(127, PackedNote.getOffVelocity(softer));
+    assertTrue(PackedNote.is(softer, PackedNote.FIRST_NOTE));
+  }
+
+  @Test
+  public void testMidiNotesReachBatchListenersPacked() {
+    MidiParserListener midi = new MidiParserListener();
+    StaccatoParser staccatoParser = new StaccatoParser();
+    staccatoParser.addParserListener(midi);
+    staccatoParser.parse("V0 C5qa90 D5h E5i V1 Cmaj5w");
+    Sequence sequence = midi.getSequence();
+
+    List<Note> direct = new ArrayList<>();
+    MidiParser parser = new MidiParser();
+    parser.addParserListener(new ParserListenerAdapter() {
+      @Override
+      public void onNoteParsed(Note note) {
+        direct.add(note);
+      }
+    });
+    parser.parse(sequence);
+
+    List<Long> packed = new ArrayList<>();
+    List<Double> durations = new ArrayList<>();
+    MidiParser batchParser = new MidiParser();
+    batchParser.addBatchParserListener(new BatchParserListener() {
+      @Override
+      public void beforeParsingStarts() {
+      }
+
+      @Override
+      public void onEventBatch(EventBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+          if (batch.getType(i) == EventType.NOTE) {
+            packed.add(batch.getPackedNote(i));
+            durations.add(batch.getDoubleValue(i));
+          }
+        }
+      }
+
+      @Override
+      public void afterParsingFinished() {
+      }
+    });
+    batchParser.parse(sequence);
+
+    assertTrue(direct.size() >= 6);
+    assertEquals(direct.size(), packed.size());
+    for (int i = 0; i < direct.size(); i++) {
+      assertSameNote(direct.get(i), PackedNote.toNote(packed.get(i), durations.get(i)));
+    }
+  }
+}
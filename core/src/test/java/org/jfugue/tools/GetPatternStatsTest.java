@@ -0,0 +1,101 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class GetPatternStatsTest {
+
+  private static final String MUSIC = "KEY:Gmaj C5q D5q E5q F5q | G5h Rq A5i B5i | Ri C6h. F#5i "
+    + "| Eb5q+G5q Bb4h Rh | C5w";
+
+  private static List<Double> numbers(GetPatternStats stats) {
+    List<Double> numbers = new ArrayList<>();
+    Matcher matcher = Pattern.compile("-?[0-9.]+(E-?[0-9]+)?|NaN").matcher(stats.toString());
+    while (matcher.find()) {
+      numbers.add(Double.valueOf(matcher.group()));
+    }
+    return numbers;
+  }
+
+  private static void assertSameStats(GetPatternStats expected, GetPatternStats actual) {
+    List<Double> expectedNumbers = numbers(expected);
+    List<Double> actualNumbers = numbers(actual);
+    assertEquals(expectedNumbers.size(), actualNumbers.size());
+    for (int i = 0; i < expectedNumbers.size(); i++) {
+      assertEquals(expectedNumbers.get(i), actualNumbers.get(i), 1e-9);
+    }
+  }
+
+  @Test
+  public void testStreamingMatchesBatch() {
+    org.jfugue.pattern.Pattern pattern = new org.jfugue.pattern.Pattern(MUSIC).repeat(5);
+    GetPatternStats batch = new GetPatternStats();
+    batch.parsePattern(pattern, true);
+    GetPatternStats streaming = new GetPatternStats(true);
+    streaming.parsePattern(pattern, true);
+    assertSameStats(batch, streaming);
+  }
+
+  @Test
+  public void testStreamingListenerOnAnyParser() {
+    GetPatternStats batch = new GetPatternStats();
+    batch.parsePattern(new org.jfugue.pattern.Pattern(MUSIC), true);
+    GetPatternStats streaming = new GetPatternStats(true);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(streaming.getParserListener());
+    parser.parse(MUSIC);
+    assertSameStats(batch, streaming);
+  }
+
+  @Test
+  public void testMergeCombinesParts() {
+    String part = "C5q E5q G5q C6q | G5h Rq B4q | C5w";
+    GetPatternStats whole = new GetPatternStats(true);
+    whole.parsePattern(new org.jfugue.pattern.Pattern(part + " " + part), true);
+    GetPatternStats first = new GetPatternStats(true);
+    first.parsePattern(new org.jfugue.pattern.Pattern(part), true);
+    GetPatternStats second = new GetPatternStats(true);
+    second.parsePattern(new org.jfugue.pattern.Pattern(part), true);
+    first.merge(second);
+    List<Double> wholeNumbers = numbers(whole);
+    List<Double> mergedNumbers = numbers(first);
+    // Notes, silences and the pitch statistics do not depend on the boundary between the parts
+    for (int i : new int[]{0, 1}) {
+      assertEquals(wholeNumbers.get(i), mergedNumbers.get(i), 0);
+    }
+    int pitch = 14;
+    for (int i = pitch; i < pitch + 4; i++) {
+      assertEquals(wholeNumbers.get(i), mergedNumbers.get(i), 1e-9);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testBatchCannotMerge() {
+    new GetPatternStats().merge(new GetPatternStats(true));
+  }
+}
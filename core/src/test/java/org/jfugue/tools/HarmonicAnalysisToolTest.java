@@ -0,0 +1,146 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jfugue.midi.MidiParserListener;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.theory.Chord;
+import org.jfugue.theory.Key;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+
+public class HarmonicAnalysisToolTest {
+
+  private static class Recorder implements HarmonyListener {
+
+    private final List<String> chords = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+
+    @Override
+    public void onChordDetected(double time, Chord chord) {
+      chords.add(time + ":" + chord);
+    }
+
+    @Override
+    public void onKeyDetected(double time, Key key, double correlation) {
+      keys.add(time + ":" + key.getKeySignature());
+    }
+  }
+
+  private static Recorder analyze(HarmonicAnalysisTool tool, String music) {
+    Recorder recorder = new Recorder();
+    tool.addHarmonyListener(recorder);
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(tool);
+    parser.parse(music);
+    return recorder;
+  }
+
+  @Test
+  public void testLabelsEachBeat() {
+    Recorder recorder = analyze(new HarmonicAnalysisTool(),
+      "C4q+E4q+G4q A3q+C4q+E4q G3h+B3h+D4h+F4h Rq E4q+G4q+B4q");
+    assertEquals("[0.0:CMAJ, 0.25:AMIN, 0.5:GDOM7, 0.75:GDOM7, 1.25:EMIN]",
+      recorder.chords.toString());
+  }
+
+  @Test
+  public void testMelodyAndChordsShareBeats() {
+    Recorder recorder = analyze(new HarmonicAnalysisTool(), "C4h+E4h+G4h F4i_A4i_C5i_F5i");
+    assertEquals("[0.0:CMAJ, 0.25:CMAJ, 0.5:FMAJ, 0.75:FMAJ]", recorder.chords.toString());
+  }
+
+  @Test
+  public void testLabelsEveryBeatOfASustainedChord() {
+    Recorder recorder = analyze(new HarmonicAnalysisTool(), "Cmajww");
+    assertEquals("[0.0:CMAJ, 0.25:CMAJ, 0.5:CMAJ, 0.75:CMAJ, 1.0:CMAJ, 1.25:CMAJ, 1.5:CMAJ, "
+      + "1.75:CMAJ]", recorder.chords.toString());
+
+    recorder = analyze(new HarmonicAnalysisTool(0.25, 2, 0), "Cmajww Fmajq");
+    assertEquals(9, recorder.chords.size());
+    assertEquals("1.75:CMAJ", recorder.chords.get(7));
+    assertEquals("2.0:FMAJ", recorder.chords.get(8));
+  }
+
+  @Test
+  public void testEstimatesKey() {
+    HarmonicAnalysisTool tool = new HarmonicAnalysisTool();
+    assertNull(tool.getKey());
+    Recorder recorder = analyze(tool,
+      "C4q D4q E4q F4q G4q A4q B4q C5q G4q E4q C4h | "
+        + "C4q+E4q+G4q F4q+A4q+C5q G4q+B4q+D5q C4h+E4h+G4h");
+    assertEquals("Cmaj", tool.getKey().getKeySignature());
+    assertTrue(tool.getKeyCorrelation() > 0.5);
+    assertTrue(recorder.keys.get(recorder.keys.size() - 1).endsWith("Cmaj"));
+
+    analyze(tool, "A3q C4q E4q A4q G#4q B4q E4q G#3q A3q+C4q+E4q D4q+F4q+A4q E4q+G#4q+B4q "
+      + "A3h+C4h+E4h");
+    assertEquals("Amin", tool.getKey().getKeySignature());
+  }
+
+  @Test
+  public void testForgetsSustainedNoteAcrossSilence() {
+    HarmonicAnalysisTool sustained = new HarmonicAnalysisTool();
+    Recorder recorder = analyze(sustained, "C5q D5/1.5 R/10.0 E5q+G5q");
+    HarmonicAnalysisTool rested = new HarmonicAnalysisTool();
+    Recorder expected = analyze(rested, "C5q R/1.5 R/10.0 E5q+G5q");
+    assertEquals("11.75:EMIN", recorder.chords.get(recorder.chords.size() - 1));
+    assertEquals(expected.chords.get(expected.chords.size() - 1),
+      recorder.chords.get(recorder.chords.size() - 1));
+    assertEquals(rested.getKey().getKeySignature(), sustained.getKey().getKeySignature());
+  }
+
+  @Test
+  public void testKeyFollowsWindow() {
+    HarmonicAnalysisTool tool = new HarmonicAnalysisTool(0.25, 8, 0);
+    Recorder recorder = analyze(tool, new Pattern("C4q E4q G4q C5q G4q E4q F4q D4q").repeat(4)
+      .add(new Pattern("Gb4q Bb4q Db5q Gb5q Db5q Bb4q Cb5q Ab4q").repeat(4)).toString());
+    assertEquals("F#maj", tool.getKey().getKeySignature());
+    assertEquals("0.0:Cmaj", recorder.keys.get(0));
+  }
+
+  @Test
+  public void testIgnoresPercussionAndRests() {
+    Recorder recorder = analyze(new HarmonicAnalysisTool(),
+      "V9 [BASS_DRUM]q [ACOUSTIC_SNARE]q V0 Rh C4q+E4q+G4q");
+    assertEquals("[0.5:CMAJ]", recorder.chords.toString());
+  }
+
+  @Test
+  public void testAnalyzesTracksOfASequenceInTimeOrder() {
+    MidiParserListener midi = new MidiParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(midi);
+    parser.parse("V0 C5h F5h G5h C5h V1 E4h A4h B4h E4h V2 G3h C4h D4h G3h");
+
+    HarmonicAnalysisTool tool = new HarmonicAnalysisTool(0.5, 8, 1);
+    Recorder recorder = new Recorder();
+    tool.addHarmonyListener(recorder);
+    tool.analyze(midi.getSequence());
+    assertEquals("[0.0:CMAJ, 0.5:FMAJ, 1.0:GMAJ, 1.5:CMAJ]", recorder.chords.toString());
+    assertEquals("Cmaj", tool.getKey().getKeySignature());
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jfugue.pattern.Pattern;
+import org.jfugue.tools.PatternSimilarityIndex.Match;
+import org.jfugue.tools.PatternSimilarityIndex.Metric;
+import org.junit.Test;
+
+public class PatternSimilarityIndexTest {
+
+  private static final String[] PIECES = {
+    "C5q D5q E5q F5q | G5h G5h | A5q A5q A5q A5q | G5w",
+    "C5q D5q E5q F5q | G5h G5h | A5q A5q A5q A5q | G5h Rh",
+    "KEY:Gmaj G4i A4i B4i C5i D5q B4q | C5h. Rq | Eb5q+G5q Bb4h Rh",
+    "C3w | F3w | G3w | C3w",
+    "E6s D#6s E6s D#6s E6s B5s D6s C6s A5i Ri C5s E5s A5s B5i Ri"};
+
+  private static Map<String, Pattern> corpus() {
+    Map<String, Pattern> corpus = new LinkedHashMap<>();
+    for (int i = 0; i < PIECES.length; i++) {
+      corpus.put("piece" + i, new Pattern(PIECES[i]));
+    }
+    return corpus;
+  }
+
+  @Test
+  public void testAverageDifferenceMatchesComparePatterns() {
+    PatternSimilarityIndex index = PatternSimilarityIndex.build(corpus());
+    assertEquals(PIECES.length, index.size());
+    Pattern query = new Pattern(PIECES[2]);
+    List<Match> matches = index.search(query, PIECES.length, Metric.AVERAGE_DIFFERENCE);
+    assertEquals(PIECES.length, matches.size());
+    for (Match match : matches) {
+      Pattern piece = corpus().get(match.getId());
+      assertEquals(new GetPatternStats().comparePatterns(query, piece), match.getDistance(), 1e-9);
+    }
+    assertEquals("piece2", matches.get(0).getId());
+    assertEquals(0, matches.get(0).getDistance(), 0);
+  }
+
+  @Test
+  public void testReturnsEveryPieceWhenMoreAreAskedFor() {
+    PatternSimilarityIndex index = PatternSimilarityIndex.build(corpus());
+    List<Match> matches = index.search(new Pattern(PIECES[0]), Integer.MAX_VALUE,
+      Metric.EUCLIDEAN);
+    assertEquals(PIECES.length, matches.size());
+    assertEquals("piece0", matches.get(0).getId());
+  }
+
+  @Test
+  public void testFindsNearDuplicates() {
+    PatternSimilarityIndex index = new PatternSimilarityIndex();
+    for (int copy = 0; copy < 2000; copy++) {
+      for (int i = 0; i < PIECES.length; i++) {
+        if (i != 1) {
+          index.add("piece" + i + "/" + copy, PatternSimilarityIndex.computeFeatures(
+            new Pattern(PIECES[i])));
+        }
+      }
+    }
+    index.add("piece1", new Pattern(PIECES[1]));
+    List<Match> matches = index.search(new Pattern(PIECES[1]), 3, Metric.EUCLIDEAN);
+    assertEquals(3, matches.size());
+    assertEquals("piece1", matches.get(0).getId());
+    assertEquals("piece0/0", matches.get(1).getId());
+    assertEquals("piece0/1", matches.get(2).getId());
+  }
+
+  @Test
+  public void testWritesAndReadsBack() throws IOException {
+    PatternSimilarityIndex index = PatternSimilarityIndex.build(corpus());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    PatternSimilarityIndex read = PatternSimilarityIndex.read(new ByteArrayInputStream(
+      out.toByteArray()));
+    assertEquals(index.size(), read.size());
+    for (int i = 0; i < index.size(); i++) {
+      assertEquals(index.getId(i), read.getId(i));
+      assertArrayEquals(index.getFeatures(i), read.getFeatures(i), 0);
+    }
+    double[] query = index.getFeatures(3);
+    assertEquals(index.search(query, 2, Metric.EUCLIDEAN).toString(),
+      read.search(query, 2, Metric.EUCLIDEAN).toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsOtherFiles() throws IOException {
+    PatternSimilarityIndex.read(new ByteArrayInputStream("JFEL1234567890".getBytes()));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class StreamingStatsTest {
+
+  @Test
+  public void testMatchesTwoPassStatistics() {
+    double[] values = {60, 62, 64, 65, 67, 0.25, 0.125, 72, 48, 60};
+    StreamingStats stats = new StreamingStats();
+    for (double value : values) {
+      stats.add(value);
+    }
+    double mean = Arrays.stream(values).average().getAsDouble();
+    double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).average()
+      .getAsDouble();
+    assertEquals(values.length, stats.getN());
+    assertEquals(mean, stats.getMean(), 1e-12);
+    assertEquals(Math.sqrt(variance), stats.getStandardDeviation(), 1e-12);
+    assertEquals(0.125, stats.getMin(), 0);
+    assertEquals(72, stats.getMax(), 0);
+    assertEquals(71.875, stats.getRange(), 0);
+  }
+
+  @Test
+  public void testEmpty() {
+    StreamingStats stats = new StreamingStats();
+    assertEquals(0, stats.getN());
+    assertEquals(0, stats.getMean(), 0);
+    assertEquals(0, stats.getStandardDeviation(), 0);
+    assertEquals(0, stats.getRange(), 0);
+    assertEquals(0, stats.getQuantile(0.5), 0);
+  }
+
+  @Test
+  public void testMergedPartsMatchWhole() {
+    Random random = new Random(11);
+    StreamingStats whole = new StreamingStats();
+    StreamingStats first = new StreamingStats();
+    StreamingStats second = new StreamingStats();
+    for (int i = 0; i < 10000; i++) {
+      double value = random.nextGaussian() * 12 + 60;
+      whole.add(value);
+      (i % 3 == 0 ? first : second).add(value);
+    }
+    first.merge(second);
+    assertEquals(whole.getN(), first.getN());
+    assertEquals(whole.getMean(), first.getMean(), 1e-9);
+    assertEquals(whole.getStandardDeviation(), first.getStandardDeviation(), 1e-9);
+    assertEquals(whole.getRange(), first.getRange(), 0);
+    assertEquals(whole.getQuantile(0.9), first.getQuantile(0.9), 0);
+  }
+
+  @Test
+  public void testQuantilesWithinOnePercent() {
+    StreamingStats stats = new StreamingStats();
+    double[] values = new double[1001];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i - 200) * 0.37;
+      stats.add(((i * 7919) % values.length - 200) * 0.37);
+    }
+    for (double q : new double[]{0, 0.1, 0.2, 0.5, 0.9, 1}) {
+      double expected = values[(int) Math.floor(q * (values.length - 1))];
+      assertEquals(expected, stats.getQuantile(q), Math.abs(expected) * 0.01 + 1e-9);
+    }
+  }
+}
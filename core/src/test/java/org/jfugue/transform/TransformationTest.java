@@ -0,0 +1,99 @@
+/*
+ * JFugue, an Application Programming Interface (API) for Music Programming
+ * http://www.jfugue.org
+ *
+ * Copyright (C) 2003-2014 David Koelle
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfugue.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import org.jfugue.parser.EventType;
+import org.jfugue.pattern.Pattern;
+import org.junit.Test;
+import org.staccato.StaccatoParser;
+import org.staccato.StaccatoParserListener;
+
+public class TransformationTest {
+
+  private static final String MUSIC = "V0 T120 I[Piano] C5q Ea64 'hi Rh V1 L1 Dmaj7w :CON(7,100) "
+    + "V9 [BASS_DRUM]q V0 G4q+B4q";
+
+  @Test
+  public void testIdentityReplayMatchesStaccato() {
+    StaccatoParserListener listener = new StaccatoParserListener();
+    StaccatoParser parser = new StaccatoParser();
+    parser.addParserListener(listener);
+    parser.parse(MUSIC);
+    assertEquals(listener.getPattern().toString(), MusicEvents.of(new Pattern(MUSIC)).toString());
+  }
+
+  @Test
+  public void testChainedTransforms() {
+    Pattern result = new Transformation()
+      .transpose(2)
+      .stretch(2.0)
+      .scaleVelocity(0.5)
+      .remapInstrument(0, 24)
+      .moveVoice(1, 3)
+      .scaleTempo(0.5)
+      .transform(new Pattern(MUSIC));
+    assertEquals("V0 T60 I24 D5ha32 F#5ha32 'hi Rw V3 L1 EMAJ7w2a32 :CON(7,100) :CE(7,100) "
+      + "V9 [BASS_DRUM]ha32 V0 A4ha32 C#5ha32", result.toString());
+  }
+
+  @Test
+  public void testCustomTransformAndColumns() {
+    MusicEvents events = MusicEvents.of(new Pattern("C5q D5q E5q"));
+    assertEquals(3, events.size());
+    new Transformation().add((e, row) -> e.setOffVelocity(row, row * 10)).apply(events);
+    assertEquals(EventType.NOTE, events.getType(1));
+    assertEquals(10, events.getOffVelocity(1));
+    assertEquals(62, events.getValue(1));
+    assertEquals(0.25, events.getDuration(2), 0.0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testVelocityOfNonNoteIsRejected() {
+    MusicEvents events = MusicEvents.of(new Pattern("T100 C"));
+    events.setOnVelocity(0, 10);
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    MusicEvents events = MusicEvents.of(new Pattern("C5q"));
+    MusicEvents copy = events.copy();
+    new Transformation().transpose(12).apply(copy);
+    assertEquals(60, events.getValue(0));
+    assertEquals(72, copy.getValue(0));
+  }
+
+  @Test
+  public void testSaveWritesStandardMidiFile() throws Exception {
+    MusicEvents events = new Transformation().stretch(0.5)
+      .apply(MusicEvents.of(new Pattern("C D E F")));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    events.save(out);
+    Sequence sequence = MidiSystem.getSequence(new ByteArrayInputStream(out.toByteArray()));
+    assertTrue(sequence.getTickLength() > 0);
+    assertEquals(events.getSequence().getTickLength(), sequence.getTickLength());
+  }
+}
@@ -19,7 +19,9 @@
 
 package org.staccato;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import org.jfugue.parser.ParserException;
@@ -235,4 +237,50 @@ public class NoteSubparserTest extends JFugueTestHelper {
   public void testInternalIntervalWithDoubleSharp() {
     assertTrue(compare("C'6##q", new Note(71, 0.25d)));
   }
+
+  @Test
+  public void testCreatedNotesAreCopies() {
+    NoteSubparser parser = NoteSubparser.getInstance();
+    Note first = parser.createNote("Eb6h");
+    Note second = parser.createNote("Eb6h");
+    assertNotSame(first, second);
+    first.setValue((byte) 1);
+    assertEquals(75, second.getValue());
+    assertEquals(75, parser.createNote("Eb6h").getValue());
+    assertEquals(0.5d, parser.createNote("Eb6h").getDuration(), 0.0d);
+
+    Chord chord = parser.createChord("Dmin7");
+    chord.setOctave(7);
+    chord.setInversion(2);
+    Chord again = parser.createChord("Dmin7");
+    assertEquals(50, again.getRoot().getValue());
+    assertEquals(0, again.getInversion());
+  }
+
+  @Test
+  public void testCacheFollowsDefaultsAndChords() {
+    NoteSubparser parser = NoteSubparser.getInstance();
+    DefaultNoteSettingsManager defaults = DefaultNoteSettingsManager.getInstance();
+    assertEquals(0.25d, parser.getDurationForString(""), 0.0d);
+    assertEquals(60, parser.createNote("C").getValue());
+    try {
+      defaults.setDefaultDuration(0.5d);
+      defaults.setDefaultOctave((byte) 6);
+      assertEquals(0.5d, parser.getDurationForString(""), 0.0d);
+      assertEquals(72, parser.createNote("C").getValue());
+    } finally {
+      defaults.setDefaultDuration(DefaultNoteSettingsManager.DEFAULT_DEFAULT_DURATION);
+      defaults.setDefaultOctave(DefaultNoteSettingsManager.DEFAULT_DEFAULT_OCTAVE);
+    }
+    assertEquals(60, parser.createNote("C").getValue());
+
+    try {
+      Chord.addChord("QRT", "1 4 b7");
+      assertEquals(3, parser.createChord("C5QRT").getNotes().length);
+      Chord.addChord("QRT", "1 4");
+      assertEquals(2, parser.createChord("C5QRT").getNotes().length);
+    } finally {
+      Chord.removeChord("QRT");
+    }
+  }
 }